@@ -0,0 +1,88 @@
+package mortgageCalculator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The cost of gzip, at the default level Tomcat uses, on response bodies of increasing size: a
+ * /payment-amount result, /payment-amount/batch results of 4 to 256 scenarios and
+ * /amortization-schedule bodies of 60 to 1300 payments. The setup prints the bytes before and
+ * after compression, which with the time gives the link speed below which compressing a body of
+ * that size pays off, see server.compression.min-response-size in application.yml.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompressionBenchmark {
+
+    @Param({"payment", "batch-4", "batch-16", "batch-64", "batch-256", "schedule-60", "schedule-300", "schedule-1300"})
+    String body;
+
+    byte[] bytes;
+
+    @Setup
+    public void setup() throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        int n = Integer.parseInt(body.substring(body.indexOf('-') + 1).replace("payment", "1"));
+        if (body.equals("payment")) {
+            bytes = mapper.writeValueAsBytes(MortgageCalculator.paymentAmount(500000, 70000, "monthly", 25));
+        }
+        else if (body.startsWith("batch")) {
+            double[] askingPrice = new double[n], downPayment = new double[n];
+            String[] paymentSchedule = new String[n];
+            int[] amortizationPeriod = new int[n];
+            for (int i = 0; i < n; i++) {
+                askingPrice[i] = 400000 + 1000 * i;
+                downPayment[i] = 80000;
+                paymentSchedule[i] = "monthly";
+                amortizationPeriod[i] = 5 + i % 21;
+            }
+            bytes = mapper.writeValueAsBytes(MortgageCalculator.paymentAmounts(askingPrice, downPayment,
+                    paymentSchedule, amortizationPeriod, null));
+        }
+        else {
+            // 60 monthly payments over 5 years, 300 over 25 years, 1300 weekly over 25 years
+            AmortizationSchedule schedule = n == 1300 ?
+                    MortgageCalculator.amortizationSchedule(500000, 70000, "weekly", 25, 2.5) :
+                    MortgageCalculator.amortizationSchedule(500000, 70000, "monthly", n / 12, 2.5);
+            StringBuilder text = new StringBuilder();
+            while (schedule.next()) {
+                text.append("{\"payment_number\":").append(schedule.getPaymentNumber())
+                        .append(",\"payment\":").append(schedule.getPayment())
+                        .append(",\"interest\":").append(schedule.getInterest())
+                        .append(",\"principal\":").append(schedule.getPrincipal())
+                        .append(",\"balance\":").append(schedule.getBalance()).append("}\n");
+            }
+            bytes = text.toString().getBytes("UTF-8");
+        }
+        System.out.printf("%n%s: %d bytes, %d gzipped%n", body, bytes.length, gzip().length);
+    }
+
+    @Benchmark
+    public byte[] gzip() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,87 @@
+package mortgageCalculator;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * The full Spring MVC request path, parameter binding, the calculation and Jackson serialization of
+ * the result map, next to the FastPathServlet answering the same requests.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ControllerBenchmark {
+
+    MockMvc mockMvc;
+    FastPathServlet fastPathServlet;
+
+    @Setup
+    public void setup() {
+        // the result cache is disabled so every request runs the calculation
+        ResultCache resultCache = new ResultCache(false, 0, 0);
+        mockMvc = MockMvcBuilders.standaloneSetup(new MortgageCalculatorController(resultCache, 
+                new CalculatorMetrics(new SimpleMeterRegistry(), resultCache))).build();
+        fastPathServlet = new FastPathServlet(new CalculatorMetrics(new SimpleMeterRegistry(), resultCache));
+    }
+
+    @Benchmark
+    public String paymentAmount() throws Exception {
+        return mockMvc.perform(get("/payment-amount")
+                .param("asking_price", "500000")
+                .param("down_payment", "70000")
+                .param("payment_schedule", "monthly")
+                .param("amortization_period", "25"))
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    @Benchmark
+    public String paymentAmountInvalid() throws Exception {
+        return mockMvc.perform(get("/payment-amount")
+                .param("asking_price", "500000")
+                .param("down_payment", "1000")
+                .param("payment_schedule", "monthly")
+                .param("amortization_period", "25"))
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    @Benchmark
+    public String mortgageAmount() throws Exception {
+        return mockMvc.perform(get("/mortgage-amount")
+                .param("payment", "2000")
+                .param("down_payment", "70000")
+                .param("payment_schedule", "monthly")
+                .param("amortization_period", "25"))
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    @Benchmark
+    public String fastPaymentAmount() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", FastPathServlet.PAYMENT_AMOUNT);
+        request.setServletPath(FastPathServlet.PAYMENT_AMOUNT);
+        request.setQueryString("asking_price=500000&down_payment=70000&payment_schedule=monthly&amortization_period=25");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        fastPathServlet.service(request, response);
+        return response.getContentAsString();
+    }
+}
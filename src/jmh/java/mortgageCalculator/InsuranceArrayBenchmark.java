@@ -0,0 +1,71 @@
+package mortgageCalculator;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Insurance and minimum down payment over arrays of random scenarios, the array versions against
+ * a loop calling the scalar versions. The ratios are spread over every insurance tier so the
+ * branches of the scalar version are unpredictable.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class InsuranceArrayBenchmark {
+
+    static final int SCENARIOS = 4096;
+
+    double[] askingPrices = new double[SCENARIOS], downPayments = new double[SCENARIOS];
+    double[] out = new double[SCENARIOS];
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        for (int i = 0; i < SCENARIOS; i++) {
+            askingPrices[i] = 100000 + random.nextDouble() * 1500000;
+            downPayments[i] = askingPrices[i] * random.nextDouble() * 0.3;
+        }
+    }
+
+    @Benchmark
+    public double[] calculateInsuranceScalar() {
+        for (int i = 0; i < SCENARIOS; i++) {
+            out[i] = MortgageCalculator.calculateInsurance(askingPrices[i], downPayments[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] calculateInsuranceArray() {
+        MortgageCalculator.calculateInsurance(askingPrices, downPayments, out);
+        return out;
+    }
+
+    @Benchmark
+    public double[] minimumDownPaymentScalar() {
+        for (int i = 0; i < SCENARIOS; i++) {
+            out[i] = MortgageCalculator.minimumDownPayment(askingPrices[i]);
+        }
+        return out;
+    }
+
+    @Benchmark
+    public double[] minimumDownPaymentArray() {
+        MortgageCalculator.minimumDownPayments(askingPrices, out);
+        return out;
+    }
+}
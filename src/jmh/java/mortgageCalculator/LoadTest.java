@@ -0,0 +1,173 @@
+package mortgageCalculator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * LoadTest - Compares the throughput and tail latency of the servlet (Tomcat) and reactive (WebFlux
+ * on Netty) execution modes. Each mode is started in this JVM on a random port and driven by a fixed
+ * number of client threads, each sending its next request as soon as the previous one completed,
+ * over a mix of /payment-amount, /mortgage-amount and /interest-rate requests. Use more client
+ * threads than Tomcat's 200 workers to see requests queue.
+ *
+ * Run with: ./mvnw -P benchmark,reactive test-compile exec:exec@load-test -Dload-test.args="400 10 5"
+ * The arguments are the number of client threads, the measured seconds and the warm up seconds.
+ */
+public class LoadTest {
+
+    private static final String[] MODES = {"servlet", "reactive"};
+
+    private static final String[] REQUESTS = {
+            "/payment-amount?asking_price=500000&down_payment=70000&payment_schedule=monthly&amortization_period=25",
+            "/payment-amount?asking_price=650000&down_payment=130000&payment_schedule=biweekly&amortization_period=20",
+            "/mortgage-amount?payment=2000&payment_schedule=monthly&amortization_period=25",
+            "/interest-rate"};
+
+    public static void main(String[] args) throws Exception {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int warmupSeconds = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        // one keep-alive connection per client thread
+        System.setProperty("http.maxConnections", Integer.toString(clients));
+
+        List<String> results = new ArrayList<>();
+        for (String mode : MODES) {
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(MortgageCalculatorController.class)
+                    .profiles(mode)
+                    // admission control only exists in the servlet mode, it would shed the load being measured
+                    .run("--server.port=0", "--mortgage-calculator.cache.enabled=false",
+                            "--mortgage-calculator.admission.enabled=false");
+            try {
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                run(port, clients, warmupSeconds);
+                results.add(String.format("%-9s %s", mode, run(port, clients, seconds)));
+            }
+            finally {
+                context.close();
+            }
+        }
+        System.out.println();
+        System.out.printf("%d clients, %d seconds%n", clients, seconds);
+        System.out.printf("%-9s %10s %9s %9s %9s %9s %9s %7s%n", "mode", "req/s", "p50 ms", "p95 ms", "p99 ms",
+                "p99.9 ms", "max ms", "errors");
+        for (String result : results) {
+            System.out.println(result);
+        }
+        // stop the threads the closed servers leave behind
+        System.exit(0);
+    }
+
+    private static String run(int port, int clients, int seconds) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        Client[] workers = new Client[clients];
+        CountDownLatch done = new CountDownLatch(clients);
+        for (int i = 0; i < clients; i++) {
+            workers[i] = new Client(port, i, end, done);
+            workers[i].start();
+        }
+        done.await();
+
+        int count = 0;
+        int errors = 0;
+        for (Client client : workers) {
+            count += client.count;
+            errors += client.errors;
+        }
+        long[] latencies = new long[count];
+        int n = 0;
+        for (Client client : workers) {
+            System.arraycopy(client.latencies, 0, latencies, n, client.count);
+            n += client.count;
+        }
+        Arrays.sort(latencies);
+        return String.format("%10.0f %9.3f %9.3f %9.3f %9.3f %9.3f %7d", count / (double) seconds,
+                millis(latencies, 0.5), millis(latencies, 0.95), millis(latencies, 0.99),
+                millis(latencies, 0.999), millis(latencies, 1.0), errors);
+    }
+
+    private static double millis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int i = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, i)] / 1e6;
+    }
+
+    private static final class Client extends Thread {
+        private final URL[] urls;
+        private final long end;
+        private final CountDownLatch done;
+        private final byte[] buffer = new byte[4096];
+
+        long[] latencies = new long[1 << 14];
+        int count;
+        int errors;
+
+        Client(int port, int index, long end, CountDownLatch done) {
+            super("load-test-" + index);
+            setDaemon(true);
+            this.urls = new URL[REQUESTS.length];
+            for (int i = 0; i < REQUESTS.length; i++) {
+                try {
+                    // start each client at a different request so the mix is even at any moment
+                    urls[i] = new URL("http://localhost:" + port + REQUESTS[(i + index) % REQUESTS.length]);
+                }
+                catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            this.end = end;
+            this.done = done;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int i = 0; System.nanoTime() < end; i++) {
+                    long start = System.nanoTime();
+                    boolean ok = request(urls[i % urls.length]);
+                    long latency = System.nanoTime() - start;
+                    if (!ok) {
+                        errors++;
+                        continue;
+                    }
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = latency;
+                }
+            }
+            finally {
+                done.countDown();
+            }
+        }
+
+        private boolean request(URL url) {
+            try {
+                HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                int status = connection.getResponseCode();
+                // read the whole body so the connection is reused
+                try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                    while (in != null && in.read(buffer) >= 0) {
+                    }
+                }
+                return status == 200;
+            }
+            catch (IOException e) {
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package mortgageCalculator;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single call latency of the MortgageCalculator methods, run with -prof gc to see the allocation
+ * rate of the map and primitive versions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MortgageCalculatorBenchmark {
+
+    // Not final so the JIT can not constant fold the calculations.
+    double askingPrice = 500000, downPayment = 70000, payment = 2000, annualInterestRate = 2.5;
+    double invalidDownPayment = 1000;
+    String paymentSchedule = "monthly";
+    int paymentsPerYear = 12, amortizationPeriod = 25;
+
+    PaymentResult paymentResult = new PaymentResult();
+    MortgageResult mortgageResult = new MortgageResult();
+    AskingPriceResult askingPriceResult = new AskingPriceResult();
+
+    // 1000 strategies of a lump sum and an annual lump sum at different payments and amounts.
+    Prepayment[][] prepaymentStrategies = new Prepayment[1000][];
+    {
+        for (int i = 0; i < prepaymentStrategies.length; i++) {
+            prepaymentStrategies[i] = new Prepayment[] {
+                    new Prepayment(Prepayment.Type.LUMP_SUM, 1 + i % 60, 10000 + 10 * i),
+                    new Prepayment(Prepayment.Type.ANNUAL_LUMP_SUM, 1 + i % 12, 1000 + i)};
+        }
+    }
+
+    @Benchmark
+    public Map<?, ?> paymentAmount() {
+        return MortgageCalculator.paymentAmount(askingPrice, downPayment, paymentSchedule,
+                amortizationPeriod, annualInterestRate);
+    }
+
+    @Benchmark
+    public PaymentResult paymentAmountPrimitive() {
+        MortgageCalculator.paymentAmount(askingPrice, downPayment, paymentsPerYear,
+                amortizationPeriod, annualInterestRate, paymentResult);
+        return paymentResult;
+    }
+
+    @Benchmark
+    public Object paymentAmountInvalid() {
+        try {
+            return MortgageCalculator.paymentAmount(askingPrice, invalidDownPayment, paymentSchedule,
+                    amortizationPeriod, annualInterestRate);
+        }
+        catch (IllegalArgumentException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public int paymentAmountPrimitiveInvalid() {
+        return MortgageCalculator.paymentAmount(askingPrice, invalidDownPayment, paymentsPerYear,
+                amortizationPeriod, annualInterestRate, paymentResult);
+    }
+
+    @Benchmark
+    public Map<?, ?> mortgageAmount() {
+        return MortgageCalculator.mortgageAmount(payment, downPayment, paymentSchedule,
+                amortizationPeriod, annualInterestRate);
+    }
+
+    @Benchmark
+    public MortgageResult mortgageAmountPrimitive() {
+        MortgageCalculator.mortgageAmount(payment, downPayment, paymentsPerYear,
+                amortizationPeriod, annualInterestRate, mortgageResult);
+        return mortgageResult;
+    }
+
+    // A 2% to 8% by 5 to 25 years heatmap, 25 x 21 cells.
+    @Benchmark
+    public PaymentGrid paymentGrid() {
+        return MortgageCalculator.paymentGrid(askingPrice, paymentSchedule, 2.0, 8.0, 0.25, 5, 25, 1);
+    }
+
+    // The same heatmap with one Math.pow per cell.
+    @Benchmark
+    public double[][] paymentGridPerCell() {
+        double[][] payments = new double[25][21];
+        for (int i = 0; i < 25; i++) {
+            for (int j = 0; j < 21; j++) {
+                payments[i][j] = askingPrice * MortgageCalculator.computeAnnuityFactor(2.0 + i * 0.25,
+                        paymentsPerYear, 5 + j);
+            }
+        }
+        return payments;
+    }
+
+    @Benchmark
+    public double calculateInsurance() {
+        return MortgageCalculator.calculateInsurance(askingPrice, downPayment);
+    }
+
+    @Benchmark
+    public AskingPriceResult maxAskingPricePrimitive() {
+        MortgageCalculator.maxAskingPrice(payment, downPayment, paymentsPerYear,
+                amortizationPeriod, annualInterestRate, askingPriceResult);
+        return askingPriceResult;
+    }
+
+    @Benchmark
+    public PrepaymentSimulation prepaymentSimulation() {
+        return MortgageCalculator.prepaymentSimulation(askingPrice, downPayment, paymentSchedule,
+                amortizationPeriod, annualInterestRate, false, prepaymentStrategies, false);
+    }
+
+    // 100000 rate paths with a renewal every 5 years.
+    @Benchmark
+    public RateSimulation rateSimulation() {
+        return MortgageCalculator.rateSimulation(askingPrice, downPayment, paymentSchedule, amortizationPeriod,
+                annualInterestRate, 5, 3.5, 0.25, 1.0, 100000, 1);
+    }
+}
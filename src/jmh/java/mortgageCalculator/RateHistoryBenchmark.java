@@ -0,0 +1,84 @@
+package mortgageCalculator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The startup cost of replaying a RateHistory log of a million rates, one a minute, and the cost of
+ * an as_of lookup in it. The log is written directly rather than appended so the setup does not
+ * force every record to disk.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RateHistoryBenchmark {
+
+    @Param({"1000000"})
+    int records;
+
+    Path file;
+    RateHistory history;
+    long start;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("rate-history", ".log");
+        start = System.currentTimeMillis() - records * 60000L;
+        ByteBuffer buffer = ByteBuffer.allocate(RateHistory.HEADER + records * RateHistory.RECORD);
+        buffer.putLong(RateHistory.MAGIC).putInt(RateHistory.RECORD).putInt(0);
+        for (int i = 0; i < records; i++) {
+            long time = start + i * 60000L;
+            long version = i + 1;
+            long rateBits = Double.doubleToLongBits(2.0 + (i % 400) / 100.0);
+            buffer.putLong(time).putLong(version).putLong(rateBits).putLong(time ^ version ^ rateBits ^ RateHistory.MAGIC);
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        history = RateHistory.open(file);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        history.close();
+        Files.delete(file);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public int replay() throws IOException {
+        RateHistory replayed = RateHistory.open(file);
+        replayed.close();
+        return replayed.size();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public InterestRate rateAt() {
+        return history.rateAt(start + ThreadLocalRandom.current().nextLong(records * 60000L));
+    }
+}
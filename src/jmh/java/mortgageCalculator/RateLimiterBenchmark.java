@@ -0,0 +1,53 @@
+package mortgageCalculator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cost of a RateLimiter decision, for one client hit by every thread, the worst case for the
+ * compare and set, and for requests spread over 1000 clients. The rate is high enough that every
+ * request is admitted, a rejection is cheaper. Run with -t to change the number of threads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class RateLimiterBenchmark {
+
+    RateLimiter limiter = new RateLimiter(1e9, 1000000, 10000);
+    String[] clients = new String[1000];
+    {
+        for (int i = 0; i < clients.length; i++) {
+            clients[i] = "10.0." + (i / 256) + "." + (i % 256);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        int next;
+    }
+
+    @Benchmark
+    public long oneClient() {
+        return limiter.tryAcquire("10.0.0.1", System.nanoTime());
+    }
+
+    @Benchmark
+    public long manyClients(Client client) {
+        client.next = (client.next + 1) % clients.length;
+        return limiter.tryAcquire(clients[client.next], System.nanoTime());
+    }
+}
@@ -0,0 +1,112 @@
+package mortgageCalculator;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StartupTime - Measures the time to the first request of a new instance, from launching the JVM
+ * to the first successful /payment-amount response, for the default profile, the prod profile and
+ * the prod profile with the class data sharing archive. Each configuration is started from the
+ * target/cds layout built by the cds profile, so they differ only by their options.
+ *
+ * Run with: ./mvnw -P cds,benchmark -DskipTests package exec:exec@startup-time -Dstartup-time.args="5"
+ * The argument is the number of starts per configuration, the median and the minimum are reported.
+ */
+public class StartupTime {
+
+    private static final String REQUEST =
+            "/payment-amount?asking_price=500000&down_payment=70000&payment_schedule=monthly&amortization_period=25";
+
+    private static final String[][] CONFIGURATIONS = {
+            {"default", ""},
+            {"prod", "-Dspring.profiles.active=prod"},
+            {"prod+cds", "-Dspring.profiles.active=prod -XX:SharedArchiveFile=app.jsa -Xshare:on"}};
+
+    public static void main(String[] args) throws Exception {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        File directory = new File(args.length > 1 ? args[1] : "target/cds");
+        File[] jars = directory.listFiles((dir, name) -> name.endsWith("-cds.jar"));
+        if (jars == null || jars.length != 1) {
+            throw new IllegalStateException("No application jar in " + directory + ", build it with -P cds");
+        }
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+        List<String> results = new ArrayList<>();
+        for (String[] configuration : CONFIGURATIONS) {
+            long[] millis = new long[runs];
+            for (int i = 0; i < runs; i++) {
+                List<String> command = new ArrayList<>();
+                command.add(java);
+                if (!configuration[1].isEmpty()) {
+                    command.addAll(Arrays.asList(configuration[1].split(" ")));
+                }
+                command.addAll(Arrays.asList("-jar", jars[0].getName()));
+                millis[i] = firstRequest(command, directory);
+            }
+            Arrays.sort(millis);
+            results.add(String.format("%-9s %10d %10d", configuration[0], millis[runs / 2], millis[0]));
+        }
+        System.out.println();
+        System.out.printf("time to first request, %d starts each%n", runs);
+        System.out.printf("%-9s %10s %10s%n", "profile", "median ms", "min ms");
+        for (String result : results) {
+            System.out.println(result);
+        }
+    }
+
+    private static long firstRequest(List<String> command, File directory) throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        List<String> portCommand = new ArrayList<>(command);
+        portCommand.add("--server.port=" + port);
+        URL url = new URL("http://localhost:" + port + REQUEST);
+
+        long start = System.nanoTime();
+        // the log of the last start is kept for failures
+        Process process = new ProcessBuilder(portCommand).directory(directory).redirectErrorStream(true)
+                .redirectOutput(new File(directory, "startup-time.log")).start();
+        try {
+            while (!request(url)) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("The application exited with " + process.exitValue() + ": "
+                            + String.join(" ", portCommand));
+                }
+                if (System.nanoTime() - start > TimeUnit.MINUTES.toNanos(2)) {
+                    throw new IllegalStateException("The application did not answer within 2 minutes");
+                }
+                Thread.sleep(5);
+            }
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+        finally {
+            process.destroy();
+            process.waitFor();
+        }
+    }
+
+    private static boolean request(URL url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(100);
+            int status = connection.getResponseCode();
+            try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                while (in != null && in.read() >= 0) {
+                }
+            }
+            return status == 200;
+        }
+        catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package mortgageCalculator;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cost of the RequestTrace laps of a request entry point, the validation, calculation and
+ * serialization laps FastPathServlet makes around one primitive calculation. "disabled" is tracing
+ * turned off, compare it to MortgageCalculatorBenchmark.paymentAmountPrimitive without the laps,
+ * "idle" is tracing on but called outside a request and "traced" records every lap.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TracingBenchmark {
+
+    @Param({"disabled", "idle", "traced"})
+    String mode;
+
+    // Not final so the JIT can not constant fold the calculations.
+    double askingPrice = 500000, downPayment = 70000, payment = 2000, annualInterestRate = 2.5;
+    int paymentsPerYear = 12, amortizationPeriod = 25;
+
+    PaymentResult paymentResult = new PaymentResult();
+    MortgageResult mortgageResult = new MortgageResult();
+    RequestTrace trace;
+
+    @Setup
+    public void setup() {
+        RequestTrace.setEnabled(!mode.equals("disabled"));
+        if (mode.equals("traced")) {
+            trace = RequestTrace.begin("benchmark");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (trace != null) {
+            trace.finish();
+        }
+        RequestTrace.setEnabled(false);
+    }
+
+    @Benchmark
+    public PaymentResult paymentAmountPrimitive() {
+        RequestTrace.lap(RequestTrace.VALIDATION);
+        RequestTrace.lap(RequestTrace.CALCULATION);
+        MortgageCalculator.paymentAmount(askingPrice, downPayment, paymentsPerYear,
+                amortizationPeriod, annualInterestRate, paymentResult);
+        RequestTrace.lap(RequestTrace.SERIALIZATION);
+        return paymentResult;
+    }
+
+    @Benchmark
+    public MortgageResult mortgageAmountPrimitive() {
+        RequestTrace.lap(RequestTrace.VALIDATION);
+        RequestTrace.lap(RequestTrace.CALCULATION);
+        MortgageCalculator.mortgageAmount(payment, downPayment, paymentsPerYear,
+                amortizationPeriod, annualInterestRate, mortgageResult);
+        RequestTrace.lap(RequestTrace.SERIALIZATION);
+        return mortgageResult;
+    }
+}
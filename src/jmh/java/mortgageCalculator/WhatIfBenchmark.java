@@ -0,0 +1,58 @@
+package mortgageCalculator;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A slider moving one input of a calculation: paymentAmount recomputes every term on each move, a
+ * WhatIfSession only the terms that depend on the moved input. The rates alternate outside the
+ * annuity factor table so a rate move pays for Math.pow as a UI slider between table rates would.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WhatIfBenchmark {
+
+    // Not final so the JIT can not constant fold the calculations.
+    double askingPrice = 500000, annualInterestRate = 2.537;
+    double[] downPayments = { 70000, 75000 };
+    double[] annualInterestRates = { 2.537, 2.541 };
+    int move;
+
+    WhatIfSession session = new WhatIfSession("benchmark", 500000, 70000, "monthly", 25, 2.537);
+
+    @Benchmark
+    public Map<?, ?> paymentAmountDownPayment() {
+        return MortgageCalculator.paymentAmount(askingPrice, downPayments[++move & 1], "monthly", 25,
+                annualInterestRate);
+    }
+
+    @Benchmark
+    public Map<?, ?> whatIfDownPayment() {
+        return session.update(null, downPayments[++move & 1], null, null, null);
+    }
+
+    @Benchmark
+    public Map<?, ?> paymentAmountRate() {
+        return MortgageCalculator.paymentAmount(askingPrice, 70000, "monthly", 25,
+                annualInterestRates[++move & 1]);
+    }
+
+    @Benchmark
+    public Map<?, ?> whatIfRate() {
+        return session.update(null, null, null, null, annualInterestRates[++move & 1]);
+    }
+}
@@ -0,0 +1,83 @@
+package mortgageCalculator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+/**
+ * Serialization time of the result maps in the JSON, CBOR and Smile encodings the endpoints
+ * negotiate. The setup prints the bytes per response of each format.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WireFormatBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    String format;
+
+    ObjectMapper mapper;
+    Map<?, ?> payment;
+    Map<?, ?> mortgage;
+    List<Map<?, ?>> batch;
+
+    @Setup
+    public void setup() throws Exception {
+        JsonFactory factory = format.equals("cbor") ? new CBORFactory() :
+            format.equals("smile") ? new SmileFactory() : new JsonFactory();
+        mapper = new ObjectMapper(factory);
+
+        payment = MortgageCalculator.paymentAmount(500000, 70000, "monthly", 25);
+        mortgage = MortgageCalculator.mortgageAmount(2000, 0, "monthly", 25);
+        int n = 100;
+        double[] askingPrice = new double[n], downPayment = new double[n];
+        String[] paymentSchedule = new String[n];
+        int[] amortizationPeriod = new int[n];
+        for (int i = 0; i < n; i++) {
+            askingPrice[i] = 400000 + 1000 * i;
+            downPayment[i] = 80000;
+            paymentSchedule[i] = "monthly";
+            amortizationPeriod[i] = 5 + i % 21;
+        }
+        batch = MortgageCalculator.paymentAmounts(askingPrice, downPayment, paymentSchedule, amortizationPeriod, null);
+
+        System.out.printf("%n%s bytes per response: payment-amount %d, mortgage-amount %d, batch of %d %d%n", format,
+                mapper.writeValueAsBytes(payment).length, mapper.writeValueAsBytes(mortgage).length, n,
+                mapper.writeValueAsBytes(batch).length);
+    }
+
+    @Benchmark
+    public byte[] paymentAmount() throws Exception {
+        return mapper.writeValueAsBytes(payment);
+    }
+
+    @Benchmark
+    public byte[] mortgageAmount() throws Exception {
+        return mapper.writeValueAsBytes(mortgage);
+    }
+
+    @Benchmark
+    public byte[] paymentAmountBatch() throws Exception {
+        return mapper.writeValueAsBytes(batch);
+    }
+}
@@ -0,0 +1,46 @@
+package mortgageCalculator;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * AdmissionConfiguration - Registers the AdmissionFilter after the request trace and the actuator
+ * metrics filters, so rejected requests still get a request ID and are counted by status in
+ * http.server.requests. Configured by mortgage-calculator.admission in application.yml, off unless
+ * enabled, since behind a proxy every client has the proxy's address unless
+ * server.use-forward-headers is set.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "mortgage-calculator.admission.enabled", havingValue = "true")
+public class AdmissionConfiguration {
+
+    @Bean
+    public FilterRegistrationBean<AdmissionFilter> admissionFilter(MeterRegistry registry,
+            @Value("${mortgage-calculator.admission.rate-per-second:200}") double ratePerSecond,
+            @Value("${mortgage-calculator.admission.burst:400}") int burst,
+            @Value("${mortgage-calculator.admission.max-clients:10000}") int maxClients,
+            @Value("${mortgage-calculator.admission.max-concurrent-requests:100}") int maxConcurrentRequests,
+            @Value("${mortgage-calculator.admission.api-keys:}") String[] apiKeys) {
+        RateLimiter rateLimiter = ratePerSecond > 0 ? new RateLimiter(ratePerSecond, burst, maxClients) : null;
+        Set<String> keys = Arrays.stream(apiKeys).map(String::trim).filter(key -> !key.isEmpty())
+                .collect(Collectors.toSet());
+        AdmissionFilter filter = new AdmissionFilter(rateLimiter, maxConcurrentRequests, keys);
+        filter.bindTo(registry);
+        FilterRegistrationBean<AdmissionFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setName("admission");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+        return registration;
+    }
+}
@@ -0,0 +1,188 @@
+package mortgageCalculator;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * AdmissionFilter - Admission control in front of the endpoints. Each client, identified by its
+ * X-API-Key header if the key is one of the configured keys, or else its address, is rate limited
+ * by a RateLimiter and answered with a 429 once its bucket is empty. Admitted requests then take
+ * one of maxConcurrentRequests slots, when all are taken the request is answered with a 503 at
+ * once instead of waiting in the container's queue. Both rejections carry a Retry-After header and
+ * a JSON "error" body. The actuator endpoints are never limited so health checks and metric scrapes
+ * keep working under load. An unknown key is ignored, so a client can not escape its limit by
+ * sending a new key with every request.
+ */
+public class AdmissionFilter extends OncePerRequestFilter implements MeterBinder {
+
+    static final String API_KEY = "X-API-Key";
+
+    private static final String ADMISSION = "mortgage.calculator.admission";
+
+    private final RateLimiter rateLimiter;
+    private final Set<String> apiKeys;
+    private final int maxConcurrentRequests;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder overloaded = new LongAdder();
+
+    /**
+     * @param rateLimiter The per client rate limiter, null to not rate limit.
+     * @param maxConcurrentRequests The requests processed at once, zero or less for no limit.
+     * @param apiKeys The X-API-Key values that identify a client, other clients are identified by
+     *        their address.
+     */
+    public AdmissionFilter(RateLimiter rateLimiter, int maxConcurrentRequests, Set<String> apiKeys) {
+        this.rateLimiter = rateLimiter;
+        this.apiKeys = apiKeys;
+        this.maxConcurrentRequests = maxConcurrentRequests > 0 ? maxConcurrentRequests : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        counter(registry, "admitted", admitted);
+        counter(registry, "rate_limited", rateLimited);
+        counter(registry, "overloaded", overloaded);
+        Gauge.builder(ADMISSION + ".in.flight", inFlight, AtomicInteger::get)
+                .description("Admitted requests being processed").register(registry);
+        if (rateLimiter != null) {
+            Gauge.builder(ADMISSION + ".clients", rateLimiter, RateLimiter::size)
+                    .description("Clients with a rate limiter bucket").register(registry);
+        }
+    }
+
+    private static void counter(MeterRegistry registry, String decision, LongAdder adder) {
+        FunctionCounter.builder(ADMISSION, adder, LongAdder::sum)
+                .description("Admission decisions, requests admitted, rejected by the client's rate limit or by the concurrency limit")
+                .tag("decision", decision)
+                .register(registry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith(request.getContextPath() + "/actuator");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+
+        if (rateLimiter != null) {
+            long wait = rateLimiter.tryAcquire(client(request), System.nanoTime());
+            if (wait > 0) {
+                rateLimited.increment();
+                reject(response, HttpStatus.TOO_MANY_REQUESTS.value(), (wait + 999999999L) / 1000000000L,
+                        "Too many requests, retry after the Retry-After seconds.");
+                return;
+            }
+        }
+        if (!tryAcquireSlot()) {
+            overloaded.increment();
+            reject(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, 1,
+                    "The server is busy, retry after the Retry-After seconds.");
+            return;
+        }
+        admitted.increment();
+
+        try {
+            chain.doFilter(request, response);
+        }
+        finally {
+            // a streamed or asynchronous response holds its slot until it completes
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new Slot());
+            }
+            else {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    private String client(HttpServletRequest request) {
+        String apiKey = request.getHeader(API_KEY);
+        if (apiKey == null || !apiKeys.contains(apiKey)) {
+            return request.getRemoteAddr();
+        }
+        // keys and addresses can not collide
+        return "key:" + apiKey;
+    }
+
+    private boolean tryAcquireSlot() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= maxConcurrentRequests) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private static void reject(HttpServletResponse response, int status, long retryAfterSeconds, String message)
+            throws IOException {
+        response.setStatus(status);
+        response.setHeader("Retry-After", Long.toString(Math.max(1, retryAfterSeconds)));
+        response.setContentType("application/json;charset=UTF-8");
+        response.getWriter().write("{\"error\":\"" + message + "\"}");
+    }
+
+    /**
+     * Releases the concurrency slot of an asynchronous request once it completes, times out or fails.
+     */
+    private final class Slot implements AsyncListener {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    /**
+     * @return The admitted requests being processed.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
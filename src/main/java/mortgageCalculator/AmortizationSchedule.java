@@ -0,0 +1,123 @@
+package mortgageCalculator;
+
+/**
+ * AmortizationSchedule - An incremental iterator over the payments of a loan. Each call to next()
+ * advances to the next payment and updates the interest, principal and balance of that payment, so
+ * a schedule of any length is generated without building a list. With a PrepaymentPlan the lump
+ * sums and payment increases are applied as their payments come up and the schedule ends when the
+ * balance is paid off.
+ *
+ * <pre>
+ * AmortizationSchedule schedule = MortgageCalculator.amortizationSchedule(...);
+ * while (schedule.next()) {
+ *     schedule.getInterest() ...
+ * }
+ * </pre>
+ */
+public final class AmortizationSchedule {
+
+    private final double rate;
+    private final int numPayments;
+    private final PrepaymentPlan plan;
+
+    private double payment;
+    private int paymentNumber;
+    private int nextEvent;
+    private double interest;
+    private double principal;
+    private double prepayment;
+    private double balance;
+    private boolean paidOff;
+
+    /**
+     * @param loan The loan principal.
+     * @param rate The interest rate per payment.
+     * @param payment The recurring payment.
+     * @param numPayments The number of payments.
+     */
+    AmortizationSchedule(double loan, double rate, double payment, int numPayments) {
+        this(loan, rate, payment, numPayments, PrepaymentPlan.NONE);
+    }
+
+    /**
+     * @param plan The prepayments applied to the loan.
+     */
+    AmortizationSchedule(double loan, double rate, double payment, int numPayments, PrepaymentPlan plan) {
+        this.rate = rate;
+        this.payment = payment;
+        this.numPayments = numPayments;
+        this.plan = plan;
+        this.balance = loan;
+    }
+
+    /**
+     * Advance to the next payment, the last payment pays off the remaining balance.
+     *
+     * @return False if all payments have been made.
+     */
+    public boolean next() {
+        if (paidOff) {
+            return false;
+        }
+        paymentNumber++;
+        interest = balance * rate;
+        prepayment = 0;
+        if (nextEvent < plan.paymentNumbers.length && plan.paymentNumbers[nextEvent] == paymentNumber) {
+            payment += plan.paymentIncreases[nextEvent];
+            prepayment = plan.lumpSums[nextEvent];
+            nextEvent++;
+        }
+        principal = paymentNumber == numPayments ? balance : Math.min(payment - interest + prepayment, balance);
+        // the payment that pays off the loan only uses the part of the lump sum it needs
+        prepayment = Math.min(prepayment, principal);
+        balance -= principal;
+        paidOff = paymentNumber == numPayments || (balance <= 0 && principal > 0);
+        return true;
+    }
+
+    public int getNumPayments() {
+        return numPayments;
+    }
+
+    /**
+     * @return The number of the current payment, starting at one.
+     */
+    public int getPaymentNumber() {
+        return paymentNumber;
+    }
+
+    /**
+     * @return The amount of the current payment, including any prepayment.
+     */
+    public double getPayment() {
+        return interest + principal;
+    }
+
+    /**
+     * @return The lump sum paid with the current payment, it is part of the principal.
+     */
+    public double getPrepayment() {
+        return prepayment;
+    }
+
+    /**
+     * @return The interest portion of the current payment.
+     */
+    public double getInterest() {
+        return interest;
+    }
+
+    /**
+     * @return The principal portion of the current payment, including any prepayment.
+     */
+    public double getPrincipal() {
+        return principal;
+    }
+
+    /**
+     * @return The remaining balance after the current payment.
+     */
+    public double getBalance() {
+        return balance;
+    }
+}
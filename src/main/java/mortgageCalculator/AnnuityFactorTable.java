@@ -0,0 +1,112 @@
+package mortgageCalculator;
+
+import java.util.Arrays;
+
+/**
+ * AnnuityFactorTable - Precomputed annuity factors, c(1 + c)^n/[(1 + c)^n - 1], for a window of
+ * annual interest rates quoted to 0.01% around the default rate, plus the default rate itself
+ * which may be off the grid. A payment is then the principal times one table entry instead of a
+ * Math.pow call.
+ *
+ * The entries are computed by MortgageCalculator.computeAnnuityFactor, so a table
+ * lookup and the Math.pow fallback give identical results. Tables are immutable, a new one is built
+ * when the default rate changes.
+ */
+final class AnnuityFactorTable {
+
+    // Rates are quoted to 0.01%, one grid step.
+    private static final double STEPS_PER_PERCENT = 100.0;
+    // Number of grid steps on each side of the default rate.
+    static final int WINDOW_STEPS = 500;
+
+    private final int[] paymentsPerYear;
+    // Index of each number of payments per year in paymentsPerYear, -1 for unknown values.
+    private final int[] scheduleIndex;
+    private final int minAmortizationPeriod;
+    private final int amortizationPeriods;
+
+    private final int minStep;
+    private final int maxStep;
+    private final double[] factors;
+
+    private final double defaultRate;
+    private final double[] defaultRateFactors;
+
+    /**
+     * @param defaultRate The default annual interest rate, as percentage ie 2.5%.
+     * @param paymentsPerYear The number of payments per year of each payment schedule.
+     * @param minAmortizationPeriod The minimum amortization period in years.
+     * @param maxAmortizationPeriod The maximum amortization period in years.
+     */
+    AnnuityFactorTable(double defaultRate, int[] paymentsPerYear, int minAmortizationPeriod,
+            int maxAmortizationPeriod) {
+
+        this.paymentsPerYear = paymentsPerYear.clone();
+        int maxPaymentsPerYear = 0;
+        for (int ppy : paymentsPerYear) {
+            maxPaymentsPerYear = Math.max(maxPaymentsPerYear, ppy);
+        }
+        this.scheduleIndex = new int[maxPaymentsPerYear + 1];
+        Arrays.fill(scheduleIndex, -1);
+        for (int i = 0; i < paymentsPerYear.length; i++) {
+            scheduleIndex[paymentsPerYear[i]] = i;
+        }
+        this.minAmortizationPeriod = minAmortizationPeriod;
+        this.amortizationPeriods = maxAmortizationPeriod - minAmortizationPeriod + 1;
+
+        int center = (int) Math.rint(defaultRate * STEPS_PER_PERCENT);
+        this.minStep = Math.max(1, center - WINDOW_STEPS);
+        this.maxStep = Math.min((int) (100 * STEPS_PER_PERCENT), center + WINDOW_STEPS);
+
+        int rowSize = paymentsPerYear.length * amortizationPeriods;
+        this.factors = new double[(maxStep - minStep + 1) * rowSize];
+        for (int step = minStep; step <= maxStep; step++) {
+            fillRow(step / STEPS_PER_PERCENT, factors, (step - minStep) * rowSize);
+        }
+        this.defaultRate = defaultRate;
+        this.defaultRateFactors = new double[rowSize];
+        fillRow(defaultRate, defaultRateFactors, 0);
+    }
+
+    private void fillRow(double annualInterestRate, double[] row, int offset) {
+        for (int s = 0; s < paymentsPerYear.length; s++) {
+            for (int a = 0; a < amortizationPeriods; a++) {
+                row[offset + s * amortizationPeriods + a] = MortgageCalculator.computeAnnuityFactor(
+                        annualInterestRate, paymentsPerYear[s], minAmortizationPeriod + a);
+            }
+        }
+    }
+
+    /**
+     * Look up the annuity factor of a loan.
+     *
+     * @param annualInterestRate The annual interest rate, as percentage ie 2.5%.
+     * @param paymentsPerYear The number of payments per year.
+     * @param amortizationPeriod The amortization period in years.
+     * @return The annuity factor, NaN if the combination is not in the table.
+     */
+    double lookup(double annualInterestRate, int paymentsPerYear, int amortizationPeriod) {
+        if (paymentsPerYear <= 0 || paymentsPerYear >= scheduleIndex.length) {
+            return Double.NaN;
+        }
+        int s = scheduleIndex[paymentsPerYear];
+        int a = amortizationPeriod - minAmortizationPeriod;
+        if (s < 0 || a < 0 || a >= amortizationPeriods) {
+            return Double.NaN;
+        }
+        int column = s * amortizationPeriods + a;
+        if (annualInterestRate == defaultRate) {
+            return defaultRateFactors[column];
+        }
+        int step = (int) Math.rint(annualInterestRate * STEPS_PER_PERCENT);
+        // the rate must be exactly a grid rate, not just close to one
+        if (step < minStep || step > maxStep || step / STEPS_PER_PERCENT != annualInterestRate) {
+            return Double.NaN;
+        }
+        return factors[(step - minStep) * this.paymentsPerYear.length * amortizationPeriods + column];
+    }
+
+    double getDefaultRate() {
+        return defaultRate;
+    }
+}
@@ -0,0 +1,137 @@
+package mortgageCalculator;
+
+import java.util.Map;
+
+/**
+ * AskingPriceResult - The primitive result of MortgageCalculator.maxAskingPrice. Instances are
+ * mutable so a caller can reuse one instance across many calculations without allocating.
+ */
+public final class AskingPriceResult {
+
+    /**
+     * What bounds the maximum asking price.
+     */
+    public enum Limit {
+        /** The payment at the asking price equals the target payment. */
+        PAYMENT,
+        /** A higher asking price would cross into an insurance tier whose premium exceeds the payment. */
+        INSURANCE_TIER,
+        /** A higher asking price would need a larger down payment. */
+        MINIMUM_DOWN_PAYMENT
+    }
+
+    private double askingPrice;
+    private double downPayment;
+    private double insurance;
+    private double principal;
+    private double payment;
+    private double numPayments;
+    private double rate;
+    private double paymentsPerYear;
+    private Limit limit;
+    private long rateVersion;
+    private String ruleVersion;
+
+    void set(double askingPrice, double downPayment, double insurance, double principal, double payment,
+            double numPayments, double rate, double paymentsPerYear, Limit limit, String ruleVersion) {
+        this.askingPrice = askingPrice;
+        this.downPayment = downPayment;
+        this.insurance = insurance;
+        this.principal = principal;
+        this.payment = payment;
+        this.numPayments = numPayments;
+        this.rate = rate;
+        this.paymentsPerYear = paymentsPerYear;
+        this.limit = limit;
+        this.rateVersion = 0;
+        this.ruleVersion = ruleVersion;
+    }
+
+    /**
+     * @return The largest asking price whose payment does not exceed the target payment.
+     */
+    public double getAskingPrice() {
+        return askingPrice;
+    }
+
+    public double getDownPayment() {
+        return downPayment;
+    }
+
+    public double getInsurance() {
+        return insurance;
+    }
+
+    /**
+     * @return The loan, the asking price plus insurance minus the down payment.
+     */
+    public double getPrincipal() {
+        return principal;
+    }
+
+    /**
+     * @return The payment at the asking price, equal to the target payment unless the limit is
+     *         INSURANCE_TIER or MINIMUM_DOWN_PAYMENT.
+     */
+    public double getPayment() {
+        return payment;
+    }
+
+    public double getNumPayments() {
+        return numPayments;
+    }
+
+    /**
+     * @return The interest rate per payment.
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    public double getPaymentsPerYear() {
+        return paymentsPerYear;
+    }
+
+    public Limit getLimit() {
+        return limit;
+    }
+
+    void setRateVersion(long rateVersion) {
+        this.rateVersion = rateVersion;
+    }
+
+    /**
+     * @return The version of the default interest rate used, zero if the rate was passed in.
+     */
+    public long getRateVersion() {
+        return rateVersion;
+    }
+
+    /**
+     * @return The version of the lending rules the result was calculated with.
+     */
+    public String getRuleVersion() {
+        return ruleVersion;
+    }
+
+    /**
+     * @return The result in the map format returned by the REST API.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<?, ?> toMap() {
+        Map<String, Object> map = (Map<String, Object>) MortgageCalculator.createMap("max_asking_price", askingPrice,
+                "down_payment", downPayment,
+                "insurance", insurance,
+                "loan_amount", principal,
+                "payment", payment,
+                "num_payments", numPayments,
+                "rate", rate,
+                "payments_per_year", paymentsPerYear,
+                "limited_by", limit.name().toLowerCase());
+        map.put("rule_version", ruleVersion);
+        if (rateVersion != 0) {
+            map.put("rate_version", rateVersion);
+        }
+        return map;
+    }
+}
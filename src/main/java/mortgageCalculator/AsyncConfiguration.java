@@ -0,0 +1,53 @@
+package mortgageCalculator;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * AsyncConfiguration - The executor that writes StreamingResponseBody results, the
+ * /amortization-schedule rows and the /jobs/{id}/results pages. Without one Spring MVC starts a
+ * new thread for every streamed response. At most threads responses are written at once and
+ * queue-capacity more wait, above that a response is written on its request thread, which slows
+ * the clients down rather than failing them. A response not written within timeout-seconds is
+ * ended. Configured by mortgage-calculator.streaming in application.yml.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class AsyncConfiguration implements WebMvcConfigurer {
+
+    private final int threads;
+    private final int queueCapacity;
+    private final long timeoutSeconds;
+
+    public AsyncConfiguration(@Value("${mortgage-calculator.streaming.threads:16}") int threads,
+            @Value("${mortgage-calculator.streaming.queue-capacity:100}") int queueCapacity,
+            @Value("${mortgage-calculator.streaming.timeout-seconds:300}") long timeoutSeconds) {
+        this.threads = threads;
+        this.queueCapacity = queueCapacity;
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    @Bean
+    public ThreadPoolTaskExecutor streamingExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("streaming-");
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(streamingExecutor());
+        configurer.setDefaultTimeout(timeoutSeconds * 1000);
+    }
+}
@@ -0,0 +1,36 @@
+package mortgageCalculator;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * BinaryFormatConfiguration - CBOR (application/cbor) and Smile (application/x-jackson-smile)
+ * message converters, added to the JSON converter so callers can ask for a compact binary
+ * encoding of the calculation results with the Accept header and post batches in the same
+ * formats. The result maps are the same, only their encoding differs, JSON stays the default.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class BinaryFormatConfiguration {
+
+    static final String CBOR = "application/cbor";
+    static final String SMILE = "application/x-jackson-smile";
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter() {
+        MappingJackson2CborHttpMessageConverter converter = new MappingJackson2CborHttpMessageConverter();
+        // binary formats have no charset, do not append ;charset=UTF-8 to the content type
+        converter.setDefaultCharset(null);
+        return converter;
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter() {
+        MappingJackson2SmileHttpMessageConverter converter = new MappingJackson2SmileHttpMessageConverter();
+        converter.setDefaultCharset(null);
+        return converter;
+    }
+}
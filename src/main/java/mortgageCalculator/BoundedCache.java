@@ -0,0 +1,189 @@
+package mortgageCalculator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * BoundedCache - A thread safe cache with a maximum size and a time to live. The entries are split
+ * over a fixed number of segments, each a least recently used LinkedHashMap guarded by its own lock,
+ * so concurrent readers of different keys rarely contend.
+ *
+ * @param <K> The key type, must implement equals and hashCode.
+ * @param <V> The value type.
+ */
+public class BoundedCache<K, V> {
+
+    private static final int SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxSize The maximum number of entries, the least recently used entries are evicted
+     *        first. It is split over the segments, each holds at least one entry so a cache
+     *        smaller than the number of segments can hold up to one entry per segment.
+     * @param ttlMillis The time, in milliseconds, an entry is kept after it was added.
+     */
+    public BoundedCache(int maxSize, long ttlMillis) {
+        this.ttlNanos = ttlMillis * 1000000L;
+        @SuppressWarnings("unchecked")
+        Segment[] segments = (Segment[]) new BoundedCache<?, ?>.Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            int segmentSize = maxSize / SEGMENTS + (i < maxSize % SEGMENTS ? 1 : 0);
+            segments[i] = new Segment(Math.max(1, segmentSize));
+        }
+        this.segments = segments;
+    }
+
+    /**
+     * Get the value of a key, computing and adding it if it is missing or expired. The value is
+     * computed outside the segment lock so a slow computation does not block other keys, two
+     * threads may compute the same missing key at the same time.
+     *
+     * @param key The key.
+     * @param compute Computes the value of a missing key, exceptions are passed to the caller and
+     *        nothing is cached.
+     * @return The cached or computed value.
+     */
+    public V get(K key, Function<? super K, ? extends V> compute) {
+        Segment segment = segmentFor(key);
+        long now = System.nanoTime();
+        V value = segment.get(key, now);
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        value = compute.apply(key);
+        segment.put(key, value, now + ttlNanos);
+        return value;
+    }
+
+    /**
+     * Get the value of a key without computing it.
+     *
+     * @return The value or null if the key is missing or expired, the lookup is counted as a hit
+     *         or a miss.
+     */
+    public V get(K key) {
+        V value = segmentFor(key).get(key, System.nanoTime());
+        if (value != null) {
+            hits.increment();
+        }
+        else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    public void put(K key, V value) {
+        segmentFor(key).put(key, value, System.nanoTime() + ttlNanos);
+    }
+
+    public void remove(K key) {
+        segmentFor(key).remove(key);
+    }
+
+    /**
+     * Remove all entries, removed entries are not counted as evictions.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return The number of entries removed because the cache was full or the entry expired.
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private Segment segmentFor(Object key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (SEGMENTS - 1)];
+    }
+
+    private static final class Entry<V> {
+        final V value;
+        final long expires;
+
+        Entry(V value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+
+    private final class Segment {
+
+        private final LinkedHashMap<K, Entry<V>> map;
+
+        Segment(final int maxSize) {
+            this.map = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                    if (size() > maxSize) {
+                        evictions.increment();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized V get(K key, long now) {
+            Entry<V> entry = map.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expires - now <= 0) {
+                map.remove(key);
+                evictions.increment();
+                return null;
+            }
+            return entry.value;
+        }
+
+        synchronized void put(K key, V value, long expires) {
+            map.put(key, new Entry<V>(value, expires));
+        }
+
+        synchronized void remove(K key) {
+            map.remove(key);
+        }
+
+        synchronized void clear() {
+            map.clear();
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+    }
+}
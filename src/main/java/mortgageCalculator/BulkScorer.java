@@ -0,0 +1,544 @@
+package mortgageCalculator;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * BulkScorer - Scores a file of loans with MortgageCalculator.paymentAmount or mortgageAmount and
+ * writes one result or error per input row, in input order. Used for offline runs over a whole loan
+ * book:
+ *
+ * <pre>
+ * java -jar mortgate-calculator-1.0.0.jar bulk-score [--mortgage-amount] [--threads n] [--rules rules.json]
+ *     [--rate-history rates.log] loans.csv results.csv
+ * </pre>
+ *
+ * The input is CSV with a header row or newline delimited JSON, one object per line, chosen by the
+ * .ndjson or .jsonl extension. The columns, or fields, are asking_price (payment for
+ * --mortgage-amount), down_payment, payment_schedule, amortization_period and the optional
+ * annual_interest_rate, the default rate is used when it is missing. CSV values can not be quoted.
+ *
+ * The run does not start the server so it does not read application.yml: without --rules the rules
+ * bundled as rules.json are used and without --rate-history the built in default rate, pass the
+ * files mortgage-calculator.rules.file and mortgage-calculator.rate-history.file point to for the
+ * rules and the default rate the server uses. The rule version and default rate are printed first.
+ *
+ * The file is read in chunks of rows, each chunk is parsed and scored on a pool of threads and the
+ * results are written in order as the chunks complete. At most two chunks per thread are in flight
+ * so memory use does not depend on the size of the file.
+ */
+public class BulkScorer {
+
+    public enum Mode {
+        PAYMENT_AMOUNT("asking_price"), MORTGAGE_AMOUNT("payment");
+
+        private final String amountField;
+
+        Mode(String amountField) {
+            this.amountField = amountField;
+        }
+    }
+
+    public enum Format {
+        CSV, NDJSON;
+
+        /**
+         * @return NDJSON for .ndjson and .jsonl files, CSV otherwise.
+         */
+        public static Format of(Path path) {
+            String name = path.getFileName().toString().toLowerCase();
+            return name.endsWith(".ndjson") || name.endsWith(".jsonl") ? NDJSON : CSV;
+        }
+    }
+
+    static final int DEFAULT_CHUNK_ROWS = 4096;
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final Mode mode;
+    private final Format format;
+    private final int threads;
+    private final int chunkRows;
+
+    public BulkScorer(Mode mode, Format format, int threads) {
+        this(mode, format, threads, DEFAULT_CHUNK_ROWS);
+    }
+
+    BulkScorer(Mode mode, Format format, int threads, int chunkRows) {
+        if (threads < 1 || chunkRows < 1) {
+            throw new IllegalArgumentException("The number of threads and the chunk size must be at least 1.");
+        }
+        this.mode = mode;
+        this.format = format;
+        this.threads = threads;
+        this.chunkRows = chunkRows;
+    }
+
+    /**
+     * The counters of a run.
+     */
+    public static final class Stats {
+        private final long rows;
+        private final long errors;
+        private final long nanos;
+
+        Stats(long rows, long errors, long nanos) {
+            this.rows = rows;
+            this.errors = errors;
+            this.nanos = nanos;
+        }
+
+        /**
+         * @return The number of rows scored, including the rows with errors.
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        public long getErrors() {
+            return errors;
+        }
+
+        public double getSeconds() {
+            return nanos / 1e9;
+        }
+
+        public double getRowsPerSecond() {
+            return nanos == 0 ? 0 : rows / getSeconds();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d rows, %d errors, %.3f s, %.0f rows/s", rows, errors, getSeconds(),
+                    getRowsPerSecond());
+        }
+    }
+
+    /**
+     * Score all the rows of in and write the results to out, neither is closed.
+     *
+     * @throws IllegalArgumentException If a CSV header is missing a required column.
+     */
+    public Stats score(BufferedReader in, Writer out) throws IOException, InterruptedException {
+        return score(in, out, null);
+    }
+
+    /**
+     * Score all the rows of in and write the results to out, neither is closed.
+     *
+     * @param progress Called with the number of rows scored so far each time a chunk is written,
+     *        may be null.
+     * @throws IllegalArgumentException If a CSV header is missing a required column.
+     * @throws InterruptedException If the thread is interrupted, the scoring threads are stopped.
+     */
+    public Stats score(BufferedReader in, Writer out, LongConsumer progress) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        long rows = 0, errors = 0;
+
+        Columns columns = null;
+        long lineNumber = 1;
+        if (format == Format.CSV) {
+            String header = in.readLine();
+            if (header == null) {
+                return new Stats(0, 0, System.nanoTime() - start);
+            }
+            columns = new Columns(mode, header);
+            out.write(header);
+            out.write(mode == Mode.PAYMENT_AMOUNT ? ",payment,insurance,loan_total,num_payments,error\n" :
+                    ",mortgage_amount,num_payments,error\n");
+            lineNumber++;
+        }
+        // the default rate of rows without a rate, read once so the whole run uses the same rate
+        final double defaultRate = MortgageCalculator.getAnnualInterestRate();
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "bulk-scorer-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        try {
+            List<String> lines = new ArrayList<>(chunkRows);
+            long firstLine = lineNumber;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lines.add(line);
+                lineNumber++;
+                if (lines.size() == chunkRows) {
+                    inFlight.add(pool.submit(new Chunk(columns, lines, firstLine, defaultRate)));
+                    lines = new ArrayList<>(chunkRows);
+                    firstLine = lineNumber;
+                    if (inFlight.size() >= 2 * threads) {
+                        Chunk chunk = complete(inFlight.poll());
+                        out.write(chunk.output);
+                        rows += chunk.rows;
+                        errors += chunk.errors;
+                        if (progress != null) {
+                            progress.accept(rows);
+                        }
+                    }
+                }
+            }
+            if (!lines.isEmpty()) {
+                inFlight.add(pool.submit(new Chunk(columns, lines, firstLine, defaultRate)));
+            }
+            while (!inFlight.isEmpty()) {
+                Chunk chunk = complete(inFlight.poll());
+                out.write(chunk.output);
+                rows += chunk.rows;
+                errors += chunk.errors;
+                if (progress != null) {
+                    progress.accept(rows);
+                }
+            }
+            out.flush();
+        }
+        finally {
+            pool.shutdownNow();
+        }
+        return new Stats(rows, errors, System.nanoTime() - start);
+    }
+
+    private static Chunk complete(Future<Chunk> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        }
+        catch (ExecutionException e) {
+            throw new IOException("Scoring failed", e.getCause());
+        }
+    }
+
+    /**
+     * The positions of the input fields in a CSV row, -1 for a missing optional column.
+     */
+    private static final class Columns {
+        final int amount;
+        final int downPayment;
+        final int paymentSchedule;
+        final int amortizationPeriod;
+        final int annualInterestRate;
+
+        Columns(Mode mode, String header) {
+            List<String> names = new ArrayList<>();
+            for (String name : header.split(",", -1)) {
+                names.add(name.trim().toLowerCase());
+            }
+            amount = required(names, mode.amountField);
+            int dp = names.indexOf("down_payment");
+            downPayment = mode == Mode.PAYMENT_AMOUNT ? required(names, "down_payment") : dp;
+            paymentSchedule = required(names, "payment_schedule");
+            amortizationPeriod = required(names, "amortization_period");
+            annualInterestRate = names.indexOf("annual_interest_rate");
+        }
+
+        private static int required(List<String> names, String name) {
+            int i = names.indexOf(name);
+            if (i < 0) {
+                throw new IllegalArgumentException("The CSV header must have a " + name + " column.");
+            }
+            return i;
+        }
+    }
+
+    /**
+     * The parsed fields of one row.
+     */
+    private static final class Row {
+        double amount;
+        double downPayment;
+        String paymentSchedule;
+        int amortizationPeriod;
+        double annualInterestRate;
+        // the parse error, null if the row was parsed
+        String error;
+    }
+
+    /**
+     * Parses and scores a chunk of rows, the output is built as one string so chunks can be written
+     * in order.
+     */
+    private final class Chunk implements Callable<Chunk> {
+        private final Columns columns;
+        private final List<String> lines;
+        private final long firstLine;
+        private final double defaultRate;
+
+        String output;
+        int rows;
+        int errors;
+
+        Chunk(Columns columns, List<String> lines, long firstLine, double defaultRate) {
+            this.columns = columns;
+            this.lines = lines;
+            this.firstLine = firstLine;
+            this.defaultRate = defaultRate;
+        }
+
+        @Override
+        public Chunk call() throws IOException {
+            PaymentResult payment = new PaymentResult();
+            MortgageResult mortgage = new MortgageResult();
+            Row row = new Row();
+            // every row of the chunk is scored with the same rules
+            RuleSet rules = MortgageCalculator.getRuleSet();
+            StringWriter text = new StringWriter(lines.size() * 96);
+            try (JsonGenerator generator = format == Format.NDJSON ? jsonFactory.createGenerator(text) : null) {
+                if (generator != null) {
+                    generator.setRootValueSeparator(null);
+                }
+                for (int i = 0; i < lines.size(); i++) {
+                    String line = lines.get(i);
+                    if (line.trim().isEmpty()) {
+                        continue;
+                    }
+                    rows++;
+                    if (format == Format.CSV) {
+                        parseCsv(line, row);
+                    }
+                    else {
+                        parseJson(line, row);
+                    }
+                    String error = row.error;
+                    if (error == null) {
+                        int codes;
+                        double minDownPayment;
+                        if (mode == Mode.PAYMENT_AMOUNT) {
+                            codes = MortgageCalculator.paymentAmount(rules, row.amount, row.downPayment,
+                                    rules.paymentsPerYear(row.paymentSchedule), row.amortizationPeriod,
+                                    row.annualInterestRate, payment);
+                            minDownPayment = payment.getMinimumDownPayment();
+                        }
+                        else {
+                            codes = MortgageCalculator.mortgageAmount(rules, row.amount, row.downPayment,
+                                    rules.paymentsPerYear(row.paymentSchedule), row.amortizationPeriod,
+                                    row.annualInterestRate, mortgage);
+                            minDownPayment = 0;
+                        }
+                        if (codes != CalculationErrors.NONE) {
+                            error = CalculationErrors.describe(codes, rules, minDownPayment);
+                        }
+                    }
+                    if (error != null) {
+                        errors++;
+                    }
+                    if (generator == null) {
+                        writeCsv(text, line, error, payment, mortgage);
+                    }
+                    else {
+                        writeJson(generator, firstLine + i, error, payment, mortgage);
+                    }
+                }
+            }
+            output = text.toString();
+            return this;
+        }
+
+        private void parseCsv(String line, Row row) {
+            row.error = null;
+            String[] values = line.split(",", -1);
+            try {
+                row.amount = Double.parseDouble(values[columns.amount]);
+                row.downPayment = columns.downPayment < 0 || values[columns.downPayment].isEmpty() ? 0 :
+                        Double.parseDouble(values[columns.downPayment]);
+                row.paymentSchedule = values[columns.paymentSchedule].trim();
+                row.amortizationPeriod = Integer.parseInt(values[columns.amortizationPeriod].trim());
+                row.annualInterestRate = columns.annualInterestRate < 0 || values[columns.annualInterestRate].isEmpty() ?
+                        defaultRate : Double.parseDouble(values[columns.annualInterestRate]);
+            }
+            catch (NumberFormatException e) {
+                row.error = "Invalid number, " + e.getMessage();
+            }
+            catch (ArrayIndexOutOfBoundsException e) {
+                row.error = "The row has fewer columns than the header.";
+            }
+        }
+
+        private void parseJson(String line, Row row) {
+            row.error = null;
+            row.amount = Double.NaN;
+            row.downPayment = mode == Mode.PAYMENT_AMOUNT ? Double.NaN : 0;
+            row.paymentSchedule = null;
+            row.amortizationPeriod = -1;
+            row.annualInterestRate = defaultRate;
+            try (JsonParser parser = jsonFactory.createParser(line)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    row.error = "The row is not a JSON object.";
+                    return;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String name = parser.getCurrentName();
+                    parser.nextToken();
+                    if (name.equals(mode.amountField)) {
+                        row.amount = number(parser);
+                    }
+                    else if (name.equals("down_payment")) {
+                        row.downPayment = number(parser);
+                    }
+                    else if (name.equals("payment_schedule")) {
+                        row.paymentSchedule = parser.getValueAsString();
+                    }
+                    else if (name.equals("amortization_period")) {
+                        row.amortizationPeriod = (int) number(parser);
+                    }
+                    else if (name.equals("annual_interest_rate")) {
+                        row.annualInterestRate = number(parser);
+                    }
+                    else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+            catch (IOException | NumberFormatException e) {
+                row.error = "Invalid row, " + e.getMessage();
+                return;
+            }
+            if (Double.isNaN(row.amount) || Double.isNaN(row.downPayment)) {
+                row.error = mode == Mode.PAYMENT_AMOUNT ? "asking_price and down_payment are required." :
+                        "payment is required.";
+            }
+        }
+
+        private double number(JsonParser parser) throws IOException {
+            return parser.getCurrentToken() == JsonToken.VALUE_STRING ? Double.parseDouble(parser.getText()) :
+                    parser.getDoubleValue();
+        }
+
+        private void writeCsv(StringWriter text, String line, String error, PaymentResult payment,
+                MortgageResult mortgage) {
+            text.append(line);
+            if (error != null) {
+                text.append(mode == Mode.PAYMENT_AMOUNT ? ",,,,,\"" : ",,,\"")
+                    .append(error.replace("\"", "\"\"")).append("\"\n");
+            }
+            else if (mode == Mode.PAYMENT_AMOUNT) {
+                text.append(',').append(Double.toString(payment.getPayment()))
+                    .append(',').append(Double.toString(payment.getInsurance()))
+                    .append(',').append(Double.toString(payment.getLoanTotal()))
+                    .append(',').append(Integer.toString((int) payment.getNumPayments()))
+                    .append(",\n");
+            }
+            else {
+                text.append(',').append(Double.toString(mortgage.getMortgageAmount()))
+                    .append(',').append(Integer.toString((int) mortgage.getNumPayments()))
+                    .append(",\n");
+            }
+        }
+
+        private void writeJson(JsonGenerator generator, long line, String error, PaymentResult payment,
+                MortgageResult mortgage) throws IOException {
+            generator.writeStartObject();
+            generator.writeNumberField("line", line);
+            if (error != null) {
+                generator.writeStringField("error", error);
+            }
+            else if (mode == Mode.PAYMENT_AMOUNT) {
+                generator.writeNumberField("payment", payment.getPayment());
+                generator.writeNumberField("insurance", payment.getInsurance());
+                generator.writeNumberField("loan_total", payment.getLoanTotal());
+                generator.writeNumberField("num_payments", (int) payment.getNumPayments());
+            }
+            else {
+                generator.writeNumberField("mortgage_amount", mortgage.getMortgageAmount());
+                generator.writeNumberField("num_payments", (int) mortgage.getNumPayments());
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+    }
+
+    /**
+     * Score a file, see the class comment for the arguments. The counters and the throughput are
+     * printed to standard error.
+     */
+    public static void main(String[] args) throws Exception {
+        Mode mode = Mode.PAYMENT_AMOUNT;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String rules = null;
+        String rateHistory = null;
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--mortgage-amount")) {
+                mode = Mode.MORTGAGE_AMOUNT;
+            }
+            else if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            }
+            else if (args[i].equals("--rules") && i + 1 < args.length) {
+                rules = args[++i];
+            }
+            else if (args[i].equals("--rate-history") && i + 1 < args.length) {
+                rateHistory = args[++i];
+            }
+            else {
+                files.add(args[i]);
+            }
+        }
+        if (files.size() != 2) {
+            System.err.println("usage: bulk-score [--mortgage-amount] [--threads n] [--rules rules.json] "
+                    + "[--rate-history rates.log] <input.csv|input.ndjson> <output>");
+            System.exit(2);
+        }
+        if (rules != null) {
+            MortgageCalculator.setRuleSet(RuleSetLoader.load(new File(rules)));
+        }
+        RateHistory history = null;
+        if (rateHistory != null) {
+            // an existing log only, opening a mistyped path would create an empty history
+            if (!Files.isRegularFile(Paths.get(rateHistory))) {
+                throw new FileNotFoundException(rateHistory);
+            }
+            history = RateHistory.open(Paths.get(rateHistory));
+            MortgageCalculator.setRateHistory(history);
+        }
+        System.err.println("Scoring with " + MortgageCalculator.getRuleSet()
+                + (rules != null ? " from " + rules : ", the bundled rules")
+                + " and the default rate " + MortgageCalculator.getInterestRate()
+                + (rateHistory != null ? " from " + rateHistory : ", the built in rate"));
+
+        Path input = Paths.get(files.get(0));
+        Path output = Paths.get(files.get(1));
+        BulkScorer scorer = new BulkScorer(mode, Format.of(input), threads);
+        try {
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(Files.newInputStream(input),
+                    StandardCharsets.UTF_8), IO_BUFFER_SIZE);
+                    Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(output),
+                            StandardCharsets.UTF_8), IO_BUFFER_SIZE)) {
+                Stats stats = scorer.score(in, out);
+                System.err.println("Scored " + input + " to " + output + ": " + stats);
+            }
+        }
+        finally {
+            if (history != null) {
+                history.close();
+            }
+        }
+    }
+}
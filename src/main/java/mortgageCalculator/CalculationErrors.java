@@ -0,0 +1,80 @@
+package mortgageCalculator;
+
+import java.util.StringJoiner;
+
+/**
+ * CalculationErrors - Validation error codes returned by the primitive MortgageCalculator methods.
+ * Each code is a single bit so all the errors of a calculation fit in one int, zero means the
+ * calculation succeeded.
+ */
+public final class CalculationErrors {
+
+    public static final int NONE = 0;
+    public static final int PAYMENT_SCHEDULE = 1;
+    public static final int AMORTIZATION_PERIOD = 1 << 1;
+    public static final int INTEREST_RATE = 1 << 2;
+    public static final int DOWN_PAYMENT_EXCEEDS_ASKING_PRICE = 1 << 3;
+    public static final int NEGATIVE_DOWN_PAYMENT = 1 << 4;
+    public static final int NEGATIVE_ASKING_PRICE = 1 << 5;
+    public static final int DOWN_PAYMENT_BELOW_MINIMUM = 1 << 6;
+    public static final int NON_POSITIVE_PAYMENT = 1 << 7;
+
+    // Metric and log friendly names of the codes, indexed by bit position.
+    private static final String[] names = {"payment_schedule", "amortization_period", "interest_rate",
+            "down_payment_exceeds_asking_price", "negative_down_payment", "negative_asking_price",
+            "down_payment_below_minimum", "non_positive_payment"};
+
+    /**
+     * The number of distinct error codes, the code with bit position i is 1 << i.
+     */
+    public static final int COUNT = names.length;
+
+    private CalculationErrors() {
+    }
+
+    /**
+     * @param bit The bit position of a code, from 0 to COUNT - 1.
+     * @return The name of the code, ie "interest_rate".
+     */
+    public static String name(int bit) {
+        return names[bit];
+    }
+
+    /**
+     * Build the error message for a set of error codes, one sentence per code in code order.
+     *
+     * @param errors The error codes.
+     * @param rules The lending rules the calculation used, for the valid schedules and periods.
+     * @param minDownPayment The minimum down payment, only used for DOWN_PAYMENT_BELOW_MINIMUM.
+     * @return The comma separated error messages.
+     */
+    public static String describe(int errors, RuleSet rules, double minDownPayment) {
+        StringJoiner sj = new StringJoiner(", ");
+        if ((errors & PAYMENT_SCHEDULE) != 0) {
+            sj.add("Payment schedule must be one of " + rules.getPaymentSchedules());
+        }
+        if ((errors & AMORTIZATION_PERIOD) != 0) {
+            sj.add("The amortization period must be greater than or equal to " + rules.getMinAmortizationPeriod()
+                    + " and less than or equal to " + rules.getMaxAmortizationPeriod() + ".");
+        }
+        if ((errors & INTEREST_RATE) != 0) {
+            sj.add("The interest rate must be greater than zero and less than or equal to 100.");
+        }
+        if ((errors & DOWN_PAYMENT_EXCEEDS_ASKING_PRICE) != 0) {
+            sj.add("The down payment cannot exceed the asking price.");
+        }
+        if ((errors & NEGATIVE_DOWN_PAYMENT) != 0) {
+            sj.add("The down payment must be larger than zero.");
+        }
+        if ((errors & NEGATIVE_ASKING_PRICE) != 0) {
+            sj.add("The asking price must be larger than zero.");
+        }
+        if ((errors & DOWN_PAYMENT_BELOW_MINIMUM) != 0) {
+            sj.add(String.format("The down payment must be greater than %6.2f", minDownPayment));
+        }
+        if ((errors & NON_POSITIVE_PAYMENT) != 0) {
+            sj.add("The payment must be larger than zero.");
+        }
+        return sj.toString();
+    }
+}
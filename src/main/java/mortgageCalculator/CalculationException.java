@@ -0,0 +1,24 @@
+package mortgageCalculator;
+
+/**
+ * CalculationException - Thrown by the map returning MortgageCalculator methods when the
+ * parameters are invalid, it keeps the CalculationErrors codes next to the message.
+ */
+public class CalculationException extends IllegalArgumentException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int errors;
+
+    public CalculationException(int errors, RuleSet rules, double minDownPayment) {
+        super(CalculationErrors.describe(errors, rules, minDownPayment));
+        this.errors = errors;
+    }
+
+    /**
+     * @return The CalculationErrors codes.
+     */
+    public int getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,74 @@
+package mortgageCalculator;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * CalculatorMetrics - Calculator specific metrics. Request counts and latency histograms per
+ * endpoint and status come from the actuator http.server.requests timer, this class adds the
+ * validation errors by type and the result cache counters.
+ */
+@Component
+public class CalculatorMetrics {
+
+    static final String VALIDATION_ERRORS = "mortgage.calculator.validation.errors";
+
+    private final MeterRegistry registry;
+
+    public CalculatorMetrics(MeterRegistry registry, ResultCache resultCache) {
+        this.registry = registry;
+
+        BoundedCache<?, ?> cache = resultCache.getCache();
+        if (cache != null) {
+            FunctionCounter.builder("mortgage.calculator.cache.hits", cache, BoundedCache::getHits)
+                    .description("Result cache hits").register(registry);
+            FunctionCounter.builder("mortgage.calculator.cache.misses", cache, BoundedCache::getMisses)
+                    .description("Result cache misses").register(registry);
+            FunctionCounter.builder("mortgage.calculator.cache.evictions", cache, BoundedCache::getEvictions)
+                    .description("Result cache entries evicted because the cache was full or they expired")
+                    .register(registry);
+            Gauge.builder("mortgage.calculator.cache.size", cache, BoundedCache::size)
+                    .description("Result cache entries").register(registry);
+        }
+    }
+
+    /**
+     * Count the validation errors of a rejected request, one increment per error type.
+     *
+     * @param endpoint The endpoint path, ie "/payment-amount".
+     * @param e The exception thrown by the calculation.
+     */
+    public void validationErrors(String endpoint, IllegalArgumentException e) {
+        if (!(e instanceof CalculationException)) {
+            counter(endpoint, "other").increment();
+            return;
+        }
+        validationErrors(endpoint, ((CalculationException) e).getErrors());
+    }
+
+    /**
+     * Count the validation errors of a rejected request, one increment per error type.
+     *
+     * @param endpoint The endpoint path, ie "/payment-amount".
+     * @param errors The CalculationErrors codes returned by the calculation.
+     */
+    public void validationErrors(String endpoint, int errors) {
+        for (int bit = 0; bit < CalculationErrors.COUNT; bit++) {
+            if ((errors & (1 << bit)) != 0) {
+                counter(endpoint, CalculationErrors.name(bit)).increment();
+            }
+        }
+    }
+
+    private Counter counter(String endpoint, String type) {
+        return Counter.builder(VALIDATION_ERRORS)
+                .description("Requests rejected by validation, by error type")
+                .tag("endpoint", endpoint)
+                .tag("type", type)
+                .register(registry);
+    }
+}
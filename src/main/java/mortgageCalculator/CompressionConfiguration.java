@@ -0,0 +1,54 @@
+package mortgageCalculator;
+
+import java.io.IOException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+/**
+ * CompressionConfiguration - Tomcat only skips compressing a response below
+ * server.compression.min-response-size if it knows its length, and the JSON converter streams the
+ * results without one. The /payment-amount and /mortgage-amount results are a few hundred bytes,
+ * so they are buffered and sent with a Content-Length, which keeps them uncompressed and their
+ * strong ETag naming a single encoding. Larger responses are still streamed and compressed.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class CompressionConfiguration {
+
+    /**
+     * Buffers the response and sets its Content-Length.
+     */
+    static class ContentLengthFilter extends OncePerRequestFilter {
+
+        @Override
+        protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+                throws ServletException, IOException {
+            ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+            try {
+                chain.doFilter(request, wrapper);
+            }
+            finally {
+                wrapper.copyBodyToResponse();
+            }
+        }
+    }
+
+    @Bean
+    public FilterRegistrationBean<ContentLengthFilter> contentLengthFilter() {
+        FilterRegistrationBean<ContentLengthFilter> registration =
+                new FilterRegistrationBean<>(new ContentLengthFilter());
+        registration.setName("content-length");
+        registration.addUrlPatterns("/payment-amount", "/mortgage-amount");
+        return registration;
+    }
+}
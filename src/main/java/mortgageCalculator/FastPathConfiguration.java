@@ -0,0 +1,24 @@
+package mortgageCalculator;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.servlet.ServletRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * FastPathConfiguration - Registers the FastPathServlet next to the DispatcherServlet, the
+ * servlet container routes /fast/payment-amount and /fast/mortgage-amount straight to it.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class FastPathConfiguration {
+
+    @Bean
+    public ServletRegistrationBean<FastPathServlet> fastPathServlet(CalculatorMetrics calculatorMetrics) {
+        ServletRegistrationBean<FastPathServlet> registration = new ServletRegistrationBean<>(
+                new FastPathServlet(calculatorMetrics), FastPathServlet.PAYMENT_AMOUNT, FastPathServlet.MORTGAGE_AMOUNT);
+        registration.setName("fastPath");
+        registration.setLoadOnStartup(1);
+        return registration;
+    }
+}
@@ -0,0 +1,357 @@
+package mortgageCalculator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.NumberUtils;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * FastPathServlet - /fast/payment-amount and /fast/mortgage-amount, the GET /payment-amount and
+ * /mortgage-amount endpoints without the Spring MVC request path. The query string is parsed
+ * straight into primitives, the calculation uses the primitive MortgageCalculator methods and the
+ * result is written field by field with a JsonGenerator into a pre-sized buffer, no parameter
+ * conversion, boxing, result map or ResponseEntity.
+ *
+ * The fields are written in the iteration order of the PaymentResult and MortgageResult maps so
+ * the bodies of successful and rejected calculations are byte for byte the same as the Spring
+ * endpoints. Missing or malformed parameters are answered with a 400 and an "error" entry instead
+ * of Spring's error page. Results carry the same ETag and Cache-Control headers, and a matching
+ * If-None-Match the same 304, as the Spring endpoints.
+ */
+public class FastPathServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    static final String PAYMENT_AMOUNT = "/fast/payment-amount";
+    static final String MORTGAGE_AMOUNT = "/fast/mortgage-amount";
+
+    private static final String CONTENT_TYPE = "application/json;charset=UTF-8";
+    private static final int BUFFER_SIZE = 512;
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    // The result map keys in iteration order, with and without rate_version.
+    private static final String[] paymentKeys = paymentKeys(1);
+    private static final String[] paymentKeysNoVersion = paymentKeys(0);
+    private static final String[] mortgageKeys = mortgageKeys(1);
+    private static final String[] mortgageKeysNoVersion = mortgageKeys(0);
+
+    private final transient CalculatorMetrics calculatorMetrics;
+
+    public FastPathServlet(CalculatorMetrics calculatorMetrics) {
+        this.calculatorMetrics = calculatorMetrics;
+    }
+
+    private static String[] paymentKeys(long rateVersion) {
+        PaymentResult result = new PaymentResult();
+        result.setRateVersion(rateVersion);
+        return result.toMap().keySet().toArray(new String[0]);
+    }
+
+    private static String[] mortgageKeys(long rateVersion) {
+        MortgageResult result = new MortgageResult();
+        result.setRateVersion(rateVersion);
+        return result.toMap().keySet().toArray(new String[0]);
+    }
+
+    /**
+     * A request parameter is missing or malformed.
+     */
+    private static class ParameterException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        ParameterException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * The parameters of a request, the names match the Spring endpoints. The values are kept as
+     * sent, null when absent, and converted as Spring converts them, in the order the endpoints
+     * declare them. An empty or blank optional number, ie annual_interest_rate=, is absent as
+     * Spring binds it to null, an empty required number is not a number.
+     */
+    private static final class Parameters {
+        String amount;
+        String downPayment;
+        String annualInterestRate;
+        String paymentSchedule;
+        String amortizationPeriod;
+        String asOf;
+
+        Parameters(String query, String amountName) {
+            if (query == null) {
+                return;
+            }
+            int start = 0;
+            while (start <= query.length()) {
+                int end = query.indexOf('&', start);
+                if (end < 0) {
+                    end = query.length();
+                }
+                int equals = query.indexOf('=', start);
+                if (equals > start && equals < end) {
+                    String name = query.substring(start, equals);
+                    String value = decode(query.substring(equals + 1, end));
+                    // the first value of a repeated parameter is used, as Spring does
+                    if (name.equals(amountName) && amount == null) {
+                        amount = value;
+                    }
+                    else if (name.equals("down_payment") && downPayment == null) {
+                        downPayment = value;
+                    }
+                    else if (name.equals("annual_interest_rate") && annualInterestRate == null) {
+                        annualInterestRate = value;
+                    }
+                    else if (name.equals("payment_schedule") && paymentSchedule == null) {
+                        paymentSchedule = value;
+                    }
+                    else if (name.equals("amortization_period") && amortizationPeriod == null) {
+                        amortizationPeriod = value;
+                    }
+                    else if (name.equals("as_of") && asOf == null) {
+                        asOf = value;
+                    }
+                }
+                start = end + 1;
+            }
+        }
+
+        private static String decode(String value) {
+            if (value.indexOf('%') < 0 && value.indexOf('+') < 0) {
+                return value;
+            }
+            try {
+                return URLDecoder.decode(value, "UTF-8");
+            }
+            catch (UnsupportedEncodingException | IllegalArgumentException e) {
+                throw new ParameterException("Invalid parameter encoding: " + value);
+            }
+        }
+
+        static double number(String name, String value) {
+            required(value != null, name);
+            Double number = optionalNumber(name, value);
+            if (number == null) {
+                throw new ParameterException(String.format("Parameter '%s' is not a number: %s", name, value));
+            }
+            return number;
+        }
+
+        // NumberUtils is what Spring's String to Number converter calls, so "NaN", " 2.5" and
+        // "2.5d" bind here as they do on the endpoints.
+        static Double optionalNumber(String name, String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return null;
+            }
+            try {
+                return NumberUtils.parseNumber(value, Double.class);
+            }
+            catch (NumberFormatException e) {
+                throw new ParameterException(String.format("Parameter '%s' is not a number: %s", name, value));
+            }
+        }
+
+        static void required(boolean present, String name) {
+            if (!present) {
+                throw new ParameterException(String.format("Required parameter '%s' is not present", name));
+            }
+        }
+
+        int amortizationPeriod() {
+            required(amortizationPeriod != null, "amortization_period");
+            try {
+                if (!amortizationPeriod.isEmpty()) {
+                    return NumberUtils.parseNumber(amortizationPeriod, Integer.class);
+                }
+            }
+            catch (NumberFormatException e) {
+                // reported below
+            }
+            throw new ParameterException(String.format("Parameter 'amortization_period' is not an integer: %s",
+                    amortizationPeriod));
+        }
+
+        /**
+         * @return The default rate, or the one in effect at as_of, null if a rate is given.
+         */
+        InterestRate defaultRate(Double annualInterestRate) {
+            try {
+                return MortgageCalculatorController.defaultRate(asOf, annualInterestRate);
+            }
+            catch (IllegalArgumentException e) {
+                throw new ParameterException(e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        RequestTrace.lap(RequestTrace.BINDING);
+        String path = request.getServletPath();
+        ByteArrayOutputStream body = new ByteArrayOutputStream(BUFFER_SIZE);
+        int status;
+        try (JsonGenerator generator = jsonFactory.createGenerator(body, JsonEncoding.UTF8)) {
+            try {
+                status = path.equals(MORTGAGE_AMOUNT) ? mortgageAmount(request, response, generator) :
+                    paymentAmount(request, response, generator);
+            }
+            catch (ParameterException e) {
+                calculatorMetrics.validationErrors(path, e);
+                writeError(generator, e.getMessage());
+                status = HttpServletResponse.SC_BAD_REQUEST;
+            }
+        }
+        response.setStatus(status);
+        if (status == HttpServletResponse.SC_NOT_MODIFIED) {
+            return;
+        }
+        response.setContentType(CONTENT_TYPE);
+        response.setContentLength(body.size());
+        body.writeTo(response.getOutputStream());
+    }
+
+    private int paymentAmount(HttpServletRequest request, HttpServletResponse response, JsonGenerator generator)
+            throws IOException {
+        Parameters parameters = new Parameters(request.getQueryString(), "asking_price");
+        double askingPrice = Parameters.number("asking_price", parameters.amount);
+        double downPayment = Parameters.number("down_payment", parameters.downPayment);
+        Double givenRate = Parameters.optionalNumber("annual_interest_rate", parameters.annualInterestRate);
+        Parameters.required(parameters.paymentSchedule != null, "payment_schedule");
+        int amortizationPeriod = parameters.amortizationPeriod();
+
+        RequestTrace.lap(RequestTrace.VALIDATION);
+        double annualInterestRate = givenRate != null ? givenRate : 0.0;
+        long rateVersion = 0;
+        InterestRate rate = parameters.defaultRate(givenRate);
+        if (rate != null) {
+            annualInterestRate = rate.getAnnualInterestRate();
+            rateVersion = rate.getVersion();
+        }
+        RequestTrace.lap(RequestTrace.CALCULATION);
+        RuleSet rules = MortgageCalculator.getRuleSet();
+        PaymentResult result = new PaymentResult();
+        int errors = MortgageCalculator.paymentAmount(rules, askingPrice, downPayment,
+                rules.paymentsPerYear(parameters.paymentSchedule), amortizationPeriod,
+                annualInterestRate, result);
+        RequestTrace.lap(RequestTrace.SERIALIZATION);
+        if (errors != CalculationErrors.NONE) {
+            calculatorMetrics.validationErrors(PAYMENT_AMOUNT, errors);
+            writeError(generator, CalculationErrors.describe(errors, rules, result.getMinimumDownPayment()));
+            return HttpServletResponse.SC_BAD_REQUEST;
+        }
+        if (notModified(request, response, HttpCaching.eTag('p', askingPrice, downPayment,
+                parameters.paymentSchedule, amortizationPeriod, annualInterestRate, rateVersion,
+                result.getRuleVersion(), request.getHeader(HttpHeaders.ACCEPT)))) {
+            return HttpServletResponse.SC_NOT_MODIFIED;
+        }
+
+        generator.writeStartObject();
+        for (String key : rateVersion != 0 ? paymentKeys : paymentKeysNoVersion) {
+            generator.writeFieldName(key);
+            switch (key) {
+            case "payment": generator.writeNumber(result.getPayment()); break;
+            case "num_payments": generator.writeNumber(result.getNumPayments()); break;
+            case "rate": generator.writeNumber(result.getRate()); break;
+            case "payments_per_year": generator.writeNumber(result.getPaymentsPerYear()); break;
+            case "minimum_down_payment": generator.writeNumber(result.getMinimumDownPayment()); break;
+            case "downpayment_to_askingprice_ratio": generator.writeNumber(result.getDownPaymentToAskingPriceRatio()); break;
+            case "insurance": generator.writeNumber(result.getInsurance()); break;
+            case "loan_total": generator.writeNumber(result.getLoanTotal()); break;
+            case "principal": generator.writeString(String.format("%6.1f = %6.1f + %6.1f - %6.1f",
+                    result.getPrincipal(), result.getInsurance(), result.getAskingPrice(), result.getDownPayment()));
+                break;
+            case "rate_version": generator.writeNumber(rateVersion); break;
+            case "rule_version": generator.writeString(result.getRuleVersion()); break;
+            default: throw new IllegalStateException("Unknown payment field " + key);
+            }
+        }
+        generator.writeEndObject();
+        return HttpServletResponse.SC_OK;
+    }
+
+    private int mortgageAmount(HttpServletRequest request, HttpServletResponse response, JsonGenerator generator)
+            throws IOException {
+        Parameters parameters = new Parameters(request.getQueryString(), "payment");
+        double payment = Parameters.number("payment", parameters.amount);
+        Double givenDownPayment = Parameters.optionalNumber("down_payment", parameters.downPayment);
+        Double givenRate = Parameters.optionalNumber("annual_interest_rate", parameters.annualInterestRate);
+        Parameters.required(parameters.paymentSchedule != null, "payment_schedule");
+        int amortizationPeriod = parameters.amortizationPeriod();
+        double downPayment = givenDownPayment != null ? givenDownPayment : 0.0;
+
+        RequestTrace.lap(RequestTrace.VALIDATION);
+        double annualInterestRate = givenRate != null ? givenRate : 0.0;
+        long rateVersion = 0;
+        InterestRate rate = parameters.defaultRate(givenRate);
+        if (rate != null) {
+            annualInterestRate = rate.getAnnualInterestRate();
+            rateVersion = rate.getVersion();
+        }
+        RequestTrace.lap(RequestTrace.CALCULATION);
+        RuleSet rules = MortgageCalculator.getRuleSet();
+        MortgageResult result = new MortgageResult();
+        int errors = MortgageCalculator.mortgageAmount(rules, payment, downPayment,
+                rules.paymentsPerYear(parameters.paymentSchedule), amortizationPeriod,
+                annualInterestRate, result);
+        RequestTrace.lap(RequestTrace.SERIALIZATION);
+        if (errors != CalculationErrors.NONE) {
+            calculatorMetrics.validationErrors(MORTGAGE_AMOUNT, errors);
+            writeError(generator, CalculationErrors.describe(errors, rules, 0.0));
+            return HttpServletResponse.SC_BAD_REQUEST;
+        }
+        if (notModified(request, response, HttpCaching.eTag('m', payment, downPayment,
+                parameters.paymentSchedule, amortizationPeriod, annualInterestRate, rateVersion,
+                result.getRuleVersion(), request.getHeader(HttpHeaders.ACCEPT)))) {
+            return HttpServletResponse.SC_NOT_MODIFIED;
+        }
+
+        generator.writeStartObject();
+        for (String key : rateVersion != 0 ? mortgageKeys : mortgageKeysNoVersion) {
+            generator.writeFieldName(key);
+            switch (key) {
+            case "mortgage_amount": generator.writeNumber(result.getMortgageAmount()); break;
+            case "num_payments": generator.writeNumber(result.getNumPayments()); break;
+            case "rate": generator.writeNumber(result.getRate()); break;
+            case "payments_per_year": generator.writeNumber(result.getPaymentsPerYear()); break;
+            case "rate_version": generator.writeNumber(rateVersion); break;
+            case "rule_version": generator.writeString(result.getRuleVersion()); break;
+            default: throw new IllegalStateException("Unknown mortgage field " + key);
+            }
+        }
+        generator.writeEndObject();
+        return HttpServletResponse.SC_OK;
+    }
+
+    /**
+     * Sets the caching headers of a result, the same as HttpCaching.ok.
+     *
+     * @return True if the If-None-Match header holds eTag, the result is answered with a 304.
+     */
+    private static boolean notModified(HttpServletRequest request, HttpServletResponse response, String eTag) {
+        if (eTag == null) {
+            return false;
+        }
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, HttpCaching.getCacheControl());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        return HttpCaching.matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), eTag);
+    }
+
+    private static void writeError(JsonGenerator generator, String message) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("error", message);
+        generator.writeEndObject();
+    }
+}
@@ -0,0 +1,146 @@
+package mortgageCalculator;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+/**
+ * HttpCaching - HTTP caching of the /payment-amount and /mortgage-amount results. A result only
+ * depends on its inputs, the annual interest rate and its version and the rule version, so its
+ * strong ETag is a 128 bit hash of those, normalized, and of the Accept header that selects the
+ * representation. A CDN or browser revalidating a result gets a 304 without the body.
+ *
+ * Results are fresh for max-age seconds, a result of the default rate can be that much older than
+ * a rate change. A max-age of 0 makes every use revalidate. Configured by
+ * mortgage-calculator.http-cache in application.yml, the defaults apply without Spring. Never lazy,
+ * the configuration must be applied before the first request.
+ */
+@Component
+@Lazy(false)
+public final class HttpCaching {
+
+    private static volatile boolean enabled = true;
+    private static volatile String cacheControl = cacheControl(60);
+
+    public HttpCaching(@Value("${mortgage-calculator.http-cache.enabled:true}") boolean enabled,
+            @Value("${mortgage-calculator.http-cache.max-age-seconds:60}") long maxAgeSeconds) {
+        configure(enabled, maxAgeSeconds);
+    }
+
+    static void configure(boolean enabled, long maxAgeSeconds) {
+        HttpCaching.enabled = enabled;
+        HttpCaching.cacheControl = cacheControl(maxAgeSeconds);
+    }
+
+    private static String cacheControl(long maxAgeSeconds) {
+        return (maxAgeSeconds > 0 ? CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS) : CacheControl.noCache())
+                .cachePublic().getHeaderValue();
+    }
+
+    /**
+     * @param type 'p' for a payment amount, 'm' for a mortgage amount.
+     * @param amount The asking price or the payment.
+     * @param rateVersion The version of the default rate, 0 for a given rate.
+     * @param accept The Accept header of the request, may be null.
+     * @return The quoted strong ETag of the result, null if caching is disabled.
+     */
+    static String eTag(char type, double amount, double downPayment, String paymentSchedule, int amortizationPeriod,
+            double annualInterestRate, long rateVersion, String ruleVersion, String accept) {
+        if (!enabled) {
+            return null;
+        }
+        long h1 = 0x9e3779b97f4a7c15L ^ type, h2 = 0xc2b2ae3d27d4eb4fL ^ type;
+        // adding 0.0 makes -0.0 and 0.0 the same input
+        long[] values = { Double.doubleToLongBits(amount + 0.0), Double.doubleToLongBits(downPayment + 0.0),
+                amortizationPeriod, Double.doubleToLongBits(annualInterestRate + 0.0), rateVersion };
+        for (long value : values) {
+            h1 = mix(h1 ^ value);
+            h2 = mix(h2 + value);
+        }
+        // the schedule names are case insensitive
+        for (int i = 0; i < paymentSchedule.length(); i++) {
+            char c = Character.toLowerCase(paymentSchedule.charAt(i));
+            h1 = h1 * 31 + c;
+            h2 = h2 * 37 + c;
+        }
+        for (String text : new String[] { ruleVersion, accept }) {
+            h1 = mix(h1 ^ hash(text, 31));
+            h2 = mix(h2 + hash(text, 37));
+        }
+        return new StringBuilder(34).append('"').append(hex(h1)).append(hex(h2)).append('"').toString();
+    }
+
+    private static long hash(String text, int multiplier) {
+        if (text == null) {
+            return -1;
+        }
+        long h = text.length();
+        for (int i = 0; i < text.length(); i++) {
+            h = h * multiplier + text.charAt(i);
+        }
+        return h;
+    }
+
+    /**
+     * The finalizer of MurmurHash3, every input bit affects every output bit.
+     */
+    private static long mix(long h) {
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    private static String hex(long value) {
+        String hex = Long.toHexString(value);
+        return hex.length() == 16 ? hex : "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    /**
+     * @return The Cache-Control header of a result.
+     */
+    static String getCacheControl() {
+        return cacheControl;
+    }
+
+    /**
+     * @return A 200 with the result and, unless eTag is null, its caching headers. Spring answers
+     *         a GET whose If-None-Match holds the ETag with a 304 instead.
+     */
+    static ResponseEntity<Map<?, ?>> ok(Map<?, ?> map, String eTag) {
+        if (eTag == null) {
+            return new ResponseEntity<Map<?, ?>>(map, HttpStatus.OK);
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .header(HttpHeaders.CACHE_CONTROL, cacheControl)
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(map);
+    }
+
+    /**
+     * @param ifNoneMatch The If-None-Match header, may be null.
+     * @return True if it holds eTag or is "*", weak validators match their strong value.
+     */
+    static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null || eTag == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(eTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
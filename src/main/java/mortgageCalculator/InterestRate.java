@@ -0,0 +1,40 @@
+package mortgageCalculator;
+
+/**
+ * InterestRate - An immutable snapshot of the default annual interest rate. Every change of the
+ * default rate publishes a new snapshot whose version is one more than the version it replaced, so
+ * a version identifies exactly one rate.
+ */
+public final class InterestRate {
+
+    private final double annualInterestRate;
+    private final long version;
+
+    InterestRate(double annualInterestRate, long version) {
+        this.annualInterestRate = annualInterestRate;
+        this.version = version;
+    }
+
+    /**
+     * @return The annual interest rate, as percentage ie 2.5%.
+     */
+    public double getAnnualInterestRate() {
+        return annualInterestRate;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The snapshot that replaces this one when the rate is set to newAnnualInterestRate.
+     */
+    InterestRate next(double newAnnualInterestRate) {
+        return new InterestRate(newAnnualInterestRate, version + 1);
+    }
+
+    @Override
+    public String toString() {
+        return annualInterestRate + " (version " + version + ")";
+    }
+}
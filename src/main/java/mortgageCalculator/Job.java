@@ -0,0 +1,186 @@
+package mortgageCalculator;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Job - A bulk scoring job run by the JobManager, its state, progress and the files of its input
+ * and results. The state only moves forward, QUEUED to RUNNING to one of the final states, or
+ * straight to CANCELLED, each change is a compare and set so a cancel racing the worker has one
+ * outcome.
+ */
+public final class Job {
+
+    public enum State {
+        QUEUED, RUNNING, SUCCEEDED, FAILED, CANCELLED;
+
+        public boolean isFinal() {
+            return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    private final String id;
+    private final BulkScorer.Mode mode;
+    private final BulkScorer.Format format;
+    private final Path input;
+    private final Path output;
+    private final long rows;
+    private final long submitted = System.currentTimeMillis();
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.QUEUED);
+    private volatile long rowsScored;
+    private volatile long errors;
+    private volatile String error;
+    private volatile long started;
+    private volatile long finished;
+    volatile Future<?> future;
+
+    // The results, set before the job succeeds: the length of the CSV header line, the number of
+    // result rows and the file position of every JobManager.PAGE_ROWS'th row.
+    int headerLength;
+    long resultRows;
+    long[] pageIndex;
+
+    Job(String id, BulkScorer.Mode mode, BulkScorer.Format format, Path input, Path output, long rows) {
+        this.id = id;
+        this.mode = mode;
+        this.format = format;
+        this.input = input;
+        this.output = output;
+        this.rows = rows;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public BulkScorer.Mode getMode() {
+        return mode;
+    }
+
+    public BulkScorer.Format getFormat() {
+        return format;
+    }
+
+    Path getInput() {
+        return input;
+    }
+
+    Path getOutput() {
+        return output;
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * @return The number of rows of the input, not counting a CSV header and blank lines.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    public long getRowsScored() {
+        return rowsScored;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return The reason the job failed, null unless it failed.
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * @return The time the job finished in epoch milliseconds, 0 while it is queued or running.
+     */
+    public long getFinished() {
+        return finished;
+    }
+
+    boolean start() {
+        if (state.compareAndSet(State.QUEUED, State.RUNNING)) {
+            started = System.currentTimeMillis();
+            return true;
+        }
+        return false;
+    }
+
+    void progress(long rowsScored) {
+        this.rowsScored = rowsScored;
+    }
+
+    boolean succeed(long rowsScored, long errors) {
+        this.rowsScored = rowsScored;
+        this.errors = errors;
+        return finish(State.SUCCEEDED);
+    }
+
+    boolean fail(String error) {
+        this.error = error;
+        return finish(State.FAILED);
+    }
+
+    /**
+     * @return The state the job was cancelled in, null if it had already finished.
+     */
+    State cancel() {
+        while (true) {
+            State current = state.get();
+            if (current.isFinal()) {
+                return null;
+            }
+            if (state.compareAndSet(current, State.CANCELLED)) {
+                finished = System.currentTimeMillis();
+                return current;
+            }
+        }
+    }
+
+    private boolean finish(State result) {
+        if (state.compareAndSet(State.RUNNING, result)) {
+            finished = System.currentTimeMillis();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return The status of the job for the jobs endpoints.
+     */
+    public Map<String, Object> toMap() {
+        State current = state.get();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("id", id);
+        map.put("type", mode.name().toLowerCase());
+        map.put("format", format.name().toLowerCase());
+        map.put("state", current.name().toLowerCase());
+        map.put("rows", rows);
+        map.put("rows_scored", rowsScored);
+        map.put("progress", current == State.SUCCEEDED ? 1.0 : rows == 0 ? 0.0 : Math.min(1.0, (double) rowsScored / rows));
+        map.put("submitted_at", Instant.ofEpochMilli(submitted).toString());
+        if (started != 0) {
+            map.put("started_at", Instant.ofEpochMilli(started).toString());
+        }
+        if (finished != 0) {
+            map.put("finished_at", Instant.ofEpochMilli(finished).toString());
+        }
+        if (current == State.SUCCEEDED) {
+            map.put("errors", errors);
+            map.put("results", "/jobs/" + id + "/results");
+        }
+        if (error != null) {
+            map.put("error", error);
+        }
+        return map;
+    }
+}
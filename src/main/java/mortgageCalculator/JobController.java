@@ -0,0 +1,164 @@
+package mortgageCalculator;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+
+/**
+ * JobController - The /jobs endpoints, a loan book too large for one request is posted as a job,
+ * scored in the background by the JobManager and its results fetched in pages once it succeeds.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class JobController {
+
+    static final String CSV = "text/csv";
+    private static final int RETRY_AFTER_SECONDS = 5;
+
+    private final JobManager jobManager;
+    private final CalculatorMetrics calculatorMetrics;
+
+    public JobController(JobManager jobManager, CalculatorMetrics calculatorMetrics) {
+        this.jobManager = jobManager;
+        this.calculatorMetrics = calculatorMetrics;
+    }
+
+    @ApiOperation(value = "Submit a file of loans to be scored in the background, CSV with a header row or newline delimited JSON by the Content-Type", response = Map.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 202, message = "The job is queued, its status is at the Location"),
+            @ApiResponse(code = 400, message = "Unknown job type"),
+            @ApiResponse(code = 413, message = "The file is larger than the limit"),
+            @ApiResponse(code = 503, message = "Too many jobs are queued")})
+    @RequestMapping(path = "/jobs", method = RequestMethod.POST, consumes = {CSV, MortgageCalculatorController.NDJSON},
+            produces = "application/json")
+    public ResponseEntity<Map<?, ?>> submit(
+            @ApiParam(value = "payment_amount scores asking_price rows, mortgage_amount scores payment rows", allowableValues = "payment_amount, mortgage_amount")
+            @RequestParam(name = "type", defaultValue = "payment_amount") String type,
+            @RequestHeader(HttpHeaders.CONTENT_TYPE) String contentType,
+            HttpServletRequest request) throws IOException {
+
+        BulkScorer.Mode mode;
+        try {
+            mode = BulkScorer.Mode.valueOf(type.toUpperCase());
+        }
+        catch (IllegalArgumentException e) {
+            calculatorMetrics.validationErrors("/jobs", e);
+            return MortgageCalculatorController.resp(HttpStatus.BAD_REQUEST, "error",
+                    String.format("Parameter 'type' must be payment_amount or mortgage_amount: %s", type));
+        }
+        BulkScorer.Format format = MediaType.parseMediaType(contentType).isCompatibleWith(MediaType.parseMediaType(CSV)) ?
+                BulkScorer.Format.CSV : BulkScorer.Format.NDJSON;
+
+        Job job;
+        try {
+            job = jobManager.submit(mode, format, request.getInputStream());
+        }
+        catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, Integer.toString(RETRY_AFTER_SECONDS))
+                    .body(Collections.singletonMap("error", e.getMessage()));
+        }
+        catch (JobManager.InputTooLargeException e) {
+            return MortgageCalculatorController.resp(HttpStatus.PAYLOAD_TOO_LARGE, "error", e.getMessage());
+        }
+        return ResponseEntity.accepted().location(URI.create("/jobs/" + job.getId())).body(job.toMap());
+    }
+
+    @ApiOperation(value = "Get the state and progress of a job", response = Map.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "The job's status"),
+            @ApiResponse(code = 404, message = "There is no such job, or it was removed")})
+    @RequestMapping(path = "/jobs/{id}", method = RequestMethod.GET, produces = "application/json")
+    public ResponseEntity<Map<?, ?>> status(@PathVariable("id") String id) {
+        Job job = jobManager.get(id);
+        if (job == null) {
+            return notFound(id);
+        }
+        return new ResponseEntity<Map<?, ?>>(job.toMap(), HttpStatus.OK);
+    }
+
+    @ApiOperation(value = "Cancel a job and remove it and its results", response = Map.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "The job's last status"),
+            @ApiResponse(code = 404, message = "There is no such job, or it was removed")})
+    @RequestMapping(path = "/jobs/{id}", method = RequestMethod.DELETE, produces = "application/json")
+    public ResponseEntity<Map<?, ?>> cancel(@PathVariable("id") String id) throws IOException {
+        Job job = jobManager.cancel(id);
+        if (job == null) {
+            return notFound(id);
+        }
+        return new ResponseEntity<Map<?, ?>>(job.toMap(), HttpStatus.OK);
+    }
+
+    @ApiOperation(value = "Get the results of a succeeded job in the format of its input, one row per input row in input order, a CSV page starts with the header row")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "The rows, X-Total-Count holds the number of rows and a Link header the next page"),
+            @ApiResponse(code = 400, message = "Negative offset or limit"),
+            @ApiResponse(code = 404, message = "There is no such job, or it was removed"),
+            @ApiResponse(code = 409, message = "The job has not succeeded")})
+    @RequestMapping(path = "/jobs/{id}/results", method = RequestMethod.GET, produces = {CSV, MortgageCalculatorController.NDJSON, "application/json"})
+    public ResponseEntity<StreamingResponseBody> results(@PathVariable("id") String id,
+            @ApiParam(value = "The first row, from 0") @RequestParam(name = "offset", defaultValue = "0") long offset,
+            @ApiParam(value = "The number of rows, if omitted all the rows from offset") @RequestParam(name = "limit", required = false) Long limit) {
+        Job job = jobManager.get(id);
+        if (job == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, String.format("There is no job %s.", id));
+        }
+        if (job.getState() != Job.State.SUCCEEDED) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, String.format("The job is %s, results are available once it succeeds.",
+                    job.getState().name().toLowerCase()));
+        }
+        long rows = limit == null ? Long.MAX_VALUE : limit;
+        if (offset < 0 || rows < 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "offset and limit can not be negative.");
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(job.getFormat() == BulkScorer.Format.CSV ? CSV :
+                        MortgageCalculatorController.NDJSON))
+                .header("X-Total-Count", Long.toString(job.resultRows));
+        if (limit != null && offset + limit < job.resultRows) {
+            response.header(HttpHeaders.LINK, String.format("</jobs/%s/results?offset=%d&limit=%d>; rel=\"next\"",
+                    id, offset + limit, limit));
+        }
+        StreamingResponseBody body = out -> jobManager.writeResults(job, offset, rows, out);
+        return response.body(body);
+    }
+
+    /**
+     * The error of /jobs/{id}/results, which can only return a StreamingResponseBody, as a plain
+     * JSON body instead of a stream.
+     */
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<Map<?, ?>> error(ResponseStatusException e) {
+        return MortgageCalculatorController.error(e.getStatus(), e.getReason());
+    }
+
+    private static ResponseEntity<Map<?, ?>> notFound(String id) {
+        return MortgageCalculatorController.resp(HttpStatus.NOT_FOUND, "error", String.format("There is no job %s.", id));
+    }
+}
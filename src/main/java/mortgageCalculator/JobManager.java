@@ -0,0 +1,425 @@
+package mortgageCalculator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * JobManager - Runs bulk scoring jobs, a loan book too large for one request, in the background.
+ * The input is spilled to a file in the job directory as it is received, a BulkScorer scores it on
+ * a worker and writes the results to another file, and the results are then served from that file
+ * in pages of rows or as one stream. Nothing is held in memory but the job's counters and an index
+ * of every PAGE_ROWS'th row.
+ *
+ * At most maxRunningJobs jobs run at once, each on threadsPerJob scoring threads of the lowest
+ * priority, so jobs can not take the CPUs the interactive endpoints need. At most maxQueuedJobs
+ * more wait for a worker, beyond that a submission is rejected before its input is read. Finished
+ * jobs and their files are removed after the retention time, and all of them when the application
+ * stops.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class JobManager implements MeterBinder, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(JobManager.class);
+
+    static final int PAGE_ROWS = 1024;
+    private static final int IO_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The job input is larger than the limit.
+     */
+    static class InputTooLargeException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        InputTooLargeException(String message) {
+            super(message);
+        }
+    }
+
+    private final Path directory;
+    private final ExecutorService workers;
+    private final int capacity;
+    private final int threadsPerJob;
+    private final long maxInputBytes;
+    private final long retentionMillis;
+
+    private final ConcurrentHashMap<String, Job> jobs = new ConcurrentHashMap<>();
+    // the jobs queued or running, the bound of the back-pressure
+    private final AtomicInteger pending = new AtomicInteger();
+
+    @Autowired
+    public JobManager(@Value("${mortgage-calculator.jobs.dir:}") String dir,
+            @Value("${mortgage-calculator.jobs.max-running-jobs:1}") int maxRunningJobs,
+            @Value("${mortgage-calculator.jobs.max-queued-jobs:10}") int maxQueuedJobs,
+            @Value("${mortgage-calculator.jobs.threads-per-job:1}") int threadsPerJob,
+            @Value("${mortgage-calculator.jobs.max-input-mb:256}") long maxInputMb,
+            @Value("${mortgage-calculator.jobs.retention-minutes:60}") long retentionMinutes) throws IOException {
+        this(Files.createTempDirectory(dir.isEmpty() ? Paths.get(System.getProperty("java.io.tmpdir")) :
+                Files.createDirectories(Paths.get(dir)), "mortgage-calculator-jobs"),
+                workers(maxRunningJobs), maxRunningJobs + maxQueuedJobs, threadsPerJob, maxInputMb << 20,
+                TimeUnit.MINUTES.toMillis(retentionMinutes));
+    }
+
+    JobManager(Path directory, ExecutorService workers, int capacity, int threadsPerJob, long maxInputBytes,
+            long retentionMillis) {
+        if (capacity < 1 || threadsPerJob < 1) {
+            throw new IllegalArgumentException("The job workers, queue and threads per job must be at least 1.");
+        }
+        this.directory = directory;
+        this.workers = workers;
+        this.capacity = capacity;
+        this.threadsPerJob = threadsPerJob;
+        this.maxInputBytes = maxInputBytes;
+        this.retentionMillis = retentionMillis;
+    }
+
+    private static ExecutorService workers(int maxRunningJobs) {
+        if (maxRunningJobs < 1) {
+            throw new IllegalArgumentException("The job workers, queue and threads per job must be at least 1.");
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        // the queue is bounded by pending, not by the executor, so a cancelled job's queue entry
+        // can never make the executor reject a job
+        return new ThreadPoolExecutor(maxRunningJobs, maxRunningJobs, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    // the BulkScorer threads inherit the priority
+                    Thread thread = new Thread(r, "job-worker-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                });
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("mortgage.calculator.jobs.pending", pending, AtomicInteger::get)
+                .description("Jobs queued or running").register(registry);
+        Gauge.builder("mortgage.calculator.jobs.retained", jobs, ConcurrentHashMap::size)
+                .description("Jobs whose status or results can be fetched").register(registry);
+    }
+
+    /**
+     * Spill the input of a job to disk and queue it.
+     *
+     * @param in The rows to score, CSV with a header row or newline delimited JSON, see BulkScorer.
+     *        It is read to the end but not closed.
+     * @return The queued job.
+     * @throws RejectedExecutionException If maxQueuedJobs jobs are already waiting, nothing is read.
+     * @throws InputTooLargeException If the input is larger than max-input-mb.
+     */
+    public Job submit(BulkScorer.Mode mode, BulkScorer.Format format, InputStream in) throws IOException {
+        purge();
+        while (true) {
+            int current = pending.get();
+            if (current >= capacity) {
+                throw new RejectedExecutionException("Too many jobs are queued, retry after the Retry-After seconds.");
+            }
+            if (pending.compareAndSet(current, current + 1)) {
+                break;
+            }
+        }
+        // the ID is all a client needs to fetch the results, so it can not be guessable
+        String id = UUID.randomUUID().toString();
+        Path input = directory.resolve(id + ".in");
+        Path output = directory.resolve(id + (format == BulkScorer.Format.CSV ? ".csv" : ".ndjson"));
+        Job job;
+        try {
+            long rows = spill(in, input, format);
+            job = new Job(id, mode, format, input, output, rows);
+            job.future = workers.submit(() -> run(job));
+            jobs.put(id, job);
+        }
+        catch (IOException | RuntimeException e) {
+            pending.decrementAndGet();
+            Files.deleteIfExists(input);
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * Copy the input to a file counting its rows, the lines that are not blank after a CSV header.
+     */
+    private long spill(InputStream in, Path file, BulkScorer.Format format) throws IOException {
+        long rows = format == BulkScorer.Format.CSV ? -1 : 0;
+        long size = 0;
+        boolean blank = true;
+        byte[] buffer = new byte[IO_BUFFER_SIZE];
+        try (OutputStream out = Files.newOutputStream(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                size += n;
+                if (size > maxInputBytes) {
+                    throw new InputTooLargeException(String.format("The job input is larger than %d MB.",
+                            maxInputBytes >> 20));
+                }
+                for (int i = 0; i < n; i++) {
+                    byte b = buffer[i];
+                    if (b == '\n') {
+                        rows += blank ? 0 : 1;
+                        blank = true;
+                    }
+                    else if (b != ' ' && b != '\t' && b != '\r') {
+                        blank = false;
+                    }
+                }
+                out.write(buffer, 0, n);
+            }
+        }
+        rows += blank ? 0 : 1;
+        return Math.max(0, rows);
+    }
+
+    private void run(Job job) {
+        if (!job.start()) {
+            // cancelled while queued, the cancel released its slot
+            return;
+        }
+        BulkScorer.Stats stats = null;
+        Exception failure = null;
+        try {
+            BulkScorer scorer = new BulkScorer(job.getMode(), job.getFormat(), threadsPerJob);
+            try (BufferedReader in = Files.newBufferedReader(job.getInput(), StandardCharsets.UTF_8);
+                    Writer out = Files.newBufferedWriter(job.getOutput(), StandardCharsets.UTF_8)) {
+                stats = scorer.score(in, out, job::progress);
+            }
+            index(job);
+        }
+        catch (InterruptedException e) {
+            // cancelled
+        }
+        catch (IOException | RuntimeException e) {
+            failure = e;
+        }
+        finally {
+            // release the slot and the input before the final state, a client that sees the job
+            // finish can submit the next one at once
+            pending.decrementAndGet();
+            try {
+                Files.deleteIfExists(job.getInput());
+            }
+            catch (IOException e) {
+                log.warn("Could not delete the input of job {}", job.getId(), e);
+            }
+        }
+        if (failure != null) {
+            // an interrupt closes the files, a cancelled job is not a failed job
+            if (job.fail(failure.getMessage() != null ? failure.getMessage() : failure.toString())) {
+                log.warn("Job {} failed", job.getId(), failure);
+            }
+        }
+        else if (stats != null && job.succeed(stats.getRows(), stats.getErrors())) {
+            log.info("Job {} scored {}", job.getId(), stats);
+        }
+    }
+
+    /**
+     * Read the results once to find the end of the CSV header and the start of every PAGE_ROWS'th row.
+     */
+    private static void index(Job job) throws IOException {
+        long[] pageIndex = new long[16];
+        int pages = 0;
+        long rows = 0;
+        long lineStart = 0;
+        boolean header = job.getFormat() == BulkScorer.Format.CSV;
+        byte[] buffer = new byte[IO_BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(job.getOutput())) {
+            long position = 0;
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                for (int i = 0; i < n; i++) {
+                    if (buffer[i] != '\n') {
+                        continue;
+                    }
+                    if (header) {
+                        job.headerLength = (int) (position + i + 1);
+                        header = false;
+                    }
+                    else {
+                        if (rows % PAGE_ROWS == 0) {
+                            if (pages == pageIndex.length) {
+                                pageIndex = Arrays.copyOf(pageIndex, pages * 2);
+                            }
+                            pageIndex[pages++] = lineStart;
+                        }
+                        rows++;
+                    }
+                    lineStart = position + i + 1;
+                }
+                position += n;
+            }
+        }
+        job.resultRows = rows;
+        job.pageIndex = Arrays.copyOf(pageIndex, pages);
+    }
+
+    /**
+     * @return The job, null if there is no such job or it was removed.
+     */
+    public Job get(String id) {
+        purge();
+        return jobs.get(id);
+    }
+
+    /**
+     * Cancel a job if it has not finished and remove it with its files.
+     *
+     * @return The job, null if there is no such job.
+     */
+    public Job cancel(String id) throws IOException {
+        Job job = jobs.remove(id);
+        if (job == null) {
+            return null;
+        }
+        Job.State cancelled = job.cancel();
+        if (cancelled == Job.State.QUEUED) {
+            // the worker skips it, but it no longer waits
+            pending.decrementAndGet();
+            job.future.cancel(false);
+        }
+        else if (cancelled == Job.State.RUNNING) {
+            // interrupts the scoring, the worker releases its slot
+            job.future.cancel(true);
+        }
+        delete(job);
+        return job;
+    }
+
+    /**
+     * Write a page of the results of a succeeded job, preceded by the header row of a CSV job.
+     *
+     * @param offset The first row, from 0.
+     * @param limit The maximum number of rows.
+     */
+    public void writeResults(Job job, long offset, long limit, OutputStream out) throws IOException {
+        if (offset < 0 || limit < 0) {
+            throw new IllegalArgumentException("offset and limit can not be negative.");
+        }
+        try (FileChannel channel = FileChannel.open(job.getOutput(), StandardOpenOption.READ)) {
+            if (job.headerLength > 0) {
+                copy(Channels.newInputStream(channel), out, 1, job.headerLength);
+            }
+            if (offset >= job.resultRows || limit == 0) {
+                return;
+            }
+            channel.position(job.pageIndex[(int) (offset / PAGE_ROWS)]);
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel), IO_BUFFER_SIZE);
+            // skip to offset within its page
+            for (long skip = offset % PAGE_ROWS; skip > 0; ) {
+                int b = in.read();
+                if (b < 0) {
+                    return;
+                }
+                if (b == '\n') {
+                    skip--;
+                }
+            }
+            copy(in, out, limit, Long.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Copy up to lines lines or bytes bytes, whichever is reached first.
+     */
+    private static void copy(InputStream in, OutputStream out, long lines, long bytes) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (lines > 0 && bytes > 0) {
+            int n = in.read(buffer, 0, (int) Math.min(buffer.length, bytes));
+            if (n < 0) {
+                return;
+            }
+            int end = 0;
+            while (end < n && lines > 0) {
+                if (buffer[end++] == '\n') {
+                    lines--;
+                }
+            }
+            out.write(buffer, 0, end);
+            bytes -= end;
+        }
+    }
+
+    /**
+     * Remove the finished jobs past their retention time.
+     */
+    private void purge() {
+        long expired = System.currentTimeMillis() - retentionMillis;
+        for (Job job : jobs.values()) {
+            long finished = job.getFinished();
+            if (finished != 0 && finished < expired && jobs.remove(job.getId(), job)) {
+                try {
+                    delete(job);
+                }
+                catch (IOException e) {
+                    log.warn("Could not delete the results of job {}", job.getId(), e);
+                }
+            }
+        }
+    }
+
+    private static void delete(Job job) throws IOException {
+        Files.deleteIfExists(job.getInput());
+        Files.deleteIfExists(job.getOutput());
+    }
+
+    /**
+     * @return The jobs queued or running.
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        workers.shutdownNow();
+        List<Job> all = new ArrayList<>(jobs.values());
+        jobs.clear();
+        for (Job job : all) {
+            job.cancel();
+        }
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Job job : all) {
+            delete(job);
+        }
+        Files.deleteIfExists(directory);
+    }
+}
@@ -5,13 +5,19 @@ Date: 05/30/2019
 package mortgageCalculator;
 
 import java.util.Map;
-import java.util.StringJoiner;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
-import java.util.AbstractMap;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 /**
  * MortgageCalculator - A class containing static methods for calculating mortgage payments and
@@ -22,7 +28,7 @@ import java.util.HashMap;
 */
 public class MortgageCalculator {
     
-    private static Map<?, ?> createMap(Object... keyValues) {
+    static Map<?, ?> createMap(Object... keyValues) {
         assert (keyValues.length % 2 == 0);
         Map<String, Object> map = new HashMap<>();
         for (int i = 0; i < keyValues.length; i += 2) {
@@ -30,30 +36,50 @@ public class MortgageCalculator {
         }
         return map;
     }
-    //The default annual interest rate to use for all calculations.
-    private static double annualInterestRate = 2.5;
-    
-    // Map of payment schedule strings to number of payments per year.
-    private static final Map<String, Integer> schedule2PaymentsPerYear = Stream.of(
-        new AbstractMap.SimpleEntry<>("weekly", 52), 
-        new AbstractMap.SimpleEntry<>("biweekly", 52/2),
-        new AbstractMap.SimpleEntry<>("monthly", 12))
-        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
-    
-    private static final int minAmortizationPeriod = 5;
-    private static final int maxAmortizationPeriod = 25;
-    
-    // Asking price bound for minimum down payment calculation 
-    private static final double minDpBound = 500000.0;
-    // Percentage for asking price amount below minDpBound 
-    private static final double ltMinDpBoundRate = 0.05;
-    // Percentage for remaining asking price about minDpBound 
-    private static final double gtMinDpBoundRate = 0.1;
-    
-    // Insurance calculation down payment to asking price bounds.
-    private static final double[] dp2atRatioBounds = new double[] {0.1, 0.15, 0.2};
-    // Insurance percentages for bounds defined in dp2atRatioBounds
-    private static final double[] insurancePercentages = new double[] {0.0315, 0.024, 0.018};
+    //The default annual interest rate to use for all calculations, a new snapshot is published each 
+    //time it changes so readers never lock.
+    private static final AtomicReference<InterestRate> interestRate = 
+            new AtomicReference<>(new InterestRate(2.5, 1));
+    // Notified with the new snapshot after each change of the default annual interest rate.
+    private static final List<Consumer<InterestRate>> interestRateListeners = new CopyOnWriteArrayList<>();
+    // Every default rate with the time it took effect, kept in memory unless a logged history is set.
+    private static volatile RateHistory rateHistory = newRateHistory();
+    // Held by a rate change from reading the current rate until the next one is logged and 
+    // published, so changes are logged in version order and a rate that could not be logged is 
+    // never published.
+    private static final Object interestRateLock = new Object();
+    
+    // The lending rules, payment schedules, amortization bounds, minimum down payment and insurance 
+    // tiers. Loaded from rules.json, a new snapshot is published when the rules are reloaded so 
+    // readers never lock, a calculation reads the snapshot once.
+    private static final AtomicReference<RuleSet> ruleSet = new AtomicReference<>(loadDefaultRules());
+    // Notified with the new snapshot after each change of the rules.
+    private static final List<Consumer<RuleSet>> ruleSetListeners = new CopyOnWriteArrayList<>();
+    
+    // The largest rate by amortization period matrix paymentGrid calculates.
+    private static final int maxPaymentGridCells = 250000;
+    // The most prepayment strategies, events and, with schedules, payments prepaymentSimulation takes.
+    private static final int maxPrepaymentStrategies = 10000;
+    private static final int maxPrepaymentEvents = 1000000;
+    private static final int maxPrepaymentScheduleRows = 250000;
+    private static final int maxRateSimulationPaths = 1000000;
+    
+    // Annuity factors of the rates around the default rate, rebuilt in the background by 
+    // annuityFactorBuilder when the default rate changes.
+    private static volatile AnnuityFactorTable annuityFactors = new AnnuityFactorTable(
+            interestRate.get().getAnnualInterestRate(), ruleSet.get().getSchedulePaymentsPerYear(), 
+            ruleSet.get().getMinAmortizationPeriod(), ruleSet.get().getMaxAmortizationPeriod());
+    // The rule set the annuity factor table was built for, only written by annuityFactorBuilder.
+    private static volatile RuleSet annuityFactorsRules = ruleSet.get();
+    private static final ExecutorService annuityFactorBuilder = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "annuity-factor-builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+    static {
+        addInterestRateListener(rate -> annuityFactorBuilder.execute(MortgageCalculator::rebuildAnnuityFactors));
+        addRuleSetListener(rules -> annuityFactorBuilder.execute(MortgageCalculator::rebuildAnnuityFactors));
+    }
 
     /**
      * Get the recurring payment amount of a mortgage using the following formula
@@ -86,73 +112,395 @@ public class MortgageCalculator {
      */
     static public Map<?, ?> paymentAmount(double askingPrice, double downPayment, String paymentSchedule,  
             int amortizationPeriod, double annualInterestRate) {
-
-        ArrayList<String> errors = new ArrayList<String>();
-        final double minDownPayment = askingPrice < minDpBound ? ltMinDpBoundRate*askingPrice : 
-            ltMinDpBoundRate*minDpBound + gtMinDpBoundRate*(askingPrice - minDpBound);
-        
-        validateScheduleAndAmortization(paymentSchedule, amortizationPeriod, errors);
+        return paymentAmount(askingPrice, downPayment, paymentSchedule, amortizationPeriod, 
+                annualInterestRate, 0);
+    }
+    
+    /**
+     * @param rateVersion The version of the default rate snapshot annualInterestRate was read from,
+     *        zero if the rate was passed by the caller.
+     */
+    static Map<?, ?> paymentAmount(double askingPrice, double downPayment, String paymentSchedule,  
+            int amortizationPeriod, double annualInterestRate, long rateVersion) {
         
-        if (!validateInterestRate(annualInterestRate)) {
-            errors.add("The interest rate must be greater than zero and less than or equal to 100.");
-        }
-        if (downPayment > askingPrice) {
-            errors.add("The down payment cannot exceed the asking price.");
+        RuleSet rules = ruleSet.get();
+        PaymentResult result = new PaymentResult();
+        int errors = paymentAmount(rules, askingPrice, downPayment, rules.paymentsPerYear(paymentSchedule), 
+                amortizationPeriod, annualInterestRate, result);
+        if (errors != CalculationErrors.NONE) {
+            throw new CalculationException(errors, rules, result.getMinimumDownPayment());
         }
-        if (downPayment < 0) {
-            errors.add("The down payment must be larger than zero.");
-        }
-        if (askingPrice < 0) {
-            errors.add("The asking price must be larger than zero.");
-        }
-        if (downPayment < minDownPayment) {
-            errors.add(String.format("The down payment must be greater than %6.2f", minDownPayment));
-        }
-        if (errors.size() > 0) {
-            StringJoiner sj = new StringJoiner(", ");
-            errors.stream().forEach(e -> sj.add(e));
-            throw new IllegalArgumentException(sj.toString());
+        result.setRateVersion(rateVersion);
+        return result.toMap();
+    }
+    
+    /**
+     * The primitive version of paymentAmount, it does not allocate so it can be called in tight 
+     * loops. See the map returning paymentAmount for the formula.
+     * 
+     * @param askingPrice The total amount of money required, the loan is equal to this amount plus 
+     *        insurance minus the down payment.
+     * @param downPayment Must be at least 5% of first $500k plus 10% of any amount above $500k 
+     *        (So $50k on a $750k mortgage)
+     * @param paymentsPerYear The number of payments per year, see paymentsPerYear(String).
+     * @param amortizationPeriod The period, in years, the loan is to be paid off, Min 5 years, max 25 years.
+     * @param annualInterestRate The annual insurance rate, as percentage ie 2.5%.
+     * @param result Receives the result, only the minimum down payment is set if the parameters 
+     *        are invalid.
+     * @return The CalculationErrors codes, CalculationErrors.NONE if the payment was calculated.
+     */
+    static public int paymentAmount(double askingPrice, double downPayment, int paymentsPerYear,  
+            int amortizationPeriod, double annualInterestRate, PaymentResult result) {
+        return paymentAmount(ruleSet.get(), askingPrice, downPayment, paymentsPerYear, amortizationPeriod, 
+                annualInterestRate, result);
+    }
+    
+    /**
+     * paymentAmount with the given rules, see the public primitive paymentAmount.
+     */
+    static int paymentAmount(RuleSet rules, double askingPrice, double downPayment, int paymentsPerYear,  
+            int amortizationPeriod, double annualInterestRate, PaymentResult result) {
+
+        final double minDownPayment = rules.minimumDownPayment(askingPrice);
+        result.setMinimumDownPayment(minDownPayment);
+        
+        int errors = validatePaymentAmount(rules, askingPrice, downPayment, paymentsPerYear, 
+                amortizationPeriod, annualInterestRate, minDownPayment);
+        if (errors != CalculationErrors.NONE) {
+            return errors;
         }
         
         // calculate the number of payments n
-        double paymentsPerYear = schedule2PaymentsPerYear.get(paymentSchedule);
-        double numPayments = amortizationPeriod * paymentsPerYear;
+        double numPayments = amortizationPeriod * (double) paymentsPerYear;
         
         // calculate insurance, add to principal
         // I am doing this after checking the minimum down payment, should this be done before, ie 
         // is the minimum down payment a function of asking price or asking price + insurance?
-        double insurance = calculateInsurance(askingPrice, downPayment);
+        double insurance = rules.insurance(askingPrice, downPayment);
         double principal = insurance + askingPrice - downPayment;   
         
         // annualInterestRate is an annual rate, convert it to per payment.
         double rate = annualInterestRate / (100.0 * paymentsPerYear);
         
-        //rate = annualInterestRate / 100.;
-        
         // calculate the payment, P = L[c(1 + c)^n]/[(1 + c)^n - 1]
-        double interestRateToNumPayments = Math.pow(1.0 + rate, numPayments);
-        double payment = principal * rate * 
-                interestRateToNumPayments / (interestRateToNumPayments - 1.0);
+        double payment = principal * annuityFactor(annualInterestRate, paymentsPerYear, amortizationPeriod);
           
-        return createMap("payment", payment, 
-                "num_payments", numPayments, 
-                "rate", rate,
-                "payments_per_year", paymentsPerYear, 
-                "minimum_down_payment", minDownPayment,
-                "downpayment_to_askingprice_ratio", downPayment / askingPrice,
-                "insurance", insurance, 
-                "loan_total", numPayments*payment,
-                "principal", String.format("%6.1f = %6.1f + %6.1f - %6.1f", principal, insurance, askingPrice, downPayment));
+        result.set(payment, numPayments, rate, paymentsPerYear, askingPrice, downPayment, insurance, 
+                principal, rules.getVersion());
+        return CalculationErrors.NONE;
+    }
+    
+    /**
+     * Get the recurring payment amounts for a batch of mortgages, see paymentAmount for the formula 
+     * and the validation rules. The scenarios are passed as columns, the i'th element of each array
+     * describes the i'th scenario. Every scenario is validated on its own, the payments for all the
+     * valid scenarios are then calculated in a single loop over primitive arrays.
+     * 
+     * @param askingPrices The asking price of each scenario.
+     * @param downPayments The down payment of each scenario.
+     * @param paymentSchedules The payment schedule of each scenario, valid values are: Weekly, 
+     *        biweekly, monthly.
+     * @param amortizationPeriods The amortization period, in years, of each scenario.
+     * @param annualInterestRates The annual interest rate of each scenario, if null the default 
+     *        annual interest rate is used for all scenarios.
+     * @return A list, in input order, holding the paymentAmount result of each valid scenario or a 
+     *         map with a single "error" entry for each invalid scenario.
+     */
+    static public List<Map<?, ?>> paymentAmounts(double[] askingPrices, double[] downPayments, 
+            String[] paymentSchedules, int[] amortizationPeriods, double[] annualInterestRates) {
+        
+        final int n = askingPrices.length;
+        if (downPayments.length != n || paymentSchedules.length != n || amortizationPeriods.length != n
+                || (annualInterestRates != null && annualInterestRates.length != n)) {
+            throw new IllegalArgumentException("All scenario arrays must have the same length.");
+        }
+        final InterestRate defaultRate = interestRate.get();
+        final long rateVersion = annualInterestRates == null ? defaultRate.getVersion() : 0;
+        final RuleSet rules = ruleSet.get();
+        
+        int[] errors = new int[n];
+        double[] paymentsPerYear = new double[n], numPayments = new double[n], rates = new double[n],
+                minDownPayments = new double[n], insurances = new double[n], principals = new double[n],
+                factors = new double[n], payments = new double[n];
+        rules.minimumDownPayments(askingPrices, minDownPayments);
+        rules.insurance(askingPrices, downPayments, insurances);
+        
+        // validate each scenario and gather the per scenario terms of the payment formula
+        for (int i = 0; i < n; i++) {
+            double annualRate = annualInterestRates == null ? defaultRate.getAnnualInterestRate() : 
+                annualInterestRates[i];
+            int scenarioPaymentsPerYear = rules.paymentsPerYear(paymentSchedules[i]);
+            errors[i] = validatePaymentAmount(rules, askingPrices[i], downPayments[i], scenarioPaymentsPerYear, 
+                    amortizationPeriods[i], annualRate, minDownPayments[i]);
+            if (errors[i] != CalculationErrors.NONE) {
+                continue;
+            }
+            paymentsPerYear[i] = scenarioPaymentsPerYear;
+            numPayments[i] = amortizationPeriods[i] * paymentsPerYear[i];
+            principals[i] = insurances[i] + askingPrices[i] - downPayments[i];
+            rates[i] = annualRate / (100.0 * paymentsPerYear[i]);
+            factors[i] = annuityFactor(annualRate, scenarioPaymentsPerYear, amortizationPeriods[i]);
+        }
+        
+        // calculate the payments, P = L[c(1 + c)^n]/[(1 + c)^n - 1], invalid scenarios have zero 
+        // terms and their results are ignored so the loop body has no branches.
+        for (int i = 0; i < n; i++) {
+            payments[i] = principals[i] * factors[i];
+        }
+        
+        List<Map<?, ?>> results = new ArrayList<>(n);
+        PaymentResult result = new PaymentResult();
+        for (int i = 0; i < n; i++) {
+            if (errors[i] != CalculationErrors.NONE) {
+                results.add(createMap("error", CalculationErrors.describe(errors[i], rules, minDownPayments[i])));
+                continue;
+            }
+            result.set(payments[i], numPayments[i], rates[i], paymentsPerYear[i], askingPrices[i], 
+                    downPayments[i], insurances[i], principals[i], rules.getVersion());
+            result.setMinimumDownPayment(minDownPayments[i]);
+            result.setRateVersion(rateVersion);
+            results.add(result.toMap());
+        }
+        return results;
     }
     
     /**
-     * Calls paymentAmount using the class variable annualInterestRate. See that method for 
-     * parameter/return details.
+     * Calls paymentAmount using the default annual interest rate, the result holds the version of
+     * the rate in "rate_version". See that method for parameter/return details.
      */
     static public Map<?, ?> paymentAmount(double askingPrice, double downPayment, String paymentSchedule,  
             int amortizationPeriod) {
+        InterestRate rate = interestRate.get();
         return paymentAmount(askingPrice, downPayment, paymentSchedule, amortizationPeriod, 
-                MortgageCalculator.annualInterestRate);    
+                rate.getAnnualInterestRate(), rate.getVersion());    
+    }
+
+    /**
+     * Get the period by period amortization schedule of a mortgage. The loan and the recurring 
+     * payment are calculated by paymentAmount, see that method for the parameter details.
+     * 
+     * @return An iterator over the payments of the mortgage.
+     * @throws CalculationException If the parameters are invalid.
+     */
+    static public AmortizationSchedule amortizationSchedule(double askingPrice, double downPayment, 
+            String paymentSchedule, int amortizationPeriod, double annualInterestRate) {
+        
+        RuleSet rules = ruleSet.get();
+        PaymentResult result = new PaymentResult();
+        int errors = paymentAmount(rules, askingPrice, downPayment, rules.paymentsPerYear(paymentSchedule), 
+                amortizationPeriod, annualInterestRate, result);
+        if (errors != CalculationErrors.NONE) {
+            throw new CalculationException(errors, rules, result.getMinimumDownPayment());
+        }
+        return new AmortizationSchedule(result.getPrincipal(), result.getRate(), result.getPayment(), 
+                (int) result.getNumPayments());
+    }
+    
+    /**
+     * Simulate prepayment strategies on a mortgage, see PrepaymentSimulation. The loan and the level
+     * payment are calculated by paymentAmount, see that method for the parameter details. With an 
+     * accelerated schedule the payment is the monthly payment divided by the number of payments per
+     * month, ie half the monthly payment every two weeks, which makes one extra monthly payment a 
+     * year. The baseline is the level payment schedule of paymentSchedule without prepayments.
+     * 
+     * @param accelerated True to pay an accelerated payment, only for schedules with more than 12 
+     *        payments per year.
+     * @param strategies The prepayment events of each strategy, an empty strategy is the schedule 
+     *        without prepayments.
+     * @param includeSchedules If true the simulation can produce schedules, the number of strategies
+     *        times the number of payments is limited.
+     * @return The simulation.
+     * @throws CalculationException If the mortgage parameters are invalid.
+     * @throws IllegalArgumentException If the strategies are invalid or too many.
+     */
+    static public PrepaymentSimulation prepaymentSimulation(double askingPrice, double downPayment, 
+            String paymentSchedule, int amortizationPeriod, double annualInterestRate, boolean accelerated, 
+            Prepayment[][] strategies, boolean includeSchedules) {
+        return prepaymentSimulation(askingPrice, downPayment, paymentSchedule, amortizationPeriod, 
+                annualInterestRate, 0, accelerated, strategies, includeSchedules);
+    }
+    
+    /**
+     * Call prepaymentSimulation with the default annual interest rate, the result holds the version 
+     * of the rate in "rate_version". See that method for parameter/return details.
+     */
+    static public PrepaymentSimulation prepaymentSimulation(double askingPrice, double downPayment, 
+            String paymentSchedule, int amortizationPeriod, boolean accelerated, Prepayment[][] strategies, 
+            boolean includeSchedules) {
+        InterestRate rate = interestRate.get();
+        return prepaymentSimulation(askingPrice, downPayment, paymentSchedule, amortizationPeriod, 
+                rate.getAnnualInterestRate(), rate.getVersion(), accelerated, strategies, includeSchedules);
+    }
+    
+    /**
+     * @param rateVersion The version of the default rate snapshot annualInterestRate was read from,
+     *        zero if the rate was passed by the caller.
+     */
+    static PrepaymentSimulation prepaymentSimulation(double askingPrice, double downPayment, 
+            String paymentSchedule, int amortizationPeriod, double annualInterestRate, long rateVersion, 
+            boolean accelerated, Prepayment[][] strategies, boolean includeSchedules) {
+        
+        RuleSet rules = ruleSet.get();
+        int paymentsPerYear = rules.paymentsPerYear(paymentSchedule);
+        PaymentResult result = new PaymentResult();
+        int errors = paymentAmount(rules, askingPrice, downPayment, paymentsPerYear, amortizationPeriod, 
+                annualInterestRate, result);
+        if (errors != CalculationErrors.NONE) {
+            throw new CalculationException(errors, rules, result.getMinimumDownPayment());
+        }
+        if (accelerated && paymentsPerYear <= 12) {
+            throw new IllegalArgumentException("Only schedules with more than 12 payments per year can be accelerated.");
+        }
+        if (strategies.length > maxPrepaymentStrategies) {
+            throw new IllegalArgumentException(String.format("There cannot be more than %d strategies.", 
+                    maxPrepaymentStrategies));
+        }
+        int numPayments = (int) result.getNumPayments();
+        if (includeSchedules && (long) strategies.length * numPayments > maxPrepaymentScheduleRows) {
+            throw new IllegalArgumentException(String.format(
+                    "Schedules cannot have more than %d payments in total.", maxPrepaymentScheduleRows));
+        }
+        long events = 0;
+        for (Prepayment[] strategy : strategies) {
+            events += strategy == null ? 0 : strategy.length;
+        }
+        if (events > maxPrepaymentEvents) {
+            throw new IllegalArgumentException(String.format("There cannot be more than %d prepayments.", 
+                    maxPrepaymentEvents));
+        }
+        
+        PrepaymentPlan[] plans = new PrepaymentPlan[strategies.length];
+        for (int i = 0; i < plans.length; i++) {
+            plans[i] = PrepaymentPlan.compile(strategies[i], paymentsPerYear, numPayments);
+        }
+        double payment = accelerated ? 
+                result.getPrincipal() * annuityFactor(annualInterestRate, 12, amortizationPeriod) / (paymentsPerYear / 12) :
+                result.getPayment();
+        return new PrepaymentSimulation(result.getPrincipal(), result.getRate(), result.getPayment(), payment, 
+                numPayments, paymentsPerYear, accelerated, plans, rules.getVersion(), rateVersion);
+    }
+
+    /**
+     * Simulate the payments of a mortgage that renews every term years at a random interest rate,
+     * see RateSimulation. The first term is at annualInterestRate, each renewal draws the next
+     * rate from a mean reverting process and recalculates the payment on the remaining balance.
+     * 
+     * @param askingPrice The total amount of money required, the loan is equal to this amount plus 
+     *        insurance minus the down payment.
+     * @param downPayment Must be at least 5% of first $500k plus 10% of any amount above $500k.
+     * @param paymentSchedule The payment schedule, valid values are: Weekly, biweekly, monthly.
+     * @param amortizationPeriod The period, in years, the loan is to be paid off, Min 5 years, max 25 years.
+     * @param annualInterestRate The annual interest rate of the first term, as percentage ie 2.5%.
+     * @param term The number of years between renewals, 1 to amortizationPeriod.
+     * @param longRunRate The annual interest rate the rates revert to, as percentage ie 2.5%.
+     * @param reversionSpeed The speed of reversion per year, zero or more.
+     * @param volatility The standard deviation of the annual rate change, in percentage points per
+     *        square root of a year, zero or more.
+     * @param paths The number of rate paths, max 1000000.
+     * @param seed The seed of the random rate paths, the same seed gives the same result.
+     * @return The simulation.
+     * @throws CalculationException If the mortgage parameters are invalid.
+     * @throws IllegalArgumentException If the rate model or the number of paths are invalid.
+     */
+    static public RateSimulation rateSimulation(double askingPrice, double downPayment, String paymentSchedule,
+            int amortizationPeriod, double annualInterestRate, int term, double longRunRate,
+            double reversionSpeed, double volatility, int paths, long seed) {
+        return rateSimulation(askingPrice, downPayment, paymentSchedule, amortizationPeriod, annualInterestRate, 
+                0, term, longRunRate, reversionSpeed, volatility, paths, seed);
+    }
+    
+    /**
+     * @param rateVersion The version of the default rate snapshot annualInterestRate was read from,
+     *        zero if the rate was passed by the caller, the controller passes the default rate 
+     *        itself since it is also the default long run rate.
+     */
+    static RateSimulation rateSimulation(double askingPrice, double downPayment, String paymentSchedule,
+            int amortizationPeriod, double annualInterestRate, long rateVersion, int term, double longRunRate,
+            double reversionSpeed, double volatility, int paths, long seed) {
+        
+        RuleSet rules = ruleSet.get();
+        int paymentsPerYear = rules.paymentsPerYear(paymentSchedule);
+        PaymentResult result = new PaymentResult();
+        int errors = paymentAmount(rules, askingPrice, downPayment, paymentsPerYear, amortizationPeriod, 
+                annualInterestRate, result);
+        if (!validateInterestRate(longRunRate)) {
+            errors |= CalculationErrors.INTEREST_RATE;
+        }
+        if (errors != CalculationErrors.NONE) {
+            throw new CalculationException(errors, rules, result.getMinimumDownPayment());
+        }
+        if (term < 1 || term > amortizationPeriod) {
+            throw new IllegalArgumentException("The term must be between 1 year and the amortization period.");
+        }
+        if (!(reversionSpeed >= 0) || !(volatility >= 0) || Double.isInfinite(reversionSpeed) 
+                || Double.isInfinite(volatility)) {
+            throw new IllegalArgumentException("The reversion speed and the volatility cannot be negative.");
+        }
+        if (paths < 1 || paths > maxRateSimulationPaths) {
+            throw new IllegalArgumentException(String.format("The number of paths must be between 1 and %d.", 
+                    maxRateSimulationPaths));
+        }
+        return new RateSimulation(result.getPrincipal(), result.getPayment(), paymentsPerYear, amortizationPeriod,
+                term, annualInterestRate, longRunRate, reversionSpeed, volatility, paths, seed, rules.getVersion(),
+                rateVersion);
+    }
+
+    /**
+     * Get the recurring payments of a loan for every combination of a range of annual interest
+     * rates and a range of amortization periods, see PaymentGrid. The principal is the loan
+     * amount, no down payment or insurance is applied.
+     *
+     * @param principal The loan principal.
+     * @param paymentSchedule The payment schedule, valid values are: Weekly, biweekly, monthly.
+     * @param minRate The annual interest rate of the first row, as percentage ie 2.5%.
+     * @param maxRate The largest annual interest rate, included if it is a whole number of steps
+     *        from minRate.
+     * @param rateStep The annual interest rate increment between rows.
+     * @param minAmortizationPeriod The amortization period, in years, of the first column, min 5 years.
+     * @param maxAmortizationPeriod The largest amortization period, max 25 years.
+     * @param amortizationStep The number of years between columns.
+     * @return The payment grid.
+     * @throws CalculationException If the payment schedule, the amortization periods or the rates
+     *         are invalid.
+     * @throws IllegalArgumentException If the principal, the ranges or the steps are invalid.
+     */
+    static public PaymentGrid paymentGrid(double principal, String paymentSchedule, double minRate,
+            double maxRate, double rateStep, int minAmortizationPeriod, int maxAmortizationPeriod,
+            int amortizationStep) {
+
+        RuleSet rules = ruleSet.get();
+        int paymentsPerYear = rules.paymentsPerYear(paymentSchedule);
+        int errors = validateScheduleAndAmortization(rules, paymentsPerYear, minAmortizationPeriod)
+                | validateScheduleAndAmortization(rules, paymentsPerYear, maxAmortizationPeriod);
+        if (!validateInterestRate(minRate) || !validateInterestRate(maxRate)) {
+            errors |= CalculationErrors.INTEREST_RATE;
+        }
+        if (errors != CalculationErrors.NONE) {
+            throw new CalculationException(errors, rules, 0);
+        }
+        if (!(principal > 0)) {
+            throw new IllegalArgumentException("The principal must be larger than zero.");
+        }
+        if (!(rateStep > 0) || amortizationStep <= 0) {
+            throw new IllegalArgumentException("The rate and amortization steps must be larger than zero.");
+        }
+        if (minRate > maxRate || minAmortizationPeriod > maxAmortizationPeriod) {
+            throw new IllegalArgumentException("The minimum of a range cannot exceed its maximum.");
+        }
+        // the epsilon keeps maxRate when (maxRate - minRate) / rateStep is a whole number plus rounding error
+        double rows = Math.floor((maxRate - minRate) / rateStep + 1e-9) + 1;
+        int columns = (maxAmortizationPeriod - minAmortizationPeriod) / amortizationStep + 1;
+        if (rows * columns > maxPaymentGridCells) {
+            throw new IllegalArgumentException(String.format("The grid cannot have more than %d cells.",
+                    maxPaymentGridCells));
+        }
+        double[] rates = new double[(int) rows];
+        for (int i = 0; i < rates.length; i++) {
+            // round off the accumulated step error so rates print as entered, ie 2.75 not 2.7500000000000004
+            rates[i] = Math.rint((minRate + i * rateStep) * 1e9) / 1e9;
+        }
+        return new PaymentGrid(principal, paymentsPerYear, rates, minAmortizationPeriod, amortizationStep,
+                columns);
     }
 
     /**
@@ -169,31 +517,68 @@ public class MortgageCalculator {
     */    
     static public Map<?, ?> mortgageAmount(double payment, double downPayment, 
             String paymentSchedule, int amortizationPeriod, double annualInterestRate) {
+        return mortgageAmount(payment, downPayment, paymentSchedule, amortizationPeriod, 
+                annualInterestRate, 0);
+    }
+    
+    /**
+     * @param rateVersion The version of the default rate snapshot annualInterestRate was read from,
+     *        zero if the rate was passed by the caller.
+     */
+    static Map<?, ?> mortgageAmount(double payment, double downPayment, 
+            String paymentSchedule, int amortizationPeriod, double annualInterestRate, long rateVersion) {
         
-        ArrayList<String> errors = new ArrayList<String>();
+        RuleSet rules = ruleSet.get();
+        MortgageResult result = new MortgageResult();
+        int errors = mortgageAmount(rules, payment, downPayment, rules.paymentsPerYear(paymentSchedule), 
+                amortizationPeriod, annualInterestRate, result);
+        if (errors != CalculationErrors.NONE) {
+            throw new CalculationException(errors, rules, 0.0);
+        }
+        result.setRateVersion(rateVersion);
+        return result.toMap();
+    }
+    
+    /**
+     * The primitive version of mortgageAmount, it does not allocate so it can be called in tight 
+     * loops. See the map returning mortgageAmount for the formula.
+     * 
+     * @param payment The desired payment for the given paymentSchedule.
+     * @param downPayment The down payment is added to the maximum mortgage amount.
+     * @param paymentsPerYear The number of payments per year, see paymentsPerYear(String).
+     * @param amortizationPeriod The period, in years, the loan is to be paid off, Min 5 years, max 25 years.
+     * @param annualInterestRate The annual insurance rate, as percentage ie 2.5%.
+     * @param result Receives the result, it is not modified if the parameters are invalid.
+     * @return The CalculationErrors codes, CalculationErrors.NONE if the amount was calculated.
+     */
+    static public int mortgageAmount(double payment, double downPayment, int paymentsPerYear, 
+            int amortizationPeriod, double annualInterestRate, MortgageResult result) {
+        return mortgageAmount(ruleSet.get(), payment, downPayment, paymentsPerYear, amortizationPeriod, 
+                annualInterestRate, result);
+    }
+    
+    /**
+     * mortgageAmount with the given rules, see the public primitive mortgageAmount.
+     */
+    static int mortgageAmount(RuleSet rules, double payment, double downPayment, int paymentsPerYear, 
+            int amortizationPeriod, double annualInterestRate, MortgageResult result) {
         
-        validateScheduleAndAmortization(paymentSchedule, amortizationPeriod, errors);
+        int errors = validateScheduleAndAmortization(rules, paymentsPerYear, amortizationPeriod);
         if (!validateInterestRate(annualInterestRate))
-            errors.add("The interest rate must be greater than zero and less than or equal to 100.");
+            errors |= CalculationErrors.INTEREST_RATE;
         
-        if (errors.size() > 0) {
-            StringJoiner sj = new StringJoiner(", ");
-            errors.stream().forEach(e -> sj.add(e));
-            throw new IllegalArgumentException(sj.toString());
+        if (errors != CalculationErrors.NONE) {
+            return errors;
         }
         
-        double paymentsPerYear = schedule2PaymentsPerYear.get(paymentSchedule.toLowerCase());
-        double numPayments = amortizationPeriod * paymentsPerYear;
-        double rate = annualInterestRate / 100.0 / paymentsPerYear;
+        double numPayments = amortizationPeriod * (double) paymentsPerYear;
+        double rate = annualInterestRate / (100.0 * paymentsPerYear);
         
-        double interestRateToNumPayments = Math.pow(1 + rate, numPayments);
-        double denominator = rate * interestRateToNumPayments / (interestRateToNumPayments - 1);
+        double denominator = annuityFactor(annualInterestRate, paymentsPerYear, amortizationPeriod);
         double maxMortgageAmount = (payment / denominator) + downPayment;
         
-        return createMap("mortgage_amount", maxMortgageAmount,   
-                "num_payments", numPayments, 
-                "rate", rate,
-                "payments_per_year", paymentsPerYear);        
+        result.set(maxMortgageAmount, numPayments, rate, paymentsPerYear, rules.getVersion());
+        return CalculationErrors.NONE;
     }
     
     /**
@@ -203,8 +588,158 @@ public class MortgageCalculator {
      */
     static public Map<?, ?> mortgageAmount(double payment, 
             String paymentSchedule, int amortizationPeriod) {
-        return mortgageAmount(payment, 0.0, paymentSchedule, amortizationPeriod, 
-                MortgageCalculator.annualInterestRate);
+        return mortgageAmount(payment, 0.0, paymentSchedule, amortizationPeriod);
+    }
+    
+    /**
+     * Call mortgageAmount with the default annual interest rate, the result holds the version of 
+     * the rate in "rate_version". See that method for parameter/return details.
+     */
+    static public Map<?, ?> mortgageAmount(double payment, double downPayment, 
+            String paymentSchedule, int amortizationPeriod) {
+        InterestRate rate = interestRate.get();
+        return mortgageAmount(payment, downPayment, paymentSchedule, amortizationPeriod, 
+                rate.getAnnualInterestRate(), rate.getVersion());
+    }
+
+    /**
+     * Calculate the maximum asking price a payment can afford, the largest asking price whose 
+     * paymentAmount does not exceed the payment. Unlike mortgageAmount the insurance premium and 
+     * the minimum down payment are applied so the result round trips through paymentAmount.
+     * 
+     * The principal L = A + insurance - D grows with the asking price A. Within an insurance tier 
+     * with premium p it is A(1 + p) - D, so A = (P/f + D)/(1 + p) where f is the annuity factor. 
+     * Each tier is a range of asking prices, D/bound[k] < A <= D/bound[k - 1]. The tiers are 
+     * searched from the highest asking prices down and the first tier whose solution lies above its 
+     * lower bound brackets the answer. If the solution lies above the tier, the payment jumps past P 
+     * on entering the next tier so the answer is the upper bound of the tier. The asking price is 
+     * also capped at the largest one the down payment is the minimum down payment for.
+     * 
+     * @param payment The target payment for the given paymentSchedule.
+     * @param downPayment The down payment.
+     * @param paymentSchedule The payment schedule, valid values are: Weekly, biweekly, monthly.
+     * @param amortizationPeriod The period, in years, the loan is to be paid off, Min 5 years, max 25 years.
+     * @param annualInterestRate The annual interest rate, as percentage ie 2.5%.
+     * 
+     * @return The maximum asking price with its insurance, loan amount and payment, and what 
+     *         limited it, the target payment, an insurance tier or the minimum down payment.
+     */
+    static public Map<?, ?> maxAskingPrice(double payment, double downPayment, String paymentSchedule, 
+            int amortizationPeriod, double annualInterestRate) {
+        return maxAskingPrice(payment, downPayment, paymentSchedule, amortizationPeriod, annualInterestRate, 0);
+    }
+    
+    /**
+     * Call maxAskingPrice with the default annual interest rate, the result holds the version of 
+     * the rate in "rate_version". See that method for parameter/return details.
+     */
+    static public Map<?, ?> maxAskingPrice(double payment, double downPayment, String paymentSchedule, 
+            int amortizationPeriod) {
+        InterestRate rate = interestRate.get();
+        return maxAskingPrice(payment, downPayment, paymentSchedule, amortizationPeriod, 
+                rate.getAnnualInterestRate(), rate.getVersion());
+    }
+    
+    /**
+     * @param rateVersion The version of the default rate snapshot annualInterestRate was read from,
+     *        zero if the rate was passed by the caller.
+     */
+    static Map<?, ?> maxAskingPrice(double payment, double downPayment, String paymentSchedule, 
+            int amortizationPeriod, double annualInterestRate, long rateVersion) {
+        
+        RuleSet rules = ruleSet.get();
+        AskingPriceResult result = new AskingPriceResult();
+        int errors = maxAskingPrice(rules, payment, downPayment, rules.paymentsPerYear(paymentSchedule), 
+                amortizationPeriod, annualInterestRate, result);
+        if (errors != CalculationErrors.NONE) {
+            throw new CalculationException(errors, rules, 0.0);
+        }
+        result.setRateVersion(rateVersion);
+        return result.toMap();
+    }
+    
+    /**
+     * The primitive version of maxAskingPrice, it does not allocate so it can be called in tight 
+     * loops. See the map returning maxAskingPrice for the method.
+     * 
+     * @param payment The target payment for the given paymentSchedule.
+     * @param downPayment The down payment.
+     * @param paymentsPerYear The number of payments per year, see paymentsPerYear(String).
+     * @param amortizationPeriod The period, in years, the loan is to be paid off, Min 5 years, max 25 years.
+     * @param annualInterestRate The annual interest rate, as percentage ie 2.5%.
+     * @param result Receives the result, it is not modified if the parameters are invalid.
+     * @return The CalculationErrors codes, CalculationErrors.NONE if the asking price was calculated.
+     */
+    static public int maxAskingPrice(double payment, double downPayment, int paymentsPerYear, 
+            int amortizationPeriod, double annualInterestRate, AskingPriceResult result) {
+        return maxAskingPrice(ruleSet.get(), payment, downPayment, paymentsPerYear, amortizationPeriod, 
+                annualInterestRate, result);
+    }
+    
+    /**
+     * maxAskingPrice with the given rules, see the public primitive maxAskingPrice.
+     */
+    static int maxAskingPrice(RuleSet rules, double payment, double downPayment, int paymentsPerYear, 
+            int amortizationPeriod, double annualInterestRate, AskingPriceResult result) {
+        
+        int errors = validateScheduleAndAmortization(rules, paymentsPerYear, amortizationPeriod);
+        if (!validateInterestRate(annualInterestRate)) {
+            errors |= CalculationErrors.INTEREST_RATE;
+        }
+        if (!(payment > 0)) {
+            errors |= CalculationErrors.NON_POSITIVE_PAYMENT;
+        }
+        if (downPayment < 0) {
+            errors |= CalculationErrors.NEGATIVE_DOWN_PAYMENT;
+        }
+        if (errors != CalculationErrors.NONE) {
+            return errors;
+        }
+        
+        final double factor = annuityFactor(annualInterestRate, paymentsPerYear, amortizationPeriod);
+        final double loan = payment / factor;
+        final double maxPrice = rules.maximumAskingPrice(downPayment);
+        final int tiers = rules.getInsuranceTiers();
+        
+        double askingPrice = maxPrice;
+        AskingPriceResult.Limit limit = AskingPriceResult.Limit.MINIMUM_DOWN_PAYMENT;
+        // tier k < tiers covers D/bounds[k] < A <= D/bounds[k - 1], the last tier has no 
+        // insurance and covers D <= A <= D/bounds[tiers - 1]
+        for (int k = 0; k <= tiers; k++) {
+            boolean insured = k < tiers;
+            double lower = insured ? downPayment / rules.getInsuranceRatioBound(k) : downPayment;
+            if (lower >= maxPrice) {
+                continue;
+            }
+            double upper = k == 0 ? Double.POSITIVE_INFINITY : downPayment / rules.getInsuranceRatioBound(k - 1);
+            double solution = (loan + downPayment) / (1. + (insured ? rules.getInsurancePercentage(k) : 0.));
+            if (solution > lower) {
+                if (solution <= Math.min(upper, maxPrice)) {
+                    askingPrice = solution;
+                    limit = AskingPriceResult.Limit.PAYMENT;
+                }
+                else if (upper < maxPrice) {
+                    askingPrice = upper;
+                    limit = AskingPriceResult.Limit.INSURANCE_TIER;
+                }
+                break;
+            }
+        }
+        
+        // the bounds and the solution are rounded, step down to the nearest asking price that is 
+        // valid and whose payment, calculated as paymentAmount does, is within rounding of the target
+        double insurance = rules.insurance(askingPrice, downPayment);
+        for (int i = 0; i < 64 && (rules.minimumDownPayment(askingPrice) > downPayment 
+                || (insurance + askingPrice - downPayment) * factor > payment * (1 + 1e-9)); i++) {
+            askingPrice = Math.nextDown(askingPrice);
+            insurance = rules.insurance(askingPrice, downPayment);
+        }
+        
+        double principal = insurance + askingPrice - downPayment;
+        result.set(askingPrice, downPayment, insurance, principal, principal * factor, 
+                amortizationPeriod * (double) paymentsPerYear, annualInterestRate / (100.0 * paymentsPerYear), 
+                paymentsPerYear, limit, rules.getVersion());
+        return CalculationErrors.NONE;
     }
 
     /**
@@ -213,7 +748,16 @@ public class MortgageCalculator {
      * @return the annual interest rate.
      */
     static public double getAnnualInterestRate() {
-        return MortgageCalculator.annualInterestRate; 
+        return interestRate.get().getAnnualInterestRate(); 
+    }
+
+    /**
+     * Get the current snapshot of the annual interest rate.
+     * 
+     * @return the annual interest rate and its version.
+     */
+    static public InterestRate getInterestRate() {
+        return interestRate.get(); 
     }
 
     /**
@@ -225,31 +769,343 @@ public class MortgageCalculator {
     static public boolean setAnnualInterestRate(double newAnnualInterestRate) {
         
         if (validateInterestRate(newAnnualInterestRate)) {
-            MortgageCalculator.annualInterestRate = newAnnualInterestRate;
+            updateAnnualInterestRate(newAnnualInterestRate);
             return true;
         }
         else {
             return false;
         }
     }
+
+    /**
+     * Set the annual interest rate.
+     * 
+     * @param newAnnualInterestRate The new annual interest rate, must be greater than zero and less than or equal to 100.
+     * @return The replaced snapshot, the new snapshot has its version plus one.
+     * @throws CalculationException If newAnnualInterestRate is invalid.
+     * @throws UncheckedIOException If the new rate could not be logged, the rate is unchanged.
+     */
+    static public InterestRate updateAnnualInterestRate(double newAnnualInterestRate) {
+        
+        if (!validateInterestRate(newAnnualInterestRate)) {
+            throw new CalculationException(CalculationErrors.INTEREST_RATE, ruleSet.get(), 0.0);
+        }
+        synchronized (interestRateLock) {
+            InterestRate previous = interestRate.get();
+            publishInterestRate(previous.next(newAnnualInterestRate));
+            return previous;
+        }
+    }
+
+    /**
+     * Set the annual interest rate if the current rate has the expected version, so concurrent 
+     * updates can not silently overwrite each other.
+     * 
+     * @param expectedVersion The version of the rate the caller wants to replace.
+     * @param newAnnualInterestRate The new annual interest rate, must be greater than zero and less than or equal to 100.
+     * @return The replaced snapshot, the new snapshot has its version plus one. Null if the current
+     *         version is not expectedVersion.
+     * @throws CalculationException If newAnnualInterestRate is invalid.
+     * @throws UncheckedIOException If the new rate could not be logged, the rate is unchanged.
+     */
+    static public InterestRate compareAndSetAnnualInterestRate(long expectedVersion, 
+            double newAnnualInterestRate) {
+        
+        if (!validateInterestRate(newAnnualInterestRate)) {
+            throw new CalculationException(CalculationErrors.INTEREST_RATE, ruleSet.get(), 0.0);
+        }
+        synchronized (interestRateLock) {
+            InterestRate current = interestRate.get();
+            if (current.getVersion() != expectedVersion) {
+                return null;
+            }
+            publishInterestRate(current.next(newAnnualInterestRate));
+            return current;
+        }
+    }
     
     /**
-     * Validate payment schedule and amortization amount.
+     * Get the snapshot of the default annual interest rate in effect at a past time, see RateHistory.
+     * 
+     * @param asOf The time in epoch milliseconds.
+     * @return The annual interest rate and its version at that time.
+     * @throws IllegalArgumentException If asOf is before the start of the rate history.
+     */
+    static public InterestRate getInterestRate(long asOf) {
+        RateHistory history = rateHistory;
+        InterestRate rate = history.rateAt(asOf);
+        if (rate == null) {
+            throw new IllegalArgumentException(String.format("There is no interest rate history before %s.", 
+                    Instant.ofEpochMilli(history.getStart())));
+        }
+        return rate;
+    }
+    
+    static RateHistory getRateHistory() {
+        return rateHistory;
+    }
+    
+    /**
+     * Use a rate history, ie one logged in a file, for the rates of past times and to record the 
+     * changes from now on. If it holds rates the last one becomes the default annual interest rate, 
+     * so the rate and its version survive a restart, otherwise the current rate is its first rate.
+     */
+    static void setRateHistory(RateHistory history) throws IOException {
+        synchronized (interestRateLock) {
+            InterestRate last = history.getLast();
+            if (last == null) {
+                history.append(System.currentTimeMillis(), interestRate.get());
+                rateHistory = history;
+            }
+            else {
+                rateHistory = history;
+                interestRate.set(last);
+                fireInterestRateChanged(last);
+            }
+        }
+    }
+    
+    private static RateHistory newRateHistory() {
+        RateHistory history = new RateHistory();
+        try {
+            history.append(System.currentTimeMillis(), interestRate.get());
+        }
+        catch (IOException e) {
+            // an in memory history does not do I/O
+            throw new UncheckedIOException(e);
+        }
+        return history;
+    }
+    
+    /**
+     * Add a listener that is called, on the updating thread, with the new snapshot each time the 
+     * default annual interest rate changes.
+     * 
+     * @param listener The listener.
+     */
+    static public void addInterestRateListener(Consumer<InterestRate> listener) {
+        interestRateListeners.add(listener);
+    }
+    
+    static public void removeInterestRateListener(Consumer<InterestRate> listener) {
+        interestRateListeners.remove(listener);
+    }
+    
+    // Log the next rate, forced to disk for a logged history, then publish it. Called holding 
+    // interestRateLock.
+    private static void publishInterestRate(InterestRate next) {
+        try {
+            rateHistory.append(System.currentTimeMillis(), next);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("The interest rate could not be logged and was not changed", e);
+        }
+        interestRate.set(next);
+        fireInterestRateChanged(next);
+    }
+    
+    private static void fireInterestRateChanged(InterestRate newRate) {
+        for (Consumer<InterestRate> listener : interestRateListeners) {
+            listener.accept(newRate);
+        }
+    }
+    
+    /**
+     * Get the current lending rules, the snapshot calculations started now use.
+     * 
+     * @return The rule set.
+     */
+    static public RuleSet getRuleSet() {
+        return ruleSet.get();
+    }
+    
+    /**
+     * Replace the lending rules. Calculations in progress finish with the rules they started with,
+     * calculations started afterwards use the new rules.
+     * 
+     * @param newRuleSet The new rules, see RuleSet.load.
+     * @return The replaced rule set.
+     */
+    static public RuleSet setRuleSet(RuleSet newRuleSet) {
+        if (newRuleSet == null) {
+            throw new IllegalArgumentException("The rule set cannot be null.");
+        }
+        RuleSet previous = ruleSet.getAndSet(newRuleSet);
+        for (Consumer<RuleSet> listener : ruleSetListeners) {
+            listener.accept(newRuleSet);
+        }
+        return previous;
+    }
+    
+    /**
+     * Add a listener that is called, on the updating thread, with the new rules each time the 
+     * rules are replaced.
+     * 
+     * @param listener The listener.
+     */
+    static public void addRuleSetListener(Consumer<RuleSet> listener) {
+        ruleSetListeners.add(listener);
+    }
+    
+    static public void removeRuleSetListener(Consumer<RuleSet> listener) {
+        ruleSetListeners.remove(listener);
+    }
+    
+    /**
+     * @return The rules bundled as rules.json on the classpath.
+     */
+    static RuleSet loadDefaultRules() {
+        try (InputStream in = MortgageCalculator.class.getResourceAsStream("/rules.json")) {
+            if (in == null) {
+                throw new IllegalStateException("rules.json is missing from the classpath.");
+            }
+            return RuleSet.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Get the annuity factor c(1 + c)^n/[(1 + c)^n - 1] of a loan, the payment is the principal
+     * times this factor. Rates within 5% of the default rate quoted to 0.01% are looked up in a 
+     * precomputed table, other rates are calculated with Math.pow, both give identical results.
+     * 
+     * @param annualInterestRate The annual interest rate, as percentage ie 2.5%.
+     * @param paymentsPerYear The number of payments per year.
+     * @param amortizationPeriod The period, in years, the loan is to be paid off.
+     * @return The annuity factor.
+     */
+    static double annuityFactor(double annualInterestRate, int paymentsPerYear, int amortizationPeriod) {
+        double factor = annuityFactors.lookup(annualInterestRate, paymentsPerYear, amortizationPeriod);
+        if (factor == factor) {
+            return factor;
+        }
+        return computeAnnuityFactor(annualInterestRate, paymentsPerYear, amortizationPeriod);
+    }
+    
+    /**
+     * Calculate the annuity factor c(1 + c)^n/[(1 + c)^n - 1] of a loan with Math.pow, see 
+     * annuityFactor.
+     */
+    static double computeAnnuityFactor(double annualInterestRate, int paymentsPerYear, int amortizationPeriod) {
+        double rate = annualInterestRate / (100.0 * paymentsPerYear);
+        double numPayments = amortizationPeriod * (double) paymentsPerYear;
+        double interestRateToNumPayments = Math.pow(1.0 + rate, numPayments);
+        return rate * interestRateToNumPayments / (interestRateToNumPayments - 1.0);
+    }
+    
+    /**
+     * Replace the annuity factor table if it was built for a rate other than the current default 
+     * rate or for other rules. Lookups use the old table until the new one is published, its 
+     * entries stay exact, only the window of rates and schedules it covers is off.
+     */
+    private static void rebuildAnnuityFactors() {
+        double defaultRate = interestRate.get().getAnnualInterestRate();
+        RuleSet rules = ruleSet.get();
+        if (annuityFactors.getDefaultRate() != defaultRate || annuityFactorsRules != rules) {
+            annuityFactors = new AnnuityFactorTable(defaultRate, rules.getSchedulePaymentsPerYear(), 
+                    rules.getMinAmortizationPeriod(), rules.getMaxAmortizationPeriod());
+            annuityFactorsRules = rules;
+        }
+    }
+    
+    /**
+     * Wait until the annuity factor table matches the current default rate, used by tests.
+     */
+    static void awaitAnnuityFactors() throws Exception {
+        annuityFactorBuilder.submit(MortgageCalculator::rebuildAnnuityFactors).get();
+    }
+    
+    /**
+     * @return The default rate the current annuity factor table was built for.
+     */
+    static double getAnnuityFactorsRate() {
+        return annuityFactors.getDefaultRate();
+    }
+    
+    /**
+     * Get the number of payments per year of a payment schedule, the schedule is case insensitive.
      * 
      * @param paymentSchedule The payment schedule, valid values are: Weekly, biweekly, monthly.
+     * @return The number of payments per year or zero if the schedule is unknown.
+     */
+    static public int paymentsPerYear(String paymentSchedule) {
+        return ruleSet.get().paymentsPerYear(paymentSchedule);
+    }
+    
+    /**
+     * Validate payment schedule and amortization amount.
+     * 
+     * @param paymentsPerYear The number of payments per year, zero for an unknown payment schedule.
      * @param amortizationPeriod The period, in years, the loan is to be paid off, Min 5 years, max 25 years.
-     * @param errors If values are invalid, error messages, are added to this list, the caller is 
-     * responsible to check this list and handle the errors appropriately.
+     * @return The CalculationErrors codes for the invalid values.
      */
-    private static void validateScheduleAndAmortization(String paymentSchedule, int amortizationPeriod,
-            ArrayList<String> errors) {
+    private static int validateScheduleAndAmortization(RuleSet rules, int paymentsPerYear, int amortizationPeriod) {
         
-        if (!schedule2PaymentsPerYear.containsKey(paymentSchedule.toLowerCase())) {
-            errors.add("Payment schedule must be one of " + schedule2PaymentsPerYear.keySet().toString());
+        int errors = CalculationErrors.NONE;
+        if (paymentsPerYear <= 0) {
+            errors |= CalculationErrors.PAYMENT_SCHEDULE;
         }
-        if (amortizationPeriod < minAmortizationPeriod || amortizationPeriod > maxAmortizationPeriod) {
-            errors.add("The amortization period must be greater than or equal to 5 and less than or equal to 25.");
+        if (!rules.validAmortizationPeriod(amortizationPeriod)) {
+            errors |= CalculationErrors.AMORTIZATION_PERIOD;
         }        
+        return errors;
+    }
+    
+    /**
+     * Validate the paymentAmount parameters.
+     * 
+     * @param minDownPayment The minimum down payment for askingPrice.
+     * @return The CalculationErrors codes for the invalid parameters.
+     */
+    static int validatePaymentAmount(RuleSet rules, double askingPrice, double downPayment, 
+            int paymentsPerYear, int amortizationPeriod, double annualInterestRate, double minDownPayment) {
+        
+        int errors = validateScheduleAndAmortization(rules, paymentsPerYear, amortizationPeriod);
+        
+        if (!validateInterestRate(annualInterestRate)) {
+            errors |= CalculationErrors.INTEREST_RATE;
+        }
+        if (downPayment > askingPrice) {
+            errors |= CalculationErrors.DOWN_PAYMENT_EXCEEDS_ASKING_PRICE;
+        }
+        if (downPayment < 0) {
+            errors |= CalculationErrors.NEGATIVE_DOWN_PAYMENT;
+        }
+        if (askingPrice < 0) {
+            errors |= CalculationErrors.NEGATIVE_ASKING_PRICE;
+        }
+        if (downPayment < minDownPayment) {
+            errors |= CalculationErrors.DOWN_PAYMENT_BELOW_MINIMUM;
+        }
+        return errors;
+    }
+    
+    /**
+     * Calculate the minimum down payment with the current rules, by default 5% of the first $500k 
+     * plus 10% of any amount above $500k.
+     * 
+     * @param askingPrice The asking price of the property.
+     * @return The minimum down payment.
+     */
+    static double minimumDownPayment(double askingPrice) {
+        return ruleSet.get().minimumDownPayment(askingPrice);
+    }
+    
+    /**
+     * The array version of minimumDownPayment, minDownPayments[i] is the minimum down payment of 
+     * askingPrices[i]. Both tiers are computed for every element and the result is selected, so 
+     * the loop body is straight line code.
+     * 
+     * @param askingPrices The asking prices of the properties.
+     * @param minDownPayments Receives the minimum down payments, the same length as askingPrices.
+     */
+    static public void minimumDownPayments(double[] askingPrices, double[] minDownPayments) {
+        final int n = askingPrices.length;
+        if (minDownPayments.length != n) {
+            throw new IllegalArgumentException("All arrays must have the same length.");
+        }
+        ruleSet.get().minimumDownPayments(askingPrices, minDownPayments);
     }
     
     /**
@@ -262,7 +1118,8 @@ public class MortgageCalculator {
     }
 
     /**
-     * Calculate the required insurance, only applicable for asking prices below 1million.
+     * Calculate the required insurance with the current rules, only applicable for asking prices 
+     * below 1million.
      * 
      * @param askingPrice The total amount of money required, the loan is equal to this amount plus 
      *        insurance minus the down payment.
@@ -270,17 +1127,27 @@ public class MortgageCalculator {
      *        (So $50k on a $750k mortgage)
      * @return The insurance amount for the loan.
      */
-    private static double calculateInsurance(double askingPrice, double downPayment) {
-
-        double dp2apRatio = downPayment / askingPrice, insurance = 0.;
-      
-        for (int i = 0; i < dp2atRatioBounds.length; i++) {
-            if (dp2apRatio < dp2atRatioBounds[i]) {
-                insurance = insurancePercentages[i]*askingPrice;
-                break;
-            }
+    static double calculateInsurance(double askingPrice, double downPayment) {
+        return ruleSet.get().insurance(askingPrice, downPayment);
+    }
+    
+    /**
+     * The array version of calculateInsurance, insurances[i] is the insurance of askingPrices[i] 
+     * and downPayments[i]. The tier of each element is found by selecting, from the highest bound 
+     * down, the percentage of every bound its ratio is below rather than breaking out of a loop 
+     * over the bounds, the selects can be compiled to conditional moves. The results are identical 
+     * to calculateInsurance.
+     * 
+     * @param askingPrices The asking prices of the properties.
+     * @param downPayments The down payments, the same length as askingPrices.
+     * @param insurances Receives the insurance amounts, the same length as askingPrices.
+     */
+    static public void calculateInsurance(double[] askingPrices, double[] downPayments, double[] insurances) {
+        final int n = askingPrices.length;
+        if (downPayments.length != n || insurances.length != n) {
+            throw new IllegalArgumentException("All arrays must have the same length.");
         }
-        return insurance;
+        ruleSet.get().insurance(askingPrices, downPayments, insurances);
     }
 }
 
@@ -4,19 +4,41 @@ Date: 05/30/2019
 */ 
 package mortgageCalculator;
 
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
 
+import javax.servlet.http.HttpServletRequest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.MissingServletRequestParameterException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 
 import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiResponse;
@@ -27,6 +49,19 @@ import io.swagger.annotations.ApiParam;
 @RestController
 public class MortgageCalculatorController {
 
+    static final String NDJSON = "application/x-ndjson";
+    
+    private static final Logger log = LoggerFactory.getLogger(MortgageCalculatorController.class);
+    private static final JsonFactory jsonFactory = new JsonFactory();
+    
+    private final ResultCache resultCache;
+    private final CalculatorMetrics calculatorMetrics;
+    
+    public MortgageCalculatorController(ResultCache resultCache, CalculatorMetrics calculatorMetrics) {
+        this.resultCache = resultCache;
+        this.calculatorMetrics = calculatorMetrics;
+    }
+
     protected static ResponseEntity<Map<?, ?>> resp(HttpStatus status, Object... keyValues) {
         assert (keyValues.length % 2 == 0);
         Map<String, Object> map = new HashMap<>();
@@ -35,6 +70,44 @@ public class MortgageCalculatorController {
         }
         return new ResponseEntity<Map<?, ?>>(map, status);
     }
+    
+    /**
+     * The error of an endpoint that streams its result, which can only return a 
+     * StreamingResponseBody, as a plain JSON body instead of a stream.
+     */
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<Map<?, ?>> error(ResponseStatusException e) {
+        return error(e.getStatus(), e.getReason());
+    }
+    
+    /**
+     * A missing or malformed parameter, answered with the same message as the fast path and the 
+     * reactive routes rather than Spring's.
+     */
+    @ExceptionHandler({MissingServletRequestParameterException.class, MethodArgumentTypeMismatchException.class})
+    public ResponseEntity<Map<?, ?>> parameterError(Exception e, HttpServletRequest request) {
+        String message;
+        if (e instanceof MissingServletRequestParameterException) {
+            message = String.format("Required parameter '%s' is not present", 
+                    ((MissingServletRequestParameterException) e).getParameterName());
+        }
+        else {
+            MethodArgumentTypeMismatchException mismatch = (MethodArgumentTypeMismatchException) e;
+            Class<?> type = mismatch.getRequiredType();
+            boolean integer = type == int.class || type == Integer.class || type == long.class || type == Long.class;
+            message = String.format(integer ? "Parameter '%s' is not an integer: %s" : "Parameter '%s' is not a number: %s",
+                    mismatch.getName(), mismatch.getValue());
+        }
+        calculatorMetrics.validationErrors((String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE),
+                new IllegalArgumentException(message, e));
+        return resp(HttpStatus.BAD_REQUEST, "error", message);
+    }
+    
+    // A JSON error whatever the streamed formats the request accepts.
+    static ResponseEntity<Map<?, ?>> error(HttpStatus status, String message) {
+        return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON)
+                .body(Collections.singletonMap("error", message));
+    }
     protected static ResponseEntity<Map<?, ?>> resp(HttpStatus status, Map<?, ?> map) {
         return new ResponseEntity<Map<?, ?>>(map, status);
     }
@@ -49,9 +122,73 @@ public class MortgageCalculatorController {
     @ApiResponses(value = { 
             @ApiResponse(code = 200, message = "Successfully calculated mortgage payment"),
             @ApiResponse(code = 400, message = "Unexpected request data")})
-    @RequestMapping(path = "/payment-amount", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(path = "/payment-amount", method = RequestMethod.GET, produces = {"application/json",
+            BinaryFormatConfiguration.CBOR, BinaryFormatConfiguration.SMILE})
     @ResponseStatus(HttpStatus.ACCEPTED)
     public ResponseEntity<Map<?, ?>> paymentAmount(
+            @ApiParam(defaultValue = "500000") @RequestParam("asking_price") double askingPrice, 
+            @ApiParam(defaultValue = "70000") @RequestParam("down_payment") double downPayment, 
+            @RequestParam(name = "annual_interest_rate", required = false) Double annualInterestRate,
+            @ApiParam(defaultValue = "monthly", allowableValues = "weekly, biweekly, monthly") @RequestParam("payment_schedule") String paymentSchedule, 
+            @ApiParam(defaultValue = "25", value = "The length of the loan in years, min 5 years, max 25 years", allowableValues = "range[5,25]") @RequestParam("amortization_period") int amortizationPeriod,
+            @ApiParam(value = "Use the default interest rate in effect at this ISO-8601 instant, ie 2019-05-30T12:00:00Z") @RequestParam(name = "as_of", required = false) String asOf,
+            @ApiParam(hidden = true) @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept) {
+        
+        try {
+            RequestTrace.lap(RequestTrace.VALIDATION);
+            InterestRate rate = defaultRate(asOf, annualInterestRate);
+            RequestTrace.lap(RequestTrace.CALCULATION);
+            Map<?, ?> map = rate == null ?
+                    resultCache.paymentAmount(askingPrice, downPayment, paymentSchedule, amortizationPeriod,
+                            annualInterestRate) :
+                    resultCache.paymentAmountAt(askingPrice, downPayment, paymentSchedule, amortizationPeriod, rate);
+            RequestTrace.lap(RequestTrace.HANDLER);
+            return HttpCaching.ok(map, HttpCaching.eTag('p', askingPrice, downPayment, paymentSchedule,
+                    amortizationPeriod, rate == null ? annualInterestRate : rate.getAnnualInterestRate(),
+                    rate == null ? 0 : rate.getVersion(), (String) map.get("rule_version"), accept));
+        }
+        catch (IllegalArgumentException e) {
+            RequestTrace.lap(RequestTrace.HANDLER);
+            calculatorMetrics.validationErrors("/payment-amount", e);
+            return resp(HttpStatus.BAD_REQUEST, "error", e.getMessage());
+        }
+    }
+    
+    @ApiOperation(value = "Get the recurring payment amounts of a batch of mortgages", response = Map.class)
+    @ApiResponses(value = { 
+            @ApiResponse(code = 200, message = "Successfully calculated the batch, each scenario holds its result or an error"),
+            @ApiResponse(code = 400, message = "Unexpected request data")})
+    @RequestMapping(path = "/payment-amount/batch", method = RequestMethod.POST, produces = {"application/json",
+            BinaryFormatConfiguration.CBOR, BinaryFormatConfiguration.SMILE})
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ResponseEntity<?> paymentAmounts(@RequestBody PaymentAmountBatch batch) {
+        
+        if (batch.askingPrice == null || batch.downPayment == null || batch.paymentSchedule == null 
+                || batch.amortizationPeriod == null)
+            return resp(HttpStatus.BAD_REQUEST, "error", 
+                    "asking_price, down_payment, payment_schedule and amortization_period are required.");
+        
+        try {
+            RequestTrace.lap(RequestTrace.CALCULATION);
+            List<Map<?, ?>> results = MortgageCalculator.paymentAmounts(batch.askingPrice, batch.downPayment, 
+                    batch.paymentSchedule, batch.amortizationPeriod, batch.annualInterestRate);
+            RequestTrace.lap(RequestTrace.HANDLER);
+            return new ResponseEntity<List<Map<?, ?>>>(results, HttpStatus.OK);
+        }
+        catch (IllegalArgumentException e) {
+            RequestTrace.lap(RequestTrace.HANDLER);
+            calculatorMetrics.validationErrors("/payment-amount/batch", e);
+            return resp(HttpStatus.BAD_REQUEST, "error", e.getMessage());
+        }
+    }
+    
+    @ApiOperation(value = "Get the amortization schedule of a mortgage as newline delimited JSON, one payment per line")
+    @ApiResponses(value = { 
+            @ApiResponse(code = 200, message = "Successfully calculated the amortization schedule"),
+            @ApiResponse(code = 400, message = "Unexpected request data")})
+    @RequestMapping(path = "/amortization-schedule", method = RequestMethod.GET, produces = {NDJSON, "application/json"})
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ResponseEntity<StreamingResponseBody> amortizationSchedule(
             @ApiParam(defaultValue = "500000") @RequestParam("asking_price") double askingPrice, 
             @ApiParam(defaultValue = "70000") @RequestParam("down_payment") double downPayment, 
             @RequestParam(name = "annual_interest_rate", required = false) Double annualInterestRate,
@@ -61,73 +198,319 @@ public class MortgageCalculatorController {
         if (annualInterestRate == null)
             annualInterestRate = MortgageCalculator.getAnnualInterestRate();
         
+        final AmortizationSchedule schedule;
         try {
-            Map<?, ?> map = MortgageCalculator.paymentAmount(askingPrice, downPayment, 
+            RequestTrace.lap(RequestTrace.CALCULATION);
+            schedule = MortgageCalculator.amortizationSchedule(askingPrice, downPayment, 
                     paymentSchedule, amortizationPeriod, annualInterestRate);
-            return resp(HttpStatus.OK, map);            
+            RequestTrace.lap(RequestTrace.HANDLER);
         }
         catch (IllegalArgumentException e) {
+            RequestTrace.lap(RequestTrace.HANDLER);
+            calculatorMetrics.validationErrors("/amortization-schedule", e);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+                // rows are separated by the newlines written below instead of Jackson's default space
+                generator.setRootValueSeparator(null);
+                while (schedule.next()) {
+                    generator.writeStartObject();
+                    generator.writeNumberField("payment_number", schedule.getPaymentNumber());
+                    generator.writeNumberField("payment", schedule.getPayment());
+                    generator.writeNumberField("interest", schedule.getInterest());
+                    generator.writeNumberField("principal", schedule.getPrincipal());
+                    generator.writeNumberField("balance", schedule.getBalance());
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON)).body(body);
+    }
+    
+    @ApiOperation(value = "Compare the payoff and interest of prepayment strategies on a mortgage", response = Map.class)
+    @ApiResponses(value = { 
+            @ApiResponse(code = 200, message = "Successfully simulated the strategies"),
+            @ApiResponse(code = 400, message = "Unexpected request data")})
+    @RequestMapping(path = "/prepayment-simulation", method = RequestMethod.POST, produces = "application/json")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ResponseEntity<Map<?, ?>> prepaymentSimulation(@RequestBody PrepaymentRequest request) {
+        
+        if (request.askingPrice == null || request.downPayment == null || request.paymentSchedule == null 
+                || request.amortizationPeriod == null)
+            return resp(HttpStatus.BAD_REQUEST, "error", 
+                    "asking_price, down_payment, payment_schedule and amortization_period are required.");
+        
+        Prepayment[][] strategies = request.strategies == null ? new Prepayment[][] {{}} : request.strategies;
+        try {
+            PrepaymentSimulation simulation = request.annualInterestRate == null ?
+                    MortgageCalculator.prepaymentSimulation(request.askingPrice, request.downPayment, 
+                            request.paymentSchedule, request.amortizationPeriod, request.accelerated, strategies, 
+                            request.includeSchedules) :
+                    MortgageCalculator.prepaymentSimulation(request.askingPrice, request.downPayment, 
+                            request.paymentSchedule, request.amortizationPeriod, request.annualInterestRate, 
+                            request.accelerated, strategies, request.includeSchedules);
+            return resp(HttpStatus.OK, simulation.toMap(request.includeSchedules));
+        }
+        catch (IllegalArgumentException e) {
+            calculatorMetrics.validationErrors("/prepayment-simulation", e);
             return resp(HttpStatus.BAD_REQUEST, "error", e.getMessage());
         }
     }
     
+    @ApiOperation(value = "Simulate the payments of a mortgage that renews at random interest rates", response = Map.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully simulated the rate paths, the payment and rate percentiles of each renewal and the distribution of the largest payment shock"),
+            @ApiResponse(code = 400, message = "Unexpected request data")})
+    @RequestMapping(path = "/rate-simulation", method = RequestMethod.GET, produces = "application/json")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ResponseEntity<Map<?, ?>> rateSimulation(
+            @ApiParam(defaultValue = "500000") @RequestParam("asking_price") double askingPrice,
+            @ApiParam(defaultValue = "70000") @RequestParam("down_payment") double downPayment,
+            @ApiParam(defaultValue = "monthly", allowableValues = "weekly, biweekly, monthly") @RequestParam("payment_schedule") String paymentSchedule,
+            @ApiParam(defaultValue = "25", allowableValues = "range[5,25]") @RequestParam("amortization_period") int amortizationPeriod,
+            @ApiParam(value = "The rate of the first term, if omitted the default interest rate") @RequestParam(name = "annual_interest_rate", required = false) Double annualInterestRate,
+            @ApiParam(value = "The number of years between renewals") @RequestParam(name = "term", defaultValue = "5") int term,
+            @ApiParam(value = "The rate the rates revert to, if omitted the rate of the first term") @RequestParam(name = "long_run_rate", required = false) Double longRunRate,
+            @ApiParam(value = "The speed of reversion per year") @RequestParam(name = "reversion_speed", defaultValue = "0.25") double reversionSpeed,
+            @ApiParam(value = "The standard deviation of the annual rate change, in percentage points") @RequestParam(name = "volatility", defaultValue = "1.0") double volatility,
+            @ApiParam(value = "max 1000000") @RequestParam(name = "paths", defaultValue = "10000") int paths,
+            @ApiParam(value = "If omitted a random seed, it is returned to repeat the simulation") @RequestParam(name = "seed", required = false) Long seed) {
+
+        if (seed == null)
+            seed = ThreadLocalRandom.current().nextLong();
+        
+        try {
+            RateSimulation simulation;
+            if (annualInterestRate == null) {
+                InterestRate rate = MortgageCalculator.getInterestRate();
+                simulation = MortgageCalculator.rateSimulation(askingPrice, downPayment, paymentSchedule, 
+                        amortizationPeriod, rate.getAnnualInterestRate(), rate.getVersion(), term, 
+                        longRunRate == null ? rate.getAnnualInterestRate() : longRunRate, reversionSpeed, 
+                        volatility, paths, seed);
+            }
+            else {
+                simulation = MortgageCalculator.rateSimulation(askingPrice, downPayment, paymentSchedule, 
+                        amortizationPeriod, annualInterestRate, term, 
+                        longRunRate == null ? annualInterestRate : longRunRate, reversionSpeed, volatility, 
+                        paths, seed);
+            }
+            return resp(HttpStatus.OK, simulation.toMap());
+        }
+        catch (IllegalArgumentException e) {
+            calculatorMetrics.validationErrors("/rate-simulation", e);
+            return resp(HttpStatus.BAD_REQUEST, "error", e.getMessage());
+        }
+    }
+    
+    @ApiOperation(value = "Get the recurring payments of a loan for a range of interest rates and amortization periods", response = Map.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully calculated the payment grid, payments[i][j] is the payment at rates[i] over amortization_periods[j] years"),
+            @ApiResponse(code = 400, message = "Unexpected request data")})
+    @RequestMapping(path = "/payment-grid", method = RequestMethod.GET, produces = "application/json")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ResponseEntity<Map<?, ?>> paymentGrid(
+            @ApiParam(defaultValue = "400000") @RequestParam("principal") double principal,
+            @ApiParam(defaultValue = "monthly", allowableValues = "weekly, biweekly, monthly") @RequestParam("payment_schedule") String paymentSchedule,
+            @ApiParam(defaultValue = "1") @RequestParam("min_rate") double minRate,
+            @ApiParam(defaultValue = "8") @RequestParam("max_rate") double maxRate,
+            @ApiParam(defaultValue = "0.25") @RequestParam("rate_step") double rateStep,
+            @ApiParam(value = "min 5 years", allowableValues = "range[5,25]") @RequestParam(name = "min_amortization_period", defaultValue = "5") int minAmortizationPeriod,
+            @ApiParam(value = "max 25 years", allowableValues = "range[5,25]") @RequestParam(name = "max_amortization_period", defaultValue = "25") int maxAmortizationPeriod,
+            @RequestParam(name = "amortization_step", defaultValue = "1") int amortizationStep) {
+
+        try {
+            PaymentGrid grid = MortgageCalculator.paymentGrid(principal, paymentSchedule, minRate, maxRate,
+                    rateStep, minAmortizationPeriod, maxAmortizationPeriod, amortizationStep);
+            return resp(HttpStatus.OK, grid.toMap());
+        }
+        catch (IllegalArgumentException e) {
+            calculatorMetrics.validationErrors("/payment-grid", e);
+            return resp(HttpStatus.BAD_REQUEST, "error", e.getMessage());
+        }
+    }
+
     @ApiOperation(value = "Get the maximum mortgage amount", response = Map.class)
     @ApiResponses(value = { 
             @ApiResponse(code = 200, message = "Successfully calculated the maximum mortgage amount"),
             @ApiResponse(code = 400, message = "Unexpected request data")})
-    @RequestMapping(path = "/mortgage-amount", method = RequestMethod.GET, produces = "application/json")
+    @RequestMapping(path = "/mortgage-amount", method = RequestMethod.GET, produces = {"application/json",
+            BinaryFormatConfiguration.CBOR, BinaryFormatConfiguration.SMILE})
     @ResponseStatus(HttpStatus.ACCEPTED)
     public ResponseEntity<Map<?, ?>> mortgageAmount(
             @ApiParam(defaultValue = "2000") @RequestParam("payment") double payment, 
             @RequestParam(name = "down_payment", required = false) Double downPayment,
             @RequestParam(name = "annual_interest_rate", required = false) Double annualInterestRate,
             @ApiParam(defaultValue = "monthly", allowableValues = "weekly, biweekly, monthly") @RequestParam("payment_schedule") String paymentSchedule, 
-            @ApiParam(defaultValue = "25", value = "The length of the loan in years, min 5 years, max 25 years", allowableValues = "range[5,25]") @RequestParam("amortization_period") int amortizationPeriod) {
+            @ApiParam(defaultValue = "25", value = "The length of the loan in years, min 5 years, max 25 years", allowableValues = "range[5,25]") @RequestParam("amortization_period") int amortizationPeriod,
+            @ApiParam(value = "Use the default interest rate in effect at this ISO-8601 instant, ie 2019-05-30T12:00:00Z") @RequestParam(name = "as_of", required = false) String asOf,
+            @ApiParam(hidden = true) @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept) {
         
-        if (annualInterestRate == null)
-            annualInterestRate = MortgageCalculator.getAnnualInterestRate();
         if (downPayment == null)
             downPayment = 0.0;
         
         try {
-            Map<?, ?> map = MortgageCalculator.mortgageAmount(payment, downPayment, paymentSchedule, 
-                    amortizationPeriod, annualInterestRate);
+            RequestTrace.lap(RequestTrace.VALIDATION);
+            InterestRate rate = defaultRate(asOf, annualInterestRate);
+            RequestTrace.lap(RequestTrace.CALCULATION);
+            Map<?, ?> map = rate == null ?
+                    resultCache.mortgageAmount(payment, downPayment, paymentSchedule, amortizationPeriod,
+                            annualInterestRate) :
+                    resultCache.mortgageAmountAt(payment, downPayment, paymentSchedule, amortizationPeriod, rate);
+            RequestTrace.lap(RequestTrace.HANDLER);
+            return HttpCaching.ok(map, HttpCaching.eTag('m', payment, downPayment, paymentSchedule,
+                    amortizationPeriod, rate == null ? annualInterestRate : rate.getAnnualInterestRate(),
+                    rate == null ? 0 : rate.getVersion(), (String) map.get("rule_version"), accept));
+        }
+        catch (IllegalArgumentException e) {
+            RequestTrace.lap(RequestTrace.HANDLER);
+            calculatorMetrics.validationErrors("/mortgage-amount", e);
+            return resp(HttpStatus.BAD_REQUEST, "error", e.getMessage());
+        }
+    }
+
+    @ApiOperation(value = "Get the maximum asking price a payment can afford, including mortgage insurance", response = Map.class)
+    @ApiResponses(value = { 
+            @ApiResponse(code = 200, message = "Successfully calculated the maximum asking price"),
+            @ApiResponse(code = 400, message = "Unexpected request data")})
+    @RequestMapping(path = "/max-asking-price", method = RequestMethod.GET, produces = {"application/json",
+            BinaryFormatConfiguration.CBOR, BinaryFormatConfiguration.SMILE})
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ResponseEntity<Map<?, ?>> maxAskingPrice(
+            @ApiParam(defaultValue = "2000") @RequestParam("payment") double payment, 
+            @ApiParam(defaultValue = "50000") @RequestParam("down_payment") double downPayment,
+            @RequestParam(name = "annual_interest_rate", required = false) Double annualInterestRate,
+            @ApiParam(defaultValue = "monthly", allowableValues = "weekly, biweekly, monthly") @RequestParam("payment_schedule") String paymentSchedule, 
+            @ApiParam(defaultValue = "25", value = "The length of the loan in years, min 5 years, max 25 years", allowableValues = "range[5,25]") @RequestParam("amortization_period") int amortizationPeriod) {
+        
+        try {
+            RequestTrace.lap(RequestTrace.CALCULATION);
+            Map<?, ?> map = annualInterestRate == null ? 
+                MortgageCalculator.maxAskingPrice(payment, downPayment, paymentSchedule, amortizationPeriod) : 
+                MortgageCalculator.maxAskingPrice(payment, downPayment, paymentSchedule, amortizationPeriod, 
+                        annualInterestRate);
+            RequestTrace.lap(RequestTrace.HANDLER);
             return resp(HttpStatus.OK, map);            
         }
         catch (IllegalArgumentException e) {
+            RequestTrace.lap(RequestTrace.HANDLER);
+            calculatorMetrics.validationErrors("/max-asking-price", e);
             return resp(HttpStatus.BAD_REQUEST, "error", e.getMessage());
         }
     }
 
     @ApiOperation(value = "Get interest rate", response = Map.class)
     @ApiResponses(value = { 
-            @ApiResponse(code = 200, message = "Successfully retrieved interest rate", response = Map.class)})
+            @ApiResponse(code = 200, message = "Successfully retrieved interest rate", response = Map.class),
+            @ApiResponse(code = 400, message = "Invalid as_of")})
     @RequestMapping(path = "/interest-rate", method = RequestMethod.GET, produces = "application/json")
     @ResponseStatus(HttpStatus.ACCEPTED)
-    public ResponseEntity<Map<?, ?>> getAnnualInterestRate() {
-        return resp(HttpStatus.OK, "interest_rate", MortgageCalculator.getAnnualInterestRate()); 
+    public ResponseEntity<Map<?, ?>> getAnnualInterestRate(
+            @ApiParam(value = "Get the interest rate in effect at this ISO-8601 instant, ie 2019-05-30T12:00:00Z") 
+            @RequestParam(name = "as_of", required = false) String asOf) {
+        InterestRate rate;
+        try {
+            rate = asOf == null ? MortgageCalculator.getInterestRate() : rateAsOf(asOf, null);
+        }
+        catch (IllegalArgumentException e) {
+            calculatorMetrics.validationErrors("/interest-rate", e);
+            return resp(HttpStatus.BAD_REQUEST, "error", e.getMessage());
+        }
+        return resp(HttpStatus.OK, "interest_rate", rate.getAnnualInterestRate(), "version", rate.getVersion()); 
+    }
+
+    /**
+     * @return The snapshot of the default interest rate a calculation uses, the current one or the
+     *         one in effect at asOf, null if a rate is given.
+     * @throws IllegalArgumentException See rateAsOf.
+     */
+    static InterestRate defaultRate(String asOf, Double annualInterestRate) {
+        if (asOf == null && annualInterestRate == null) {
+            // read once so the result and its ETag have the same rate
+            return MortgageCalculator.getInterestRate();
+        }
+        return rateAsOf(asOf, annualInterestRate);
+    }
+
+    /**
+     * @return The default interest rate in effect at asOf, null if asOf is null.
+     * @throws IllegalArgumentException If asOf is not an instant or is before the rate history, or
+     *         if a rate is given as well.
+     */
+    static InterestRate rateAsOf(String asOf, Double annualInterestRate) {
+        if (asOf == null) {
+            return null;
+        }
+        if (annualInterestRate != null) {
+            throw new IllegalArgumentException("Parameters 'as_of' and 'annual_interest_rate' can not both be given.");
+        }
+        return MortgageCalculator.getInterestRate(RateHistory.parseTime(asOf));
     }
 
     @ApiOperation(value = "Set interest rate", response = Map.class)
     @ApiResponses(value = { 
             @ApiResponse(code = 200, message = "Successfully set interest rate"),
             @ApiResponse(code = 400, message = "Invalid interest rate"),
+            @ApiResponse(code = 409, message = "The interest rate version is not expected_version"),
+            @ApiResponse(code = 503, message = "The interest rate could not be logged and was not changed"),
             })
     @RequestMapping(path = "/interest-rate/{annualInterestRate}", method = RequestMethod.PATCH, produces = "application/json")
     @ResponseStatus(HttpStatus.ACCEPTED)
     public ResponseEntity<Map<?, ?>> setAnnualInterestRate(
             @ApiParam(value = "The new interest rate, must be greater than 0 and less than or equal to 100.", allowableValues = "range[0,100]") 
-            @PathVariable(name = "annualInterestRate", required = true) double newAnnualInterestRate) {
+            @PathVariable(name = "annualInterestRate", required = true) double newAnnualInterestRate,
+            @ApiParam(value = "Only set the rate if the current rate has this version") 
+            @RequestParam(name = "expected_version", required = false) Long expectedVersion) {
         
-        double oldAnnualInterestRate = MortgageCalculator.getAnnualInterestRate();
-        if (MortgageCalculator.setAnnualInterestRate(newAnnualInterestRate)) 
-            return resp(HttpStatus.OK, "old_interest_rate", oldAnnualInterestRate, "new_interest_rate", newAnnualInterestRate); 
-        else 
+        InterestRate oldRate;
+        try {
+            oldRate = expectedVersion == null ? 
+                    MortgageCalculator.updateAnnualInterestRate(newAnnualInterestRate) :
+                    MortgageCalculator.compareAndSetAnnualInterestRate(expectedVersion, newAnnualInterestRate);
+        }
+        catch (IllegalArgumentException e) {
+            calculatorMetrics.validationErrors("/interest-rate", e);
             return resp(HttpStatus.BAD_REQUEST, "error", 
                     String.format("The intest rate, %1.3f, must be greater than zero and less than or equal to 100", newAnnualInterestRate));
+        }
+        catch (UncheckedIOException e) {
+            // the rate history log can not be written, the rate is unchanged and a retry may succeed
+            log.error("The interest rate was not changed to {}", newAnnualInterestRate, e);
+            return resp(HttpStatus.SERVICE_UNAVAILABLE, "error", e.getMessage());
+        }
+        if (oldRate == null) {
+            return resp(HttpStatus.CONFLICT, "error", 
+                    String.format("The interest rate version is not %d", expectedVersion),
+                    "version", MortgageCalculator.getInterestRate().getVersion());
+        }
+        return resp(HttpStatus.OK, "old_interest_rate", oldRate.getAnnualInterestRate(), "new_interest_rate", newAnnualInterestRate,
+                "old_version", oldRate.getVersion(), "new_version", oldRate.getVersion() + 1); 
     }
 
-    public static void main(String[] args) {
+    @ApiOperation(value = "Get the lending rules", response = Map.class)
+    @ApiResponses(value = { 
+            @ApiResponse(code = 200, message = "Successfully retrieved the lending rules", response = Map.class)})
+    @RequestMapping(path = "/rules", method = RequestMethod.GET, produces = "application/json")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ResponseEntity<Map<?, ?>> getRules() {
+        return resp(HttpStatus.OK, MortgageCalculator.getRuleSet().toMap());
+    }
+
+    @ApiOperation(value = "Get the result cache statistics", response = Map.class)
+    @RequestMapping(path = "/cache-stats", method = RequestMethod.GET, produces = "application/json")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public ResponseEntity<Map<?, ?>> cacheStats() {
+        return resp(HttpStatus.OK, resultCache.stats());
+    }
+
+    public static void main(String[] args) throws Exception {
+        
+        if (args.length > 0 && args[0].equals("bulk-score")) {
+            BulkScorer.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
         
         String ENV_PORT = System.getenv().get("PORT");
         String ENV_DYNO = System.getenv().get("DYNO");
@@ -0,0 +1,82 @@
+package mortgageCalculator;
+
+import java.util.Map;
+
+/**
+ * MortgageResult - The primitive result of MortgageCalculator.mortgageAmount. Instances are mutable
+ * so a caller can reuse one instance across many calculations without allocating.
+ */
+public final class MortgageResult {
+
+    private double mortgageAmount;
+    private double numPayments;
+    private double rate;
+    private double paymentsPerYear;
+    private long rateVersion;
+    private String ruleVersion;
+
+    void set(double mortgageAmount, double numPayments, double rate, double paymentsPerYear, String ruleVersion) {
+        this.mortgageAmount = mortgageAmount;
+        this.numPayments = numPayments;
+        this.rate = rate;
+        this.paymentsPerYear = paymentsPerYear;
+        this.rateVersion = 0;
+        this.ruleVersion = ruleVersion;
+    }
+
+    /**
+     * @return The maximum mortgage amount, including the down payment.
+     */
+    public double getMortgageAmount() {
+        return mortgageAmount;
+    }
+
+    public double getNumPayments() {
+        return numPayments;
+    }
+
+    /**
+     * @return The interest rate per payment.
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    public double getPaymentsPerYear() {
+        return paymentsPerYear;
+    }
+
+    void setRateVersion(long rateVersion) {
+        this.rateVersion = rateVersion;
+    }
+
+    /**
+     * @return The version of the default interest rate used, zero if the rate was passed in.
+     */
+    public long getRateVersion() {
+        return rateVersion;
+    }
+
+    /**
+     * @return The version of the lending rules the result was calculated with.
+     */
+    public String getRuleVersion() {
+        return ruleVersion;
+    }
+
+    /**
+     * @return The result in the map format returned by the REST API.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<?, ?> toMap() {
+        Map<String, Object> map = (Map<String, Object>) MortgageCalculator.createMap("mortgage_amount", mortgageAmount,
+                "num_payments", numPayments,
+                "rate", rate,
+                "payments_per_year", paymentsPerYear);
+        map.put("rule_version", ruleVersion);
+        if (rateVersion != 0) {
+            map.put("rate_version", rateVersion);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,41 @@
+package mortgageCalculator;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.boot.actuate.metrics.web.servlet.DefaultWebMvcTagsProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+
+/**
+ * OutcomeTagsProvider - Adds an outcome tag, SUCCESS, CLIENT_ERROR or SERVER_ERROR, to the
+ * http.server.requests metrics so successful and rejected calculations can be counted per endpoint
+ * without listing every status code.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class OutcomeTagsProvider extends DefaultWebMvcTagsProvider {
+
+    @Override
+    public Iterable<Tag> getTags(HttpServletRequest request, HttpServletResponse response, Object handler,
+            Throwable exception) {
+        return Tags.of(super.getTags(request, response, handler, exception)).and(outcome(response));
+    }
+
+    private static Tag outcome(HttpServletResponse response) {
+        if (response == null) {
+            return Tag.of("outcome", "UNKNOWN");
+        }
+        int status = response.getStatus();
+        if (status >= 500) {
+            return Tag.of("outcome", "SERVER_ERROR");
+        }
+        if (status >= 400) {
+            return Tag.of("outcome", "CLIENT_ERROR");
+        }
+        return Tag.of("outcome", "SUCCESS");
+    }
+}
@@ -0,0 +1,34 @@
+package mortgageCalculator;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * PaymentAmountBatch - The request body of the batch payment amount endpoint. Scenarios are passed
+ * as columns so they bind directly to primitive arrays, the i'th element of each array describes
+ * the i'th scenario.
+ */
+public class PaymentAmountBatch {
+
+    @ApiModelProperty(required = true, example = "[500000, 750000]")
+    @JsonProperty("asking_price")
+    public double[] askingPrice;
+
+    @ApiModelProperty(required = true, example = "[70000, 50000]")
+    @JsonProperty("down_payment")
+    public double[] downPayment;
+
+    @ApiModelProperty(required = true, example = "[\"monthly\", \"biweekly\"]")
+    @JsonProperty("payment_schedule")
+    public String[] paymentSchedule;
+
+    @ApiModelProperty(required = true, example = "[25, 20]")
+    @JsonProperty("amortization_period")
+    public int[] amortizationPeriod;
+
+    @ApiModelProperty(value = "If omitted the default interest rate is used for all scenarios",
+            example = "[2.5, 3.0]")
+    @JsonProperty("annual_interest_rate")
+    public double[] annualInterestRate;
+}
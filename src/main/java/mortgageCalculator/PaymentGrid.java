@@ -0,0 +1,132 @@
+package mortgageCalculator;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * PaymentGrid - The recurring payments of one principal over a matrix of annual interest rates and
+ * amortization periods, row i holds the payments at rates[i] and column j the payments over
+ * amortizationPeriods[j] years.
+ *
+ * The amortization periods are evenly spaced so (1 + c)^n of each column is the previous column's
+ * times (1 + c)^(paymentsPerYear * step), each row needs two Math.pow calls instead of one per cell.
+ * Grids with more than PARALLEL_THRESHOLD cells are split into row ranges computed on the common
+ * fork-join pool.
+ */
+public final class PaymentGrid {
+
+    // Grids larger than this, in cells, are computed in parallel.
+    static final int PARALLEL_THRESHOLD = 4096;
+
+    private final double principal;
+    private final int paymentsPerYear;
+    private final double[] rates;
+    private final int[] amortizationPeriods;
+    private final int amortizationStep;
+    private final double[][] payments;
+
+    /**
+     * @param principal The loan principal.
+     * @param paymentsPerYear The number of payments per year.
+     * @param rates The annual interest rates of the rows, as percentage ie 2.5%.
+     * @param minAmortizationPeriod The amortization period, in years, of the first column.
+     * @param amortizationStep The number of years between columns.
+     * @param columns The number of columns.
+     */
+    PaymentGrid(double principal, int paymentsPerYear, double[] rates, int minAmortizationPeriod,
+            int amortizationStep, int columns) {
+        this.principal = principal;
+        this.paymentsPerYear = paymentsPerYear;
+        this.rates = rates;
+        this.amortizationStep = amortizationStep;
+        this.amortizationPeriods = new int[columns];
+        for (int j = 0; j < columns; j++) {
+            amortizationPeriods[j] = minAmortizationPeriod + j * amortizationStep;
+        }
+        this.payments = new double[rates.length][columns];
+
+        if ((long) rates.length * columns > PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new Rows(0, rates.length));
+        }
+        else {
+            computeRows(0, rates.length);
+        }
+    }
+
+    private void computeRows(int from, int to) {
+        for (int i = from; i < to; i++) {
+            double[] row = payments[i];
+            // calculate the payments, P = L[c(1 + c)^n]/[(1 + c)^n - 1]
+            double rate = rates[i] / (100.0 * paymentsPerYear);
+            double growth = Math.pow(1.0 + rate, amortizationPeriods[0] * (double) paymentsPerYear);
+            double columnGrowth = Math.pow(1.0 + rate, amortizationStep * (double) paymentsPerYear);
+            for (int j = 0; j < row.length; j++) {
+                row[j] = principal * rate * growth / (growth - 1.0);
+                growth *= columnGrowth;
+            }
+        }
+    }
+
+    /**
+     * Computes a range of rows, splitting it in halves until each part is below the threshold.
+     */
+    private final class Rows extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        Rows(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1 || (long) (to - from) * amortizationPeriods.length <= PARALLEL_THRESHOLD) {
+                computeRows(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Rows(from, middle), new Rows(middle, to));
+        }
+    }
+
+    public double getPrincipal() {
+        return principal;
+    }
+
+    public int getPaymentsPerYear() {
+        return paymentsPerYear;
+    }
+
+    /**
+     * @return The annual interest rate of each row.
+     */
+    public double[] getRates() {
+        return rates.clone();
+    }
+
+    /**
+     * @return The amortization period, in years, of each column.
+     */
+    public int[] getAmortizationPeriods() {
+        return amortizationPeriods.clone();
+    }
+
+    /**
+     * @return The payment at rates[row] over amortizationPeriods[column] years.
+     */
+    public double getPayment(int row, int column) {
+        return payments[row][column];
+    }
+
+    public Map<?, ?> toMap() {
+        return MortgageCalculator.createMap("principal", principal,
+                "payments_per_year", paymentsPerYear,
+                "rates", rates,
+                "amortization_periods", amortizationPeriods,
+                "payments", payments);
+    }
+}
@@ -0,0 +1,148 @@
+package mortgageCalculator;
+
+import java.util.Map;
+
+/**
+ * PaymentResult - The primitive result of MortgageCalculator.paymentAmount. Instances are mutable
+ * so a caller can reuse one instance across many calculations without allocating.
+ */
+public final class PaymentResult {
+
+    private double payment;
+    private double numPayments;
+    private double rate;
+    private double paymentsPerYear;
+    private long rateVersion;
+    private double minimumDownPayment;
+    private double askingPrice;
+    private double downPayment;
+    private double insurance;
+    private double principal;
+    private String ruleVersion;
+
+    void set(double payment, double numPayments, double rate, double paymentsPerYear,
+            double askingPrice, double downPayment, double insurance, double principal, String ruleVersion) {
+        this.payment = payment;
+        this.numPayments = numPayments;
+        this.rate = rate;
+        this.paymentsPerYear = paymentsPerYear;
+        this.rateVersion = 0;
+        this.askingPrice = askingPrice;
+        this.downPayment = downPayment;
+        this.insurance = insurance;
+        this.principal = principal;
+        this.ruleVersion = ruleVersion;
+    }
+
+    void setMinimumDownPayment(double minimumDownPayment) {
+        this.minimumDownPayment = minimumDownPayment;
+    }
+
+    public double getPayment() {
+        return payment;
+    }
+
+    public double getNumPayments() {
+        return numPayments;
+    }
+
+    /**
+     * @return The interest rate per payment.
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    public double getPaymentsPerYear() {
+        return paymentsPerYear;
+    }
+
+    void setRateVersion(long rateVersion) {
+        this.rateVersion = rateVersion;
+    }
+
+    /**
+     * @return The version of the default interest rate used, zero if the rate was passed in.
+     */
+    public long getRateVersion() {
+        return rateVersion;
+    }
+
+    /**
+     * The minimum down payment is also set when the calculation fails validation.
+     */
+    public double getMinimumDownPayment() {
+        return minimumDownPayment;
+    }
+
+    public double getAskingPrice() {
+        return askingPrice;
+    }
+
+    public double getDownPayment() {
+        return downPayment;
+    }
+
+    public double getDownPaymentToAskingPriceRatio() {
+        return downPayment / askingPrice;
+    }
+
+    public double getInsurance() {
+        return insurance;
+    }
+
+    /**
+     * @return The loan principal, the asking price plus insurance minus the down payment.
+     */
+    public double getPrincipal() {
+        return principal;
+    }
+
+    public double getLoanTotal() {
+        return numPayments * payment;
+    }
+
+    /**
+     * @return The version of the lending rules the result was calculated with.
+     */
+    public String getRuleVersion() {
+        return ruleVersion;
+    }
+
+    /**
+     * @return The result in the map format returned by the REST API.
+     */
+    public Map<?, ?> toMap() {
+        return toMap(getPrincipalFormula());
+    }
+
+    /**
+     * @return The "principal" entry of the map, the principal = insurance + asking price - down
+     *         payment.
+     */
+    String getPrincipalFormula() {
+        return String.format("%6.1f = %6.1f + %6.1f - %6.1f", principal, insurance, askingPrice, downPayment);
+    }
+
+    /**
+     * toMap with the principal formula formatted by the caller, formatting it costs more than the
+     * rest of the map.
+     */
+    @SuppressWarnings("unchecked")
+    Map<?, ?> toMap(String principalFormula) {
+        Map<String, Object> map = (Map<String, Object>) MortgageCalculator.createMap("payment", payment,
+                "num_payments", numPayments,
+                "rate", rate,
+                "payments_per_year", paymentsPerYear,
+                "minimum_down_payment", minimumDownPayment,
+                "downpayment_to_askingprice_ratio", getDownPaymentToAskingPriceRatio(),
+                "insurance", insurance,
+                "loan_total", getLoanTotal(),
+                "principal", principalFormula);
+        map.put("rule_version", ruleVersion);
+        if (rateVersion != 0) {
+            map.put("rate_version", rateVersion);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,42 @@
+package mortgageCalculator;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * Prepayment - One event of a prepayment strategy, a lump sum paid with a payment, the same lump
+ * sum paid every year, or a permanent increase of the recurring payment.
+ */
+public class Prepayment {
+
+    public enum Type {
+        /** The amount is paid once, with payment paymentNumber. */
+        @JsonProperty("lump_sum") LUMP_SUM,
+        /** The amount is paid with payment paymentNumber and every paymentsPerYear payments after it. */
+        @JsonProperty("annual_lump_sum") ANNUAL_LUMP_SUM,
+        /** The recurring payment grows by the amount from payment paymentNumber on. */
+        @JsonProperty("payment_increase") PAYMENT_INCREASE
+    }
+
+    @ApiModelProperty(required = true, example = "lump_sum")
+    @JsonProperty("type")
+    public Type type;
+
+    @ApiModelProperty(required = true, value = "The payment the event applies to, starting at 1", example = "12")
+    @JsonProperty("payment_number")
+    public int paymentNumber;
+
+    @ApiModelProperty(required = true, example = "10000")
+    @JsonProperty("amount")
+    public double amount;
+
+    public Prepayment() {
+    }
+
+    public Prepayment(Type type, int paymentNumber, double amount) {
+        this.type = type;
+        this.paymentNumber = paymentNumber;
+        this.amount = amount;
+    }
+}
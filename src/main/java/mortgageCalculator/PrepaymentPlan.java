@@ -0,0 +1,85 @@
+package mortgageCalculator;
+
+import java.util.Arrays;
+
+/**
+ * PrepaymentPlan - A prepayment strategy compiled for one amortization, the events sorted by
+ * payment number with one entry per payment, annual lump sums expanded and events past the last
+ * payment dropped. The amortization loop then only compares the next entry's payment number.
+ */
+final class PrepaymentPlan {
+
+    static final PrepaymentPlan NONE = new PrepaymentPlan(new int[0], new double[0], new double[0]);
+
+    // The payment numbers with events, ascending, and the lump sum and the payment increase of each.
+    final int[] paymentNumbers;
+    final double[] lumpSums;
+    final double[] paymentIncreases;
+
+    private PrepaymentPlan(int[] paymentNumbers, double[] lumpSums, double[] paymentIncreases) {
+        this.paymentNumbers = paymentNumbers;
+        this.lumpSums = lumpSums;
+        this.paymentIncreases = paymentIncreases;
+    }
+
+    /**
+     * @param events The prepayment events, in any order.
+     * @param paymentsPerYear The number of payments per year, the interval of annual lump sums.
+     * @param numPayments The number of payments of the loan.
+     * @return The plan.
+     * @throws IllegalArgumentException If an event has no type, a payment number below one or a
+     *         negative amount.
+     */
+    static PrepaymentPlan compile(Prepayment[] events, int paymentsPerYear, int numPayments) {
+        if (events == null || events.length == 0) {
+            return NONE;
+        }
+        int count = 0;
+        for (Prepayment event : events) {
+            if (event == null || event.type == null) {
+                throw new IllegalArgumentException("Every prepayment needs a type.");
+            }
+            if (event.paymentNumber < 1) {
+                throw new IllegalArgumentException("The prepayment payment number must be 1 or more.");
+            }
+            if (!(event.amount >= 0) || Double.isInfinite(event.amount)) {
+                throw new IllegalArgumentException("The prepayment amount cannot be negative.");
+            }
+            if (event.paymentNumber <= numPayments) {
+                count += event.type == Prepayment.Type.ANNUAL_LUMP_SUM ?
+                        (numPayments - event.paymentNumber) / paymentsPerYear + 1 : 1;
+            }
+        }
+
+        // sort the occurrences by payment number, the key holds the payment number and the event index
+        long[] keys = new long[count];
+        int k = 0;
+        for (int i = 0; i < events.length; i++) {
+            Prepayment event = events[i];
+            int step = event.type == Prepayment.Type.ANNUAL_LUMP_SUM ? paymentsPerYear : numPayments + 1;
+            for (int n = event.paymentNumber; n <= numPayments; n += step) {
+                keys[k++] = (long) n << 32 | i;
+            }
+        }
+        Arrays.sort(keys);
+
+        int[] paymentNumbers = new int[count];
+        double[] lumpSums = new double[count], paymentIncreases = new double[count];
+        int entries = 0;
+        for (long key : keys) {
+            int n = (int) (key >>> 32);
+            Prepayment event = events[(int) key];
+            if (entries == 0 || paymentNumbers[entries - 1] != n) {
+                paymentNumbers[entries++] = n;
+            }
+            if (event.type == Prepayment.Type.PAYMENT_INCREASE) {
+                paymentIncreases[entries - 1] += event.amount;
+            }
+            else {
+                lumpSums[entries - 1] += event.amount;
+            }
+        }
+        return new PrepaymentPlan(Arrays.copyOf(paymentNumbers, entries), Arrays.copyOf(lumpSums, entries),
+                Arrays.copyOf(paymentIncreases, entries));
+    }
+}
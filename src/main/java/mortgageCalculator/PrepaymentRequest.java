@@ -0,0 +1,44 @@
+package mortgageCalculator;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import io.swagger.annotations.ApiModelProperty;
+
+/**
+ * PrepaymentRequest - The request body of the prepayment simulation endpoint, one mortgage and the
+ * prepayment strategies to compare on it.
+ */
+public class PrepaymentRequest {
+
+    @ApiModelProperty(required = true, example = "500000")
+    @JsonProperty("asking_price")
+    public Double askingPrice;
+
+    @ApiModelProperty(required = true, example = "70000")
+    @JsonProperty("down_payment")
+    public Double downPayment;
+
+    @ApiModelProperty(required = true, example = "monthly")
+    @JsonProperty("payment_schedule")
+    public String paymentSchedule;
+
+    @ApiModelProperty(required = true, example = "25")
+    @JsonProperty("amortization_period")
+    public Integer amortizationPeriod;
+
+    @ApiModelProperty(value = "If omitted the default interest rate is used", example = "2.5")
+    @JsonProperty("annual_interest_rate")
+    public Double annualInterestRate;
+
+    @ApiModelProperty(value = "Pay the monthly payment divided by the payments per month, weekly and biweekly only")
+    @JsonProperty("accelerated")
+    public boolean accelerated;
+
+    @ApiModelProperty(value = "The prepayments of each strategy, if omitted a single strategy without prepayments")
+    @JsonProperty("strategies")
+    public Prepayment[][] strategies;
+
+    @ApiModelProperty(value = "Return the payment by payment schedule of each strategy")
+    @JsonProperty("include_schedules")
+    public boolean includeSchedules;
+}
@@ -0,0 +1,205 @@
+package mortgageCalculator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * PrepaymentSimulation - The payoff of one loan under a list of prepayment strategies, each
+ * compared to the baseline, the level payment schedule without prepayments. Each strategy is a
+ * PrepaymentPlan run through an AmortizationSchedule, a loop over primitives that stops when the
+ * balance is paid off, so thousands of strategies can be compared in one request. When more than
+ * PARALLEL_THRESHOLD payments are simulated the strategies are split into ranges computed on the
+ * common fork-join pool.
+ */
+public final class PrepaymentSimulation {
+
+    // Simulations longer than this, in payments, are computed in parallel.
+    static final int PARALLEL_THRESHOLD = 65536;
+
+    private final double principal;
+    private final double rate;
+    private final double payment;
+    private final int numPayments;
+    private final int paymentsPerYear;
+    private final boolean accelerated;
+    private final PrepaymentPlan[] plans;
+    private final String ruleVersion;
+    private final long rateVersion;
+
+    private final int baselinePayments;
+    private final double baselineInterest;
+    private final int[] payoffPayments;
+    private final double[] totalInterest;
+
+    /**
+     * @param principal The loan principal.
+     * @param rate The interest rate per payment.
+     * @param regularPayment The level payment that pays off the loan in numPayments payments.
+     * @param payment The recurring payment of the strategies, larger than regularPayment if the
+     *        schedule is accelerated.
+     * @param numPayments The number of payments.
+     * @param paymentsPerYear The number of payments per year.
+     * @param accelerated True if payment is an accelerated payment.
+     * @param plans The compiled prepayment strategies.
+     * @param ruleVersion The version of the lending rules used.
+     * @param rateVersion The version of the default rate used, zero if the rate was passed in.
+     */
+    PrepaymentSimulation(double principal, double rate, double regularPayment, double payment, int numPayments,
+            int paymentsPerYear, boolean accelerated, PrepaymentPlan[] plans, String ruleVersion, long rateVersion) {
+        this.principal = principal;
+        this.rate = rate;
+        this.payment = payment;
+        this.numPayments = numPayments;
+        this.paymentsPerYear = paymentsPerYear;
+        this.accelerated = accelerated;
+        this.plans = plans;
+        this.ruleVersion = ruleVersion;
+        this.rateVersion = rateVersion;
+
+        AmortizationSchedule baseline = new AmortizationSchedule(principal, rate, regularPayment, numPayments);
+        double interest = 0;
+        while (baseline.next()) {
+            interest += baseline.getInterest();
+        }
+        this.baselinePayments = baseline.getPaymentNumber();
+        this.baselineInterest = interest;
+
+        this.payoffPayments = new int[plans.length];
+        this.totalInterest = new double[plans.length];
+        if ((long) plans.length * numPayments > PARALLEL_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new Strategies(0, plans.length));
+        }
+        else {
+            simulate(0, plans.length);
+        }
+    }
+
+    private void simulate(int from, int to) {
+        for (int i = from; i < to; i++) {
+            AmortizationSchedule schedule = schedule(i);
+            double interest = 0;
+            while (schedule.next()) {
+                interest += schedule.getInterest();
+            }
+            payoffPayments[i] = schedule.getPaymentNumber();
+            totalInterest[i] = interest;
+        }
+    }
+
+    /**
+     * Simulates a range of strategies, splitting it in halves until each part is below the threshold.
+     */
+    private final class Strategies extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        Strategies(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1 || (long) (to - from) * numPayments <= PARALLEL_THRESHOLD) {
+                simulate(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Strategies(from, middle), new Strategies(middle, to));
+        }
+    }
+
+    /**
+     * @return The payment by payment schedule of a strategy.
+     */
+    public AmortizationSchedule schedule(int strategy) {
+        return new AmortizationSchedule(principal, rate, payment, numPayments, plans[strategy]);
+    }
+
+    public int getStrategies() {
+        return plans.length;
+    }
+
+    /**
+     * @return The recurring payment of the strategies, before payment increases.
+     */
+    public double getPayment() {
+        return payment;
+    }
+
+    public int getBaselinePayments() {
+        return baselinePayments;
+    }
+
+    public double getBaselineInterest() {
+        return baselineInterest;
+    }
+
+    /**
+     * @return The number of payments until the loan is paid off with a strategy.
+     */
+    public int getPayoffPayments(int strategy) {
+        return payoffPayments[strategy];
+    }
+
+    public double getTotalInterest(int strategy) {
+        return totalInterest[strategy];
+    }
+
+    public double getInterestSaved(int strategy) {
+        return baselineInterest - totalInterest[strategy];
+    }
+
+    /**
+     * @param includeSchedules If true each strategy holds its payment by payment schedule.
+     * @return The simulation in the map format returned by the REST API.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<?, ?> toMap(boolean includeSchedules) {
+        List<Map<?, ?>> strategies = new ArrayList<>(plans.length);
+        for (int i = 0; i < plans.length; i++) {
+            Map<String, Object> strategy = (Map<String, Object>) MortgageCalculator.createMap(
+                    "num_payments", payoffPayments[i],
+                    "payoff_years", payoffPayments[i] / (double) paymentsPerYear,
+                    "total_interest", totalInterest[i],
+                    "interest_saved", getInterestSaved(i),
+                    "payments_saved", baselinePayments - payoffPayments[i]);
+            if (includeSchedules) {
+                strategy.put("schedule", scheduleRows(i));
+            }
+            strategies.add(strategy);
+        }
+        Map<String, Object> map = (Map<String, Object>) MortgageCalculator.createMap("loan_amount", principal,
+                "payment", payment,
+                "payments_per_year", paymentsPerYear,
+                "accelerated", accelerated,
+                "baseline", MortgageCalculator.createMap("num_payments", baselinePayments,
+                        "payoff_years", baselinePayments / (double) paymentsPerYear,
+                        "total_interest", baselineInterest),
+                "strategies", strategies,
+                "rule_version", ruleVersion);
+        if (rateVersion != 0) {
+            map.put("rate_version", rateVersion);
+        }
+        return map;
+    }
+
+    private List<Map<?, ?>> scheduleRows(int strategy) {
+        AmortizationSchedule schedule = schedule(strategy);
+        List<Map<?, ?>> rows = new ArrayList<>(payoffPayments[strategy]);
+        while (schedule.next()) {
+            rows.add(MortgageCalculator.createMap("payment_number", schedule.getPaymentNumber(),
+                    "payment", schedule.getPayment(),
+                    "prepayment", schedule.getPrepayment(),
+                    "interest", schedule.getInterest(),
+                    "principal", schedule.getPrincipal(),
+                    "balance", schedule.getBalance()));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,236 @@
+package mortgageCalculator;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+
+/**
+ * RateHistory - Every default interest rate with the time it took effect, so a calculation can
+ * use the rate of any past moment. The rates are kept in parallel primitive arrays sorted by time
+ * and a lookup is a binary search. Appends write past the published size and then publish a new
+ * size through a volatile field, readers never lock.
+ *
+ * A history opened on a file is also an append-only log of fixed size records in a memory mapped
+ * file, each record is forced to disk when it is appended. Opening the file replays the log with
+ * absolute reads of the mapping, one pass and no parsing, a torn or corrupt record ends the log.
+ *
+ * <pre>
+ * header: magic (long), record size (int), reserved (int)
+ * record: time in epoch milliseconds (long), version (long), rate bits (long),
+ *         check (long) = time ^ version ^ rate bits ^ magic
+ * </pre>
+ */
+public final class RateHistory {
+
+    static final long MAGIC = 0x4d4352415445534cL;
+    static final int HEADER = 16;
+    static final int RECORD = 32;
+    private static final int INITIAL_RECORDS = 4096;
+
+    /**
+     * The published records, the arrays may hold unpublished records past size.
+     */
+    private static final class Index {
+        final long[] times;
+        final long[] versions;
+        final double[] rates;
+        final int size;
+
+        Index(long[] times, long[] versions, double[] rates, int size) {
+            this.times = times;
+            this.versions = versions;
+            this.rates = rates;
+            this.size = size;
+        }
+    }
+
+    private volatile Index index = new Index(new long[16], new long[16], new double[16], 0);
+
+    private FileChannel channel;
+    private MappedByteBuffer log;
+    private int logPosition;
+
+    /**
+     * An empty history kept in memory only.
+     */
+    public RateHistory() {
+    }
+
+    /**
+     * Open the history logged in a file, the file is created if it does not exist.
+     *
+     * @throws IOException If the file can not be read or written, or is not a rate history.
+     */
+    public static RateHistory open(Path file) throws IOException {
+        RateHistory history = new RateHistory();
+        history.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            long size = history.channel.size();
+            history.map(Math.max(size, HEADER + (long) RECORD * INITIAL_RECORDS));
+            if (size == 0) {
+                history.log.putLong(0, MAGIC);
+                history.log.putInt(8, RECORD);
+                history.log.force();
+            }
+            else if (size < HEADER || history.log.getLong(0) != MAGIC || history.log.getInt(8) != RECORD) {
+                throw new IOException(file + " is not a rate history");
+            }
+            history.replay();
+        }
+        catch (IOException | RuntimeException e) {
+            history.channel.close();
+            throw e;
+        }
+        return history;
+    }
+
+    private void map(long capacity) throws IOException {
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IOException("The rate history is full");
+        }
+        log = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private void replay() {
+        int count = (log.capacity() - HEADER) / RECORD;
+        long[] times = new long[Math.max(16, count)];
+        long[] versions = new long[times.length];
+        double[] rates = new double[times.length];
+        int size = 0;
+        int position = HEADER;
+        for (; size < count; size++, position += RECORD) {
+            long time = log.getLong(position);
+            long version = log.getLong(position + 8);
+            long rateBits = log.getLong(position + 16);
+            if (log.getLong(position + 24) != (time ^ version ^ rateBits ^ MAGIC)
+                    || size > 0 && (version <= versions[size - 1] || time < times[size - 1])) {
+                break;
+            }
+            times[size] = time;
+            versions[size] = version;
+            rates[size] = Double.longBitsToDouble(rateBits);
+        }
+        logPosition = position;
+        index = new Index(times, versions, rates, size);
+    }
+
+    /**
+     * Add a rate to the end of the history. The history only moves forward, a version that is not
+     * newer than the last one was replaced before it could be recorded and is skipped, a time
+     * before the last one, after a clock change, is recorded as the last time.
+     *
+     * @param time The time the rate took effect, in epoch milliseconds.
+     * @param rate The new default rate.
+     * @return True if the rate was added.
+     * @throws IOException If the rate could not be logged, it is not added.
+     */
+    public synchronized boolean append(long time, InterestRate rate) throws IOException {
+        Index current = index;
+        int size = current.size;
+        if (size > 0) {
+            if (rate.getVersion() <= current.versions[size - 1]) {
+                return false;
+            }
+            time = Math.max(time, current.times[size - 1]);
+        }
+        if (log != null) {
+            if (logPosition + RECORD > log.capacity()) {
+                map(2L * log.capacity());
+            }
+            long rateBits = Double.doubleToLongBits(rate.getAnnualInterestRate());
+            log.putLong(logPosition, time);
+            log.putLong(logPosition + 8, rate.getVersion());
+            log.putLong(logPosition + 16, rateBits);
+            log.putLong(logPosition + 24, time ^ rate.getVersion() ^ rateBits ^ MAGIC);
+            log.force();
+            logPosition += RECORD;
+        }
+
+        long[] times = current.times;
+        long[] versions = current.versions;
+        double[] rates = current.rates;
+        if (size == times.length) {
+            times = Arrays.copyOf(times, size * 2);
+            versions = Arrays.copyOf(versions, size * 2);
+            rates = Arrays.copyOf(rates, size * 2);
+        }
+        times[size] = time;
+        versions[size] = rate.getVersion();
+        rates[size] = rate.getAnnualInterestRate();
+        index = new Index(times, versions, rates, size + 1);
+        return true;
+    }
+
+    /**
+     * @param time A time in epoch milliseconds.
+     * @return The rate in effect at that time, null if it is before the first rate.
+     */
+    public InterestRate rateAt(long time) {
+        Index current = index;
+        // the last record with a time at or before time
+        int low = 0, high = current.size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (current.times[middle] <= time) {
+                low = middle + 1;
+            }
+            else {
+                high = middle - 1;
+            }
+        }
+        return high < 0 ? null : new InterestRate(current.rates[high], current.versions[high]);
+    }
+
+    /**
+     * @return The last rate, null if the history is empty.
+     */
+    public InterestRate getLast() {
+        Index current = index;
+        return current.size == 0 ? null :
+                new InterestRate(current.rates[current.size - 1], current.versions[current.size - 1]);
+    }
+
+    /**
+     * @return The time of the first rate in epoch milliseconds, Long.MAX_VALUE if the history is empty.
+     */
+    public long getStart() {
+        Index current = index;
+        return current.size == 0 ? Long.MAX_VALUE : current.times[0];
+    }
+
+    public int size() {
+        return index.size;
+    }
+
+    /**
+     * Stop logging to the file, later rates are only kept in memory.
+     */
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            log = null;
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * @param value An ISO-8601 instant, ie 2019-05-30T12:00:00Z.
+     * @return The instant in epoch milliseconds.
+     * @throws IllegalArgumentException If the value is not an instant.
+     */
+    public static long parseTime(String value) {
+        try {
+            return Instant.parse(value).toEpochMilli();
+        }
+        catch (DateTimeParseException | ArithmeticException e) {
+            throw new IllegalArgumentException(String.format(
+                    "Parameter 'as_of' is not an ISO-8601 instant, ie 2019-05-30T12:00:00Z: %s", value));
+        }
+    }
+}
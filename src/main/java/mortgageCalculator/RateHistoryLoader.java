@@ -0,0 +1,47 @@
+package mortgageCalculator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * RateHistoryLoader - Opens the interest rate history log, so every change of the default rate is
+ * persisted and the default rate and the as_of lookups survive a restart. Without a file the
+ * history is kept in memory from startup. Configured by mortgage-calculator.rate-history in
+ * application.yml. Never lazy, the default rate must be restored before the first request.
+ */
+@Component
+@Lazy(false)
+public class RateHistoryLoader implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(RateHistoryLoader.class);
+
+    private final RateHistory history;
+
+    public RateHistoryLoader(@Value("${mortgage-calculator.rate-history.file:}") String file) throws IOException {
+        if (file.isEmpty()) {
+            history = null;
+            return;
+        }
+        Path path = Paths.get(file);
+        long start = System.nanoTime();
+        history = RateHistory.open(path);
+        MortgageCalculator.setRateHistory(history);
+        log.info("Replayed {} interest rates from {} in {} ms, the default rate is {}", history.size(), path,
+                (System.nanoTime() - start) / 1000000, MortgageCalculator.getInterestRate());
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (history != null) {
+            history.close();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package mortgageCalculator;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * RateLimiter - A token bucket per client, implemented as the generic cell rate algorithm: each
+ * client's bucket is a single AtomicLong holding the time its bucket will be full again, a request
+ * adds one emission interval to it with a compare and set and is rejected if that is more than a
+ * burst ahead of now. Clients are looked up in a ConcurrentHashMap, so neither the lookup nor the
+ * update takes a lock and only concurrent requests of the same client contend.
+ *
+ * A client whose bucket is full behaves exactly like an unknown client, so when there are more
+ * than maxClients clients the full buckets are removed without changing any decision. If every
+ * bucket is still in use new clients share one overflow bucket until some fill up again.
+ */
+public final class RateLimiter {
+
+    private final long interval;
+    private final long tolerance;
+    private final int maxClients;
+
+    private final ConcurrentHashMap<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong overflow = new AtomicLong(Long.MIN_VALUE);
+    private final ReentrantLock sweepLock = new ReentrantLock();
+
+    /**
+     * @param ratePerSecond The sustained requests per second of each client.
+     * @param burst The requests a client with a full bucket can make at once, at least 1.
+     * @param maxClients The number of buckets kept before full buckets are removed.
+     */
+    public RateLimiter(double ratePerSecond, int burst, int maxClients) {
+        if (!(ratePerSecond > 0) || burst < 1 || maxClients < 1) {
+            throw new IllegalArgumentException("The rate, the burst and the maximum clients must be larger than zero.");
+        }
+        this.interval = Math.max(1, (long) (1e9 / ratePerSecond));
+        this.tolerance = interval * burst;
+        this.maxClients = maxClients;
+    }
+
+    /**
+     * Take a token from a client's bucket.
+     *
+     * @param client The client key, ie an API key or an address.
+     * @param now The current System.nanoTime.
+     * @return Zero if the request is admitted, otherwise the nanoseconds until the client has a
+     *         token again.
+     */
+    public long tryAcquire(String client, long now) {
+        AtomicLong bucket = buckets.get(client);
+        if (bucket == null) {
+            bucket = newBucket(client, now);
+        }
+        while (true) {
+            long full = bucket.get();
+            long next = Math.max(full, now) + interval;
+            if (next - now > tolerance) {
+                return next - now - tolerance;
+            }
+            if (bucket.compareAndSet(full, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private AtomicLong newBucket(String client, long now) {
+        if (buckets.size() >= maxClients) {
+            sweep(now);
+            if (buckets.size() >= maxClients) {
+                return overflow;
+            }
+        }
+        AtomicLong bucket = new AtomicLong(now);
+        AtomicLong existing = buckets.putIfAbsent(client, bucket);
+        return existing != null ? existing : bucket;
+    }
+
+    /**
+     * Remove the full buckets, one thread sweeps while the others go on.
+     */
+    private void sweep(long now) {
+        if (!sweepLock.tryLock()) {
+            return;
+        }
+        try {
+            for (Map.Entry<String, AtomicLong> entry : buckets.entrySet()) {
+                if (entry.getValue().get() - now <= 0) {
+                    // a request racing the removal updates the removed bucket, the client gains at most that token
+                    buckets.remove(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        finally {
+            sweepLock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of client buckets.
+     */
+    public int size() {
+        return buckets.size();
+    }
+}
@@ -0,0 +1,445 @@
+package mortgageCalculator;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * RateSimulation - The payments of one loan over many random interest rate paths. The loan renews
+ * every term years, at each renewal the rate moves along an Ornstein-Uhlenbeck (Vasicek) process
+ * that reverts to a long run rate and the payment is recalculated on the remaining balance over the
+ * remaining amortization period. Rates are floored at zero.
+ *
+ * Only the rate at each renewal is needed so the process is sampled with its exact transition,
+ * a path is a few Math.pow calls per renewal. The paths are split into chunks, each with its own
+ * SplittableRandom split from the seed in chunk order, and every chunk adds its paths to histograms
+ * of int counts, so the same seed and number of paths give the same result however the chunks are
+ * scheduled on the common fork-join pool. Percentiles are interpolated within the histogram bins.
+ *
+ * The bins are sized from the model so every path is counted where it fell: the rates can reach
+ * the larger of the initial and long run rate plus TAIL_DEVIATIONS standard deviations of the
+ * process, and no payment can exceed the payment at that rate, since a higher rate in every term
+ * leaves a larger balance. The number of bins is fixed, a model that reaches further gets wider bins.
+ */
+public final class RateSimulation {
+
+    // Payments are binned as a ratio of the initial payment, rates in percentage points. These are
+    // the narrowest bins, a model that reaches past them widens them.
+    static final double PAYMENT_BIN = 0.001;
+    static final int PAYMENT_BINS = 4000;
+    static final double RATE_BIN = 0.01;
+    static final int RATE_BINS = 2500;
+    static final double TAIL_DEVIATIONS = 8;
+
+    // The percentiles reported, and the width of the max payment shock distribution buckets, or of
+    // one bin if the payment bins are wider.
+    static final double[] PERCENTILES = {5, 25, 50, 75, 95, 99};
+    static final double SHOCK_BUCKET = 0.05;
+    private static final int SHOCK_BINS = (int) Math.round(SHOCK_BUCKET / PAYMENT_BIN);
+
+    private static final int MIN_CHUNK = 8192;
+    private static final int MAX_CHUNKS = 64;
+
+    private final double principal;
+    private final double payment;
+    private final int paymentsPerYear;
+    private final int amortizationPeriod;
+    private final int term;
+    private final double initialRate;
+    private final double longRunRate;
+    private final double reversionSpeed;
+    private final double volatility;
+    private final int paths;
+    private final long seed;
+    private final String ruleVersion;
+    private final long rateVersion;
+
+    private final int renewals;
+    private final double fixedRateInterest;
+    private final double paymentBin;
+    private final double rateBin;
+    private final Accumulator result;
+
+    /**
+     * @param principal The loan principal.
+     * @param payment The payment of the first term.
+     * @param paymentsPerYear The number of payments per year.
+     * @param amortizationPeriod The amortization period in years.
+     * @param term The number of years between renewals.
+     * @param initialRate The annual interest rate of the first term, as percentage ie 2.5%.
+     * @param longRunRate The annual interest rate the process reverts to.
+     * @param reversionSpeed The speed of reversion per year, zero is a random walk.
+     * @param volatility The standard deviation of the annual rate change, in percentage points per
+     *        square root of a year.
+     * @param paths The number of rate paths.
+     * @param seed The seed of the random rate paths.
+     * @param ruleVersion The version of the lending rules used.
+     * @param rateVersion The version of the default rate used, zero if the rate was passed in.
+     */
+    RateSimulation(double principal, double payment, int paymentsPerYear, int amortizationPeriod, int term,
+            double initialRate, double longRunRate, double reversionSpeed, double volatility, int paths,
+            long seed, String ruleVersion, long rateVersion) {
+        this.principal = principal;
+        this.payment = payment;
+        this.paymentsPerYear = paymentsPerYear;
+        this.amortizationPeriod = amortizationPeriod;
+        this.term = term;
+        this.initialRate = initialRate;
+        this.longRunRate = longRunRate;
+        this.reversionSpeed = reversionSpeed;
+        this.volatility = volatility;
+        this.paths = paths;
+        this.seed = seed;
+        this.ruleVersion = ruleVersion;
+        this.rateVersion = rateVersion;
+        this.renewals = (amortizationPeriod - 1) / term;
+        this.fixedRateInterest = payment * amortizationPeriod * paymentsPerYear - principal;
+
+        double variance = reversionSpeed > 0 ?
+                (1 - Math.exp(-2 * reversionSpeed * renewals * term)) / (2 * reversionSpeed) :
+                renewals * term;
+        double maxRate = Math.max(initialRate, longRunRate) + TAIL_DEVIATIONS * volatility * Math.sqrt(variance);
+        double maxPaymentRate = maxRate / (100.0 * paymentsPerYear);
+        double maxPayment = principal * maxPaymentRate
+                / (1 - Math.pow(1 + maxPaymentRate, -amortizationPeriod * paymentsPerYear));
+        this.rateBin = binWidth(RATE_BIN, RATE_BINS, maxRate);
+        this.paymentBin = binWidth(PAYMENT_BIN, PAYMENT_BINS, maxPayment / payment);
+
+        int chunkSize = Math.max(MIN_CHUNK, (paths + MAX_CHUNKS - 1) / MAX_CHUNKS);
+        int chunks = (paths + chunkSize - 1) / chunkSize;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] randoms = new SplittableRandom[chunks];
+        for (int i = 0; i < chunks; i++) {
+            randoms[i] = root.split();
+        }
+        Chunks task = new Chunks(randoms, chunkSize, 0, chunks);
+        this.result = chunks == 1 ? task.compute() : ForkJoinPool.commonPool().invoke(task);
+    }
+
+    /**
+     * The histograms and sums of a range of paths.
+     */
+    private final class Accumulator {
+        final int[][] paymentCounts = new int[renewals][PAYMENT_BINS];
+        final int[][] rateCounts = new int[renewals][RATE_BINS];
+        final double[] paymentSums = new double[renewals];
+        final double[] rateSums = new double[renewals];
+        final int[] maxShockCounts = new int[PAYMENT_BINS];
+        double maxShockSum;
+        double interestSum;
+        int increases;
+
+        void add(Accumulator other) {
+            for (int k = 0; k < renewals; k++) {
+                addCounts(paymentCounts[k], other.paymentCounts[k]);
+                addCounts(rateCounts[k], other.rateCounts[k]);
+                paymentSums[k] += other.paymentSums[k];
+                rateSums[k] += other.rateSums[k];
+            }
+            addCounts(maxShockCounts, other.maxShockCounts);
+            maxShockSum += other.maxShockSum;
+            interestSum += other.interestSum;
+            increases += other.increases;
+        }
+    }
+
+    private static void addCounts(int[] counts, int[] other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other[i];
+        }
+    }
+
+    /**
+     * Simulates a range of chunks, splitting it in halves until it is one chunk. The halves are
+     * merged in the same order every time so the double sums do not depend on scheduling.
+     */
+    private final class Chunks extends RecursiveTask<Accumulator> {
+        private static final long serialVersionUID = 1L;
+
+        private final SplittableRandom[] randoms;
+        private final int chunkSize;
+        private final int from;
+        private final int to;
+
+        Chunks(SplittableRandom[] randoms, int chunkSize, int from, int to) {
+            this.randoms = randoms;
+            this.chunkSize = chunkSize;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Accumulator compute() {
+            if (to - from == 1) {
+                Accumulator accumulator = new Accumulator();
+                simulate(randoms[from], Math.min(chunkSize, paths - from * chunkSize), accumulator);
+                return accumulator;
+            }
+            int middle = (from + to) >>> 1;
+            Chunks right = new Chunks(randoms, chunkSize, middle, to);
+            right.fork();
+            Accumulator accumulator = new Chunks(randoms, chunkSize, from, middle).compute();
+            accumulator.add(right.join());
+            return accumulator;
+        }
+    }
+
+    private void simulate(SplittableRandom random, int count, Accumulator accumulator) {
+        int termPayments = term * paymentsPerYear;
+        double decay = Math.exp(-reversionSpeed * term);
+        double deviation = reversionSpeed > 0 ?
+                volatility * Math.sqrt((1 - decay * decay) / (2 * reversionSpeed)) :
+                volatility * Math.sqrt(term);
+        double initialPaymentRate = initialRate / (100.0 * paymentsPerYear);
+        double spare = 0;
+        boolean hasSpare = false;
+
+        for (int i = 0; i < count; i++) {
+            double annualRate = initialRate;
+            double rate = initialPaymentRate;
+            double balance = principal;
+            double pay = payment;
+            double maxRatio = 1;
+            double interest = 0;
+            int remaining = amortizationPeriod * paymentsPerYear;
+            for (int k = 0; k < renewals; k++) {
+                // the balance after a term of payments, B(1 + c)^m - P[(1 + c)^m - 1]/c
+                double growth = Math.pow(1 + rate, termPayments);
+                double renewed = rate > 0 ? balance * growth - pay * (growth - 1) / rate : balance - pay * termPayments;
+                interest += pay * termPayments - (balance - renewed);
+                balance = renewed;
+                remaining -= termPayments;
+
+                double normal;
+                if (hasSpare) {
+                    normal = spare;
+                    hasSpare = false;
+                }
+                else {
+                    // Box-Muller, the second normal is kept for the next draw
+                    double radius = Math.sqrt(-2 * Math.log(1 - random.nextDouble()));
+                    double angle = 2 * Math.PI * random.nextDouble();
+                    normal = radius * Math.cos(angle);
+                    spare = radius * Math.sin(angle);
+                    hasSpare = true;
+                }
+                annualRate = longRunRate + (annualRate - longRunRate) * decay + deviation * normal;
+                double paymentRate = Math.max(annualRate, 0);
+                rate = paymentRate / (100.0 * paymentsPerYear);
+                if (rate > 0) {
+                    double factor = Math.pow(1 + rate, remaining);
+                    pay = balance * rate * factor / (factor - 1);
+                }
+                else {
+                    pay = balance / remaining;
+                }
+
+                double ratio = pay / payment;
+                accumulator.paymentCounts[k][bin(ratio, paymentBin, PAYMENT_BINS)]++;
+                accumulator.rateCounts[k][bin(paymentRate, rateBin, RATE_BINS)]++;
+                accumulator.paymentSums[k] += ratio;
+                accumulator.rateSums[k] += paymentRate;
+                maxRatio = Math.max(maxRatio, ratio);
+            }
+            // the last term runs to the end of the amortization period
+            interest += pay * remaining - balance;
+
+            accumulator.maxShockCounts[bin(maxRatio, paymentBin, PAYMENT_BINS)]++;
+            accumulator.maxShockSum += maxRatio - 1;
+            accumulator.interestSum += interest;
+            // the ratio of an unchanged rate can be off by rounding
+            if (maxRatio > 1 + 1e-9) {
+                accumulator.increases++;
+            }
+        }
+    }
+
+    /**
+     * @return The narrowest width, a whole number of base widths, of bins that reach bound. The
+     *         number of base widths divides, or is a multiple of, the bins of a shock bucket so the
+     *         buckets stay whole bins.
+     */
+    static double binWidth(double base, int bins, double bound) {
+        double widths = Math.ceil(bound / (base * bins));
+        if (!(widths < Integer.MAX_VALUE)) {
+            throw new IllegalArgumentException("The rates of the model are too large to simulate.");
+        }
+        int n = Math.max(1, (int) widths);
+        while (n < SHOCK_BINS ? SHOCK_BINS % n != 0 : n % SHOCK_BINS != 0) {
+            n++;
+        }
+        return base * n;
+    }
+
+    private static int bin(double value, double width, int bins) {
+        return (int) Math.min(bins - 1, value / width);
+    }
+
+    /**
+     * @return The value below which percentile percent of the counts fall, interpolated within its bin.
+     */
+    static double percentile(int[] counts, int total, double width, double percentile) {
+        double target = total * percentile / 100.0;
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0 && cumulative + counts[i] >= target) {
+                return (i + (target - cumulative) / counts[i]) * width;
+            }
+            cumulative += counts[i];
+        }
+        return counts.length * width;
+    }
+
+    private Map<?, ?> percentiles(int[] counts, double width, double scale, double offset) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        for (double p : PERCENTILES) {
+            map.put("p" + (int) p, percentile(counts, paths, width, p) * scale + offset);
+        }
+        return map;
+    }
+
+    public int getRenewals() {
+        return renewals;
+    }
+
+    public int getPaths() {
+        return paths;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return The payment of the first term.
+     */
+    public double getPayment() {
+        return payment;
+    }
+
+    /**
+     * @return The width of the payment bins, as a ratio of the initial payment.
+     */
+    public double getPaymentBin() {
+        return paymentBin;
+    }
+
+    /**
+     * @return The width of the rate bins, in percentage points.
+     */
+    public double getRateBin() {
+        return rateBin;
+    }
+
+    /**
+     * @return The percentile of the payment after a renewal, renewal 0 is the first renewal.
+     */
+    public double getPaymentPercentile(int renewal, double percentile) {
+        return percentile(result.paymentCounts[renewal], paths, paymentBin, percentile) * payment;
+    }
+
+    public double getMeanPayment(int renewal) {
+        return result.paymentSums[renewal] / paths * payment;
+    }
+
+    /**
+     * @return The percentile of the annual interest rate of a renewal, as percentage ie 2.5%.
+     */
+    public double getRatePercentile(int renewal, double percentile) {
+        return percentile(result.rateCounts[renewal], paths, rateBin, percentile);
+    }
+
+    public double getMeanRate(int renewal) {
+        return result.rateSums[renewal] / paths;
+    }
+
+    /**
+     * @return The percentile of the largest payment of a path over the initial payment, minus one,
+     *         zero if the payment never increased.
+     */
+    public double getMaxPaymentShockPercentile(double percentile) {
+        return percentile(result.maxShockCounts, paths, paymentBin, percentile) - 1;
+    }
+
+    public double getMeanMaxPaymentShock() {
+        return result.maxShockSum / paths;
+    }
+
+    /**
+     * @return The fraction of paths where a renewal payment is larger than the initial payment.
+     */
+    public double getProbabilityOfIncrease() {
+        return result.increases / (double) paths;
+    }
+
+    public double getMeanTotalInterest() {
+        return result.interestSum / paths;
+    }
+
+    /**
+     * @return The total interest if the initial rate held for the whole amortization period.
+     */
+    public double getFixedRateTotalInterest() {
+        return fixedRateInterest;
+    }
+
+    /**
+     * @return The simulation in the map format returned by the REST API.
+     */
+    @SuppressWarnings("unchecked")
+    public Map<?, ?> toMap() {
+        List<Map<?, ?>> renewalList = new ArrayList<>(renewals);
+        for (int k = 0; k < renewals; k++) {
+            renewalList.add(MortgageCalculator.createMap("year", (k + 1) * term,
+                    "rate", MortgageCalculator.createMap("mean", getMeanRate(k),
+                            "percentiles", percentiles(result.rateCounts[k], rateBin, 1, 0)),
+                    "payment", MortgageCalculator.createMap("mean", getMeanPayment(k),
+                            "percentiles", percentiles(result.paymentCounts[k], paymentBin, payment, 0)),
+                    "payment_shock", MortgageCalculator.createMap("mean", result.paymentSums[k] / paths - 1,
+                            "percentiles", percentiles(result.paymentCounts[k], paymentBin, 1, -1))));
+        }
+
+        // the max payment shock histogram in SHOCK_BUCKET wide buckets, empty buckets are left out
+        List<Map<?, ?>> distribution = new ArrayList<>();
+        int binsPerBucket = Math.max(1, (int) Math.round(SHOCK_BUCKET / paymentBin));
+        for (int from = 0; from < PAYMENT_BINS; from += binsPerBucket) {
+            int count = 0;
+            for (int i = from; i < from + binsPerBucket; i++) {
+                count += result.maxShockCounts[i];
+            }
+            if (count > 0) {
+                distribution.add(MortgageCalculator.createMap("from", from * paymentBin - 1,
+                        "to", (from + binsPerBucket) * paymentBin - 1,
+                        "probability", count / (double) paths));
+            }
+        }
+
+        Map<String, Object> map = (Map<String, Object>) MortgageCalculator.createMap("loan_amount", principal,
+                "payment", payment,
+                "payments_per_year", paymentsPerYear,
+                "amortization_period", amortizationPeriod,
+                "term", term,
+                "paths", paths,
+                "seed", seed,
+                "model", MortgageCalculator.createMap("initial_rate", initialRate,
+                        "long_run_rate", longRunRate,
+                        "reversion_speed", reversionSpeed,
+                        "volatility", volatility),
+                "renewals", renewalList,
+                "max_payment_shock", MortgageCalculator.createMap("mean", getMeanMaxPaymentShock(),
+                        "probability_of_increase", getProbabilityOfIncrease(),
+                        "percentiles", percentiles(result.maxShockCounts, paymentBin, 1, -1),
+                        "distribution", distribution),
+                "mean_total_interest", getMeanTotalInterest(),
+                "fixed_rate_total_interest", fixedRateInterest,
+                "rule_version", ruleVersion);
+        if (rateVersion != 0) {
+            map.put("rate_version", rateVersion);
+        }
+        return map;
+    }
+}
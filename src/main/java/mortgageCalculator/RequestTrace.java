@@ -0,0 +1,143 @@
+package mortgageCalculator;
+
+import java.util.StringJoiner;
+
+/**
+ * RequestTrace - The time a request spent in each phase of the calculation path, measured with
+ * System.nanoTime laps. A request is in exactly one phase at a time, lap(phase) closes the current
+ * phase and opens the next, so the phases add up to the time between begin and finish without
+ * nested spans or allocation. The trace of the current request is held in a thread local, the
+ * request entry points, the controller, FastPathServlet and WhatIfSession, call the static lap,
+ * which is a single static field read while tracing is disabled and does nothing outside a traced
+ * request. The calculation methods themselves do not lap, they are also called once per row by
+ * batches and searches.
+ *
+ * The phases of a Spring MVC request are dispatch until the handler is found, binding of the
+ * parameters, validation of the request before the calculation, ie its as_of, the calculation
+ * including the calculator's checks of its inputs, or the cached result, the handler code after the
+ * calculation, and serialization of the response.
+ */
+public final class RequestTrace {
+
+    public static final int DISPATCH = 0;
+    public static final int BINDING = 1;
+    public static final int VALIDATION = 2;
+    public static final int CALCULATION = 3;
+    public static final int HANDLER = 4;
+    public static final int SERIALIZATION = 5;
+
+    // Log friendly names of the phases, indexed by phase.
+    private static final String[] names = {"dispatch", "binding", "validation", "calculation", "handler",
+            "serialization"};
+
+    /**
+     * The number of phases.
+     */
+    public static final int COUNT = names.length;
+
+    // Set once when tracing is configured, not volatile so a disabled check is a plain field read.
+    private static boolean enabled;
+
+    private static final ThreadLocal<RequestTrace> current = new ThreadLocal<>();
+
+    private final String requestId;
+    private final long start;
+    private final long[] nanos = new long[COUNT];
+    private int phase = DISPATCH;
+    private long lapStart;
+    private long total;
+
+    private RequestTrace(String requestId) {
+        this.requestId = requestId;
+        this.start = System.nanoTime();
+        this.lapStart = start;
+    }
+
+    static void setEnabled(boolean enabled) {
+        RequestTrace.enabled = enabled;
+    }
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start tracing a request on the current thread, in the dispatch phase.
+     *
+     * @return The trace, pass it to finish when the request completes.
+     */
+    static RequestTrace begin(String requestId) {
+        RequestTrace trace = new RequestTrace(requestId);
+        current.set(trace);
+        return trace;
+    }
+
+    /**
+     * Close the current phase of the current request and open the next one.
+     *
+     * @param phase The phase the request enters, ie RequestTrace.VALIDATION.
+     */
+    static void lap(int phase) {
+        if (enabled) {
+            RequestTrace trace = current.get();
+            if (trace != null) {
+                trace.next(phase);
+            }
+        }
+    }
+
+    private void next(int nextPhase) {
+        long now = System.nanoTime();
+        nanos[phase] += now - lapStart;
+        lapStart = now;
+        phase = nextPhase;
+    }
+
+    /**
+     * Close the current phase and stop tracing on the current thread.
+     */
+    void finish() {
+        next(phase);
+        total = lapStart - start;
+        current.remove();
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * @return The nanoseconds spent in a phase.
+     */
+    public long getNanos(int phase) {
+        return nanos[phase];
+    }
+
+    /**
+     * @return The nanoseconds from begin to finish.
+     */
+    public long getTotalNanos() {
+        return total;
+    }
+
+    /**
+     * @param phase A phase, from 0 to COUNT - 1.
+     * @return The name of the phase, ie "validation".
+     */
+    public static String name(int phase) {
+        return names[phase];
+    }
+
+    /**
+     * @return The phase times in milliseconds, ie "total=12.345ms dispatch=0.012ms ...".
+     */
+    @Override
+    public String toString() {
+        StringJoiner sj = new StringJoiner(" ");
+        sj.add(String.format("total=%.3fms", total / 1e6));
+        for (int i = 0; i < COUNT; i++) {
+            sj.add(String.format("%s=%.3fms", names[i], nanos[i] / 1e6));
+        }
+        return sj.toString();
+    }
+}
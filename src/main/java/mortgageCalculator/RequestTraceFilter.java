@@ -0,0 +1,86 @@
+package mortgageCalculator;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * RequestTraceFilter - Traces every request with a RequestTrace and logs the phase breakdown of
+ * requests slower than the threshold. The request ID is taken from the X-Request-ID header, or
+ * generated if the header is missing or not a plain token, and is returned in the same header so
+ * a caller can match a slow request log line to its call.
+ */
+public class RequestTraceFilter extends OncePerRequestFilter {
+
+    static final String REQUEST_ID = "X-Request-ID";
+
+    private static final int MAX_REQUEST_ID_LENGTH = 64;
+
+    private static final Logger log = LoggerFactory.getLogger(RequestTraceFilter.class);
+
+    private final long slowRequestNanos;
+
+    /**
+     * @param slowRequestMillis Requests that take this long or longer are logged, negative logs none.
+     */
+    public RequestTraceFilter(long slowRequestMillis) {
+        this.slowRequestNanos = slowRequestMillis < 0 ? Long.MAX_VALUE : slowRequestMillis * 1000000L;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+
+        String requestId = request.getHeader(REQUEST_ID);
+        if (!isValidRequestId(requestId)) {
+            requestId = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        }
+        response.setHeader(REQUEST_ID, requestId);
+
+        RequestTrace trace = RequestTrace.begin(requestId);
+        try {
+            chain.doFilter(request, response);
+        }
+        finally {
+            trace.finish();
+            if (trace.getTotalNanos() >= slowRequestNanos) {
+                slowRequest(request, response, trace);
+            }
+        }
+    }
+
+    /**
+     * Called with the trace of a request slower than the threshold, logs it as a warning.
+     */
+    protected void slowRequest(HttpServletRequest request, HttpServletResponse response, RequestTrace trace) {
+        String query = request.getQueryString();
+        log.warn("Slow request {} {} {}{} status={} {}", trace.getRequestId(), request.getMethod(),
+                request.getRequestURI(), query == null ? "" : "?" + query, response.getStatus(), trace);
+    }
+
+    /**
+     * @return True if the ID is a token of at most 64 letters, digits, '-', '_' or '.', so it is
+     *         safe to log and to return.
+     */
+    static boolean isValidRequestId(String requestId) {
+        if (requestId == null || requestId.isEmpty() || requestId.length() > MAX_REQUEST_ID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < requestId.length(); i++) {
+            char c = requestId.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '-' || c == '_'
+                    || c == '.')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,218 @@
+package mortgageCalculator;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * ResultCache - Caches the paymentAmount and mortgageAmount results of repeated queries. The key is
+ * the normalized inputs plus the version of the default interest rate and the lending rules, so a
+ * new default rate or rule set can never return a stale result, the cache is also cleared when
+ * either changes to free the unreachable entries, until the cache is destroyed. Configured by
+ * mortgage-calculator.cache in application.yml.
+ */
+@Component
+public class ResultCache implements DisposableBean {
+
+    private static final byte PAYMENT_AMOUNT = 0;
+    private static final byte MORTGAGE_AMOUNT = 1;
+
+    private final BoundedCache<Key, Map<?, ?>> cache;
+    private final Consumer<InterestRate> interestRateListener;
+    private final Consumer<RuleSet> ruleSetListener;
+
+    public ResultCache(@Value("${mortgage-calculator.cache.enabled:true}") boolean enabled,
+            @Value("${mortgage-calculator.cache.max-size:10000}") int maxSize,
+            @Value("${mortgage-calculator.cache.ttl-seconds:300}") long ttlSeconds) {
+        if (enabled) {
+            cache = new BoundedCache<>(maxSize, ttlSeconds * 1000L);
+            interestRateListener = rate -> cache.clear();
+            ruleSetListener = rules -> cache.clear();
+            MortgageCalculator.addInterestRateListener(interestRateListener);
+            MortgageCalculator.addRuleSetListener(ruleSetListener);
+        }
+        else {
+            cache = null;
+            interestRateListener = null;
+            ruleSetListener = null;
+        }
+    }
+
+    /**
+     * Remove the listeners when the context closes, the MortgageCalculator listener lists are
+     * static and would otherwise keep the cache of every closed context reachable.
+     */
+    @Override
+    public void destroy() {
+        if (cache != null) {
+            MortgageCalculator.removeInterestRateListener(interestRateListener);
+            MortgageCalculator.removeRuleSetListener(ruleSetListener);
+        }
+    }
+
+    /**
+     * See MortgageCalculator.paymentAmount.
+     *
+     * @param annualInterestRate The annual interest rate, if null the default rate is used.
+     */
+    public Map<?, ?> paymentAmount(double askingPrice, double downPayment, String paymentSchedule,
+            int amortizationPeriod, Double annualInterestRate) {
+        if (annualInterestRate == null) {
+            // read the default rate once so the key and the calculation use the same snapshot
+            return paymentAmountAt(askingPrice, downPayment, paymentSchedule, amortizationPeriod,
+                    MortgageCalculator.getInterestRate());
+        }
+        return paymentAmount(askingPrice, downPayment, paymentSchedule, amortizationPeriod, annualInterestRate, 0);
+    }
+
+    /**
+     * See MortgageCalculator.paymentAmount, at a rate snapshot.
+     *
+     * @param rate A snapshot of the default rate, current or from the rate history, the result
+     *        holds its version.
+     */
+    public Map<?, ?> paymentAmountAt(double askingPrice, double downPayment, String paymentSchedule,
+            int amortizationPeriod, InterestRate rate) {
+        return paymentAmount(askingPrice, downPayment, paymentSchedule, amortizationPeriod,
+                rate.getAnnualInterestRate(), rate.getVersion());
+    }
+
+    private Map<?, ?> paymentAmount(double askingPrice, double downPayment, String paymentSchedule,
+            int amortizationPeriod, double rate, long rateVersion) {
+        if (cache == null) {
+            return MortgageCalculator.paymentAmount(askingPrice, downPayment, paymentSchedule, amortizationPeriod,
+                    rate, rateVersion);
+        }
+        Key key = new Key(PAYMENT_AMOUNT, MortgageCalculator.getRuleSet(), askingPrice, downPayment, paymentSchedule,
+                amortizationPeriod, rate, rateVersion);
+        return cache.get(key, k -> Collections.unmodifiableMap(MortgageCalculator.paymentAmount(askingPrice,
+                downPayment, paymentSchedule, amortizationPeriod, rate, rateVersion)));
+    }
+
+    /**
+     * See MortgageCalculator.mortgageAmount.
+     *
+     * @param annualInterestRate The annual interest rate, if null the default rate is used.
+     */
+    public Map<?, ?> mortgageAmount(double payment, double downPayment, String paymentSchedule,
+            int amortizationPeriod, Double annualInterestRate) {
+        if (annualInterestRate == null) {
+            return mortgageAmountAt(payment, downPayment, paymentSchedule, amortizationPeriod,
+                    MortgageCalculator.getInterestRate());
+        }
+        return mortgageAmount(payment, downPayment, paymentSchedule, amortizationPeriod, annualInterestRate, 0);
+    }
+
+    /**
+     * See MortgageCalculator.mortgageAmount, at a rate snapshot.
+     *
+     * @param rate A snapshot of the default rate, current or from the rate history, the result
+     *        holds its version.
+     */
+    public Map<?, ?> mortgageAmountAt(double payment, double downPayment, String paymentSchedule,
+            int amortizationPeriod, InterestRate rate) {
+        return mortgageAmount(payment, downPayment, paymentSchedule, amortizationPeriod,
+                rate.getAnnualInterestRate(), rate.getVersion());
+    }
+
+    private Map<?, ?> mortgageAmount(double payment, double downPayment, String paymentSchedule,
+            int amortizationPeriod, double rate, long rateVersion) {
+        if (cache == null) {
+            return MortgageCalculator.mortgageAmount(payment, downPayment, paymentSchedule, amortizationPeriod,
+                    rate, rateVersion);
+        }
+        Key key = new Key(MORTGAGE_AMOUNT, MortgageCalculator.getRuleSet(), payment, downPayment, paymentSchedule,
+                amortizationPeriod, rate, rateVersion);
+        return cache.get(key, k -> Collections.unmodifiableMap(MortgageCalculator.mortgageAmount(payment,
+                downPayment, paymentSchedule, amortizationPeriod, rate, rateVersion)));
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    public void clear() {
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * @return The size, hit, miss and eviction counters of the cache.
+     */
+    public Map<?, ?> stats() {
+        if (cache == null) {
+            return MortgageCalculator.createMap("enabled", false);
+        }
+        return MortgageCalculator.createMap("enabled", true,
+                "size", cache.size(),
+                "hits", cache.getHits(),
+                "misses", cache.getMisses(),
+                "evictions", cache.getEvictions());
+    }
+
+    BoundedCache<Key, Map<?, ?>> getCache() {
+        return cache;
+    }
+
+    /**
+     * The normalized inputs of a calculation, the payment schedule is reduced to its number of
+     * payments per year so "Monthly" and "monthly" share an entry. The rule set is compared by
+     * identity, a reload always publishes a new instance.
+     */
+    static final class Key {
+        private final byte type;
+        private final RuleSet rules;
+        private final double amount;
+        private final double downPayment;
+        private final int paymentsPerYear;
+        private final int amortizationPeriod;
+        private final double annualInterestRate;
+        private final long rateVersion;
+
+        Key(byte type, RuleSet rules, double amount, double downPayment, String paymentSchedule,
+                int amortizationPeriod, double annualInterestRate, long rateVersion) {
+            this.type = type;
+            this.rules = rules;
+            this.amount = amount;
+            this.downPayment = downPayment;
+            this.paymentsPerYear = rules.paymentsPerYear(paymentSchedule);
+            this.amortizationPeriod = amortizationPeriod;
+            this.annualInterestRate = annualInterestRate;
+            this.rateVersion = rateVersion;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key k = (Key) o;
+            return type == k.type
+                    && rules == k.rules
+                    && Double.doubleToLongBits(amount) == Double.doubleToLongBits(k.amount)
+                    && Double.doubleToLongBits(downPayment) == Double.doubleToLongBits(k.downPayment)
+                    && paymentsPerYear == k.paymentsPerYear
+                    && amortizationPeriod == k.amortizationPeriod
+                    && Double.doubleToLongBits(annualInterestRate) == Double.doubleToLongBits(k.annualInterestRate)
+                    && rateVersion == k.rateVersion;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = type;
+            h = 31 * h + System.identityHashCode(rules);
+            h = 31 * h + Double.hashCode(amount);
+            h = 31 * h + Double.hashCode(downPayment);
+            h = 31 * h + paymentsPerYear;
+            h = 31 * h + amortizationPeriod;
+            h = 31 * h + Double.hashCode(annualInterestRate);
+            h = 31 * h + Long.hashCode(rateVersion);
+            return h;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package mortgageCalculator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * RuleSet - An immutable snapshot of the lending rules, the payment schedules, the amortization
+ * period bounds, the minimum down payment tiers and the mortgage insurance tiers. The rules are
+ * loaded from a versioned JSON file, see rules.json for the format, and compiled into primitive
+ * arrays so the calculations read them without allocating or locking.
+ *
+ * MortgageCalculator holds the current rule set, a calculation reads it once so it never mixes the
+ * rules of two versions, and a new rule set is published atomically by replacing the reference.
+ */
+public final class RuleSet {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final String version;
+
+    private final String[] scheduleNames;
+    private final int[] schedulePaymentsPerYear;
+
+    private final int minAmortizationPeriod;
+    private final int maxAmortizationPeriod;
+
+    // Asking price bound for minimum down payment calculation
+    private final double minDpBound;
+    // Percentage for asking price amount below minDpBound
+    private final double ltMinDpBoundRate;
+    // Percentage for remaining asking price above minDpBound
+    private final double gtMinDpBoundRate;
+
+    // Insurance calculation down payment to asking price bounds, ascending.
+    private final double[] dp2apRatioBounds;
+    // Insurance percentages for bounds defined in dp2apRatioBounds
+    private final double[] insurancePercentages;
+
+    RuleSet(String version, String[] scheduleNames, int[] schedulePaymentsPerYear, int minAmortizationPeriod,
+            int maxAmortizationPeriod, double minDpBound, double ltMinDpBoundRate, double gtMinDpBoundRate,
+            double[] dp2apRatioBounds, double[] insurancePercentages) {
+
+        if (version == null || version.isEmpty()) {
+            throw new IllegalArgumentException("The rule set has no version.");
+        }
+        if (scheduleNames.length == 0 || scheduleNames.length != schedulePaymentsPerYear.length) {
+            throw new IllegalArgumentException("There must be at least one payment schedule.");
+        }
+        for (int i = 0; i < scheduleNames.length; i++) {
+            if (schedulePaymentsPerYear[i] <= 0 || schedulePaymentsPerYear[i] > 366) {
+                throw new IllegalArgumentException("Payments per year of " + scheduleNames[i]
+                        + " must be between 1 and 366.");
+            }
+        }
+        if (minAmortizationPeriod <= 0 || minAmortizationPeriod > maxAmortizationPeriod
+                || maxAmortizationPeriod > 100) {
+            throw new IllegalArgumentException("The amortization periods must satisfy 0 < min <= max <= 100.");
+        }
+        if (!(minDpBound >= 0) || !validRate(ltMinDpBoundRate) || !validRate(gtMinDpBoundRate)) {
+            throw new IllegalArgumentException(
+                    "The minimum down payment bound must be positive and its rates between 0 and 1.");
+        }
+        if (dp2apRatioBounds.length != insurancePercentages.length) {
+            throw new IllegalArgumentException("Each insurance tier needs a ratio bound and a percentage.");
+        }
+        for (int i = 0; i < dp2apRatioBounds.length; i++) {
+            if (!(dp2apRatioBounds[i] > (i == 0 ? 0 : dp2apRatioBounds[i - 1])) || dp2apRatioBounds[i] > 1
+                    || !validRate(insurancePercentages[i])) {
+                throw new IllegalArgumentException(
+                        "Insurance ratio bounds must ascend within (0, 1] and percentages be between 0 and 1.");
+            }
+        }
+
+        this.version = version;
+        this.scheduleNames = scheduleNames.clone();
+        this.schedulePaymentsPerYear = schedulePaymentsPerYear.clone();
+        this.minAmortizationPeriod = minAmortizationPeriod;
+        this.maxAmortizationPeriod = maxAmortizationPeriod;
+        this.minDpBound = minDpBound;
+        this.ltMinDpBoundRate = ltMinDpBoundRate;
+        this.gtMinDpBoundRate = gtMinDpBoundRate;
+        this.dp2apRatioBounds = dp2apRatioBounds.clone();
+        this.insurancePercentages = insurancePercentages.clone();
+    }
+
+    private static boolean validRate(double rate) {
+        return rate >= 0 && rate < 1;
+    }
+
+    /**
+     * Parse and validate a rule set.
+     *
+     * @param in The JSON rule file, see rules.json.
+     * @return The rule set.
+     * @throws IllegalArgumentException If a rule is missing or invalid.
+     */
+    public static RuleSet load(InputStream in) throws IOException {
+        JsonNode root = mapper.readTree(in);
+        if (root == null || !root.isObject()) {
+            throw new IllegalArgumentException("The rule file must hold a JSON object.");
+        }
+
+        JsonNode schedules = required(root, "payment_schedules");
+        List<String> names = new ArrayList<>();
+        List<Integer> paymentsPerYear = new ArrayList<>();
+        for (Iterator<Map.Entry<String, JsonNode>> it = schedules.fields(); it.hasNext();) {
+            Map.Entry<String, JsonNode> schedule = it.next();
+            names.add(schedule.getKey().toLowerCase());
+            paymentsPerYear.add(schedule.getValue().asInt());
+        }
+
+        JsonNode amortization = required(root, "amortization_period");
+        JsonNode minDownPayment = required(root, "minimum_down_payment");
+        JsonNode insurance = required(root, "insurance");
+
+        return new RuleSet(required(root, "version").asText(),
+                names.toArray(new String[0]),
+                paymentsPerYear.stream().mapToInt(Integer::intValue).toArray(),
+                required(amortization, "min").asInt(),
+                required(amortization, "max").asInt(),
+                required(minDownPayment, "bound").asDouble(),
+                required(minDownPayment, "rate_below_bound").asDouble(),
+                required(minDownPayment, "rate_above_bound").asDouble(),
+                doubles(required(insurance, "down_payment_ratio_bounds")),
+                doubles(required(insurance, "percentages")));
+    }
+
+    private static JsonNode required(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        if (value == null || value.isNull()) {
+            throw new IllegalArgumentException("The rule file has no \"" + field + "\".");
+        }
+        return value;
+    }
+
+    private static double[] doubles(JsonNode array) {
+        double[] values = new double[array.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = array.get(i).asDouble(Double.NaN);
+        }
+        return values;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the number of payments per year of a payment schedule, the schedule is case insensitive.
+     *
+     * @return The number of payments per year or zero if the schedule is unknown.
+     */
+    int paymentsPerYear(String paymentSchedule) {
+        if (paymentSchedule != null) {
+            for (int i = 0; i < scheduleNames.length; i++) {
+                if (scheduleNames[i].equalsIgnoreCase(paymentSchedule)) {
+                    return schedulePaymentsPerYear[i];
+                }
+            }
+        }
+        return 0;
+    }
+
+    int[] getSchedulePaymentsPerYear() {
+        return schedulePaymentsPerYear.clone();
+    }
+
+    /**
+     * @return The valid payment schedules, formatted for error messages.
+     */
+    String getPaymentSchedules() {
+        return Arrays.toString(scheduleNames);
+    }
+
+    public int getMinAmortizationPeriod() {
+        return minAmortizationPeriod;
+    }
+
+    public int getMaxAmortizationPeriod() {
+        return maxAmortizationPeriod;
+    }
+
+    boolean validAmortizationPeriod(int amortizationPeriod) {
+        return amortizationPeriod >= minAmortizationPeriod && amortizationPeriod <= maxAmortizationPeriod;
+    }
+
+    /**
+     * Calculate the minimum down payment, by default 5% of the first $500k plus 10% of any amount
+     * above $500k.
+     */
+    double minimumDownPayment(double askingPrice) {
+        return askingPrice < minDpBound ? ltMinDpBoundRate*askingPrice :
+            ltMinDpBoundRate*minDpBound + gtMinDpBoundRate*(askingPrice - minDpBound);
+    }
+
+    /**
+     * The array version of minimumDownPayment, both tiers are computed for every element and the
+     * result is selected, so the loop body is straight line code.
+     */
+    void minimumDownPayments(double[] askingPrices, double[] minDownPayments) {
+        final double aboveBoundBase = ltMinDpBoundRate*minDpBound;
+        for (int i = 0; i < askingPrices.length; i++) {
+            double askingPrice = askingPrices[i];
+            double below = ltMinDpBoundRate*askingPrice;
+            double above = aboveBoundBase + gtMinDpBoundRate*(askingPrice - minDpBound);
+            minDownPayments[i] = askingPrice < minDpBound ? below : above;
+        }
+    }
+
+    /**
+     * The inverse of minimumDownPayment, the largest asking price downPayment is enough for.
+     */
+    double maximumAskingPrice(double downPayment) {
+        double belowBound = ltMinDpBoundRate > 0 ? downPayment / ltMinDpBoundRate : Double.POSITIVE_INFINITY;
+        if (belowBound < minDpBound) {
+            return belowBound;
+        }
+        return gtMinDpBoundRate > 0 ?
+            minDpBound + (downPayment - ltMinDpBoundRate*minDpBound) / gtMinDpBoundRate : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Calculate the required insurance, the percentage of the first tier whose bound the down
+     * payment to asking price ratio is below, none if the ratio is above every bound.
+     */
+    double insurance(double askingPrice, double downPayment) {
+
+        double dp2apRatio = downPayment / askingPrice, insurance = 0.;
+
+        for (int i = 0; i < dp2apRatioBounds.length; i++) {
+            if (dp2apRatio < dp2apRatioBounds[i]) {
+                insurance = insurancePercentages[i]*askingPrice;
+                break;
+            }
+        }
+        return insurance;
+    }
+
+    /**
+     * The array version of insurance. The tier of each element is found by selecting, from the
+     * highest bound down, the percentage of every bound its ratio is below rather than breaking out
+     * of a loop over the bounds, the selects can be compiled to conditional moves. The results are
+     * identical to insurance.
+     */
+    void insurance(double[] askingPrices, double[] downPayments, double[] insurances) {
+        final int tiers = dp2apRatioBounds.length;
+        for (int i = 0; i < askingPrices.length; i++) {
+            double dp2apRatio = downPayments[i] / askingPrices[i];
+            double percentage = 0.;
+            for (int t = tiers - 1; t >= 0; t--) {
+                percentage = dp2apRatio < dp2apRatioBounds[t] ? insurancePercentages[t] : percentage;
+            }
+            insurances[i] = percentage*askingPrices[i];
+        }
+    }
+
+    int getInsuranceTiers() {
+        return dp2apRatioBounds.length;
+    }
+
+    double getInsuranceRatioBound(int tier) {
+        return dp2apRatioBounds[tier];
+    }
+
+    double getInsurancePercentage(int tier) {
+        return insurancePercentages[tier];
+    }
+
+    /**
+     * @return The rules in the map format returned by the REST API, the same layout as the rule file.
+     */
+    public Map<?, ?> toMap() {
+        Map<String, Object> schedules = new LinkedHashMap<>();
+        for (int i = 0; i < scheduleNames.length; i++) {
+            schedules.put(scheduleNames[i], schedulePaymentsPerYear[i]);
+        }
+        return MortgageCalculator.createMap("version", version,
+                "payment_schedules", schedules,
+                "amortization_period", MortgageCalculator.createMap("min", minAmortizationPeriod,
+                        "max", maxAmortizationPeriod),
+                "minimum_down_payment", MortgageCalculator.createMap("bound", minDpBound,
+                        "rate_below_bound", ltMinDpBoundRate, "rate_above_bound", gtMinDpBoundRate),
+                "insurance", MortgageCalculator.createMap(
+                        "down_payment_ratio_bounds", Arrays.stream(dp2apRatioBounds).boxed().collect(Collectors.toList()),
+                        "percentages", Arrays.stream(insurancePercentages).boxed().collect(Collectors.toList())));
+    }
+
+    @Override
+    public String toString() {
+        return "rules version " + version;
+    }
+}
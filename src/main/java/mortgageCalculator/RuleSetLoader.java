@@ -0,0 +1,95 @@
+package mortgageCalculator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+/**
+ * RuleSetLoader - Loads the lending rules from an external file and reloads them when the file
+ * changes, so a regulatory change is a file edit rather than a redeploy. Without a file the rules
+ * bundled as rules.json are used. A file that fails to load at startup stops the application, a
+ * file that fails to reload is logged and the current rules stay in effect. Configured by
+ * mortgage-calculator.rules in application.yml. Never lazy, a bad file must fail the startup.
+ */
+@Component
+@Lazy(false)
+public class RuleSetLoader implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(RuleSetLoader.class);
+
+    private final File file;
+    private final ScheduledExecutorService poller;
+    private long lastModified;
+
+    public RuleSetLoader(@Value("${mortgage-calculator.rules.file:}") String file,
+            @Value("${mortgage-calculator.rules.poll-seconds:10}") long pollSeconds) throws IOException {
+        if (file.isEmpty()) {
+            this.file = null;
+            this.poller = null;
+            return;
+        }
+        this.file = new File(file);
+        lastModified = this.file.lastModified();
+        MortgageCalculator.setRuleSet(load(this.file));
+        log.info("Loaded {} from {}", MortgageCalculator.getRuleSet(), this.file);
+
+        if (pollSeconds > 0) {
+            poller = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "rule-set-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            poller.scheduleWithFixedDelay(this::reloadIfModified, pollSeconds, pollSeconds, TimeUnit.SECONDS);
+        }
+        else {
+            poller = null;
+        }
+    }
+
+    static RuleSet load(File file) throws IOException {
+        try (InputStream in = new FileInputStream(file)) {
+            return RuleSet.load(in);
+        }
+    }
+
+    /**
+     * Reload the rules if the file was modified since it was last loaded.
+     *
+     * @return True if new rules were published.
+     */
+    synchronized boolean reloadIfModified() {
+        long modified = file.lastModified();
+        if (modified == lastModified) {
+            return false;
+        }
+        lastModified = modified;
+        try {
+            RuleSet rules = load(file);
+            RuleSet previous = MortgageCalculator.setRuleSet(rules);
+            log.info("Replaced {} with {} from {}", previous, rules, file);
+            return true;
+        }
+        catch (IOException | RuntimeException e) {
+            log.warn("Keeping {}, {} could not be loaded: {}", MortgageCalculator.getRuleSet(), file, e.toString());
+            return false;
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (poller != null) {
+            poller.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package mortgageCalculator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import org.springframework.beans.factory.annotation.AnnotatedBeanDefinition;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * StartupConfiguration - Shortens the time to the first request of a new instance.
+ *
+ * With the prod profile every bean is created on first use rather than at startup, except beans
+ * annotated with @Lazy(false), so the actuator endpoints and converters a request does not touch
+ * are never built. Swagger is also off in that profile, see SwaggerConfiguration.
+ *
+ * With mortgage-calculator.cds-training the application calls its own endpoints once it is ready
+ * and exits. The cds maven profile runs it that way with -XX:ArchiveClassesAtExit to record the
+ * classes a request loads in a class data sharing archive, which later starts map instead of
+ * loading and verifying the classes again.
+ */
+@Configuration
+public class StartupConfiguration {
+
+    // The requests of the training run, their classes end up in the archive.
+    private static final String[] TRAINING_REQUESTS = {
+            "/payment-amount?asking_price=500000&down_payment=70000&payment_schedule=monthly&amortization_period=25",
+            "/mortgage-amount?payment=2000&payment_schedule=monthly&amortization_period=25",
+            "/max-asking-price?payment=2000&down_payment=70000&payment_schedule=monthly&amortization_period=25",
+            "/fast/payment-amount?asking_price=500000&down_payment=70000&payment_schedule=monthly&amortization_period=25",
+            "/interest-rate",
+            "/actuator/health"};
+
+    @Bean
+    @Profile("prod")
+    public static BeanFactoryPostProcessor lazyInitialization() {
+        return beanFactory -> {
+            for (String name : beanFactory.getBeanDefinitionNames()) {
+                BeanDefinition definition = beanFactory.getBeanDefinition(name);
+                if (!(definition instanceof AnnotatedBeanDefinition)
+                        || !((AnnotatedBeanDefinition) definition).getMetadata().isAnnotated(Lazy.class.getName())) {
+                    definition.setLazyInit(true);
+                }
+            }
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty("mortgage-calculator.cds-training")
+    public ApplicationListener<ApplicationReadyEvent> classDataTrainingRun() {
+        return event -> {
+            String port = event.getApplicationContext().getEnvironment().getProperty("local.server.port");
+            int status = 0;
+            for (String request : TRAINING_REQUESTS) {
+                try {
+                    HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + request)
+                            .openConnection();
+                    try (InputStream in = connection.getResponseCode() < 400 ? connection.getInputStream() :
+                            connection.getErrorStream()) {
+                        while (in != null && in.read() >= 0) {
+                        }
+                    }
+                    if (connection.getResponseCode() != 200) {
+                        status = 1;
+                    }
+                }
+                catch (IOException e) {
+                    status = 1;
+                }
+            }
+            // the archive is written when the JVM exits
+            int exitStatus = status;
+            System.exit(SpringApplication.exit(event.getApplicationContext(), () -> exitStatus));
+        };
+    }
+}
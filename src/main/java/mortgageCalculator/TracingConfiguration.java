@@ -0,0 +1,100 @@
+package mortgageCalculator;
+
+import java.util.Collections;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcRegistrations;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.Ordered;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * TracingConfiguration - Request tracing, see RequestTrace. The RequestTraceFilter runs first so
+ * the trace covers the whole request, a handler interceptor marks the start of parameter binding
+ * and a response body advice the start of serialization, the request entry points mark validation
+ * and the calculation around their call. Configured by mortgage-calculator.tracing in
+ * application.yml, when disabled none of these are registered and the entry points' marks reduce
+ * to a static field read.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "mortgage-calculator.tracing.enabled", havingValue = "true", matchIfMissing = true)
+public class TracingConfiguration implements WebMvcConfigurer {
+
+    @Bean
+    public FilterRegistrationBean<RequestTraceFilter> requestTraceFilter(
+            @Value("${mortgage-calculator.tracing.slow-request-ms:250}") long slowRequestMillis) {
+        RequestTrace.setEnabled(true);
+        FilterRegistrationBean<RequestTraceFilter> registration = new FilterRegistrationBean<>(
+                new RequestTraceFilter(slowRequestMillis));
+        registration.setName("requestTrace");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    /**
+     * The handler adapter with the SerializationAdvice. The advice is not a @ControllerAdvice, which
+     * component scanning would register whether tracing is enabled or not.
+     */
+    @Bean
+    public WebMvcRegistrations tracingRegistrations() {
+        return new WebMvcRegistrations() {
+            @Override
+            public RequestMappingHandlerAdapter getRequestMappingHandlerAdapter() {
+                RequestMappingHandlerAdapter adapter = new RequestMappingHandlerAdapter();
+                adapter.setResponseBodyAdvice(Collections.singletonList(new SerializationAdvice()));
+                return adapter;
+            }
+        };
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new BindingInterceptor());
+    }
+
+    /**
+     * Marks the start of binding, the handler has been found and its parameters are bound next.
+     */
+    static class BindingInterceptor extends HandlerInterceptorAdapter {
+        @Override
+        public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+            RequestTrace.lap(RequestTrace.BINDING);
+            return true;
+        }
+    }
+
+    /**
+     * Marks the start of serialization, the handler returned and its body is written next.
+     */
+    static class SerializationAdvice implements ResponseBodyAdvice<Object> {
+        @Override
+        public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+            return true;
+        }
+
+        @Override
+        public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                Class<? extends HttpMessageConverter<?>> selectedConverterType, ServerHttpRequest request,
+                ServerHttpResponse response) {
+            RequestTrace.lap(RequestTrace.SERIALIZATION);
+            return body;
+        }
+    }
+}
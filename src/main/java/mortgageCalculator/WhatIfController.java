@@ -0,0 +1,115 @@
+package mortgageCalculator;
+
+import java.net.URI;
+import java.util.Map;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import io.swagger.annotations.ApiResponse;
+import io.swagger.annotations.ApiResponses;
+
+/**
+ * WhatIfController - The /what-if endpoints, a calculator UI starts a session with the
+ * /payment-amount parameters and then changes one or more of them with each PATCH, only the terms
+ * of the payment that depend on the changed parameters are recomputed, see WhatIfSession.
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class WhatIfController {
+
+    private static final String PATH = "/what-if";
+
+    private final WhatIfSessions sessions;
+    private final CalculatorMetrics calculatorMetrics;
+
+    public WhatIfController(WhatIfSessions sessions, CalculatorMetrics calculatorMetrics) {
+        this.sessions = sessions;
+        this.calculatorMetrics = calculatorMetrics;
+    }
+
+    @ApiOperation(value = "Start a what-if session, the body is the payment amount of the parameters and the session id", response = Map.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 201, message = "The session is started, it is at the Location"),
+            @ApiResponse(code = 400, message = "Unexpected request data")})
+    @RequestMapping(path = PATH, method = RequestMethod.POST, produces = "application/json")
+    public ResponseEntity<Map<?, ?>> create(
+            @ApiParam(defaultValue = "500000") @RequestParam("asking_price") double askingPrice,
+            @ApiParam(defaultValue = "70000") @RequestParam("down_payment") double downPayment,
+            @ApiParam(value = "If omitted the session follows the default interest rate") @RequestParam(name = "annual_interest_rate", required = false) Double annualInterestRate,
+            @ApiParam(defaultValue = "monthly", allowableValues = "weekly, biweekly, monthly") @RequestParam("payment_schedule") String paymentSchedule,
+            @ApiParam(defaultValue = "25", value = "The length of the loan in years, min 5 years, max 25 years", allowableValues = "range[5,25]") @RequestParam("amortization_period") int amortizationPeriod) {
+
+        try {
+            WhatIfSession session = sessions.create(askingPrice, downPayment, paymentSchedule, amortizationPeriod,
+                    annualInterestRate);
+            return ResponseEntity.created(URI.create(PATH + "/" + session.getId())).body(session.toMap());
+        }
+        catch (IllegalArgumentException e) {
+            calculatorMetrics.validationErrors(PATH, e);
+            return MortgageCalculatorController.resp(HttpStatus.BAD_REQUEST, "error", e.getMessage());
+        }
+    }
+
+    @ApiOperation(value = "Change some of the parameters of a what-if session and get the new payment amount", response = Map.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully recalculated the payment"),
+            @ApiResponse(code = 400, message = "Unexpected request data, the session is unchanged"),
+            @ApiResponse(code = 404, message = "There is no such session, or it expired")})
+    @RequestMapping(path = PATH + "/{id}", method = RequestMethod.PATCH, produces = "application/json")
+    public ResponseEntity<Map<?, ?>> update(@PathVariable("id") String id,
+            @RequestParam(name = "asking_price", required = false) Double askingPrice,
+            @RequestParam(name = "down_payment", required = false) Double downPayment,
+            @RequestParam(name = "annual_interest_rate", required = false) Double annualInterestRate,
+            @ApiParam(allowableValues = "weekly, biweekly, monthly") @RequestParam(name = "payment_schedule", required = false) String paymentSchedule,
+            @ApiParam(allowableValues = "range[5,25]") @RequestParam(name = "amortization_period", required = false) Integer amortizationPeriod) {
+
+        try {
+            Map<?, ?> map = sessions.update(id, askingPrice, downPayment, paymentSchedule, amortizationPeriod,
+                    annualInterestRate);
+            if (map == null) {
+                return notFound(id);
+            }
+            return MortgageCalculatorController.resp(HttpStatus.OK, map);
+        }
+        catch (IllegalArgumentException e) {
+            calculatorMetrics.validationErrors(PATH, e);
+            return MortgageCalculatorController.resp(HttpStatus.BAD_REQUEST, "error", e.getMessage());
+        }
+    }
+
+    @ApiOperation(value = "Get the payment amount of a what-if session, at the current default rate unless the session has its own", response = Map.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Successfully calculated the payment"),
+            @ApiResponse(code = 400, message = "The session is invalid under the current lending rules"),
+            @ApiResponse(code = 404, message = "There is no such session, or it expired")})
+    @RequestMapping(path = PATH + "/{id}", method = RequestMethod.GET, produces = "application/json")
+    public ResponseEntity<Map<?, ?>> get(@PathVariable("id") String id) {
+        return update(id, null, null, null, null, null);
+    }
+
+    @ApiOperation(value = "End a what-if session", response = Map.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "The session is ended"),
+            @ApiResponse(code = 404, message = "There is no such session, or it expired")})
+    @RequestMapping(path = PATH + "/{id}", method = RequestMethod.DELETE, produces = "application/json")
+    public ResponseEntity<Map<?, ?>> delete(@PathVariable("id") String id) {
+        if (!sessions.remove(id)) {
+            return notFound(id);
+        }
+        return MortgageCalculatorController.resp(HttpStatus.OK, "session", id);
+    }
+
+    private static ResponseEntity<Map<?, ?>> notFound(String id) {
+        return MortgageCalculatorController.resp(HttpStatus.NOT_FOUND, "error",
+                String.format("There is no what-if session %s.", id));
+    }
+}
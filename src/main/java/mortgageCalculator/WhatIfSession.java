@@ -0,0 +1,200 @@
+package mortgageCalculator;
+
+import java.util.Map;
+
+/**
+ * WhatIfSession - A payment calculation that is changed one input at a time, as a calculator UI
+ * does while a slider moves. The session keeps the intermediate terms of paymentAmount and an
+ * update only recomputes the terms that depend on the changed inputs:
+ *
+ * - asking price: the minimum down payment, the insurance and the principal and its formula
+ * - down payment: the insurance and the principal and its formula
+ * - interest rate: the rate per payment and the annuity factor, the (1 + c)^n power term
+ * - payment schedule: the rate per payment, the number of payments and the annuity factor
+ * - amortization period: the number of payments and the annuity factor
+ *
+ * and the payment, the principal times the annuity factor, if either changed. New lending rules
+ * recompute every term. A session without an interest rate follows the default rate, a new default
+ * rate is picked up by the next update like a changed rate. The results are identical to
+ * MortgageCalculator.paymentAmount. An invalid update is rejected and leaves the session unchanged.
+ */
+public final class WhatIfSession {
+
+    // the terms recomputed by an update, see getRecomputed
+    static final int MINIMUM_DOWN_PAYMENT = 1;
+    static final int INSURANCE = 1 << 1;
+    static final int PRINCIPAL = 1 << 2;
+    static final int RATE = 1 << 3;
+    static final int NUM_PAYMENTS = 1 << 4;
+    static final int ANNUITY_FACTOR = 1 << 5;
+    static final int PAYMENT = 1 << 6;
+    static final int ALL = (1 << 7) - 1;
+
+    private final String id;
+
+    // the inputs, givenRate is null for the default rate
+    private double askingPrice;
+    private double downPayment;
+    private String paymentSchedule;
+    private int paymentsPerYear;
+    private int amortizationPeriod;
+    private Double givenRate;
+    private double annualInterestRate;
+    private long rateVersion;
+    private RuleSet rules;
+
+    // the intermediate terms
+    private double minimumDownPayment;
+    private double insurance;
+    private double principal;
+    private double rate;
+    private double numPayments;
+    private double annuityFactor;
+    private double payment;
+    private String principalFormula;
+    private int recomputed;
+
+    /**
+     * @param annualInterestRate The annual interest rate, if null the default rate is used.
+     * @throws CalculationException If the inputs are invalid, see MortgageCalculator.paymentAmount.
+     */
+    WhatIfSession(String id, double askingPrice, double downPayment, String paymentSchedule,
+            int amortizationPeriod, Double annualInterestRate) {
+        this.id = id;
+        this.askingPrice = askingPrice;
+        this.downPayment = downPayment;
+        this.paymentSchedule = paymentSchedule;
+        this.amortizationPeriod = amortizationPeriod;
+        this.givenRate = annualInterestRate;
+        update(null, null, null, null, null);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Change some of the inputs and recompute the terms that depend on them.
+     *
+     * @param askingPrice The new asking price, null to keep the current one. The other parameters
+     *        likewise.
+     * @return The result, see toMap.
+     * @throws CalculationException If the new inputs are invalid, nothing is changed.
+     */
+    synchronized Map<String, Object> update(Double askingPrice, Double downPayment, String paymentSchedule,
+            Integer amortizationPeriod, Double annualInterestRate) {
+
+        RequestTrace.lap(RequestTrace.VALIDATION);
+        RuleSet rules = MortgageCalculator.getRuleSet();
+        double newAskingPrice = askingPrice != null ? askingPrice : this.askingPrice;
+        double newDownPayment = downPayment != null ? downPayment : this.downPayment;
+        String newPaymentSchedule = paymentSchedule != null ? paymentSchedule : this.paymentSchedule;
+        int newAmortizationPeriod = amortizationPeriod != null ? amortizationPeriod : this.amortizationPeriod;
+        Double newGivenRate = annualInterestRate != null ? annualInterestRate : givenRate;
+        double newAnnualInterestRate;
+        long newRateVersion;
+        if (newGivenRate == null) {
+            InterestRate defaultRate = MortgageCalculator.getInterestRate();
+            newAnnualInterestRate = defaultRate.getAnnualInterestRate();
+            newRateVersion = defaultRate.getVersion();
+        }
+        else {
+            newAnnualInterestRate = newGivenRate;
+            newRateVersion = 0;
+        }
+
+        int changed = rules != this.rules ? ALL : 0;
+        if (newAskingPrice != this.askingPrice) {
+            changed |= MINIMUM_DOWN_PAYMENT | INSURANCE | PRINCIPAL;
+        }
+        if (newDownPayment != this.downPayment) {
+            changed |= INSURANCE | PRINCIPAL;
+        }
+        int newPaymentsPerYear = (changed & RATE) != 0 || !newPaymentSchedule.equals(this.paymentSchedule) ?
+                rules.paymentsPerYear(newPaymentSchedule) : this.paymentsPerYear;
+        if (newPaymentsPerYear != this.paymentsPerYear) {
+            changed |= RATE | NUM_PAYMENTS | ANNUITY_FACTOR;
+        }
+        if (newAmortizationPeriod != this.amortizationPeriod) {
+            changed |= NUM_PAYMENTS | ANNUITY_FACTOR;
+        }
+        if (newAnnualInterestRate != this.annualInterestRate) {
+            changed |= RATE | ANNUITY_FACTOR;
+        }
+        if ((changed & (PRINCIPAL | ANNUITY_FACTOR)) != 0) {
+            changed |= PAYMENT;
+        }
+
+        double newMinimumDownPayment = (changed & MINIMUM_DOWN_PAYMENT) != 0 ?
+                rules.minimumDownPayment(newAskingPrice) : this.minimumDownPayment;
+        if (changed != 0) {
+            int errors = MortgageCalculator.validatePaymentAmount(rules, newAskingPrice, newDownPayment,
+                    newPaymentsPerYear, newAmortizationPeriod, newAnnualInterestRate, newMinimumDownPayment);
+            if (errors != CalculationErrors.NONE) {
+                RequestTrace.lap(RequestTrace.HANDLER);
+                throw new CalculationException(errors, rules, newMinimumDownPayment);
+            }
+        }
+        RequestTrace.lap(RequestTrace.CALCULATION);
+
+        this.askingPrice = newAskingPrice;
+        this.downPayment = newDownPayment;
+        this.paymentSchedule = newPaymentSchedule;
+        this.paymentsPerYear = newPaymentsPerYear;
+        this.amortizationPeriod = newAmortizationPeriod;
+        this.givenRate = newGivenRate;
+        this.annualInterestRate = newAnnualInterestRate;
+        this.rateVersion = newRateVersion;
+        this.rules = rules;
+        this.minimumDownPayment = newMinimumDownPayment;
+        if ((changed & INSURANCE) != 0) {
+            insurance = rules.insurance(newAskingPrice, newDownPayment);
+        }
+        if ((changed & PRINCIPAL) != 0) {
+            principal = insurance + newAskingPrice - newDownPayment;
+            // formatted again by the next toMap
+            principalFormula = null;
+        }
+        if ((changed & RATE) != 0) {
+            rate = newAnnualInterestRate / (100.0 * newPaymentsPerYear);
+        }
+        if ((changed & NUM_PAYMENTS) != 0) {
+            numPayments = newAmortizationPeriod * (double) newPaymentsPerYear;
+        }
+        if ((changed & ANNUITY_FACTOR) != 0) {
+            annuityFactor = MortgageCalculator.annuityFactor(newAnnualInterestRate, newPaymentsPerYear,
+                    newAmortizationPeriod);
+        }
+        if ((changed & PAYMENT) != 0) {
+            payment = principal * annuityFactor;
+        }
+        recomputed = changed;
+        RequestTrace.lap(RequestTrace.HANDLER);
+        return toMap();
+    }
+
+    /**
+     * @return The bit set of the terms the last update recomputed.
+     */
+    synchronized int getRecomputed() {
+        return recomputed;
+    }
+
+    /**
+     * @return The result in the format of /payment-amount and the "session" id.
+     */
+    @SuppressWarnings("unchecked")
+    synchronized Map<String, Object> toMap() {
+        PaymentResult result = new PaymentResult();
+        result.set(payment, numPayments, rate, paymentsPerYear, askingPrice, downPayment, insurance, principal,
+                rules.getVersion());
+        result.setMinimumDownPayment(minimumDownPayment);
+        result.setRateVersion(rateVersion);
+        if (principalFormula == null) {
+            principalFormula = result.getPrincipalFormula();
+        }
+        Map<String, Object> map = (Map<String, Object>) result.toMap(principalFormula);
+        map.put("session", id);
+        return map;
+    }
+}
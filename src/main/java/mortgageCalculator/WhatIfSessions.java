@@ -0,0 +1,94 @@
+package mortgageCalculator;
+
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * WhatIfSessions - The WhatIfSession of every calculator UI, in a BoundedCache so the number of
+ * sessions is bounded, the least recently used session is evicted first, and a session idle for
+ * idle-minutes expires. A session is a few hundred bytes, the default 100000 sessions fit in
+ * about 30 MB. Configured by mortgage-calculator.what-if in application.yml.
+ */
+@Component
+public class WhatIfSessions implements MeterBinder {
+
+    private final BoundedCache<String, WhatIfSession> sessions;
+
+    public WhatIfSessions(@Value("${mortgage-calculator.what-if.max-sessions:100000}") int maxSessions,
+            @Value("${mortgage-calculator.what-if.idle-minutes:30}") long idleMinutes) {
+        sessions = new BoundedCache<>(maxSessions, idleMinutes * 60000L);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("mortgage.calculator.what-if.sessions", sessions, BoundedCache::size)
+                .description("What-if sessions in memory").register(registry);
+        FunctionCounter.builder("mortgage.calculator.what-if.evictions", sessions, BoundedCache::getEvictions)
+                .description("What-if sessions evicted or expired").register(registry);
+    }
+
+    /**
+     * Start a session, see WhatIfSession.
+     *
+     * @return The new session.
+     * @throws CalculationException If the inputs are invalid, no session is started.
+     */
+    public WhatIfSession create(double askingPrice, double downPayment, String paymentSchedule,
+            int amortizationPeriod, Double annualInterestRate) {
+        WhatIfSession session = new WhatIfSession(UUID.randomUUID().toString(), askingPrice, downPayment,
+                paymentSchedule, amortizationPeriod, annualInterestRate);
+        sessions.put(session.getId(), session);
+        return session;
+    }
+
+    /**
+     * Change some of the inputs of a session, see WhatIfSession.update. The session's idle time
+     * starts again.
+     *
+     * @return The result, null if there is no such session or it expired.
+     * @throws CalculationException If the new inputs are invalid, the session is unchanged.
+     */
+    public Map<String, Object> update(String id, Double askingPrice, Double downPayment, String paymentSchedule,
+            Integer amortizationPeriod, Double annualInterestRate) {
+        WhatIfSession session = get(id);
+        if (session == null) {
+            return null;
+        }
+        return session.update(askingPrice, downPayment, paymentSchedule, amortizationPeriod, annualInterestRate);
+    }
+
+    /**
+     * @return The session, null if there is no such session or it expired. Its idle time starts
+     *         again.
+     */
+    public WhatIfSession get(String id) {
+        WhatIfSession session = sessions.get(id);
+        if (session != null) {
+            sessions.put(id, session);
+        }
+        return session;
+    }
+
+    /**
+     * @return False if there is no such session or it expired.
+     */
+    public boolean remove(String id) {
+        if (sessions.get(id) == null) {
+            return false;
+        }
+        sessions.remove(id);
+        return true;
+    }
+
+    int size() {
+        return sessions.size();
+    }
+}
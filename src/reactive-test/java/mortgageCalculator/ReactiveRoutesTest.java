@@ -0,0 +1,94 @@
+package mortgageCalculator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import java.net.URI;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.reactive.server.EntityExchangeResult;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class ReactiveRoutesTest {
+
+	private MockMvc mockMvc;
+	private WebTestClient webTestClient;
+	private SimpleMeterRegistry mvcRegistry;
+	private SimpleMeterRegistry reactiveRegistry;
+
+	@Before
+	public void setUp() {
+		ResultCache resultCache = new ResultCache(false, 0, 0);
+		mvcRegistry = new SimpleMeterRegistry();
+		mockMvc = MockMvcBuilders.standaloneSetup(new MortgageCalculatorController(resultCache,
+				new CalculatorMetrics(mvcRegistry, resultCache))).build();
+		reactiveRegistry = new SimpleMeterRegistry();
+		CalculatorMetrics calculatorMetrics = new CalculatorMetrics(reactiveRegistry, resultCache);
+		webTestClient = WebTestClient.bindToRouterFunction(new ReactiveRoutes().calculatorRoutes(
+				new MortgageCalculatorController(resultCache, calculatorMetrics), calculatorMetrics)).build();
+	}
+
+	/**
+	 * Call the Spring MVC endpoint and the reactive route with the same query, the status, body and
+	 * headers must match.
+	 */
+	private void assertSame(String path, String query, int expectedStatus) throws Exception {
+		MockHttpServletResponse mvc = mockMvc.perform(get(new URI(path + "?" + query))).andReturn().getResponse();
+		EntityExchangeResult<byte[]> reactive = webTestClient.get().uri(path + "?" + query).exchange()
+				.expectBody().returnResult();
+		assertEquals(query, expectedStatus, mvc.getStatus());
+		assertEquals(query, mvc.getStatus(), reactive.getStatus().value());
+		assertArrayEquals(query, mvc.getContentAsByteArray(), reactive.getResponseBody());
+		assertEquals(query, MediaType.parseMediaType(mvc.getContentType()), reactive.getResponseHeaders().getContentType());
+		assertEquals(query, mvc.getHeader("ETag"), reactive.getResponseHeaders().getETag());
+		assertEquals(query, mvc.getHeader("Cache-Control"), reactive.getResponseHeaders().getCacheControl());
+	}
+
+	@Test
+	public void testPaymentAmount() throws Exception {
+		assertSame("/payment-amount", "asking_price=500000&down_payment=70000&payment_schedule=monthly&amortization_period=25", 200);
+		assertSame("/payment-amount", "asking_price=300000&down_payment=15000&payment_schedule=biweekly&amortization_period=20&annual_interest_rate=4.25", 200);
+		assertSame("/payment-amount", "asking_price=500000&down_payment=70000&payment_schedule=monthly&amortization_period=25&annual_interest_rate=", 200);
+		assertSame("/payment-amount", "asking_price=500000&down_payment=1000&payment_schedule=monthly&amortization_period=25", 400);
+		assertSame("/payment-amount", "asking_price=500000&down_payment=70000&payment_schedule=daily&amortization_period=30", 400);
+	}
+
+	@Test
+	public void testMortgageAmount() throws Exception {
+		assertSame("/mortgage-amount", "payment=2000&payment_schedule=monthly&amortization_period=25", 200);
+		assertSame("/mortgage-amount", "payment=2000&down_payment=50000&payment_schedule=weekly&amortization_period=20&annual_interest_rate=3", 200);
+		assertSame("/mortgage-amount", "payment=2000&payment_schedule=monthly&amortization_period=25&annual_interest_rate=-1", 400);
+		assertSame("/interest-rate", "", 200);
+	}
+
+	@Test
+	public void testParameterErrors() throws Exception {
+		assertSame("/payment-amount", "asking_price=500000&payment_schedule=monthly&amortization_period=25", 400);
+		assertSame("/payment-amount", "asking_price=abc&down_payment=70000&payment_schedule=monthly&amortization_period=25", 400);
+		assertSame("/payment-amount", "asking_price=500000&down_payment=70000&payment_schedule=monthly&amortization_period=2.5", 400);
+		assertSame("/mortgage-amount", "payment_schedule=monthly&amortization_period=25", 400);
+		assertSame("/mortgage-amount", "payment=2000&payment_schedule=monthly&amortization_period=25&annual_interest_rate=x", 400);
+		// and are counted alike
+		for (String endpoint : new String[] { "/payment-amount", "/mortgage-amount" }) {
+			assertEquals(endpoint,
+					mvcRegistry.get(CalculatorMetrics.VALIDATION_ERRORS).tag("endpoint", endpoint).tag("type", "other").counter().count(),
+					reactiveRegistry.get(CalculatorMetrics.VALIDATION_ERRORS).tag("endpoint", endpoint).tag("type", "other").counter().count(),
+					0.0);
+		}
+	}
+
+	@Test
+	public void testNotAcceptable() {
+		webTestClient.get().uri("/payment-amount?asking_price=500000&down_payment=70000&payment_schedule=monthly&amortization_period=25")
+				.accept(MediaType.parseMediaType(BinaryFormatConfiguration.CBOR)).exchange()
+				.expectStatus().isEqualTo(406);
+	}
+}
@@ -0,0 +1,163 @@
+package mortgageCalculator;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.PATCH;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * ReactiveRoutes - The /payment-amount, /mortgage-amount and /interest-rate endpoints as WebFlux
+ * functional routes on Netty, used when the application runs with the reactive profile
+ * (spring.main.web-application-type: reactive). The handlers parse the query parameters and call
+ * the MortgageCalculatorController methods so both modes share one contract, and a missing or
+ * malformed parameter gets the same 400 and is counted the same way. The results are JSON only, a
+ * request that does not accept JSON, ie only CBOR or Smile, is answered with a 406. Built by the
+ * reactive maven profile.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveRoutes {
+
+    private static final PathPattern SET_INTEREST_RATE =
+            new PathPatternParser().parse("/interest-rate/{annualInterestRate}");
+
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+
+    @Bean
+    public RouterFunction<ServerResponse> calculatorRoutes(MortgageCalculatorController controller,
+            CalculatorMetrics calculatorMetrics) {
+        return route(GET("/payment-amount"), request -> handle(request, calculatorMetrics, () -> controller.paymentAmount(
+                    requiredDouble(request, "asking_price"),
+                    requiredDouble(request, "down_payment"),
+                    optionalDouble(request, "annual_interest_rate"),
+                    required(request, "payment_schedule"),
+                    requiredInt(request, "amortization_period"),
+                    request.queryParam("as_of").orElse(null),
+                    request.headers().asHttpHeaders().getFirst(HttpHeaders.ACCEPT))))
+                .andRoute(GET("/mortgage-amount"), request -> handle(request, calculatorMetrics, () -> controller.mortgageAmount(
+                    requiredDouble(request, "payment"),
+                    optionalDouble(request, "down_payment"),
+                    optionalDouble(request, "annual_interest_rate"),
+                    required(request, "payment_schedule"),
+                    requiredInt(request, "amortization_period"),
+                    request.queryParam("as_of").orElse(null),
+                    request.headers().asHttpHeaders().getFirst(HttpHeaders.ACCEPT))))
+                .andRoute(GET("/interest-rate"), request -> handle(request, calculatorMetrics, () -> controller.getAnnualInterestRate(
+                    request.queryParam("as_of").orElse(null))))
+                .andRoute(PATCH(SET_INTEREST_RATE.getPatternString()), request -> handle(request, calculatorMetrics, () -> {
+                    // tag the request metrics with the pattern rather than one uri per rate
+                    request.attributes().put(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, SET_INTEREST_RATE);
+                    return controller.setAnnualInterestRate(
+                        parseDouble("annualInterestRate", request.pathVariable("annualInterestRate")),
+                        request.queryParam("expected_version").map(v -> parseLong("expected_version", v))
+                            .orElse(null));
+                }));
+    }
+
+    /**
+     * A request parameter is missing or malformed.
+     */
+    private static class ParameterException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        ParameterException(String message) {
+            super(message);
+        }
+    }
+
+    private interface Handler {
+        ResponseEntity<Map<?, ?>> handle();
+    }
+
+    private static Mono<ServerResponse> handle(ServerRequest request, CalculatorMetrics calculatorMetrics,
+            Handler handler) {
+        List<MediaType> accept = request.headers().accept();
+        if (!accept.isEmpty() && accept.stream().noneMatch(MediaType.APPLICATION_JSON::isCompatibleWith)) {
+            return ServerResponse.status(HttpStatus.NOT_ACCEPTABLE).build();
+        }
+        ResponseEntity<Map<?, ?>> response;
+        try {
+            response = handler.handle();
+        }
+        catch (ParameterException e) {
+            Object pattern = request.attributes().get(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            calculatorMetrics.validationErrors(pattern != null ? pattern.toString() : request.path(), e);
+            response = MortgageCalculatorController.resp(HttpStatus.BAD_REQUEST, "error", e.getMessage());
+        }
+        HttpHeaders headers = response.getHeaders();
+        if (response.getStatusCode() == HttpStatus.OK && HttpCaching.matches(
+                request.headers().asHttpHeaders().getFirst(HttpHeaders.IF_NONE_MATCH), headers.getETag())) {
+            return ServerResponse.status(HttpStatus.NOT_MODIFIED).headers(h -> h.addAll(headers)).build();
+        }
+        return ServerResponse.status(response.getStatusCode()).headers(h -> h.addAll(headers))
+                .contentType(MediaType.APPLICATION_JSON_UTF8).syncBody(response.getBody());
+    }
+
+    private static String required(ServerRequest request, String name) {
+        Optional<String> value = request.queryParam(name);
+        if (!value.isPresent()) {
+            throw new ParameterException(String.format("Required parameter '%s' is not present", name));
+        }
+        return value.get();
+    }
+
+    private static double requiredDouble(ServerRequest request, String name) {
+        return parseDouble(name, required(request, name));
+    }
+
+    private static int requiredInt(ServerRequest request, String name) {
+        String value = required(request, name);
+        try {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e) {
+            throw new ParameterException(String.format("Parameter '%s' is not an integer: %s", name, value));
+        }
+    }
+
+    private static Double optionalDouble(ServerRequest request, String name) {
+        // an empty value is absent, as Spring MVC binds it
+        return request.queryParam(name).filter(v -> !v.isEmpty()).map(v -> parseDouble(name, v)).orElse(null);
+    }
+
+    private static double parseDouble(String name, String value) {
+        try {
+            return Double.parseDouble(value);
+        }
+        catch (NumberFormatException e) {
+            throw new ParameterException(String.format("Parameter '%s' is not a number: %s", name, value));
+        }
+    }
+
+    private static long parseLong(String name, String value) {
+        try {
+            return Long.parseLong(value);
+        }
+        catch (NumberFormatException e) {
+            throw new ParameterException(String.format("Parameter '%s' is not an integer: %s", name, value));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package mortgageCalculator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class AdmissionControlTest {
+
+	private static final long SECOND = 1000000000L;
+
+	@Test
+	public void testRateLimiter() {
+		RateLimiter limiter = new RateLimiter(10, 5, 100);
+		long now = 1000 * SECOND;
+		// a new client has a full bucket, a burst of 5
+		for (int i = 0; i < 5; i++) {
+			assertEquals(0, limiter.tryAcquire("a", now));
+		}
+		long wait = limiter.tryAcquire("a", now);
+		assertEquals(SECOND / 10, wait);
+		// other clients have their own buckets
+		assertEquals(0, limiter.tryAcquire("b", now));
+
+		// one token comes back every 100ms, a rejected request does not take one
+		assertEquals(0, limiter.tryAcquire("a", now + wait));
+		assertTrue(limiter.tryAcquire("a", now + wait) > 0);
+		// after a second idle the bucket is full again, but holds no more than the burst
+		now += 10 * SECOND;
+		for (int i = 0; i < 5; i++) {
+			assertEquals(0, limiter.tryAcquire("a", now));
+		}
+		assertTrue(limiter.tryAcquire("a", now) > 0);
+	}
+
+	@Test
+	public void testRateLimiterClients() {
+		RateLimiter limiter = new RateLimiter(1, 1, 10);
+		long now = 1000 * SECOND;
+		for (int i = 0; i < 10; i++) {
+			assertEquals(0, limiter.tryAcquire("client" + i, now));
+		}
+		// every bucket is in use, new clients share the overflow bucket
+		assertEquals(0, limiter.tryAcquire("new1", now));
+		assertTrue(limiter.tryAcquire("new2", now) > 0);
+		assertEquals(10, limiter.size());
+
+		// once the buckets are full they are removed to make room, without changing any decision
+		now += 2 * SECOND;
+		assertEquals(0, limiter.tryAcquire("new2", now));
+		assertEquals(1, limiter.size());
+		assertTrue(limiter.tryAcquire("new2", now) > 0);
+		assertEquals(0, limiter.tryAcquire("client0", now));
+	}
+
+	@Test
+	public void testRateLimiterConcurrent() throws Exception {
+		// with no time passing exactly the burst is admitted however the threads interleave
+		RateLimiter limiter = new RateLimiter(1, 1000, 10);
+		long now = 1000 * SECOND;
+		AtomicInteger admitted = new AtomicInteger();
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 10000; i++) {
+					if (limiter.tryAcquire("a", now) == 0) {
+						admitted.incrementAndGet();
+					}
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(1000, admitted.get());
+	}
+
+	private static MockHttpServletRequest request(String apiKey) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/payment-amount");
+		if (apiKey != null) {
+			request.addHeader(AdmissionFilter.API_KEY, apiKey);
+		}
+		return request;
+	}
+
+	@Test
+	public void testRateLimited() throws Exception {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		AdmissionFilter filter = new AdmissionFilter(new RateLimiter(0.5, 2, 100), 0,
+				Collections.singleton("key"));
+		filter.bindTo(registry);
+
+		for (int i = 0; i < 2; i++) {
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			filter.doFilter(request("key"), response, new MockFilterChain());
+			assertEquals(200, response.getStatus());
+		}
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request("key"), response, new MockFilterChain());
+		assertEquals(429, response.getStatus());
+		assertEquals("2", response.getHeader("Retry-After"));
+		assertTrue(response.getContentAsString().contains("\"error\""));
+
+		// the address is another client, the actuator is never limited
+		response = new MockHttpServletResponse();
+		filter.doFilter(request(null), response, new MockFilterChain());
+		assertEquals(200, response.getStatus());
+		// an unknown key is the address, a new key per request does not get a new bucket
+		response = new MockHttpServletResponse();
+		filter.doFilter(request("other"), response, new MockFilterChain());
+		assertEquals(200, response.getStatus());
+		response = new MockHttpServletResponse();
+		filter.doFilter(request("another"), response, new MockFilterChain());
+		assertEquals(429, response.getStatus());
+		MockHttpServletRequest health = request("key");
+		health.setRequestURI("/actuator/health");
+		response = new MockHttpServletResponse();
+		filter.doFilter(health, response, new MockFilterChain());
+		assertEquals(200, response.getStatus());
+
+		assertEquals(4, registry.get("mortgage.calculator.admission").tag("decision", "admitted").functionCounter().count(), 0);
+		assertEquals(2, registry.get("mortgage.calculator.admission").tag("decision", "rate_limited").functionCounter().count(), 0);
+		assertEquals(0, filter.getInFlight());
+	}
+
+	@Test
+	public void testOverloaded() throws Exception {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		AdmissionFilter filter = new AdmissionFilter(null, 2, Collections.emptySet());
+		filter.bindTo(registry);
+
+		// two requests hold the slots while a third arrives
+		CountDownLatch started = new CountDownLatch(2);
+		CountDownLatch finish = new CountDownLatch(1);
+		Thread[] threads = new Thread[2];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				try {
+					filter.doFilter(request(null), new MockHttpServletResponse(), (request, response) -> {
+						started.countDown();
+						try {
+							finish.await();
+						}
+						catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					});
+				}
+				catch (Exception e) {
+					throw new IllegalStateException(e);
+				}
+			});
+			threads[t].start();
+		}
+		started.await();
+		assertEquals(2, filter.getInFlight());
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request(null), response, new MockFilterChain());
+		assertEquals(503, response.getStatus());
+		assertEquals("1", response.getHeader("Retry-After"));
+
+		finish.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertEquals(0, filter.getInFlight());
+		response = new MockHttpServletResponse();
+		filter.doFilter(request(null), response, new MockFilterChain());
+		assertEquals(200, response.getStatus());
+		assertEquals(1, registry.get("mortgage.calculator.admission").tag("decision", "overloaded").functionCounter().count(), 0);
+	}
+}
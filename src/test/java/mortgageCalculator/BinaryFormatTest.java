@@ -0,0 +1,92 @@
+package mortgageCalculator;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class BinaryFormatTest {
+
+	private static final String PAYMENT_AMOUNT =
+			"/payment-amount?asking_price=500000&down_payment=70000&payment_schedule=monthly&amortization_period=25";
+
+	private MockMvc mockMvc;
+
+	@Before
+	public void setUp() {
+		ResultCache resultCache = new ResultCache(false, 0, 0);
+		BinaryFormatConfiguration configuration = new BinaryFormatConfiguration();
+		mockMvc = MockMvcBuilders.standaloneSetup(new MortgageCalculatorController(resultCache,
+				new CalculatorMetrics(new SimpleMeterRegistry(), resultCache)))
+				.setMessageConverters(new MappingJackson2HttpMessageConverter(),
+						configuration.cborHttpMessageConverter(), configuration.smileHttpMessageConverter())
+				.build();
+	}
+
+	private MockHttpServletResponse perform(String uri, String accept) throws Exception {
+		return mockMvc.perform(get(uri).header("Accept", accept)).andReturn().getResponse();
+	}
+
+	@Test
+	public void testJsonIsDefault() throws Exception {
+		MockHttpServletResponse response = perform(PAYMENT_AMOUNT, "*/*");
+		assertTrue(response.getContentType().startsWith("application/json"));
+		assertEquals(perform(PAYMENT_AMOUNT, "application/json").getContentAsString(), response.getContentAsString());
+	}
+
+	@Test
+	public void testCbor() throws Exception {
+		MockHttpServletResponse json = perform(PAYMENT_AMOUNT, "application/json");
+		MockHttpServletResponse cbor = perform(PAYMENT_AMOUNT, BinaryFormatConfiguration.CBOR);
+		assertEquals(BinaryFormatConfiguration.CBOR, cbor.getContentType());
+		assertTrue(cbor.getContentAsByteArray().length < json.getContentAsByteArray().length);
+		assertEquals(new ObjectMapper().readValue(json.getContentAsByteArray(), HashMap.class),
+				new ObjectMapper(new CBORFactory()).readValue(cbor.getContentAsByteArray(), HashMap.class));
+
+		// errors are encoded in the requested format as well
+		MockHttpServletResponse error = perform("/mortgage-amount?payment=2000&payment_schedule=daily&amortization_period=25",
+				BinaryFormatConfiguration.CBOR);
+		assertEquals(400, error.getStatus());
+		Map<?, ?> map = new ObjectMapper(new CBORFactory()).readValue(error.getContentAsByteArray(), HashMap.class);
+		assertTrue(((String) map.get("error")).startsWith("Payment schedule must be one of"));
+	}
+
+	@Test
+	public void testSmileBatch() throws Exception {
+		ObjectMapper smile = new ObjectMapper(new SmileFactory());
+		PaymentAmountBatch batch = new PaymentAmountBatch();
+		batch.askingPrice = new double[] {500000, 750000};
+		batch.downPayment = new double[] {70000, 100000};
+		batch.paymentSchedule = new String[] {"monthly", "biweekly"};
+		batch.amortizationPeriod = new int[] {25, 20};
+
+		MockHttpServletResponse response = mockMvc.perform(post("/payment-amount/batch")
+				.contentType(BinaryFormatConfiguration.SMILE)
+				.header("Accept", BinaryFormatConfiguration.SMILE)
+				.content(smile.writeValueAsBytes(batch))).andReturn().getResponse();
+		assertEquals(200, response.getStatus());
+		assertEquals(BinaryFormatConfiguration.SMILE, response.getContentType());
+		// compare as JSON, the rate version is a long on the server and an int once decoded
+		List<?> results = smile.readValue(response.getContentAsByteArray(), List.class);
+		ObjectMapper json = new ObjectMapper();
+		assertEquals(json.writeValueAsString(MortgageCalculator.paymentAmounts(batch.askingPrice, batch.downPayment,
+				batch.paymentSchedule, batch.amortizationPeriod, null)), json.writeValueAsString(results));
+	}
+}
@@ -0,0 +1,114 @@
+package mortgageCalculator;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class BulkScorerTest {
+
+	private static String score(BulkScorer scorer, String input, long expectedRows, long expectedErrors)
+			throws Exception {
+		StringWriter out = new StringWriter();
+		BulkScorer.Stats stats = scorer.score(new BufferedReader(new StringReader(input)), out);
+		assertEquals(expectedRows, stats.getRows());
+		assertEquals(expectedErrors, stats.getErrors());
+		return out.toString();
+	}
+
+	@Test
+	public void testMainRulesAndRateHistory() throws Exception {
+		// the command line run scores with the rule file and the last logged rate, not the bundled defaults
+		File dir = Files.createTempDirectory("bulk").toFile();
+		File rules = new File(dir, "rules.json");
+		Files.write(rules.toPath(), ("{\"version\": \"cli\", \"payment_schedules\": {\"monthly\": 12},"
+				+ "\"amortization_period\": {\"min\": 5, \"max\": 30},"
+				+ "\"minimum_down_payment\": {\"bound\": 500000.0, \"rate_below_bound\": 0.05, \"rate_above_bound\": 0.1},"
+				+ "\"insurance\": {\"down_payment_ratio_bounds\": [0.1, 0.15, 0.2], \"percentages\": [0.0315, 0.024, 0.018]}}")
+				.getBytes(StandardCharsets.UTF_8));
+		File rates = new File(dir, "rates.log");
+		RateHistory history = RateHistory.open(rates.toPath());
+		history.append(System.currentTimeMillis(), new InterestRate(6.0, 7));
+		history.close();
+		File input = new File(dir, "loans.csv");
+		Files.write(input.toPath(), "asking_price,down_payment,payment_schedule,amortization_period\n500000,100000,monthly,30\n"
+				.getBytes(StandardCharsets.UTF_8));
+		File output = new File(dir, "results.csv");
+
+		RuleSet defaultRules = MortgageCalculator.getRuleSet();
+		InterestRate defaultRate = MortgageCalculator.getInterestRate();
+		try {
+			BulkScorer.main(new String[] {"--rules", rules.getPath(), "--rate-history", rates.getPath(),
+					input.getPath(), output.getPath()});
+			List<String> lines = Files.readAllLines(output.toPath(), StandardCharsets.UTF_8);
+			double payment = MortgageCalculator.computeAnnuityFactor(6.0, 12, 30) * 400000;
+			assertEquals(Arrays.asList("asking_price,down_payment,payment_schedule,amortization_period,payment,insurance,loan_total,num_payments,error",
+					"500000,100000,monthly,30," + payment + ",0.0," + payment * 360 + ",360,"), lines);
+		}
+		finally {
+			MortgageCalculator.setRuleSet(defaultRules);
+			MortgageCalculator.setRateHistory(new RateHistory());
+			MortgageCalculator.updateAnnualInterestRate(defaultRate.getAnnualInterestRate());
+		}
+	}
+
+	@Test
+	public void testCsv() throws Exception {
+		BulkScorer scorer = new BulkScorer(BulkScorer.Mode.PAYMENT_AMOUNT, BulkScorer.Format.CSV, 2);
+		String output = score(scorer, "id,asking_price,down_payment,payment_schedule,amortization_period\n"
+				+ "1,500000,100000,monthly,25\n"
+				+ "2,500000,1000,monthly,25\n"
+				+ "3,abc,1000,monthly,25\n", 3, 2);
+
+		String[] lines = output.split("\n");
+		assertEquals("id,asking_price,down_payment,payment_schedule,amortization_period,payment,insurance,loan_total,num_payments,error",
+				lines[0]);
+		double payment = MortgageCalculator.computeAnnuityFactor(MortgageCalculator.getAnnualInterestRate(), 12, 25) * 400000;
+		assertEquals("1,500000,100000,monthly,25," + payment + ",0.0," + payment * 300 + ",300,", lines[1]);
+		assertEquals("2,500000,1000,monthly,25,,,,,\"The down payment must be greater than 25000.00\"", lines[2]);
+		assertTrue(lines[3].startsWith("3,abc,1000,monthly,25,,,,,\"Invalid number"));
+	}
+
+	@Test
+	public void testNdjson() throws Exception {
+		BulkScorer scorer = new BulkScorer(BulkScorer.Mode.MORTGAGE_AMOUNT, BulkScorer.Format.NDJSON, 2);
+		String output = score(scorer, "{\"payment\": 2000, \"payment_schedule\": \"monthly\", \"amortization_period\": 25, \"annual_interest_rate\": 5}\n"
+				+ "\n"
+				+ "{\"payment\": \"2000\", \"payment_schedule\": \"daily\", \"amortization_period\": 25}\n", 2, 1);
+
+		String[] lines = output.split("\n");
+		assertEquals(2, lines.length);
+		Object expected = MortgageCalculator.mortgageAmount(2000, 0, "monthly", 25, 5).get("mortgage_amount");
+		assertEquals("{\"line\":1,\"mortgage_amount\":" + expected + ",\"num_payments\":300}", lines[0]);
+		assertTrue(lines[1].startsWith("{\"line\":3,\"error\":\"Payment schedule must be one of"));
+	}
+
+	@Test
+	public void testOutputOrder() throws Exception {
+		// many small chunks on several threads are still written in input order
+		BulkScorer scorer = new BulkScorer(BulkScorer.Mode.PAYMENT_AMOUNT, BulkScorer.Format.CSV, 4, 3);
+		StringBuilder input = new StringBuilder("asking_price,down_payment,payment_schedule,amortization_period\n");
+		for (int i = 0; i < 1000; i++) {
+			input.append(100000 + i).append(",50000,weekly,20\n");
+		}
+		String[] lines = score(scorer, input.toString(), 1000, 0).split("\n");
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(lines[i + 1].startsWith((100000 + i) + ",50000,weekly,20,"));
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMissingColumn() throws Exception {
+		BulkScorer scorer = new BulkScorer(BulkScorer.Mode.PAYMENT_AMOUNT, BulkScorer.Format.CSV, 1);
+		score(scorer, "asking_price,payment_schedule,amortization_period\n", 0, 0);
+	}
+}
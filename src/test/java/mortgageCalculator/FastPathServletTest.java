@@ -0,0 +1,134 @@
+package mortgageCalculator;
+
+import java.net.URI;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class FastPathServletTest {
+
+	private MockMvc mockMvc;
+	private FastPathServlet servlet;
+	private SimpleMeterRegistry registry;
+
+	@Before
+	public void setUp() {
+		ResultCache resultCache = new ResultCache(false, 0, 0);
+		registry = new SimpleMeterRegistry();
+		CalculatorMetrics calculatorMetrics = new CalculatorMetrics(registry, resultCache);
+		mockMvc = MockMvcBuilders.standaloneSetup(new MortgageCalculatorController(resultCache, calculatorMetrics))
+				.build();
+		servlet = new FastPathServlet(calculatorMetrics);
+	}
+
+	private MockHttpServletResponse fast(String path, String query) throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/fast" + path);
+		request.setServletPath("/fast" + path);
+		request.setQueryString(query);
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		servlet.service(request, response);
+		return response;
+	}
+
+	/**
+	 * Call the Spring endpoint and the fast path with the same query, the status and body must match.
+	 */
+	private void assertSame(String path, String query, int expectedStatus) throws Exception {
+		MockHttpServletResponse spring = mockMvc.perform(get(new URI(path + "?" + query))).andReturn().getResponse();
+		MockHttpServletResponse fast = fast(path, query);
+		assertEquals(query, expectedStatus, spring.getStatus());
+		assertEquals(query, spring.getStatus(), fast.getStatus());
+		assertEquals(query, spring.getContentAsString(), fast.getContentAsString());
+		assertArrayEquals(query, spring.getContentAsByteArray(), fast.getContentAsByteArray());
+		assertEquals(fast.getContentAsByteArray().length, fast.getContentLength());
+		assertEquals(query, spring.getHeader("ETag"), fast.getHeader("ETag"));
+		assertEquals(query, spring.getHeader("Cache-Control"), fast.getHeader("Cache-Control"));
+	}
+
+	@Test
+	public void testPaymentAmount() throws Exception {
+		assertSame("/payment-amount", "asking_price=500000&down_payment=70000&payment_schedule=monthly&amortization_period=25", 200);
+		assertSame("/payment-amount", "asking_price=750000.5&down_payment=150000&payment_schedule=Weekly&amortization_period=5", 200);
+		assertSame("/payment-amount", "asking_price=300000&down_payment=15000&payment_schedule=biweekly&amortization_period=20&annual_interest_rate=4.25", 200);
+		assertSame("/payment-amount", "asking_price=1.5e6&down_payment=1e6&payment_schedule=monthly&amortization_period=10&annual_interest_rate=0.5", 200);
+		assertSame("/payment-amount", "asking_price=500000&down_payment=70000&payment_schedule=%6Donthly&amortization_period=25&unknown=1", 200);
+		// an empty optional number is absent, the first of a repeated parameter is used even if empty
+		assertSame("/payment-amount", "asking_price=500000&down_payment=70000&payment_schedule=monthly&amortization_period=25&annual_interest_rate=", 200);
+		assertSame("/payment-amount", "asking_price=500000&down_payment=70000&payment_schedule=monthly&amortization_period=25&annual_interest_rate=&annual_interest_rate=3", 200);
+		// an explicit NaN is a value, not an absent parameter, numbers are converted as Spring does
+		assertSame("/payment-amount", "asking_price=500000&down_payment=NaN&payment_schedule=monthly&amortization_period=25", 200);
+		assertSame("/payment-amount", "asking_price=500000&down_payment=7e4&payment_schedule=monthly&amortization_period=0x19&annual_interest_rate=%202.5d", 200);
+	}
+
+	@Test
+	public void testPaymentAmountErrors() throws Exception {
+		assertSame("/payment-amount", "asking_price=500000&down_payment=1000&payment_schedule=monthly&amortization_period=25", 400);
+		assertSame("/payment-amount", "asking_price=500000&down_payment=70000&payment_schedule=daily&amortization_period=30", 400);
+		assertSame("/payment-amount", "asking_price=-1&down_payment=70000&payment_schedule=monthly&amortization_period=25&annual_interest_rate=-2", 400);
+		// an empty required number is not a number
+		assertSame("/payment-amount", "asking_price=500000&down_payment=&payment_schedule=monthly&amortization_period=25", 400);
+		assertSame("/payment-amount", "asking_price=500000&down_payment=70000&payment_schedule=monthly&amortization_period=", 400);
+		assertSame("/payment-amount", "asking_price=500000&down_payment=70000&payment_schedule=monthly&amortization_period=25&as_of=", 400);
+		assertSame("/payment-amount", "asking_price=500000&down_payment=70000&payment_schedule=monthly&amortization_period=25&annual_interest_rate=NaN", 400);
+		assertSame("/payment-amount", "asking_price=%20&down_payment=x&payment_schedule=monthly&amortization_period=25.0", 400);
+		// the fast path counts its validation errors like the Spring endpoint, under its own path
+		assertEquals(1.0, registry.get(CalculatorMetrics.VALIDATION_ERRORS).tag("endpoint", FastPathServlet.PAYMENT_AMOUNT)
+				.tag("type", "amortization_period").counter().count(), 0.0);
+	}
+
+	@Test
+	public void testMortgageAmount() throws Exception {
+		assertSame("/mortgage-amount", "payment=2000&payment_schedule=monthly&amortization_period=25", 200);
+		assertSame("/mortgage-amount", "payment=2000&down_payment=50000&payment_schedule=weekly&amortization_period=20&annual_interest_rate=3", 200);
+		assertSame("/mortgage-amount", "payment=2000&down_payment=&payment_schedule=monthly&amortization_period=25&annual_interest_rate=", 200);
+		assertSame("/mortgage-amount", "payment=&payment_schedule=monthly&amortization_period=25", 400);
+		assertSame("/mortgage-amount", "payment=2000&down_payment=NaN&payment_schedule=monthly&amortization_period=25", 200);
+		assertSame("/mortgage-amount", "payment=2000&payment_schedule=monthly&amortization_period=25&annual_interest_rate=%20", 200);
+		assertSame("/mortgage-amount", "payment=2000&payment_schedule=monthly&amortization_period=25&annual_interest_rate=NaN", 400);
+		assertSame("/mortgage-amount", "payment=2000&payment_schedule=daily&amortization_period=25", 400);
+		assertSame("/mortgage-amount", "payment=2000&payment_schedule=monthly&amortization_period=25&annual_interest_rate=-1", 400);
+	}
+
+	@Test
+	public void testNotModified() throws Exception {
+		String query = "payment=2000&payment_schedule=monthly&amortization_period=25";
+		MockHttpServletResponse response = fast("/mortgage-amount", query);
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", FastPathServlet.MORTGAGE_AMOUNT);
+		request.setServletPath(FastPathServlet.MORTGAGE_AMOUNT);
+		request.setQueryString(query);
+		request.addHeader("If-None-Match", response.getHeader("ETag"));
+		MockHttpServletResponse notModified = new MockHttpServletResponse();
+		servlet.service(request, notModified);
+		assertEquals(304, notModified.getStatus());
+		assertEquals(0, notModified.getContentAsByteArray().length);
+		assertEquals(response.getHeader("ETag"), notModified.getHeader("ETag"));
+	}
+
+	@Test
+	public void testMissingParameter() throws Exception {
+		MockHttpServletResponse response = fast("/payment-amount", "asking_price=500000&payment_schedule=monthly&amortization_period=25");
+		assertEquals(400, response.getStatus());
+		assertEquals("{\"error\":\"Required parameter 'down_payment' is not present\"}", response.getContentAsString());
+
+		response = fast("/mortgage-amount", "payment=abc&payment_schedule=monthly&amortization_period=25");
+		assertEquals(400, response.getStatus());
+		assertEquals("{\"error\":\"Parameter 'payment' is not a number: abc\"}", response.getContentAsString());
+		assertEquals(1.0, registry.get(CalculatorMetrics.VALIDATION_ERRORS).tag("endpoint", FastPathServlet.MORTGAGE_AMOUNT)
+				.tag("type", "other").counter().count(), 0.0);
+
+		// the same bodies as the Spring endpoints
+		assertSame("/payment-amount", "asking_price=500000&payment_schedule=monthly&amortization_period=25", 400);
+		assertSame("/mortgage-amount", "payment=abc&payment_schedule=monthly&amortization_period=25", 400);
+		assertSame("/mortgage-amount", "payment=2000&payment_schedule=monthly&amortization_period=2.5", 400);
+	}
+}
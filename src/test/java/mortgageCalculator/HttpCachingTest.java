@@ -0,0 +1,108 @@
+package mortgageCalculator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class HttpCachingTest {
+
+	private static final String PAYMENT_AMOUNT =
+			"/payment-amount?asking_price=500000&down_payment=70000&payment_schedule=monthly&amortization_period=25";
+
+	private MockMvc mockMvc;
+
+	@Before
+	public void setUp() {
+		ResultCache resultCache = new ResultCache(false, 0, 0);
+		BinaryFormatConfiguration configuration = new BinaryFormatConfiguration();
+		mockMvc = MockMvcBuilders.standaloneSetup(new MortgageCalculatorController(resultCache,
+				new CalculatorMetrics(new SimpleMeterRegistry(), resultCache)))
+				.setMessageConverters(new MappingJackson2HttpMessageConverter(), configuration.cborHttpMessageConverter())
+				.build();
+	}
+
+	@After
+	public void tearDown() {
+		HttpCaching.configure(true, 60);
+	}
+
+	private MockHttpServletResponse perform(String uri, String accept, String ifNoneMatch) throws Exception {
+		return mockMvc.perform(ifNoneMatch == null ? get(uri).header("Accept", accept) :
+				get(uri).header("Accept", accept).header("If-None-Match", ifNoneMatch)).andReturn().getResponse();
+	}
+
+	@Test
+	public void testNotModified() throws Exception {
+		MockHttpServletResponse response = perform(PAYMENT_AMOUNT, "application/json", null);
+		assertEquals(200, response.getStatus());
+		String eTag = response.getHeader("ETag");
+		assertTrue(eTag.matches("\"[0-9a-f]{32}\""));
+		assertEquals("max-age=60, public", response.getHeader("Cache-Control"));
+		assertEquals("Accept", response.getHeader("Vary"));
+
+		response = perform(PAYMENT_AMOUNT, "application/json", eTag);
+		assertEquals(304, response.getStatus());
+		assertEquals(0, response.getContentAsByteArray().length);
+		assertEquals(eTag, response.getHeader("ETag"));
+		assertEquals(304, perform(PAYMENT_AMOUNT, "application/json", "\"0\", W/" + eTag).getStatus());
+		assertEquals(200, perform(PAYMENT_AMOUNT, "application/json", "\"0\"").getStatus());
+	}
+
+	@Test
+	public void testNormalizedInputs() throws Exception {
+		String eTag = perform(PAYMENT_AMOUNT, "application/json", null).getHeader("ETag");
+		assertEquals(eTag, perform(PAYMENT_AMOUNT.replace("monthly", "Monthly").replace("500000", "5e5"),
+				"application/json", null).getHeader("ETag"));
+		assertNotEquals(eTag, perform(PAYMENT_AMOUNT.replace("500000", "500001"), "application/json", null)
+				.getHeader("ETag"));
+		// another representation of the same result
+		assertNotEquals(eTag, perform(PAYMENT_AMOUNT, BinaryFormatConfiguration.CBOR, null).getHeader("ETag"));
+		// a rate given at its default value is not the default rate
+		assertNotEquals(eTag, perform(PAYMENT_AMOUNT + "&annual_interest_rate=" + MortgageCalculator.getAnnualInterestRate(),
+				"application/json", null).getHeader("ETag"));
+	}
+
+	@Test
+	public void testRateChange() throws Exception {
+		double annualInterestRate = MortgageCalculator.getAnnualInterestRate();
+		String eTag = perform(PAYMENT_AMOUNT, "application/json", null).getHeader("ETag");
+		try {
+			MortgageCalculator.setAnnualInterestRate(annualInterestRate + 1);
+			assertEquals(200, perform(PAYMENT_AMOUNT, "application/json", eTag).getStatus());
+			// the same rate again is a new version
+			MortgageCalculator.setAnnualInterestRate(annualInterestRate);
+			assertNotEquals(eTag, perform(PAYMENT_AMOUNT, "application/json", null).getHeader("ETag"));
+		}
+		finally {
+			MortgageCalculator.setAnnualInterestRate(annualInterestRate);
+		}
+	}
+
+	@Test
+	public void testErrorsAndDisabled() throws Exception {
+		MockHttpServletResponse response = perform(PAYMENT_AMOUNT.replace("70000", "1000"), "application/json", null);
+		assertEquals(400, response.getStatus());
+		assertNull(response.getHeader("ETag"));
+		assertNull(response.getHeader("Cache-Control"));
+
+		HttpCaching.configure(true, 0);
+		assertEquals("no-cache, public", perform(PAYMENT_AMOUNT, "application/json", null).getHeader("Cache-Control"));
+		HttpCaching.configure(false, 60);
+		response = perform(PAYMENT_AMOUNT, "application/json", null);
+		assertFalse(response.containsHeader("ETag"));
+		assertFalse(response.containsHeader("Cache-Control"));
+	}
+}
@@ -0,0 +1,194 @@
+package mortgageCalculator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class JobManagerTest {
+
+	private static final String HEADER = "asking_price,down_payment,payment_schedule,amortization_period";
+
+	private Path directory;
+	private ExecutorService workers;
+	private JobManager jobManager;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("jobs");
+		workers = Executors.newSingleThreadExecutor();
+		jobManager = new JobManager(directory, workers, 2, 2, 1 << 20, 60000);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		jobManager.destroy();
+	}
+
+	private static InputStream csv(int rows) {
+		StringBuilder input = new StringBuilder(HEADER).append('\n');
+		for (int i = 0; i < rows; i++) {
+			input.append(100000 + i).append(",50000,weekly,20\n");
+		}
+		return new ByteArrayInputStream(input.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void await(Job job) throws InterruptedException {
+		for (int i = 0; i < 1000 && !job.getState().isFinal(); i++) {
+			Thread.sleep(10);
+		}
+		assertTrue(job.getState().isFinal());
+	}
+
+	private String results(Job job, long offset, long limit) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		jobManager.writeResults(job, offset, limit, out);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testResultPages() throws Exception {
+		Job job = jobManager.submit(BulkScorer.Mode.PAYMENT_AMOUNT, BulkScorer.Format.CSV, csv(2500));
+		assertEquals(2500, job.getRows());
+		await(job);
+		assertEquals(Job.State.SUCCEEDED, job.getState());
+		assertEquals(2500L, job.toMap().get("rows_scored"));
+		assertEquals(1.0, job.toMap().get("progress"));
+		assertEquals(0, jobManager.getPending());
+
+		// every page starts with the header, rows are found through the page index
+		String[] lines = results(job, 0, 2).split("\n");
+		assertEquals(3, lines.length);
+		assertTrue(lines[0].startsWith(HEADER + ",payment"));
+		assertTrue(lines[1].startsWith("100000,"));
+		lines = results(job, 2047, 3).split("\n");
+		assertEquals(4, lines.length);
+		assertTrue(lines[1].startsWith("102047,"));
+		assertTrue(lines[3].startsWith("102049,"));
+		lines = results(job, 2499, 10).split("\n");
+		assertEquals(2, lines.length);
+		assertTrue(lines[1].startsWith("102499,"));
+		assertEquals(1, results(job, 3000, 10).split("\n").length);
+		assertEquals(2501, results(job, 0, Long.MAX_VALUE).split("\n").length);
+		// the input is removed once it is scored
+		assertFalse(Files.exists(job.getInput()));
+	}
+
+	@Test
+	public void testBackPressure() throws Exception {
+		// hold the only worker so the jobs wait in the queue
+		CountDownLatch release = new CountDownLatch(1);
+		workers.submit(() -> {
+			release.await();
+			return null;
+		});
+		Job first = jobManager.submit(BulkScorer.Mode.PAYMENT_AMOUNT, BulkScorer.Format.CSV, csv(10));
+		Job second = jobManager.submit(BulkScorer.Mode.PAYMENT_AMOUNT, BulkScorer.Format.CSV, csv(10));
+		try {
+			jobManager.submit(BulkScorer.Mode.PAYMENT_AMOUNT, BulkScorer.Format.CSV, csv(10));
+			fail("the queue is full");
+		}
+		catch (RejectedExecutionException e) {
+			assertEquals(2, jobManager.getPending());
+		}
+
+		// a cancelled job is removed and frees its place at once
+		assertEquals(second, jobManager.cancel(second.getId()));
+		assertEquals(Job.State.CANCELLED, second.getState());
+		assertNull(jobManager.get(second.getId()));
+		assertFalse(Files.exists(second.getInput()));
+		assertNull(jobManager.cancel(second.getId()));
+		Job third = jobManager.submit(BulkScorer.Mode.PAYMENT_AMOUNT, BulkScorer.Format.CSV, csv(10));
+		assertEquals(Job.State.QUEUED, first.getState());
+
+		release.countDown();
+		await(first);
+		await(third);
+		assertEquals(Job.State.SUCCEEDED, first.getState());
+		assertEquals(Job.State.SUCCEEDED, third.getState());
+		assertEquals(0, jobManager.getPending());
+	}
+
+	@Test
+	public void testInvalidInput() throws Exception {
+		Job job = jobManager.submit(BulkScorer.Mode.PAYMENT_AMOUNT, BulkScorer.Format.CSV,
+				new ByteArrayInputStream("asking_price,payment_schedule\n500000,monthly\n".getBytes(StandardCharsets.UTF_8)));
+		await(job);
+		assertEquals(Job.State.FAILED, job.getState());
+		assertTrue(job.getError().contains("down_payment"));
+
+		try {
+			jobManager.submit(BulkScorer.Mode.PAYMENT_AMOUNT, BulkScorer.Format.CSV, csv(50000));
+			fail("larger than the limit");
+		}
+		catch (JobManager.InputTooLargeException e) {
+			assertEquals(0, jobManager.getPending());
+		}
+	}
+
+	@Test
+	public void testEndpoints() throws Exception {
+		ResultCache resultCache = new ResultCache(false, 0, 0);
+		MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new JobController(jobManager,
+				new CalculatorMetrics(new SimpleMeterRegistry(), resultCache))).build();
+
+		MockHttpServletResponse response = mockMvc.perform(post("/jobs").param("type", "mortgage_amount")
+				.contentType(MortgageCalculatorController.NDJSON)
+				.content("{\"payment\": 2000, \"payment_schedule\": \"monthly\", \"amortization_period\": 25}\n"
+						+ "{\"payment\": 3000, \"payment_schedule\": \"monthly\", \"amortization_period\": 25}\n"))
+				.andReturn().getResponse();
+		assertEquals(202, response.getStatus());
+		String location = response.getHeader("Location");
+		Job job = jobManager.get(location.substring("/jobs/".length()));
+		await(job);
+		response = mockMvc.perform(get(location)).andReturn().getResponse();
+		assertTrue(response.getContentAsString().contains("\"state\":\"succeeded\""));
+
+		MvcResult result = mockMvc.perform(get(location + "/results").param("limit", "1")).andReturn();
+		response = mockMvc.perform(asyncDispatch(result)).andReturn().getResponse();
+		assertEquals("2", response.getHeader("X-Total-Count"));
+		assertEquals("</jobs/" + job.getId() + "/results?offset=1&limit=1>; rel=\"next\"", response.getHeader("Link"));
+		assertTrue(response.getContentAsString().startsWith("{\"line\":1,\"mortgage_amount\":"));
+		assertEquals(1, response.getContentAsString().split("\n").length);
+
+		// errors are plain JSON bodies, not streamed
+		result = mockMvc.perform(get(location + "/results").param("offset", "-1").accept(JobController.CSV)).andReturn();
+		assertFalse(result.getRequest().isAsyncStarted());
+		assertEquals(400, result.getResponse().getStatus());
+		assertEquals("{\"error\":\"offset and limit can not be negative.\"}", result.getResponse().getContentAsString());
+		result = mockMvc.perform(get("/jobs/unknown/results")).andReturn();
+		assertFalse(result.getRequest().isAsyncStarted());
+		assertEquals(404, result.getResponse().getStatus());
+
+		response = mockMvc.perform(post("/jobs").param("type", "max_asking_price").contentType(JobController.CSV)
+				.content(HEADER)).andReturn().getResponse();
+		assertEquals(400, response.getStatus());
+		assertEquals(404, mockMvc.perform(get("/jobs/unknown")).andReturn().getResponse().getStatus());
+	}
+}
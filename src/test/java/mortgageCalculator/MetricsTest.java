@@ -0,0 +1,41 @@
+package mortgageCalculator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class MetricsTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Test
+	public void testPrometheus() throws Exception {
+		assertEquals(400, mockMvc.perform(get("/payment-amount")
+				.param("asking_price", "500000")
+				.param("down_payment", "1000")
+				.param("payment_schedule", "daily")
+				.param("amortization_period", "25")).andReturn().getResponse().getStatus());
+
+		String scrape = mockMvc.perform(get("/actuator/prometheus")).andReturn().getResponse().getContentAsString();
+		// one validation error per type, tagged with the endpoint and the type
+		assertTrue(scrape, scrape.contains(
+				"mortgage_calculator_validation_errors_total{endpoint=\"/payment-amount\",type=\"down_payment_below_minimum\",} "));
+		assertTrue(scrape, scrape.contains(
+				"mortgage_calculator_validation_errors_total{endpoint=\"/payment-amount\",type=\"payment_schedule\",} "));
+		// the latency histogram of the rejected request
+		assertTrue(scrape, scrape.matches("(?s).*http_server_requests_seconds_bucket\\{[^}]*status=\"400\",uri=\"/payment-amount\",le=\"[0-9.]+\",} .*"));
+		assertTrue(scrape, scrape.matches("(?s).*http_server_requests_seconds_bucket\\{[^}]*status=\"400\",uri=\"/payment-amount\",le=\"\\+Inf\",} [1-9].*"));
+	}
+}
@@ -1,6 +1,8 @@
 package mortgageCalculator;
 
+import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -339,5 +341,577 @@ public class MortgageCalculatorTest {
 		
 		assertEquals(insurance, expectedInsurance, 1);
 	}
-}
 
+	@Test
+	public void testPaymentAmounts() {
+		double[] askingPrices = {500000, 750000, 750000, 400000};
+		double[] downPayments = {100000, 50000, 49000, 100000};
+		String[] paymentSchedules = {"monthly", "weekly", "monthly", "biweekly"};
+		int[] amortizationPeriods = {25, 20, 25, 30};
+		
+		List<Map<?,?>> results = MortgageCalculator.paymentAmounts(askingPrices, downPayments, 
+				paymentSchedules, amortizationPeriods, null);
+		assertEquals(4, results.size());
+		
+		for (int i = 0; i < 2; i++) {
+			Map<?,?> expected = MortgageCalculator.paymentAmount(askingPrices[i], downPayments[i], 
+					paymentSchedules[i], amortizationPeriods[i]);
+			assertEquals(expected, results.get(i));
+		}
+		// the down payment is below the minimum
+		assertTrue(results.get(2).containsKey("error"));
+		assertFalse(results.get(2).containsKey("payment"));
+		// the amortization period is too long
+		assertTrue(results.get(3).containsKey("error"));
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testPaymentAmountsLengthValidation() {
+		MortgageCalculator.paymentAmounts(new double[] {500000}, new double[] {100000, 50000}, 
+				new String[] {"monthly"}, new int[] {25}, null);
+	}
+
+	@Test
+	public void testPaymentAmountPrimitive() {
+		PaymentResult result = new PaymentResult();
+		int errors = MortgageCalculator.paymentAmount(500000, 70000, 
+				MortgageCalculator.paymentsPerYear("Monthly"), 25, 2.5, result);
+		assertEquals(CalculationErrors.NONE, errors);
+		
+		Map<?,?> expected = MortgageCalculator.paymentAmount(500000, 70000, "monthly", 25, 2.5);
+		assertEquals(expected, result.toMap());
+		assertEquals((Double) expected.get("payment"), result.getPayment(), 0.0);
+		assertEquals((Double) expected.get("loan_total"), result.getLoanTotal(), 0.0);
+		assertEquals(442000, result.getPrincipal(), 1e-6);
+	}
+	
+	@Test
+	public void testPaymentAmountErrorCodes() {
+		PaymentResult result = new PaymentResult();
+		int errors = MortgageCalculator.paymentAmount(750000, 49000, 
+				MortgageCalculator.paymentsPerYear("dne"), 30, 2.5, result);
+		assertEquals(CalculationErrors.PAYMENT_SCHEDULE | CalculationErrors.AMORTIZATION_PERIOD 
+				| CalculationErrors.DOWN_PAYMENT_BELOW_MINIMUM, errors);
+		assertEquals(50000, result.getMinimumDownPayment(), 1e-6);
+		
+		try {
+			MortgageCalculator.paymentAmount(750000, 49000, "dne", 30, 2.5);
+			fail("Calling paymentAmount with invalid values should raise an exception.");
+		}
+		catch (CalculationException e) {
+			assertEquals(errors, e.getErrors());
+			assertEquals(CalculationErrors.describe(errors, MortgageCalculator.getRuleSet(), 50000), e.getMessage());
+		}
+	}
+	
+	@Test
+	public void testMortgageAmountPrimitive() {
+		MortgageResult result = new MortgageResult();
+		int errors = MortgageCalculator.mortgageAmount(2000, 10000, 
+				MortgageCalculator.paymentsPerYear("weekly"), 20, 3.0, result);
+		assertEquals(CalculationErrors.NONE, errors);
+		assertEquals(MortgageCalculator.mortgageAmount(2000, 10000, "weekly", 20, 3.0), result.toMap());
+		
+		errors = MortgageCalculator.mortgageAmount(2000, 10000, 12, 20, 0, result);
+		assertEquals(CalculationErrors.INTEREST_RATE, errors);
+	}
+
+	@Test
+	public void testAmortizationSchedule() {
+		Map<?,?> result = MortgageCalculator.paymentAmount(500000, 70000, "weekly", 25, 2.5);
+		double payment = (Double) result.get("payment");
+		double rate = (Double) result.get("rate");
+		double loan = 442000;
+		
+		AmortizationSchedule schedule = MortgageCalculator.amortizationSchedule(500000, 70000, 
+				"weekly", 25, 2.5);
+		assertEquals(1300, schedule.getNumPayments());
+		
+		int rows = 0;
+		double totalPrincipal = 0;
+		while (schedule.next()) {
+			rows++;
+			if (rows == 1) {
+				assertEquals(loan * rate, schedule.getInterest(), 1e-6);
+			}
+			assertEquals(rows, schedule.getPaymentNumber());
+			assertEquals(payment, schedule.getPayment(), 1e-3);
+			totalPrincipal += schedule.getPrincipal();
+		}
+		assertFalse(schedule.next());
+		assertEquals(1300, rows);
+		assertEquals(0, schedule.getBalance(), 0.0);
+		assertEquals(loan, totalPrincipal, 1e-3);
+	}
+	
+	@Test(expected = CalculationException.class)
+	public void testAmortizationScheduleValidation() {
+		MortgageCalculator.amortizationSchedule(500000, 1000, "weekly", 25, 2.5);
+	}
+
+	@Test
+	public void testCompareAndSetAnnualInterestRate() {
+		InterestRate current = MortgageCalculator.getInterestRate();
+		
+		assertEquals(null, MortgageCalculator.compareAndSetAnnualInterestRate(current.getVersion() - 1, 3.0));
+		assertEquals(current, MortgageCalculator.compareAndSetAnnualInterestRate(current.getVersion(), 3.0));
+		
+		InterestRate updated = MortgageCalculator.getInterestRate();
+		assertEquals(3.0, updated.getAnnualInterestRate(), 0.0);
+		assertEquals(current.getVersion() + 1, updated.getVersion());
+		
+		// restore the default rate for the other tests
+		assertEquals(updated, MortgageCalculator.updateAnnualInterestRate(current.getAnnualInterestRate()));
+		assertEquals(current.getVersion() + 2, MortgageCalculator.getInterestRate().getVersion());
+	}
+	
+	@Test(expected = CalculationException.class)
+	public void testCompareAndSetAnnualInterestRateValidation() {
+		MortgageCalculator.compareAndSetAnnualInterestRate(MortgageCalculator.getInterestRate().getVersion(), 0);
+	}
+	
+	@Test
+	public void testRateVersion() {
+		long version = MortgageCalculator.getInterestRate().getVersion();
+		
+		Map<?,?> result = MortgageCalculator.paymentAmount(500000, 100000, "monthly", 25);
+		assertEquals(version, result.get("rate_version"));
+		result = MortgageCalculator.mortgageAmount(2000, "monthly", 25);
+		assertEquals(version, result.get("rate_version"));
+		
+		// no version when the rate is passed in
+		result = MortgageCalculator.paymentAmount(500000, 100000, "monthly", 25, 2.5);
+		assertFalse(result.containsKey("rate_version"));
+	}
+
+	@Test
+	public void testAnnuityFactorTable() {
+		AnnuityFactorTable table = new AnnuityFactorTable(2.505, new int[] {52, 26, 12}, 5, 25);
+		
+		// grid rates and the default rate are in the table and match Math.pow exactly
+		double[] rates = {2.505, 2.5, 2.51, 0.01, 7.5};
+		for (double rate : rates) {
+			assertEquals(MortgageCalculator.computeAnnuityFactor(rate, 26, 20), table.lookup(rate, 26, 20), 0.0);
+			assertEquals(MortgageCalculator.computeAnnuityFactor(rate, 12, 5), table.lookup(rate, 12, 5), 0.0);
+		}
+		// off grid rates, rates outside the window and unknown terms are not
+		assertTrue(Double.isNaN(table.lookup(2.5049, 12, 25)));
+		assertTrue(Double.isNaN(table.lookup(9.0, 12, 25)));
+		assertTrue(Double.isNaN(table.lookup(2.5, 4, 25)));
+		assertTrue(Double.isNaN(table.lookup(2.5, 12, 30)));
+	}
+	
+	@Test
+	public void testAnnuityFactorsRebuild() throws Exception {
+		double rate = MortgageCalculator.getAnnualInterestRate();
+		try {
+			MortgageCalculator.setAnnualInterestRate(3.333);
+			MortgageCalculator.awaitAnnuityFactors();
+			assertEquals(3.333, MortgageCalculator.getAnnuityFactorsRate(), 0.0);
+			assertEquals(MortgageCalculator.computeAnnuityFactor(3.333, 12, 25), 
+					MortgageCalculator.annuityFactor(3.333, 12, 25), 0.0);
+		}
+		finally {
+			MortgageCalculator.setAnnualInterestRate(rate);
+		}
+		// off grid rates fall back to Math.pow
+		assertEquals(MortgageCalculator.computeAnnuityFactor(3.3333, 12, 25), 
+				MortgageCalculator.annuityFactor(3.3333, 12, 25), 0.0);
+	}
+	
+	@Test
+	public void testPaymentGrid() {
+		PaymentGrid grid = MortgageCalculator.paymentGrid(400000, "Biweekly", 2.0, 3.0, 0.25, 5, 25, 5);
+		
+		assertEquals(26, grid.getPaymentsPerYear());
+		assertEquals(5, grid.getRates().length);
+		assertEquals(2.75, grid.getRates()[3], 0.0);
+		assertEquals(25, grid.getAmortizationPeriods()[4]);
+		// the incremental powers match the per cell formula
+		for (int i = 0; i < grid.getRates().length; i++) {
+			for (int j = 0; j < grid.getAmortizationPeriods().length; j++) {
+				double expected = 400000 * MortgageCalculator.computeAnnuityFactor(grid.getRates()[i], 26, 
+						grid.getAmortizationPeriods()[j]);
+				assertEquals(expected, grid.getPayment(i, j), expected * 1e-12);
+			}
+		}
+	}
+	
+	@Test
+	public void testPaymentGridParallel() {
+		// large enough to be split over the fork-join pool
+		PaymentGrid grid = MortgageCalculator.paymentGrid(400000, "weekly", 0.01, 10.0, 0.01, 5, 25, 1);
+		assertEquals(1000, grid.getRates().length);
+		assertTrue(grid.getRates().length * grid.getAmortizationPeriods().length > PaymentGrid.PARALLEL_THRESHOLD);
+		for (int i = 0; i < grid.getRates().length; i += 97) {
+			for (int j = 0; j < grid.getAmortizationPeriods().length; j++) {
+				double expected = 400000 * MortgageCalculator.computeAnnuityFactor(grid.getRates()[i], 52, 
+						grid.getAmortizationPeriods()[j]);
+				assertEquals(expected, grid.getPayment(i, j), expected * 1e-12);
+			}
+		}
+	}
+	
+	@Test
+	public void testPaymentGridValidation() {
+		try {
+			MortgageCalculator.paymentGrid(400000, "daily", 2.0, 120.0, 0.25, 5, 30, 1);
+			fail();
+		}
+		catch (CalculationException e) {
+			assertEquals(CalculationErrors.PAYMENT_SCHEDULE | CalculationErrors.AMORTIZATION_PERIOD 
+					| CalculationErrors.INTEREST_RATE, e.getErrors());
+		}
+		try {
+			MortgageCalculator.paymentGrid(400000, "monthly", 3.0, 2.0, 0.25, 5, 25, 1);
+			fail();
+		}
+		catch (IllegalArgumentException e) {
+			assertFalse(e instanceof CalculationException);
+		}
+		try {
+			MortgageCalculator.paymentGrid(400000, "monthly", 0.0001, 100.0, 0.0001, 5, 25, 1);
+			fail();
+		}
+		catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("cells"));
+		}
+	}
+	
+	@Test
+	public void testArrayInsuranceAndMinimumDownPayment() {
+		// random scenarios plus the tier bounds exactly, where the scalar and array versions could disagree
+		Random random = new Random(42);
+		int n = 10000;
+		double[] askingPrices = new double[n], downPayments = new double[n];
+		double[] bounds = {0.0, 0.05, 0.1, 0.15, 0.2, 0.25, 1.0};
+		for (int i = 0; i < n; i++) {
+			askingPrices[i] = i < 3 ? 500000.0 + i - 1 : Math.rint(random.nextDouble() * 2000000) / 2;
+			downPayments[i] = i % 2 == 0 ? askingPrices[i] * bounds[i % bounds.length] : 
+				random.nextDouble() * 0.3 * askingPrices[i];
+		}
+		askingPrices[n - 1] = 0.0;
+		
+		double[] insurances = new double[n], minDownPayments = new double[n];
+		MortgageCalculator.calculateInsurance(askingPrices, downPayments, insurances);
+		MortgageCalculator.minimumDownPayments(askingPrices, minDownPayments);
+		for (int i = 0; i < n; i++) {
+			assertEquals(Double.doubleToLongBits(MortgageCalculator.calculateInsurance(askingPrices[i], downPayments[i])),
+					Double.doubleToLongBits(insurances[i]));
+			assertEquals(Double.doubleToLongBits(MortgageCalculator.minimumDownPayment(askingPrices[i])),
+					Double.doubleToLongBits(minDownPayments[i]));
+		}
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testArrayInsuranceLengths() {
+		MortgageCalculator.calculateInsurance(new double[2], new double[2], new double[1]);
+	}
+	
+	@Test
+	public void testMaxAskingPriceRoundTrip() {
+		// the asking price is valid, its payment does not exceed the target and a slightly higher 
+		// asking price is either invalid or exceeds the target
+		Random random = new Random(7);
+		String[] schedules = {"weekly", "biweekly", "monthly"};
+		AskingPriceResult result = new AskingPriceResult();
+		PaymentResult payment = new PaymentResult();
+		for (int i = 0; i < 20000; i++) {
+			double targetPayment = 100 + random.nextDouble() * 9900;
+			double downPayment = random.nextDouble() * 400000;
+			int paymentsPerYear = MortgageCalculator.paymentsPerYear(schedules[i % 3]);
+			int amortizationPeriod = 5 + random.nextInt(21);
+			double rate = 0.5 + random.nextDouble() * 9.5;
+			
+			assertEquals(CalculationErrors.NONE, MortgageCalculator.maxAskingPrice(targetPayment, downPayment, 
+					paymentsPerYear, amortizationPeriod, rate, result));
+			double askingPrice = result.getAskingPrice();
+			assertEquals(CalculationErrors.NONE, MortgageCalculator.paymentAmount(askingPrice, downPayment, 
+					paymentsPerYear, amortizationPeriod, rate, payment));
+			assertEquals(payment.getPayment(), result.getPayment(), 0.0);
+			assertEquals(payment.getInsurance(), result.getInsurance(), 0.0);
+			assertTrue(payment.getPayment() <= targetPayment * (1 + 1e-9));
+			if (result.getLimit() == AskingPriceResult.Limit.PAYMENT) {
+				assertEquals(targetPayment, payment.getPayment(), targetPayment * 1e-9);
+			}
+			
+			int errors = MortgageCalculator.paymentAmount(askingPrice * (1 + 1e-9) + 1e-6, downPayment, 
+					paymentsPerYear, amortizationPeriod, rate, payment);
+			assertTrue(errors == CalculationErrors.DOWN_PAYMENT_BELOW_MINIMUM 
+					|| payment.getPayment() > targetPayment * (1 + 1e-9));
+		}
+	}
+	
+	@Test
+	public void testMaxAskingPriceLimits() {
+		double factor = MortgageCalculator.computeAnnuityFactor(5.0, 12, 25);
+		
+		// 20% or more down, no insurance, the same answer as mortgageAmount
+		Map<?, ?> map = MortgageCalculator.maxAskingPrice(2000, 150000, "monthly", 25, 5.0);
+		assertEquals("payment", map.get("limited_by"));
+		assertEquals(0.0, map.get("insurance"));
+		assertEquals((Double) MortgageCalculator.mortgageAmount(2000, 150000, "monthly", 25, 5.0).get("mortgage_amount"), 
+				(Double) map.get("max_asking_price"), 1e-6);
+		
+		// 10% down on $500k is 2.4% insurance, the answer is in the insured tier
+		double loan = (500000 + 0.024 * 500000 - 50000) * factor;
+		map = MortgageCalculator.maxAskingPrice(loan, 50000, "monthly", 25, 5.0);
+		assertEquals("payment", map.get("limited_by"));
+		assertEquals(500000, (Double) map.get("max_asking_price"), 1e-6);
+		assertEquals(12000, (Double) map.get("insurance"), 1e-6);
+		
+		// just below 10% down the premium jumps to 3.15%, payments in the gap stop at the tier bound
+		loan = (500000 + 0.025 * 500000 - 50000) * factor;
+		map = MortgageCalculator.maxAskingPrice(loan, 50000, "monthly", 25, 5.0);
+		assertEquals("insurance_tier", map.get("limited_by"));
+		assertEquals(500000, (Double) map.get("max_asking_price"), 1e-6);
+		assertTrue((Double) map.get("payment") < loan);
+		
+		// $30k down is the minimum for $550k, no payment buys more
+		map = MortgageCalculator.maxAskingPrice(100000, 30000, "monthly", 25, 5.0);
+		assertEquals("minimum_down_payment", map.get("limited_by"));
+		assertEquals(550000, (Double) map.get("max_asking_price"), 1e-6);
+		
+		try {
+			MortgageCalculator.maxAskingPrice(0, -1, "daily", 25, 5.0);
+			fail();
+		}
+		catch (CalculationException e) {
+			assertEquals(CalculationErrors.NON_POSITIVE_PAYMENT | CalculationErrors.NEGATIVE_DOWN_PAYMENT 
+					| CalculationErrors.PAYMENT_SCHEDULE, e.getErrors());
+		}
+	}
+	
+	@Test
+	public void testPrepaymentSimulation() {
+		Prepayment lumpSum = new Prepayment(Prepayment.Type.LUMP_SUM, 12, 20000);
+		Prepayment annual = new Prepayment(Prepayment.Type.ANNUAL_LUMP_SUM, 12, 5000);
+		Prepayment increase = new Prepayment(Prepayment.Type.PAYMENT_INCREASE, 1, 200);
+		PrepaymentSimulation simulation = MortgageCalculator.prepaymentSimulation(500000, 70000, "monthly", 25, 2.5, 
+				false, new Prepayment[][] {{}, {lumpSum}, {lumpSum, annual}, {increase}, {lumpSum, annual, increase}}, 
+				true);
+		
+		// without prepayments the strategy is the baseline, which matches the amortization schedule
+		AmortizationSchedule schedule = MortgageCalculator.amortizationSchedule(500000, 70000, "monthly", 25, 2.5);
+		double interest = 0;
+		while (schedule.next()) {
+			interest += schedule.getInterest();
+		}
+		assertEquals(300, simulation.getBaselinePayments());
+		assertEquals(interest, simulation.getBaselineInterest(), 1e-6);
+		assertEquals(300, simulation.getPayoffPayments(0));
+		assertEquals(0, simulation.getInterestSaved(0), 1e-9);
+		
+		// each added prepayment pays the loan off sooner and saves more interest
+		for (int i = 1; i < 5; i++) {
+			assertTrue(simulation.getInterestSaved(i) > 0);
+			assertTrue(simulation.getPayoffPayments(i) < 300);
+		}
+		assertTrue(simulation.getInterestSaved(2) > simulation.getInterestSaved(1));
+		assertTrue(simulation.getInterestSaved(4) > simulation.getInterestSaved(2));
+		
+		// the schedule applies the lump sums and ends with the loan paid off
+		schedule = simulation.schedule(2);
+		double principal = 0, prepayments = 0;
+		while (schedule.next()) {
+			principal += schedule.getPrincipal();
+			prepayments += schedule.getPrepayment();
+			if (schedule.getPaymentNumber() == 12) {
+				assertEquals(25000, schedule.getPrepayment(), 0.0);
+			}
+		}
+		assertEquals(simulation.getPayoffPayments(2), schedule.getPaymentNumber());
+		assertEquals(0, schedule.getBalance(), 1e-6);
+		Map<?,?> map = simulation.toMap(true);
+		assertEquals((Double) map.get("loan_amount"), principal, 1e-6);
+		assertTrue(prepayments > 20000 + 5000 * 10);
+		
+		List<?> strategies = (List<?>) map.get("strategies");
+		assertEquals(5, strategies.size());
+		assertEquals(simulation.getPayoffPayments(1), ((List<?>) ((Map<?,?>) strategies.get(1)).get("schedule")).size());
+	}
+	
+	@Test
+	public void testPrepaymentSimulationAccelerated() {
+		Prepayment[][] none = {{}};
+		PrepaymentSimulation biweekly = MortgageCalculator.prepaymentSimulation(500000, 70000, "biweekly", 25, 2.5, 
+				false, none, false);
+		PrepaymentSimulation accelerated = MortgageCalculator.prepaymentSimulation(500000, 70000, "biweekly", 25, 2.5, 
+				true, none, false);
+		Map<?,?> monthly = MortgageCalculator.paymentAmount(500000, 70000, "monthly", 25, 2.5);
+		
+		assertEquals((Double) monthly.get("payment") / 2, accelerated.getPayment(), 1e-9);
+		assertEquals(650, biweekly.getPayoffPayments(0));
+		assertTrue(accelerated.getPayoffPayments(0) < 650);
+		assertTrue(accelerated.getInterestSaved(0) > 0);
+		
+		try {
+			MortgageCalculator.prepaymentSimulation(500000, 70000, "monthly", 25, 2.5, true, none, false);
+			fail("Expected monthly schedules to not be accelerated");
+		}
+		catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage().contains("accelerated"));
+		}
+	}
+	
+	@Test
+	public void testPrepaymentSimulationParallel() {
+		Random random = new Random(1);
+		Prepayment[][] strategies = new Prepayment[500][];
+		for (int i = 0; i < strategies.length; i++) {
+			strategies[i] = new Prepayment[] {new Prepayment(Prepayment.Type.ANNUAL_LUMP_SUM, 1 + random.nextInt(52),
+					random.nextInt(20000))};
+		}
+		PrepaymentSimulation parallel = MortgageCalculator.prepaymentSimulation(500000, 70000, "weekly", 25, 2.5, 
+				false, strategies, false);
+		for (int i = 0; i < strategies.length; i += 50) {
+			PrepaymentSimulation single = MortgageCalculator.prepaymentSimulation(500000, 70000, "weekly", 25, 2.5, 
+					false, new Prepayment[][] {strategies[i]}, false);
+			assertEquals(single.getPayoffPayments(0), parallel.getPayoffPayments(i));
+			assertEquals(single.getTotalInterest(0), parallel.getTotalInterest(i), 0.0);
+		}
+	}
+	
+	@Test
+	public void testPrepaymentSimulationValidation() {
+		Prepayment[][][] invalid = {
+				{{new Prepayment(null, 1, 100)}},
+				{{new Prepayment(Prepayment.Type.LUMP_SUM, 0, 100)}},
+				{{new Prepayment(Prepayment.Type.LUMP_SUM, 1, -100)}},
+				new Prepayment[10001][]};
+		for (Prepayment[][] strategies : invalid) {
+			try {
+				MortgageCalculator.prepaymentSimulation(500000, 70000, "monthly", 25, 2.5, false, strategies, false);
+				fail("Expected the strategies to be rejected");
+			}
+			catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+		// events after the last payment are ignored
+		PrepaymentSimulation simulation = MortgageCalculator.prepaymentSimulation(500000, 70000, "monthly", 25, 2.5, 
+				false, new Prepayment[][] {{new Prepayment(Prepayment.Type.LUMP_SUM, 301, 100)}}, false);
+		assertEquals(300, simulation.getPayoffPayments(0));
+	}
+	
+	@Test
+	public void testRateSimulationConstantRate() {
+		// without volatility and with the long run rate at the initial rate the rate never moves
+		RateSimulation simulation = MortgageCalculator.rateSimulation(500000, 70000, "monthly", 25, 2.5, 5, 2.5, 
+				0.25, 0, 1000, 1);
+		assertEquals(4, simulation.getRenewals());
+		for (int k = 0; k < 4; k++) {
+			assertEquals(simulation.getPayment(), simulation.getMeanPayment(k), 1e-6);
+			assertEquals(2.5, simulation.getMeanRate(k), 1e-9);
+			assertEquals(simulation.getPayment(), simulation.getPaymentPercentile(k, 50), 
+					simulation.getPayment() * RateSimulation.PAYMENT_BIN);
+		}
+		assertEquals(0, simulation.getProbabilityOfIncrease(), 0.0);
+		assertEquals(0, simulation.getMeanMaxPaymentShock(), 1e-9);
+		assertEquals(simulation.getFixedRateTotalInterest(), simulation.getMeanTotalInterest(), 1e-4);
+		
+		// a 5 year term on a 5 year amortization never renews
+		simulation = MortgageCalculator.rateSimulation(500000, 70000, "monthly", 5, 2.5, 5, 2.5, 0.25, 1, 1000, 1);
+		assertEquals(0, simulation.getRenewals());
+		assertEquals(0, simulation.getProbabilityOfIncrease(), 0.0);
+	}
+	
+	@Test
+	public void testRateSimulationDistribution() {
+		// the rate after one term is normal with the mean and deviation of the exact transition
+		double decay = Math.exp(-0.5 * 5);
+		double mean = 5 + (4 - 5) * decay;
+		double deviation = 0.5 * Math.sqrt((1 - decay * decay) / (2 * 0.5));
+		RateSimulation simulation = MortgageCalculator.rateSimulation(500000, 70000, "monthly", 25, 4, 5, 5, 
+				0.5, 0.5, 200000, 42);
+		assertEquals(mean, simulation.getMeanRate(0), 0.01);
+		assertEquals(mean, simulation.getRatePercentile(0, 50), 0.01);
+		assertEquals(2 * 1.6449 * deviation, simulation.getRatePercentile(0, 95) 
+				- simulation.getRatePercentile(0, 5), 0.02);
+		// the rate drifts up to 5% so most payments increase
+		assertTrue(simulation.getProbabilityOfIncrease() > 0.9);
+		assertTrue(simulation.getMeanTotalInterest() > simulation.getFixedRateTotalInterest());
+		assertTrue(simulation.getPaymentPercentile(0, 95) > simulation.getPaymentPercentile(0, 5));
+		assertTrue(simulation.getMaxPaymentShockPercentile(99) > simulation.getMaxPaymentShockPercentile(50));
+		
+		// more volatility widens the payment shock distribution
+		RateSimulation moreVolatile = MortgageCalculator.rateSimulation(500000, 70000, "monthly", 25, 4, 5, 5, 
+				0.5, 2, 200000, 42);
+		assertTrue(moreVolatile.getMaxPaymentShockPercentile(95) > simulation.getMaxPaymentShockPercentile(95));
+	}
+	
+	@Test
+	public void testRateSimulationHighRates() {
+		// a long run rate past the narrowest bins widens them instead of piling the paths into the last one
+		RateSimulation simulation = MortgageCalculator.rateSimulation(500000, 70000, "monthly", 25, 2.5, 5, 30, 
+				0.25, 1, 100000, 3);
+		assertTrue(simulation.getRateBin() > RateSimulation.RATE_BIN);
+		assertTrue(simulation.getPaymentBin() > RateSimulation.PAYMENT_BIN);
+		for (int k = 0; k < simulation.getRenewals(); k++) {
+			assertEquals(simulation.getMeanRate(k), simulation.getRatePercentile(k, 50), 0.05);
+			assertTrue(simulation.getRatePercentile(k, 99) > simulation.getMeanRate(k) + 1);
+			assertTrue(simulation.getPaymentPercentile(k, 99) > simulation.getMeanPayment(k));
+		}
+		assertTrue(simulation.getMaxPaymentShockPercentile(50) > simulation.getMeanMaxPaymentShock() - 0.1);
+		assertTrue(simulation.getMaxPaymentShockPercentile(99) > simulation.getMeanMaxPaymentShock());
+		
+		double probability = 0;
+		for (Object bucket : (List<?>) ((Map<?,?>) simulation.toMap().get("max_payment_shock")).get("distribution")) {
+			probability += (Double) ((Map<?,?>) bucket).get("probability");
+		}
+		assertEquals(1, probability, 1e-9);
+		
+		// the default model keeps the narrowest bins
+		assertEquals(RateSimulation.RATE_BIN, MortgageCalculator.rateSimulation(500000, 70000, "monthly", 25, 2.5, 5, 
+				2.5, 0.25, 1, 1000, 3).getRateBin(), 0.0);
+	}
+	
+	@Test
+	public void testRateSimulationSeed() {
+		// the chunks of a large simulation run in parallel, the result only depends on the seed
+		Map<?,?> first = MortgageCalculator.rateSimulation(500000, 70000, "biweekly", 25, 2.5, 3, 3.5, 0.2, 1.5, 
+				100000, 7).toMap();
+		Map<?,?> second = MortgageCalculator.rateSimulation(500000, 70000, "biweekly", 25, 2.5, 3, 3.5, 0.2, 1.5, 
+				100000, 7).toMap();
+		Map<?,?> other = MortgageCalculator.rateSimulation(500000, 70000, "biweekly", 25, 2.5, 3, 3.5, 0.2, 1.5, 
+				100000, 8).toMap();
+		assertEquals(first, second);
+		assertFalse(first.equals(other));
+		assertEquals(8, ((List<?>) first.get("renewals")).size());
+		
+		double probability = 0;
+		for (Object bucket : (List<?>) ((Map<?,?>) first.get("max_payment_shock")).get("distribution")) {
+			probability += (Double) ((Map<?,?>) bucket).get("probability");
+		}
+		assertEquals(1, probability, 1e-9);
+	}
+	
+	@Test
+	public void testRateSimulationValidation() {
+		try {
+			MortgageCalculator.rateSimulation(500000, 70000, "monthly", 25, 2.5, 5, 0, 0.25, 1, 1000, 1);
+			fail("Expected the long run rate to be rejected");
+		}
+		catch (CalculationException e) {
+			assertEquals(CalculationErrors.INTEREST_RATE, e.getErrors());
+		}
+		int[][] invalid = {{0, 1000}, {26, 1000}, {5, 0}, {5, 1000001}};
+		for (int[] termAndPaths : invalid) {
+			try {
+				MortgageCalculator.rateSimulation(500000, 70000, "monthly", 25, 2.5, termAndPaths[0], 2.5, 0.25, 1, 
+						termAndPaths[1], 1);
+				fail("Expected the term or the paths to be rejected");
+			}
+			catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+		try {
+			MortgageCalculator.rateSimulation(500000, 70000, "monthly", 25, 2.5, 5, 2.5, 0.25, -1, 1000, 1);
+			fail("Expected a negative volatility to be rejected");
+		}
+		catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+}
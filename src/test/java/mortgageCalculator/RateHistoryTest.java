@@ -0,0 +1,249 @@
+package mortgageCalculator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class RateHistoryTest {
+
+	private Path file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = Files.createTempFile("rate-history", ".log");
+		Files.delete(file);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+	}
+
+	@Test
+	public void testRateAt() throws IOException {
+		RateHistory history = new RateHistory();
+		assertNull(history.getLast());
+		assertNull(history.rateAt(Long.MAX_VALUE));
+		for (int i = 1; i <= 100; i++) {
+			assertTrue(history.append(i * 1000L, new InterestRate(i / 10.0, i)));
+		}
+		assertEquals(100, history.size());
+		assertEquals(1000L, history.getStart());
+		assertNull(history.rateAt(999));
+		// a rate is in effect from its time until the next rate's time
+		assertEquals(1, history.rateAt(1000).getVersion());
+		assertEquals(1, history.rateAt(1999).getVersion());
+		assertEquals(2, history.rateAt(2000).getVersion());
+		assertEquals(5.0, history.rateAt(50500).getAnnualInterestRate(), 0.0);
+		assertEquals(100, history.rateAt(Long.MAX_VALUE).getVersion());
+
+		// an older version is skipped, an earlier time is recorded as the last time
+		assertFalse(history.append(200000, new InterestRate(9.0, 100)));
+		assertTrue(history.append(50, new InterestRate(9.0, 101)));
+		assertEquals(101, history.rateAt(100000).getVersion());
+		assertEquals(99, history.rateAt(99999).getVersion());
+	}
+
+	@Test
+	public void testReopen() throws IOException {
+		RateHistory history = RateHistory.open(file);
+		assertEquals(0, history.size());
+		// more rates than the initial mapping holds
+		for (int i = 1; i <= 5000; i++) {
+			history.append(i, new InterestRate(i / 100.0, i));
+		}
+		history.close();
+
+		history = RateHistory.open(file);
+		assertEquals(5000, history.size());
+		assertEquals(1, history.getStart());
+		assertEquals(12.34, history.rateAt(1234).getAnnualInterestRate(), 0.0);
+		assertEquals(5000, history.getLast().getVersion());
+		history.append(6000, new InterestRate(3.0, 5001));
+		history.close();
+		assertEquals(5001, RateHistory.open(file).getLast().getVersion());
+	}
+
+	@Test
+	public void testCorruptTail() throws IOException {
+		RateHistory history = RateHistory.open(file);
+		for (int i = 1; i <= 10; i++) {
+			history.append(i, new InterestRate(i, i));
+		}
+		history.close();
+		// a torn write of the eighth record ends the log there
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+			raf.seek(16 + 7 * 32 + 16);
+			raf.writeLong(Double.doubleToLongBits(99.0));
+		}
+		history = RateHistory.open(file);
+		assertEquals(7, history.size());
+		assertEquals(7, history.getLast().getVersion());
+		// the next rate replaces the torn record
+		history.append(20, new InterestRate(8.5, 8));
+		history.close();
+		history = RateHistory.open(file);
+		assertEquals(8, history.size());
+		assertEquals(8.5, history.rateAt(20).getAnnualInterestRate(), 0.0);
+
+		Files.write(file, new byte[64]);
+		try {
+			RateHistory.open(file);
+			fail("not a rate history");
+		}
+		catch (IOException e) {
+			assertTrue(e.getMessage().contains("not a rate history"));
+		}
+	}
+
+	@Test
+	public void testAsOf() throws Exception {
+		ResultCache resultCache = new ResultCache(true, 100, 300);
+		MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new MortgageCalculatorController(resultCache,
+				new CalculatorMetrics(new SimpleMeterRegistry(), resultCache))).build();
+		InterestRate before = MortgageCalculator.getInterestRate();
+		Thread.sleep(5);
+		String asOf = Instant.now().toString();
+		Thread.sleep(5);
+		MortgageCalculator.updateAnnualInterestRate(before.getAnnualInterestRate() + 1);
+		try {
+			MockHttpServletResponse response = mockMvc.perform(get("/payment-amount")
+					.param("asking_price", "500000")
+					.param("down_payment", "70000")
+					.param("payment_schedule", "monthly")
+					.param("amortization_period", "25")
+					.param("as_of", asOf)).andReturn().getResponse();
+			assertEquals(200, response.getStatus());
+			assertTrue(response.getContentAsString().contains("\"rate_version\":" + before.getVersion()));
+
+			response = mockMvc.perform(get("/interest-rate").param("as_of", asOf)).andReturn().getResponse();
+			assertTrue(response.getContentAsString().contains("\"version\":" + before.getVersion()));
+			response = mockMvc.perform(get("/interest-rate").param("as_of", Instant.now().toString()))
+					.andReturn().getResponse();
+			assertTrue(response.getContentAsString().contains("\"version\":" + (before.getVersion() + 1)));
+
+			for (String invalid : new String[] { "2019-05-30", "1970-01-01T00:00:00Z" }) {
+				response = mockMvc.perform(get("/mortgage-amount")
+						.param("payment", "2000")
+						.param("payment_schedule", "monthly")
+						.param("amortization_period", "25")
+						.param("as_of", invalid)).andReturn().getResponse();
+				assertEquals(invalid, 400, response.getStatus());
+			}
+			response = mockMvc.perform(get("/mortgage-amount")
+					.param("payment", "2000")
+					.param("annual_interest_rate", "3")
+					.param("payment_schedule", "monthly")
+					.param("amortization_period", "25")
+					.param("as_of", asOf)).andReturn().getResponse();
+			assertEquals(400, response.getStatus());
+			assertTrue(response.getContentAsString().contains("as_of"));
+		}
+		finally {
+			MortgageCalculator.updateAnnualInterestRate(before.getAnnualInterestRate());
+		}
+	}
+
+	@Test
+	public void testConcurrentUpdates() throws Exception {
+		InterestRate before = MortgageCalculator.getInterestRate();
+		RateHistory history = RateHistory.open(file);
+		MortgageCalculator.setRateHistory(history);
+		try {
+			List<Thread> threads = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				Thread thread = new Thread(() -> {
+					for (int i = 0; i < 100; i++) {
+						MortgageCalculator.updateAnnualInterestRate(before.getAnnualInterestRate() + 1);
+					}
+				});
+				threads.add(thread);
+				thread.start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			// every version is logged, none is skipped as older than the last one
+			assertEquals(401, history.size());
+			assertEquals(before.getVersion() + 400, history.getLast().getVersion());
+			assertEquals(history.getLast().getVersion(), MortgageCalculator.getInterestRate().getVersion());
+		}
+		finally {
+			MortgageCalculator.setRateHistory(new RateHistory());
+			history.close();
+			MortgageCalculator.updateAnnualInterestRate(before.getAnnualInterestRate());
+		}
+	}
+
+	@Test
+	public void testUnloggedRateNotPublished() throws Exception {
+		InterestRate before = MortgageCalculator.getInterestRate();
+		RateHistory history = RateHistory.open(file);
+		MortgageCalculator.setRateHistory(history);
+		Field channel = RateHistory.class.getDeclaredField("channel");
+		channel.setAccessible(true);
+		try {
+			// fill the mapping, the next rate has to grow it
+			while (history.size() < 4096) {
+				MortgageCalculator.updateAnnualInterestRate(before.getAnnualInterestRate());
+			}
+			InterestRate last = MortgageCalculator.getInterestRate();
+			((FileChannel) channel.get(history)).close();
+			try {
+				MortgageCalculator.updateAnnualInterestRate(last.getAnnualInterestRate() + 1);
+				fail("the log can not grow");
+			}
+			catch (UncheckedIOException e) {
+				assertEquals(last, MortgageCalculator.getInterestRate());
+				assertEquals(last.getVersion(), history.getLast().getVersion());
+			}
+			assertNull(MortgageCalculator.compareAndSetAnnualInterestRate(last.getVersion() + 1, 3.0));
+			try {
+				MortgageCalculator.compareAndSetAnnualInterestRate(last.getVersion(), 3.0);
+				fail("the log can not grow");
+			}
+			catch (UncheckedIOException e) {
+				assertEquals(last, MortgageCalculator.getInterestRate());
+			}
+			
+			// the endpoint answers with the error body and a 503, the rate was not changed
+			ResultCache resultCache = new ResultCache(false, 0, 0);
+			MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new MortgageCalculatorController(resultCache,
+					new CalculatorMetrics(new SimpleMeterRegistry(), resultCache))).build();
+			MockHttpServletResponse response = mockMvc.perform(patch("/interest-rate/3.0")).andReturn().getResponse();
+			assertEquals(503, response.getStatus());
+			assertEquals("{\"error\":\"The interest rate could not be logged and was not changed\"}",
+					response.getContentAsString());
+			assertEquals(last, MortgageCalculator.getInterestRate());
+		}
+		finally {
+			MortgageCalculator.setRateHistory(new RateHistory());
+			history.close();
+			MortgageCalculator.updateAnnualInterestRate(before.getAnnualInterestRate());
+		}
+	}
+}
@@ -0,0 +1,137 @@
+package mortgageCalculator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class RequestTraceTest {
+
+	private MockMvc mockMvc;
+	private List<RequestTrace> slowRequests = new ArrayList<>();
+
+	// the standalone setup only takes annotated advice, an inner class is not component scanned
+	@ControllerAdvice
+	class SerializationAdvice extends TracingConfiguration.SerializationAdvice {
+	}
+
+	@Before
+	public void setUp() {
+		RequestTrace.setEnabled(true);
+		ResultCache resultCache = new ResultCache(false, 0, 0);
+		CalculatorMetrics calculatorMetrics = new CalculatorMetrics(new SimpleMeterRegistry(), resultCache);
+		// every request is slow so every trace is captured
+		RequestTraceFilter filter = new RequestTraceFilter(0) {
+			@Override
+			protected void slowRequest(HttpServletRequest request, HttpServletResponse response, RequestTrace trace) {
+				slowRequests.add(trace);
+			}
+		};
+		mockMvc = MockMvcBuilders.standaloneSetup(new MortgageCalculatorController(resultCache, calculatorMetrics))
+				.addFilters(filter)
+				.addInterceptors(new TracingConfiguration.BindingInterceptor())
+				.setControllerAdvice(new SerializationAdvice())
+				.build();
+	}
+
+	@After
+	public void tearDown() {
+		RequestTrace.setEnabled(false);
+	}
+
+	private MockHttpServletResponse paymentAmount(String downPayment, String requestId) throws Exception {
+		MockHttpServletRequestBuilder request = get("/payment-amount")
+				.param("asking_price", "500000")
+				.param("down_payment", downPayment)
+				.param("payment_schedule", "monthly")
+				.param("amortization_period", "25");
+		if (requestId != null) {
+			request.header(RequestTraceFilter.REQUEST_ID, requestId);
+		}
+		return mockMvc.perform(request).andReturn().getResponse();
+	}
+
+	@Test
+	public void testPhases() throws Exception {
+		MockHttpServletResponse response = paymentAmount("70000", "abc-123");
+		assertEquals(200, response.getStatus());
+		assertEquals("abc-123", response.getHeader(RequestTraceFilter.REQUEST_ID));
+
+		assertEquals(1, slowRequests.size());
+		RequestTrace trace = slowRequests.get(0);
+		assertEquals("abc-123", trace.getRequestId());
+		long sum = 0;
+		for (int phase = 0; phase < RequestTrace.COUNT; phase++) {
+			assertTrue(RequestTrace.name(phase), trace.getNanos(phase) > 0);
+			sum += trace.getNanos(phase);
+		}
+		assertEquals(trace.getTotalNanos(), sum);
+		assertTrue(trace.toString().contains("serialization="));
+
+		// a request rejected before the calculation skips the calculation phase
+		mockMvc.perform(get("/payment-amount")
+				.param("asking_price", "500000")
+				.param("down_payment", "70000")
+				.param("payment_schedule", "monthly")
+				.param("amortization_period", "25")
+				.param("as_of", "yesterday"));
+		trace = slowRequests.get(1);
+		assertEquals(0, trace.getNanos(RequestTrace.CALCULATION));
+		assertTrue(trace.getNanos(RequestTrace.VALIDATION) > 0);
+	}
+
+	@Test
+	public void testRequestId() throws Exception {
+		String generated = paymentAmount("70000", null).getHeader(RequestTraceFilter.REQUEST_ID);
+		assertNotNull(generated);
+		assertTrue(RequestTraceFilter.isValidRequestId(generated));
+		assertFalse(generated.equals(paymentAmount("70000", null).getHeader(RequestTraceFilter.REQUEST_ID)));
+
+		// an ID that is not a plain token is replaced rather than logged
+		String injected = paymentAmount("70000", "abc\nWARN forged").getHeader(RequestTraceFilter.REQUEST_ID);
+		assertFalse(injected.contains("forged"));
+		assertFalse(RequestTraceFilter.isValidRequestId(new String(new char[65]).replace('\0', 'a')));
+	}
+
+	@Test
+	public void testCalculationNotTraced() {
+		// the calculation methods do not lap, a batch calling them once per row costs no more traced
+		RequestTrace trace = RequestTrace.begin("batch");
+		MortgageCalculator.paymentAmount(500000, 70000, "monthly", 25, 2.5);
+		MortgageCalculator.paymentAmount(500000, 70000, 12, 25, 2.5, new PaymentResult());
+		MortgageCalculator.mortgageAmount(2000, 0, 12, 25, 2.5, new MortgageResult());
+		trace.finish();
+		assertEquals(trace.getTotalNanos(), trace.getNanos(RequestTrace.DISPATCH));
+	}
+
+	@Test
+	public void testOutsideRequest() {
+		// laps outside a traced request, or with tracing disabled, do nothing
+		RequestTrace.lap(RequestTrace.VALIDATION);
+		RequestTrace trace = RequestTrace.begin("disabled");
+		RequestTrace.setEnabled(false);
+		RequestTrace.lap(RequestTrace.VALIDATION);
+		trace.finish();
+		assertEquals(0, trace.getNanos(RequestTrace.VALIDATION));
+		assertEquals(trace.getTotalNanos(), trace.getNanos(RequestTrace.DISPATCH));
+		assertTrue(slowRequests.isEmpty());
+	}
+}
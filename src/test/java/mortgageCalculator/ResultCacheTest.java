@@ -0,0 +1,129 @@
+package mortgageCalculator;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class ResultCacheTest {
+
+	@Test
+	public void testPaymentAmountHit() {
+		ResultCache resultCache = new ResultCache(true, 100, 60);
+		BoundedCache<?, ?> cache = resultCache.getCache();
+		
+		Map<?,?> first = resultCache.paymentAmount(500000, 70000, "monthly", 25, null);
+		Map<?,?> second = resultCache.paymentAmount(500000, 70000, "Monthly", 25, null);
+		assertSame(first, second);
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(MortgageCalculator.paymentAmount(500000, 70000, "monthly", 25), first);
+		
+		// an explicit rate equal to the default rate is a different entry, it has no rate version
+		resultCache.paymentAmount(500000, 70000, "monthly", 25, MortgageCalculator.getAnnualInterestRate());
+		assertEquals(2, cache.getMisses());
+		assertEquals(2, cache.size());
+	}
+	
+	@Test
+	public void testMortgageAmountHit() {
+		ResultCache resultCache = new ResultCache(true, 100, 60);
+		Map<?,?> first = resultCache.mortgageAmount(2000, 0, "weekly", 20, 3.0);
+		assertSame(first, resultCache.mortgageAmount(2000, 0, "weekly", 20, 3.0));
+		assertEquals(MortgageCalculator.mortgageAmount(2000, 0, "weekly", 20, 3.0), first);
+	}
+	
+	@Test
+	public void testInterestRateInvalidates() {
+		ResultCache resultCache = new ResultCache(true, 100, 60);
+		Map<?,?> first = resultCache.paymentAmount(500000, 70000, "monthly", 25, null);
+		
+		double rate = MortgageCalculator.getAnnualInterestRate();
+		MortgageCalculator.setAnnualInterestRate(rate);
+		assertEquals(0, resultCache.getCache().size());
+		
+		Map<?,?> second = resultCache.paymentAmount(500000, 70000, "monthly", 25, null);
+		assertNotSame(first, second);
+		assertEquals(MortgageCalculator.getInterestRate().getVersion(), second.get("rate_version"));
+	}
+	
+	@Test
+	public void testDestroy() {
+		ResultCache resultCache = new ResultCache(true, 100, 60);
+		resultCache.paymentAmount(500000, 70000, "monthly", 25, null);
+		resultCache.destroy();
+		
+		// no longer listening, a new rate or rule set does not reach the destroyed cache
+		MortgageCalculator.setAnnualInterestRate(MortgageCalculator.getAnnualInterestRate());
+		MortgageCalculator.setRuleSet(MortgageCalculator.getRuleSet());
+		assertEquals(1, resultCache.getCache().size());
+		
+		new ResultCache(false, 0, 0).destroy();
+	}
+	
+	@Test
+	public void testErrorsAreNotCached() {
+		ResultCache resultCache = new ResultCache(true, 100, 60);
+		try {
+			resultCache.paymentAmount(500000, 1000, "monthly", 25, null);
+			fail("Calling paymentAmount with a down payment less than the minimum should raise an exception.");
+		}
+		catch (IllegalArgumentException e) {
+			
+		}
+		assertEquals(0, resultCache.getCache().size());
+	}
+	
+	@Test
+	public void testEviction() {
+		BoundedCache<Integer, Integer> cache = new BoundedCache<>(16, 60000);
+		for (int i = 0; i < 64; i++) {
+			cache.put(i, i);
+		}
+		assertEquals(16, cache.size());
+		assertEquals(48, cache.getEvictions());
+	}
+	
+	@Test
+	public void testSmallMaxSize() {
+		// smaller than the number of segments, each segment still holds one entry
+		BoundedCache<Integer, Integer> cache = new BoundedCache<>(4, 60000);
+		for (int i = 0; i < 64; i++) {
+			cache.put(i, i);
+		}
+		assertEquals(16, cache.size());
+		assertEquals(48, cache.getEvictions());
+		
+		// the remainder is spread over the first segments
+		cache = new BoundedCache<>(40, 60000);
+		for (int i = 0; i < 640; i++) {
+			cache.put(i, i);
+		}
+		assertEquals(40, cache.size());
+		
+		ResultCache resultCache = new ResultCache(true, 1, 60);
+		resultCache.paymentAmount(500000, 70000, "monthly", 25, null);
+		assertEquals(1, resultCache.getCache().size());
+		resultCache.destroy();
+	}
+	
+	@Test
+	public void testExpiry() {
+		BoundedCache<Integer, Integer> cache = new BoundedCache<>(16, 0);
+		cache.put(1, 1);
+		assertEquals(null, cache.get(1));
+		assertEquals(1, cache.getEvictions());
+	}
+	
+	@Test
+	public void testDisabled() {
+		ResultCache resultCache = new ResultCache(false, 0, 0);
+		assertEquals(MortgageCalculator.paymentAmount(500000, 70000, "monthly", 25), 
+				resultCache.paymentAmount(500000, 70000, "monthly", 25, null));
+		assertEquals(false, resultCache.stats().get("enabled"));
+	}
+}
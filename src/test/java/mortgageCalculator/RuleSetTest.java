@@ -0,0 +1,144 @@
+package mortgageCalculator;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class RuleSetTest {
+
+	private static final String RULES = "{\"version\": \"%s\","
+			+ "\"payment_schedules\": {\"weekly\": 52, \"biweekly\": 26, \"monthly\": 12},"
+			+ "\"amortization_period\": {\"min\": 5, \"max\": %d},"
+			+ "\"minimum_down_payment\": {\"bound\": 500000.0, \"rate_below_bound\": 0.05, \"rate_above_bound\": 0.1},"
+			+ "\"insurance\": {\"down_payment_ratio_bounds\": [0.1, 0.15, 0.2], \"percentages\": [%s, 0.024, 0.018]}}";
+
+	private static RuleSet rules(String version, int maxAmortizationPeriod, String firstPercentage) throws Exception {
+		String json = String.format(RULES, version, maxAmortizationPeriod, firstPercentage);
+		return RuleSet.load(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	@Test
+	public void testDefaultRules() throws Exception {
+		RuleSet defaults = MortgageCalculator.loadDefaultRules();
+		RuleSet same = rules(defaults.getVersion(), 25, "0.0315");
+
+		assertEquals(same.toMap(), defaults.toMap());
+		assertEquals(12, defaults.paymentsPerYear("Monthly"));
+		assertEquals(0, defaults.paymentsPerYear("daily"));
+		assertEquals(25000, defaults.minimumDownPayment(500000), 0.0);
+		assertEquals(500000 * 0.0315, defaults.insurance(500000, 25000), 0.0);
+		assertEquals(0, defaults.insurance(500000, 100000), 0.0);
+	}
+
+	@Test
+	public void testInvalidRules() throws Exception {
+		String[] invalid = {
+			"[]",
+			"{\"version\": \"1\"}",
+			String.format(RULES, "", 25, "0.0315"),
+			String.format(RULES, "1", 4, "0.0315"),
+			String.format(RULES, "1", 25, "1.5"),
+			String.format(RULES, "1", 25, "\"x\""),
+			String.format(RULES, "1", 25, "0.0315").replace("[0.1, 0.15, 0.2]", "[0.15, 0.1, 0.2]"),
+			String.format(RULES, "1", 25, "0.0315").replace("[0.1, 0.15, 0.2]", "[0.1, 0.15]"),
+		};
+		for (String json : invalid) {
+			try {
+				RuleSet.load(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+				fail("Expected the rules to be rejected: " + json);
+			}
+			catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	@Test
+	public void testDescribe() throws Exception {
+		// the message names the limits of the rules the calculation used, not the current ones
+		RuleSet longer = rules("test", 30, "0.04");
+		PaymentResult result = new PaymentResult();
+		int errors = MortgageCalculator.paymentAmount(longer, 500000, 25000, 12, 35, 2.5, result);
+		assertEquals(CalculationErrors.AMORTIZATION_PERIOD, errors);
+		assertTrue(CalculationErrors.describe(errors, longer, 0).contains("less than or equal to 30."));
+		assertTrue(CalculationErrors.describe(errors, MortgageCalculator.getRuleSet(), 0).contains("less than or equal to 25."));
+	}
+
+	@Test
+	public void testSetRuleSet() throws Exception {
+		RuleSet defaults = MortgageCalculator.getRuleSet();
+		Map<?,?> before = MortgageCalculator.paymentAmount(500000, 25000, "monthly", 25, 2.5);
+		assertEquals(defaults.getVersion(), before.get("rule_version"));
+		try {
+			MortgageCalculator.paymentAmount(500000, 25000, "monthly", 30, 2.5);
+			fail("Expected 30 years to exceed the default amortization period");
+		}
+		catch (CalculationException e) {
+			assertTrue(e.getMessage().contains("less than or equal to 25."));
+		}
+
+		RuleSet longer = rules("test", 30, "0.04");
+		ResultCache resultCache = new ResultCache(true, 100, 60);
+		resultCache.paymentAmount(500000, 25000, "monthly", 25, 2.5);
+		try {
+			assertSame(defaults, MortgageCalculator.setRuleSet(longer));
+			assertEquals(0, resultCache.getCache().size());
+
+			Map<?,?> after = resultCache.paymentAmount(500000, 25000, "monthly", 25, 2.5);
+			assertEquals("test", after.get("rule_version"));
+			assertEquals(500000 * 0.04, (Double) after.get("insurance"), 1e-9);
+			assertNotEquals(before.get("payment"), after.get("payment"));
+			assertEquals("test", MortgageCalculator.paymentAmount(500000, 25000, "monthly", 30, 2.5).get("rule_version"));
+
+			// the annuity factor table is rebuilt for the new amortization periods
+			MortgageCalculator.awaitAnnuityFactors();
+			assertEquals(MortgageCalculator.computeAnnuityFactor(2.5, 12, 30),
+					MortgageCalculator.annuityFactor(2.5, 12, 30), 0.0);
+		}
+		finally {
+			MortgageCalculator.setRuleSet(defaults);
+		}
+		assertEquals(before, MortgageCalculator.paymentAmount(500000, 25000, "monthly", 25, 2.5));
+	}
+
+	@Test
+	public void testRuleSetLoaderReload() throws Exception {
+		RuleSet defaults = MortgageCalculator.getRuleSet();
+		File file = File.createTempFile("rules", ".json");
+		file.deleteOnExit();
+		Files.write(file.toPath(), String.format(RULES, "file-1", 25, "0.0315").getBytes(StandardCharsets.UTF_8));
+
+		RuleSetLoader loader = new RuleSetLoader(file.getPath(), 0);
+		try {
+			assertEquals("file-1", MortgageCalculator.getRuleSet().getVersion());
+			assertFalse(loader.reloadIfModified());
+
+			// invalid rules are ignored
+			Files.write(file.toPath(), "{\"version\": \"file-2\"}".getBytes(StandardCharsets.UTF_8));
+			file.setLastModified(file.lastModified() + 1000);
+			assertFalse(loader.reloadIfModified());
+			assertEquals("file-1", MortgageCalculator.getRuleSet().getVersion());
+
+			Files.write(file.toPath(), String.format(RULES, "file-3", 20, "0.0315").getBytes(StandardCharsets.UTF_8));
+			file.setLastModified(file.lastModified() + 2000);
+			assertTrue(loader.reloadIfModified());
+			assertEquals("file-3", MortgageCalculator.getRuleSet().getVersion());
+			assertEquals("file-3", MortgageCalculator.mortgageAmount(2000, "monthly", 20).get("rule_version"));
+		}
+		finally {
+			loader.destroy();
+			MortgageCalculator.setRuleSet(defaults);
+		}
+	}
+}
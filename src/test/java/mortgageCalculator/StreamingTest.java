@@ -0,0 +1,62 @@
+package mortgageCalculator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+@AutoConfigureMockMvc
+public class StreamingTest {
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private ThreadPoolTaskExecutor streamingExecutor;
+
+	@Test
+	public void testAmortizationSchedule() throws Exception {
+		long submitted = streamingExecutor.getThreadPoolExecutor().getTaskCount();
+		MvcResult result = mockMvc.perform(get("/amortization-schedule")
+				.param("asking_price", "500000")
+				.param("down_payment", "70000")
+				.param("payment_schedule", "monthly")
+				.param("amortization_period", "25")).andReturn();
+		assertTrue(result.getRequest().isAsyncStarted());
+		MockHttpServletResponse response = mockMvc.perform(asyncDispatch(result)).andReturn().getResponse();
+		assertEquals(200, response.getStatus());
+		assertEquals(300, response.getContentAsString().split("\n").length);
+		// written by the bounded executor, not a new thread
+		assertEquals(submitted + 1, streamingExecutor.getThreadPoolExecutor().getTaskCount());
+	}
+
+	@Test
+	public void testAmortizationScheduleError() throws Exception {
+		MvcResult result = mockMvc.perform(get("/amortization-schedule")
+				.header("Accept", MortgageCalculatorController.NDJSON)
+				.param("asking_price", "500000")
+				.param("down_payment", "1000")
+				.param("payment_schedule", "monthly")
+				.param("amortization_period", "25")).andReturn();
+		// a plain body, written on the request thread
+		assertFalse(result.getRequest().isAsyncStarted());
+		MockHttpServletResponse response = result.getResponse();
+		assertEquals(400, response.getStatus());
+		assertTrue(response.getContentType().startsWith("application/json"));
+		assertTrue(response.getContentAsString().startsWith("{\"error\":"));
+	}
+}
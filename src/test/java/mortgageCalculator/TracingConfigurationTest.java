@@ -0,0 +1,55 @@
+package mortgageCalculator;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.http.HttpMessageConvertersAutoConfiguration;
+import org.springframework.boot.autoconfigure.web.servlet.WebMvcAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.runner.WebApplicationContextRunner;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.method.ControllerAdviceBean;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest
+public class TracingConfigurationTest {
+
+	@Autowired
+	private RequestMappingHandlerAdapter adapter;
+
+	private static int serializationAdvice(RequestMappingHandlerAdapter adapter) {
+		int count = 0;
+		for (Object advice : (List<?>) ReflectionTestUtils.getField(adapter, "requestResponseBodyAdvice")) {
+			Class<?> type = advice instanceof ControllerAdviceBean ? ((ControllerAdviceBean) advice).getBeanType()
+					: advice.getClass();
+			if (TracingConfiguration.SerializationAdvice.class.isAssignableFrom(type)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void testRegisteredOnce() {
+		// the advice marks serialization once per response
+		assertEquals(1, serializationAdvice(adapter));
+	}
+
+	@Test
+	public void testDisabled() {
+		new WebApplicationContextRunner()
+				.withConfiguration(AutoConfigurations.of(WebMvcAutoConfiguration.class,
+						HttpMessageConvertersAutoConfiguration.class))
+				.withUserConfiguration(TracingConfiguration.class)
+				.withPropertyValues("mortgage-calculator.tracing.enabled=false")
+				.run(context -> assertEquals(0, serializationAdvice(context.getBean(RequestMappingHandlerAdapter.class))));
+		RequestTrace.setEnabled(false);
+	}
+}
@@ -0,0 +1,136 @@
+package mortgageCalculator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+public class WhatIfSessionTest {
+
+	private static Map<?, ?> withoutSession(Map<?, ?> map) {
+		Map<?, ?> result = new HashMap<>(map);
+		assertTrue(result.remove("session") != null);
+		return result;
+	}
+
+	@Test
+	public void testSameAsPaymentAmount() {
+		WhatIfSession session = new WhatIfSession("s", 500000, 70000, "monthly", 25, 2.5);
+		assertEquals(WhatIfSession.ALL, session.getRecomputed());
+		assertEquals(MortgageCalculator.paymentAmount(500000, 70000, "monthly", 25, 2.5), withoutSession(session.toMap()));
+
+		// a slider moves the down payment, the rate and annuity factor are kept
+		for (double downPayment = 30000; downPayment <= 200000; downPayment += 10000) {
+			assertEquals(MortgageCalculator.paymentAmount(500000, downPayment, "monthly", 25, 2.5),
+					withoutSession(session.update(null, downPayment, null, null, null)));
+			assertEquals(WhatIfSession.INSURANCE | WhatIfSession.PRINCIPAL | WhatIfSession.PAYMENT, session.getRecomputed());
+		}
+		// a slider moves the rate, the insurance and principal are kept
+		for (double rate = 1.0; rate <= 8.0; rate += 0.25) {
+			assertEquals(MortgageCalculator.paymentAmount(500000, 200000, "monthly", 25, rate),
+					withoutSession(session.update(null, null, null, null, rate)));
+			assertEquals(WhatIfSession.RATE | WhatIfSession.ANNUITY_FACTOR | WhatIfSession.PAYMENT, session.getRecomputed());
+		}
+		session.update(null, null, null, 10, null);
+		assertEquals(WhatIfSession.NUM_PAYMENTS | WhatIfSession.ANNUITY_FACTOR | WhatIfSession.PAYMENT, session.getRecomputed());
+		session.update(650000.0, null, "Weekly", null, null);
+		assertEquals(WhatIfSession.ALL, session.getRecomputed());
+		assertEquals(MortgageCalculator.paymentAmount(650000, 200000, "weekly", 10, 8.0), withoutSession(session.toMap()));
+
+		// nothing changed, nothing is recomputed
+		session.update(null, null, "weekly", null, 8.0);
+		assertEquals(0, session.getRecomputed());
+	}
+
+	@Test
+	public void testInvalidUpdate() {
+		WhatIfSession session = new WhatIfSession("s", 500000, 70000, "monthly", 25, 2.5);
+		Map<?, ?> before = session.toMap();
+		try {
+			session.update(null, 1000.0, null, null, null);
+			fail("below the minimum down payment");
+		}
+		catch (CalculationException e) {
+			assertTrue(e.getMessage().contains("25000"));
+		}
+		try {
+			session.update(null, null, "daily", 40, null);
+			fail("invalid schedule and period");
+		}
+		catch (CalculationException e) {
+			assertEquals(before, session.toMap());
+		}
+		session.update(null, null, null, null, null);
+		assertEquals(0, session.getRecomputed());
+	}
+
+	@Test
+	public void testDefaultRate() {
+		InterestRate defaultRate = MortgageCalculator.getInterestRate();
+		WhatIfSession session = new WhatIfSession("s", 500000, 70000, "monthly", 25, null);
+		try {
+			MortgageCalculator.setAnnualInterestRate(defaultRate.getAnnualInterestRate() + 1);
+			Map<?, ?> map = session.update(null, null, null, null, null);
+			assertEquals(WhatIfSession.RATE | WhatIfSession.ANNUITY_FACTOR | WhatIfSession.PAYMENT, session.getRecomputed());
+			assertEquals(MortgageCalculator.getInterestRate().getVersion(), map.get("rate_version"));
+			assertEquals(MortgageCalculator.paymentAmount(500000, 70000, "monthly", 25,
+					MortgageCalculator.getAnnualInterestRate(), MortgageCalculator.getInterestRate().getVersion()),
+					withoutSession(map));
+		}
+		finally {
+			MortgageCalculator.setAnnualInterestRate(defaultRate.getAnnualInterestRate());
+		}
+	}
+
+	@Test
+	public void testBounded() {
+		WhatIfSessions sessions = new WhatIfSessions(16, 30);
+		String first = sessions.create(500000, 70000, "monthly", 25, null).getId();
+		for (int i = 0; i < 100; i++) {
+			sessions.create(500000 + i, 70000, "monthly", 25, null);
+		}
+		assertTrue(sessions.size() <= 16);
+		assertNull(sessions.get(first));
+		assertNull(sessions.update(first, 600000.0, null, null, null, null));
+	}
+
+	@Test
+	public void testEndpoints() throws Exception {
+		ResultCache resultCache = new ResultCache(false, 0, 0);
+		MockMvc mockMvc = MockMvcBuilders.standaloneSetup(new WhatIfController(new WhatIfSessions(16, 30),
+				new CalculatorMetrics(new SimpleMeterRegistry(), resultCache))).build();
+
+		MockHttpServletResponse response = mockMvc.perform(post("/what-if").param("asking_price", "500000")
+				.param("down_payment", "70000").param("payment_schedule", "monthly").param("amortization_period", "25"))
+				.andReturn().getResponse();
+		assertEquals(201, response.getStatus());
+		String location = response.getHeader("Location");
+		assertTrue(response.getContentAsString().contains("\"session\":\"" + location.substring("/what-if/".length()) + "\""));
+
+		response = mockMvc.perform(patch(location).param("down_payment", "90000")).andReturn().getResponse();
+		assertEquals(200, response.getStatus());
+		assertTrue(response.getContentAsString().contains("\"principal\":\"419000.0 = 9000.0 + 500000.0 - 90000.0\""));
+		response = mockMvc.perform(patch(location).param("amortization_period", "50")).andReturn().getResponse();
+		assertEquals(400, response.getStatus());
+		assertTrue(mockMvc.perform(get(location)).andReturn().getResponse().getContentAsString()
+				.contains("\"principal\":\"419000.0 = 9000.0 + 500000.0 - 90000.0\""));
+
+		assertEquals(200, mockMvc.perform(delete(location)).andReturn().getResponse().getStatus());
+		assertEquals(404, mockMvc.perform(get(location)).andReturn().getResponse().getStatus());
+		assertEquals(404, mockMvc.perform(delete(location)).andReturn().getResponse().getStatus());
+	}
+}